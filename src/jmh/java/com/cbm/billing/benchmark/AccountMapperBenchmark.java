@@ -0,0 +1,41 @@
+package com.cbm.billing.benchmark;
+
+import com.cbm.billing.common.AccountStatus;
+import com.cbm.billing.entity.AccountEntity;
+import com.cbm.billing.mapper.impl.AccountDataMapperImpl;
+import com.cbm.billing.model.Account;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Maps an account entity to the account model, as every account read and search result does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccountMapperBenchmark {
+
+    private final AccountDataMapperImpl accountDataMapper = new AccountDataMapperImpl();
+    private AccountEntity accountEntity;
+
+    @Setup
+    public void setup() {
+        accountEntity = new AccountEntity();
+        accountEntity.setId(42L);
+        accountEntity.setName("Benchmark account");
+        accountEntity.setCurrentBalance(123_456L);
+        accountEntity.setBillCycleDay(15);
+        accountEntity.setLastBillDate(LocalDate.now());
+        accountEntity.setStatus(AccountStatus.ACTIVE);
+    }
+
+    @Benchmark
+    public Account accountEntityToAccount() {
+        return accountDataMapper.accountEntityToAccount(accountEntity);
+    }
+}
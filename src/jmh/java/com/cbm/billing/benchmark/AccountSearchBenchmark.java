@@ -0,0 +1,54 @@
+package com.cbm.billing.benchmark;
+
+import com.cbm.billing.common.AccountStatus;
+import com.cbm.billing.common.SearchTotalMode;
+import com.cbm.billing.dto.query.SearchAccountDTO;
+import com.cbm.billing.dto.query.SearchAccountResponse;
+import com.cbm.billing.service.IAccountService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Account search pages against H2 in MySQL mode, sorted by name and without total, so the time and the
+ * allocation (-prof gc) per page are those of reading and mapping the accounts of the page.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccountSearchBenchmark {
+
+    @Param({"5000"})
+    private int accounts;
+
+    @Param({"20", "1000"})
+    private int pageSize;
+
+    private ConfigurableApplicationContext context;
+    private IAccountService accountService;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkApplication.start();
+        accountService = context.getBean(IAccountService.class);
+        BenchmarkApplication.createAccounts(context, accounts);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public SearchAccountResponse searchAccount() {
+        SearchAccountDTO filters = SearchAccountDTO.builder()
+                .status(AccountStatus.ACTIVE)
+                .totalMode(SearchTotalMode.NONE)
+                .build();
+        return accountService.searchAccount(0, pageSize, "name", filters);
+    }
+}
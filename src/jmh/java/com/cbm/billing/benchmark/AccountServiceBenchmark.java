@@ -0,0 +1,110 @@
+package com.cbm.billing.benchmark;
+
+import com.cbm.billing.common.AccountNameMatch;
+import com.cbm.billing.common.AccountStatus;
+import com.cbm.billing.dto.update.TransactionAmountDTO;
+import com.cbm.billing.dto.update.TransactionResponse;
+import com.cbm.billing.entity.AccountEntity;
+import com.cbm.billing.model.Account;
+import com.cbm.billing.service.IAccountService;
+import com.cbm.billing.service.impl.AccountNameSearch;
+import com.cbm.billing.service.impl.AccountServiceImpl;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.AbstractQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.util.AopTestUtils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.time.LocalDate;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Account service paths against H2 in MySQL mode: the construction of the search predicate, and a charge
+ * and a credit of one cent on a random account, which go through the mailbox, the ledger, the outbox and
+ * the summary change queue. Sample time mode reports the latency percentiles besides the mean.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccountServiceBenchmark {
+
+    @Param({"1000"})
+    private int accounts;
+
+    private ConfigurableApplicationContext context;
+    private IAccountService accountService;
+    private long[] accountIds;
+
+    private Object accountServiceTarget;
+    private MethodHandle searchAccountPredicate;
+    private CriteriaBuilder criteriaBuilder;
+    private Account filters;
+    private AccountNameSearch.Filter nameFilter;
+
+    @Setup(Level.Trial)
+    public void setup() throws ReflectiveOperationException {
+        context = BenchmarkApplication.start();
+        accountService = context.getBean(IAccountService.class);
+        accountIds = BenchmarkApplication.createAccounts(context, accounts);
+
+        // The predicate builder is private, it is measured on the service instance behind the transactional proxy
+        accountServiceTarget = AopTestUtils.getUltimateTargetObject(accountService);
+        Method method = AccountServiceImpl.class.getDeclaredMethod("searchAccountPredicate",
+                Account.class, AccountNameSearch.Filter.class, AbstractQuery.class, Root.class);
+        method.setAccessible(true);
+        searchAccountPredicate = MethodHandles.lookup().unreflect(method);
+        criteriaBuilder = context.getBean(EntityManager.class).getCriteriaBuilder();
+
+        filters = new Account();
+        filters.setName("account 1");
+        filters.setStatus(AccountStatus.ACTIVE);
+        filters.setBillCycleDay(15);
+        filters.setLastBillDate(LocalDate.now());
+        // Resolved once per search by the service, the index lookup is not part of the predicate build
+        nameFilter = context.getBean(AccountNameSearch.class).resolve(filters.getName(), AccountNameMatch.SUBSTRING);
+    }
+
+    @TearDown(Level.Iteration)
+    public void drainQueues() {
+        BenchmarkApplication.drainQueues(context);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Predicate searchAccountPredicate() throws Throwable {
+        CriteriaQuery<AccountEntity> criteriaQuery = criteriaBuilder.createQuery(AccountEntity.class);
+        Root<AccountEntity> accountEntityRoot = criteriaQuery.from(AccountEntity.class);
+        return (Predicate) searchAccountPredicate.invoke(accountServiceTarget, filters, nameFilter, criteriaQuery, accountEntityRoot);
+    }
+
+    @Benchmark
+    public TransactionResponse chargeOnAccount() throws Exception {
+        return accountService.chargeOnAccount(randomAccountId(), new TransactionAmountDTO(1L));
+    }
+
+    @Benchmark
+    public TransactionResponse creditOnAccount() throws Exception {
+        return accountService.creditOnAccount(randomAccountId(), new TransactionAmountDTO(1L));
+    }
+
+    private long randomAccountId() {
+        return accountIds[ThreadLocalRandom.current().nextInt(accountIds.length)];
+    }
+}
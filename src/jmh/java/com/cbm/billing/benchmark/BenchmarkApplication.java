@@ -0,0 +1,67 @@
+package com.cbm.billing.benchmark;
+
+import com.cbm.billing.BillingSystemApplication;
+import com.cbm.billing.common.AccountStatus;
+import com.cbm.billing.dto.create.CreateAccountDTO;
+import com.cbm.billing.service.IAccountService;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Starts the application for the service benchmarks on the embedded H2 database of the {@code embedded} profile.
+ * The background jobs (outbox relay, summary projector, bill run) are disabled, so only the request path is measured.
+ */
+final class BenchmarkApplication {
+
+    private static final String[] ARGUMENTS = {
+            "--billing.outbox.relay.enabled=false",
+            "--billing.summary.projector.enabled=false"
+    };
+
+    private BenchmarkApplication() {
+    }
+
+    /**
+     * Starts the application.
+     * @return the application context, to be closed by the benchmark
+     */
+    static ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(BillingSystemApplication.class)
+                .profiles("embedded")
+                .web(WebApplicationType.NONE)
+                .run(ARGUMENTS);
+    }
+
+    /**
+     * Creates ACTIVE accounts with a balance large enough for any benchmark run.
+     * @param context the application context
+     * @param accounts the number of accounts to create
+     * @return the ids of the created accounts
+     */
+    static long[] createAccounts(ConfigurableApplicationContext context, int accounts) {
+        IAccountService accountService = context.getBean(IAccountService.class);
+        for (int i = 0; i < accounts; i++) {
+            accountService.createAccount(CreateAccountDTO.builder()
+                    .name("Benchmark account " + i)
+                    .currentBalance(1_000_000_000L)
+                    .billCycleDay(1 + i % 28)
+                    .status(AccountStatus.ACTIVE)
+                    .build());
+        }
+        return context.getBean(JdbcTemplate.class)
+                .queryForList("SELECT id FROM billing.billing_account ORDER BY id", Long.class)
+                .stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * Empties the queues that the disabled background jobs would drain, so they do not grow across iterations.
+     * @param context the application context
+     */
+    static void drainQueues(ConfigurableApplicationContext context) {
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        jdbcTemplate.execute("TRUNCATE TABLE billing.event_outbox");
+        jdbcTemplate.execute("TRUNCATE TABLE billing.summary_change");
+    }
+}
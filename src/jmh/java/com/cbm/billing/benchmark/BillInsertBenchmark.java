@@ -0,0 +1,159 @@
+package com.cbm.billing.benchmark;
+
+import com.cbm.billing.common.BillStatus;
+import com.cbm.billing.converter.MoneyConverter;
+import com.cbm.billing.entity.BillEntity;
+import jakarta.persistence.*;
+import org.h2.tools.Server;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+/**
+ * Inserts bills through Hibernate, the way createBill does, with the previous IDENTITY ids and with the
+ * pooled ids of {@link BillEntity}. IDENTITY needs the generated key of every row, so Hibernate sends
+ * one INSERT per bill; the pooled ids are known before the flush, so the INSERTs go in JDBC batches.
+ * <p>
+ * Runs against H2 in MySQL mode, either in process ({@code mem}) or over its TCP server ({@code tcp}),
+ * where every statement is a real round trip as it is with MySQL.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BillInsertBenchmark {
+
+    private static final int BATCH_SIZE = 500;
+
+    @Param({"100000"})
+    private int bills;
+
+    @Param({"mem", "tcp"})
+    private String transport;
+
+    private Server server;
+    private SessionFactory sessionFactory;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException {
+        String database = "mem:bills;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;INIT=CREATE SCHEMA IF NOT EXISTS billing";
+        String url = "jdbc:h2:" + database;
+        if (transport.equals("tcp")) {
+            server = Server.createTcpServer("-tcpPort", "0", "-ifNotExists").start();
+            url = "jdbc:h2:tcp://localhost:" + server.getPort() + "/" + database;
+        }
+
+        sessionFactory = new Configuration()
+                .addAnnotatedClass(BillEntity.class)
+                .addAnnotatedClass(IdentityBillEntity.class)
+                .setProperty(AvailableSettings.JAKARTA_JDBC_URL, url)
+                .setProperty(AvailableSettings.JAKARTA_JDBC_USER, "sa")
+                .setProperty(AvailableSettings.JAKARTA_JDBC_PASSWORD, "")
+                .setProperty(AvailableSettings.HBM2DDL_AUTO, "create")
+                .setProperty(AvailableSettings.STATEMENT_BATCH_SIZE, String.valueOf(BATCH_SIZE))
+                .setProperty(AvailableSettings.ORDER_INSERTS, "true")
+                // Same id generator layout as PersistenceConfig
+                .setProperty(AvailableSettings.TABLE_GENERATOR_STORE_LAST_USED, "true")
+                .setProperty(AvailableSettings.PREFERRED_POOLED_OPTIMIZER, "pooled-lo")
+                .buildSessionFactory();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        sessionFactory.close();
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void truncate() {
+        sessionFactory.inTransaction(session -> {
+            session.createNativeMutationQuery("TRUNCATE TABLE billing.bill").executeUpdate();
+            session.createNativeMutationQuery("TRUNCATE TABLE billing.identity_bill").executeUpdate();
+        });
+    }
+
+    @Benchmark
+    public void insertIdentity() {
+        insert(index -> {
+            IdentityBillEntity bill = new IdentityBillEntity();
+            bill.accountId = (long) index;
+            bill.amount = 1_000 + index;
+            return bill;
+        });
+    }
+
+    @Benchmark
+    public void insertPooled() {
+        insert(index -> {
+            BillEntity bill = new BillEntity();
+            bill.setAccountId((long) index);
+            bill.setAmount(1_000 + index);
+            return bill;
+        });
+    }
+
+    /**
+     * Persists the bills in one transaction, flushing and clearing the session every batch as a bulk
+     * writer does to keep the persistence context small.
+     */
+    private void insert(IntFunction<Object> newBill) {
+        sessionFactory.inTransaction(session -> {
+            for (int index = 0; index < bills; index++) {
+                session.persist(newBill.apply(index));
+                if ((index + 1) % BATCH_SIZE == 0) {
+                    flushAndClear(session);
+                }
+            }
+            flushAndClear(session);
+        });
+    }
+
+    private static void flushAndClear(Session session) {
+        session.flush();
+        session.clear();
+    }
+
+    /**
+     * The bill mapping before pooled ids, on its own table so that both mappings can be created side by side.
+     */
+    @Entity
+    @Table(catalog = "billing", name = "identity_bill")
+    public static class IdentityBillEntity {
+
+        @Id
+        @Column(name = "id")
+        @GeneratedValue(strategy = GenerationType.IDENTITY)
+        private Long id;
+
+        @Column(name = "billing_account_id")
+        private Long accountId;
+
+        @Column(name = "generation_date")
+        private LocalDate generationDate = LocalDate.now();
+
+        @Column(name = "amount")
+        @Convert(converter = MoneyConverter.class)
+        private long amount;
+
+        @Enumerated(EnumType.STRING)
+        @Column(name = "status")
+        private BillStatus status = BillStatus.NOT_SETTLED;
+
+        @Column(name = "created_at")
+        private LocalDate createdAt = LocalDate.now();
+
+        @Column(name = "updated_at")
+        private LocalDate updatedAt = LocalDate.now();
+    }
+}
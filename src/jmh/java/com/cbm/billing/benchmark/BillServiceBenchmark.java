@@ -0,0 +1,53 @@
+package com.cbm.billing.benchmark;
+
+import com.cbm.billing.dto.create.CreateBillDTO;
+import com.cbm.billing.dto.create.CreateBillResponse;
+import com.cbm.billing.service.IBillService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates a bill of one cent on a random account against H2 in MySQL mode.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BillServiceBenchmark {
+
+    @Param({"1000"})
+    private int accounts;
+
+    private ConfigurableApplicationContext context;
+    private IBillService billService;
+    private long[] accountIds;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkApplication.start();
+        billService = context.getBean(IBillService.class);
+        accountIds = BenchmarkApplication.createAccounts(context, accounts);
+    }
+
+    @TearDown(Level.Iteration)
+    public void drainQueues() {
+        BenchmarkApplication.drainQueues(context);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public CreateBillResponse createBill() throws Exception {
+        long accountId = accountIds[ThreadLocalRandom.current().nextInt(accountIds.length)];
+        // createBill rewrites the amount of its argument, so every call gets its own
+        return billService.createBill(CreateBillDTO.builder().accountId(accountId).amount(1L).build());
+    }
+}
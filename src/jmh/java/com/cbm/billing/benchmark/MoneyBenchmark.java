@@ -0,0 +1,144 @@
+package com.cbm.billing.benchmark;
+
+import com.cbm.billing.common.TransactionType;
+import com.cbm.billing.dto.create.CreateBillEvent;
+import com.cbm.billing.dto.event.TransactionDetailsEvent;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the balance arithmetic of the charge/credit and bill paths with boxed {@code Double}
+ * amounts (the previous representation) and with primitive {@code long} cents.
+ * Only the in-memory part of the paths is measured, the database round trips are the same in both.
+ * Run with -prof gc (the default of the benchmark profile) to see the allocation per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneyBenchmark {
+
+    /**
+     * Number of operations of a mailbox group, and of accounts of a bill run chunk.
+     */
+    @Param({"256"})
+    private int size;
+
+    private long[] amountCents;
+    private Double[] amountDoubles;
+    private TransactionType[] transactionTypes;
+    private Map<Long, Long> balanceCents;
+    private Map<Long, Double> balanceDoubles;
+    private LocalDate today;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        amountCents = new long[size];
+        amountDoubles = new Double[size];
+        transactionTypes = new TransactionType[size];
+        balanceCents = new LinkedHashMap<>();
+        balanceDoubles = new LinkedHashMap<>();
+        today = LocalDate.now();
+
+        for (int i = 0; i < size; i++) {
+            amountCents[i] = 1 + random.nextInt(10_000);
+            // Deserialized JSON amounts are boxed, as they were in TransactionAmountDTO
+            amountDoubles[i] = amountCents[i] / 100.0;
+            transactionTypes[i] = random.nextBoolean() ? TransactionType.CHARGE : TransactionType.CREDIT;
+            long balance = random.nextInt(1_000_000);
+            balanceCents.put((long) i, balance);
+            balanceDoubles.put((long) i, balance / 100.0);
+        }
+    }
+
+    /**
+     * A mailbox group with Double amounts: the balance check, the new balance and one event per operation.
+     */
+    @Benchmark
+    public Double chargeCreditGroupDouble(Blackhole blackhole) {
+        Double balance = 5_000.0;
+        for (int i = 0; i < size; i++) {
+            boolean charge = transactionTypes[i] == TransactionType.CHARGE;
+            Double amount = amountDoubles[i];
+            if (charge && balance < amount) {
+                continue;
+            }
+            Double previousBalance = balance;
+            balance = charge ? balance - amount : balance + amount;
+            blackhole.consume(new DoubleTransactionDetailsEvent(0L, transactionTypes[i], previousBalance, amount, balance, today));
+        }
+        return balance;
+    }
+
+    /**
+     * The same mailbox group with long cents, using the event of the service layer.
+     */
+    @Benchmark
+    public long chargeCreditGroupCents(Blackhole blackhole) {
+        long balance = 500_000L;
+        for (int i = 0; i < size; i++) {
+            boolean charge = transactionTypes[i] == TransactionType.CHARGE;
+            long amount = amountCents[i];
+            if (charge && balance < amount) {
+                continue;
+            }
+            long previousBalance = balance;
+            balance = charge ? balance - amount : balance + amount;
+            blackhole.consume(new TransactionDetailsEvent(0L, transactionTypes[i], previousBalance, amount, balance, today));
+        }
+        return balance;
+    }
+
+    /**
+     * A bill run chunk and its createBill events with Double amounts.
+     */
+    @Benchmark
+    public Map<Long, Double> billChunkDouble(Blackhole blackhole) {
+        Double billAmount = 25.0;
+        Map<Long, Double> newBalances = new LinkedHashMap<>();
+        balanceDoubles.forEach((accountId, balance) -> {
+            Double newBalance = balance + billAmount;
+            newBalances.put(accountId, newBalance);
+            blackhole.consume(new DoubleCreateBillEvent(accountId, balance, billAmount, newBalance, today));
+        });
+        return newBalances;
+    }
+
+    /**
+     * The same bill run chunk with long cents, using the event of the service layer.
+     */
+    @Benchmark
+    public Map<Long, Long> billChunkCents(Blackhole blackhole) {
+        long billAmount = 2_500L;
+        Map<Long, Long> newBalances = new LinkedHashMap<>();
+        balanceCents.forEach((accountId, balance) -> {
+            long newBalance = balance + billAmount;
+            newBalances.put(accountId, newBalance);
+            blackhole.consume(new CreateBillEvent(accountId, balance, billAmount, newBalance, today));
+        });
+        return newBalances;
+    }
+
+    /**
+     * The transaction event as it was before money moved to long cents.
+     */
+    private record DoubleTransactionDetailsEvent(Long accountId, TransactionType transactionType, Double previousBalance,
+                                                 Double transactionAmount, Double currentBalance, LocalDate transactionDate) {
+    }
+
+    /**
+     * The bill event as it was before money moved to long cents.
+     */
+    private record DoubleCreateBillEvent(Long accountId, Double currentBalance, Double billAmount, Double newBalance,
+                                         LocalDate billGenerationDate) {
+    }
+}
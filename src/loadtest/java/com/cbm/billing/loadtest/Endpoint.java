@@ -0,0 +1,35 @@
+package com.cbm.billing.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Endpoints of the account and bill controllers driven by the load test.
+ */
+enum Endpoint {
+    SEARCH("search"),
+    FIND("find"),
+    CHARGE("charge"),
+    CREDIT("credit"),
+    CREATE_BILL("create-bill"),
+    TERMINATE("terminate");
+
+    private final String key;
+
+    Endpoint(String key) {
+        this.key = key;
+    }
+
+    /**
+     * @return the name of the endpoint in the settings and in the report
+     */
+    String key() {
+        return key;
+    }
+
+    static Endpoint fromKey(String key) {
+        return Arrays.stream(values())
+                .filter(endpoint -> endpoint.key.equals(key))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown endpoint " + key));
+    }
+}
@@ -0,0 +1,73 @@
+package com.cbm.billing.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Outcome of the measured requests of one endpoint. The latency histogram holds microseconds with three
+ * significant digits and grows as needed, so the percentiles are exact to 0.1% whatever the range.
+ */
+final class EndpointStats {
+    private final Histogram latencies = new ConcurrentHistogram(3);
+    private final LongAdder successes = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final Map<String, LongAdder> errorCauses = new ConcurrentHashMap<>();
+
+    void success(long latencyNanos) {
+        latencies.recordValue(Math.max(1, TimeUnit.NANOSECONDS.toMicros(latencyNanos)));
+        successes.increment();
+    }
+
+    /**
+     * Counts a failed request. Its latency is recorded too when it got a response, a dropped request has none.
+     * @param cause the status code or the exception of the failure
+     */
+    void error(String cause, long latencyNanos) {
+        if (latencyNanos >= 0) {
+            latencies.recordValue(Math.max(1, TimeUnit.NANOSECONDS.toMicros(latencyNanos)));
+        }
+        errors.increment();
+        errorCauses.computeIfAbsent(cause, key -> new LongAdder()).increment();
+    }
+
+    long requests() {
+        return successes.sum() + errors.sum();
+    }
+
+    long successes() {
+        return successes.sum();
+    }
+
+    long errors() {
+        return errors.sum();
+    }
+
+    double errorRate() {
+        long requests = requests();
+        return requests == 0 ? 0 : (double) errors() / requests;
+    }
+
+    /**
+     * @param percentile the percentile, e.g. 99.9
+     * @return the latency at the percentile in milliseconds
+     */
+    double latencyMillis(double percentile) {
+        return latencies.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    double maxLatencyMillis() {
+        return latencies.getMaxValue() / 1000.0;
+    }
+
+    Map<String, Long> errorCauses() {
+        Map<String, Long> causes = new TreeMap<>();
+        errorCauses.forEach((cause, count) -> causes.put(cause, count.sum()));
+        return causes;
+    }
+}
@@ -0,0 +1,110 @@
+package com.cbm.billing.loadtest;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open model load generator: requests start on a fixed schedule at the configured rate and are sent
+ * asynchronously, so a slow response never delays the next request. The latency of a request is measured
+ * from its scheduled start rather than from the moment it was sent, so the time a request waits behind a
+ * stalled generator or a saturated client is counted too (no coordinated omission).
+ */
+final class LoadGenerator {
+    private static final long DRAIN_TIMEOUT_SECONDS = 60;
+
+    private final HttpClient httpClient;
+    private final Workload workload;
+    private final LoadTestSettings settings;
+    private final Semaphore inFlight;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicInteger peakOutstanding = new AtomicInteger();
+    private final Map<Endpoint, EndpointStats> stats = new EnumMap<>(Endpoint.class);
+
+    LoadGenerator(HttpClient httpClient, Workload workload, LoadTestSettings settings) {
+        this.httpClient = httpClient;
+        this.workload = workload;
+        this.settings = settings;
+        this.inFlight = new Semaphore(settings.maxInFlight());
+        settings.mix().keySet().forEach(endpoint -> stats.put(endpoint, new EndpointStats()));
+    }
+
+    /**
+     * Runs the warmup and the measured period, then waits for the outstanding requests.
+     * @return the stats of the measured requests by endpoint
+     */
+    Map<Endpoint, EndpointStats> run() throws InterruptedException {
+        double intervalNanos = TimeUnit.SECONDS.toNanos(1) / settings.rate();
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(settings.warmupSeconds());
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(settings.durationSeconds());
+
+        for (long request = 0; ; request++) {
+            long scheduledAt = start + (long) (request * intervalNanos);
+            if (scheduledAt - end >= 0) {
+                break;
+            }
+            parkUntil(scheduledAt);
+            send(workload.nextEndpoint(), scheduledAt, scheduledAt - measureFrom >= 0);
+        }
+
+        if (!inFlight.tryAcquire(settings.maxInFlight(), DRAIN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Requests still outstanding " + DRAIN_TIMEOUT_SECONDS + "s after the end of the run");
+        }
+        return stats;
+    }
+
+    /**
+     * @return the highest number of requests outstanding at once during the measured period
+     */
+    int peakInFlight() {
+        return peakOutstanding.get();
+    }
+
+    private void send(Endpoint endpoint, long scheduledAt, boolean measured) {
+        EndpointStats endpointStats = stats.get(endpoint);
+        if (!inFlight.tryAcquire()) {
+            if (measured) {
+                endpointStats.error("dropped", -1);
+            }
+            return;
+        }
+
+        int requestsInFlight = outstanding.incrementAndGet();
+        if (measured) {
+            peakOutstanding.accumulateAndGet(requestsInFlight, Math::max);
+        }
+
+        HttpRequest request = workload.request(endpoint);
+        httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, failure) -> {
+            long latency = System.nanoTime() - scheduledAt;
+            outstanding.decrementAndGet();
+            inFlight.release();
+            if (!measured) {
+                return;
+            }
+            if (failure != null) {
+                Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+                endpointStats.error(cause.getClass().getSimpleName(), latency);
+            } else if (response.statusCode() >= 400) {
+                endpointStats.error("HTTP " + response.statusCode(), latency);
+            } else {
+                endpointStats.success(latency);
+            }
+        });
+    }
+
+    private static void parkUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+}
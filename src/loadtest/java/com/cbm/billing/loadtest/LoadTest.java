@@ -0,0 +1,229 @@
+package com.cbm.billing.loadtest;
+
+import com.cbm.billing.BillingSystemApplication;
+import com.cbm.billing.repository.AccountNameIndexJdbcRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * End-to-end HTTP load test of the account and bill controllers.
+ * Starts the application on a random port with the embedded H2 database of the {@code embedded} profile,
+ * seeds it, drives the mixed workload at a fixed arrival rate and reports, per endpoint, the latency
+ * percentiles, the error rate and the throughput of the measured period. The outbox relay and the summary
+ * projector keep running as they do in production. The process exits with status 1 when a budget is exceeded.
+ * <p>
+ * With several thread modes the workload is run against a fresh application per mode, one after the other,
+ * and the peak number of requests in flight and the tail latencies of the modes are compared at the end.
+ * The same goes for several numbers of read replicas: the replicas are embedded databases of their own,
+ * loaded with a copy of the seeded primary, that serve the searches and finds while the writes go to the
+ * primary.
+ * <p>
+ * The settings and their defaults are in loadtest.properties.
+ */
+public final class LoadTest {
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        // The devtools restarter would run the application in a second class loader
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        LoadTestSettings settings = LoadTestSettings.load();
+        List<ThreadMode> threadModes = settings.threads();
+        if (threadModes.contains(ThreadMode.VIRTUAL) && Runtime.version().feature() < 21) {
+            throw new IllegalStateException("Virtual threads need Java 21 or later, this JVM is Java " + Runtime.version().feature());
+        }
+
+        List<RunResult> runs = new ArrayList<>();
+        for (ThreadMode threadMode : threadModes) {
+            for (int replicas : settings.replicas()) {
+                runs.add(run(settings, threadMode, replicas));
+            }
+        }
+        if (runs.size() > 1) {
+            printComparison(runs, settings);
+        }
+        writeReport(runs, settings);
+
+        List<String> violations = runs.stream()
+                .flatMap(run -> run.violations().stream().map(violation -> run.label() + ": " + violation))
+                .toList();
+        if (!violations.isEmpty()) {
+            violations.forEach(violation -> System.out.println("Budget exceeded: " + violation));
+            System.exit(1);
+        }
+        System.out.println("All budgets met");
+        System.exit(0);
+    }
+
+    private static RunResult run(LoadTestSettings settings, ThreadMode threadMode, int replicas)
+            throws InterruptedException, SQLException, IOException {
+        String databaseUrl;
+        RunResult result;
+        List<String> replicaUrls = IntStream.rangeClosed(1, replicas)
+                .mapToObj(replica -> "jdbc:h2:mem:billing_replica_" + replica + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1")
+                .toList();
+        List<String> arguments = new ArrayList<>(List.of("--server.port=0", threadMode.applicationArgument()));
+        if (replicas > 0) {
+            arguments.add("--billing.datasource.replicas.urls=" + String.join(",", replicaUrls));
+        }
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(BillingSystemApplication.class)
+                .profiles("embedded")
+                .run(arguments.toArray(String[]::new))) {
+
+            Environment environment = context.getEnvironment();
+            databaseUrl = environment.getRequiredProperty("spring.datasource.url");
+            LoadTestData data = LoadTestData.seed(context.getBean(JdbcTemplate.class), settings);
+            LoadTestData.indexNames(context.getBean(AccountNameIndexJdbcRepository.class));
+            LoadTestData.copyToReplicas(databaseUrl, replicaUrls);
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            HttpClient httpClient = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .build();
+
+            System.out.printf("Load test: %s threads, %d replicas, %d accounts (%d for terminates), %.0f req/s, %ds warmup, %ds measured%n",
+                    threadMode.key(), replicas, data.activeAccounts(), data.terminateAccounts(), settings.rate(),
+                    settings.warmupSeconds(), settings.durationSeconds());
+            LoadGenerator loadGenerator = new LoadGenerator(httpClient,
+                    new Workload("http://localhost:" + port, settings.mix(), data), settings);
+            Map<Endpoint, EndpointStats> stats = loadGenerator.run();
+
+            result = new RunResult(threadMode, replicas, loadGenerator.peakInFlight(), stats, budgetViolations(stats, settings));
+            printReport(result, settings);
+        }
+
+        // The in-memory databases outlive the context, the next run starts from empty ones
+        List<String> databaseUrls = new ArrayList<>(replicaUrls);
+        databaseUrls.add(databaseUrl);
+        for (String url : databaseUrls) {
+            try (Connection connection = DriverManager.getConnection(url, "sa", "");
+                 Statement statement = connection.createStatement()) {
+                statement.execute("DROP ALL OBJECTS");
+            }
+        }
+        return result;
+    }
+
+    private static void printReport(RunResult run, LoadTestSettings settings) {
+        System.out.printf("Peak requests in flight: %d%n", run.peakInFlight());
+        System.out.printf("%-12s %9s %8s %9s %9s %9s %9s %9s %9s%n",
+                "endpoint", "requests", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        run.stats().forEach((endpoint, endpointStats) -> {
+            System.out.printf("%-12s %9d %7.2f%% %9.1f", endpoint.key(), endpointStats.requests(),
+                    endpointStats.errorRate() * 100, (double) endpointStats.successes() / settings.durationSeconds());
+            for (double percentile : PERCENTILES) {
+                System.out.printf(" %9.2f", endpointStats.latencyMillis(percentile));
+            }
+            System.out.printf(" %9.2f%n", endpointStats.maxLatencyMillis());
+            if (endpointStats.errors() > 0) {
+                System.out.println("             errors: " + endpointStats.errorCauses());
+            }
+        });
+    }
+
+    private static void printComparison(List<RunResult> runs, LoadTestSettings settings) {
+        System.out.printf("%-22s", "run");
+        System.out.printf(" %9s", "peak");
+        settings.mix().keySet().forEach(endpoint -> System.out.printf(" %13s", endpoint.key() + " p99"));
+        System.out.println();
+        for (RunResult run : runs) {
+            System.out.printf("%-22s %9d", run.label(), run.peakInFlight());
+            run.stats().values().forEach(endpointStats -> System.out.printf(" %13.2f", endpointStats.latencyMillis(99)));
+            System.out.println();
+        }
+    }
+
+    private static List<String> budgetViolations(Map<Endpoint, EndpointStats> stats, LoadTestSettings settings) {
+        List<String> violations = new ArrayList<>();
+        stats.forEach((endpoint, endpointStats) -> {
+            if (endpointStats.errorRate() > settings.maxErrorRate()) {
+                violations.add(String.format("%s error rate %.4f > %.4f", endpoint.key(),
+                        endpointStats.errorRate(), settings.maxErrorRate()));
+            }
+            settings.latencyBudgets(endpoint).forEach((percentile, budget) -> {
+                double latency = endpointStats.latencyMillis(percentile);
+                if (latency > budget) {
+                    violations.add(String.format("%s p%s %.2f ms > %.2f ms", endpoint.key(),
+                            formatPercentile(percentile), latency, budget));
+                }
+            });
+        });
+        return violations;
+    }
+
+    private static void writeReport(List<RunResult> runs, LoadTestSettings settings) throws IOException {
+        if (settings.resultFile() == null) {
+            return;
+        }
+
+        List<Map<String, Object>> runReports = new ArrayList<>();
+        for (RunResult run : runs) {
+            Map<String, Object> endpoints = new LinkedHashMap<>();
+            run.stats().forEach((endpoint, endpointStats) -> {
+                Map<String, Object> latencies = new LinkedHashMap<>();
+                for (double percentile : PERCENTILES) {
+                    latencies.put("p" + formatPercentile(percentile), endpointStats.latencyMillis(percentile));
+                }
+                latencies.put("max", endpointStats.maxLatencyMillis());
+
+                Map<String, Object> result = new LinkedHashMap<>();
+                result.put("requests", endpointStats.requests());
+                result.put("errors", endpointStats.errors());
+                result.put("errorRate", endpointStats.errorRate());
+                result.put("throughput", (double) endpointStats.successes() / settings.durationSeconds());
+                result.put("latencyMillis", latencies);
+                result.put("errorCauses", endpointStats.errorCauses());
+                endpoints.put(endpoint.key(), result);
+            });
+
+            Map<String, Object> runReport = new LinkedHashMap<>();
+            runReport.put("threads", run.threadMode().key());
+            runReport.put("replicas", run.replicas());
+            runReport.put("peakInFlight", run.peakInFlight());
+            runReport.put("endpoints", endpoints);
+            runReport.put("budgetViolations", run.violations());
+            runReports.add(runReport);
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("accounts", settings.accounts());
+        report.put("rate", settings.rate());
+        report.put("durationSeconds", settings.durationSeconds());
+        report.put("runs", runReports);
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(new File(settings.resultFile()), report);
+    }
+
+    private static String formatPercentile(double percentile) {
+        return percentile == Math.rint(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile);
+    }
+
+    private record RunResult(ThreadMode threadMode, int replicas, int peakInFlight, Map<Endpoint, EndpointStats> stats,
+                             List<String> violations) {
+
+        String label() {
+            return threadMode.key() + (replicas > 0 ? ", " + replicas + " replicas" : "");
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.cbm.billing.loadtest;
+
+import com.cbm.billing.common.IdGeneratorConstants;
+import com.cbm.billing.repository.AccountNameIndexJdbcRepository;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Seeds the embedded database with JDBC batches: the active accounts and their bills, followed by the accounts
+ * reserved for the terminate requests. The id generator rows are moved past the seeded ids, so the accounts
+ * and bills created during the run get new ids.
+ */
+final class LoadTestData {
+    private static final int BATCH_SIZE = 1000;
+    private static final BigDecimal BALANCE = new BigDecimal("10000000.00");
+    private static final BigDecimal BILL_AMOUNT = new BigDecimal("25.00");
+
+    private final long activeAccounts;
+    private final long terminateAccounts;
+
+    private LoadTestData(long activeAccounts, long terminateAccounts) {
+        this.activeAccounts = activeAccounts;
+        this.terminateAccounts = terminateAccounts;
+    }
+
+    static LoadTestData seed(JdbcTemplate jdbcTemplate, LoadTestSettings settings) {
+        long activeAccounts = settings.accounts();
+        // One account per terminate request the run can send, plus a margin for the rounding of the rate
+        Integer terminateWeight = settings.mix().getOrDefault(Endpoint.TERMINATE, 0);
+        int totalWeight = settings.mix().values().stream().mapToInt(Integer::intValue).sum();
+        long terminateAccounts = (long) Math.ceil(settings.rate() * (settings.warmupSeconds() + settings.durationSeconds())
+                * terminateWeight / totalWeight * 1.1) + 100;
+        long accounts = activeAccounts + terminateAccounts;
+        LocalDate today = LocalDate.now();
+
+        List<Object[]> accountRows = new ArrayList<>(BATCH_SIZE);
+        for (long id = 1; id <= accounts; id++) {
+            accountRows.add(new Object[]{id, String.format("Load test account %07d", id), BALANCE, (int) (1 + id % 28)});
+            if (accountRows.size() == BATCH_SIZE || id == accounts) {
+                jdbcTemplate.batchUpdate("INSERT INTO billing.billing_account (id, name, current_balance, bill_cycle_day, status," +
+                        " created_at, updated_at) VALUES (?, ?, ?, ?, 'ACTIVE', CURRENT_DATE, CURRENT_DATE)", accountRows);
+                accountRows.clear();
+            }
+        }
+
+        long bills = activeAccounts * settings.billsPerAccount();
+        List<Object[]> billRows = new ArrayList<>(BATCH_SIZE);
+        for (long id = 1; id <= bills; id++) {
+            billRows.add(new Object[]{id, 1 + (id - 1) % activeAccounts, BILL_AMOUNT, Date.valueOf(today.minusMonths((id - 1) / activeAccounts))});
+            if (billRows.size() == BATCH_SIZE || id == bills) {
+                jdbcTemplate.batchUpdate("INSERT INTO billing.bill (id, billing_account_id, amount, generation_date, status," +
+                        " created_at, updated_at) VALUES (?, ?, ?, ?, 'NOT_SETTLED', CURRENT_DATE, CURRENT_DATE)", billRows);
+                billRows.clear();
+            }
+        }
+
+        // The rows hold the last id handed out
+        jdbcTemplate.update("UPDATE billing.id_generator SET next_val = ? WHERE name = ?", accounts, IdGeneratorConstants.ACCOUNT);
+        jdbcTemplate.update("UPDATE billing.id_generator SET next_val = ? WHERE name = ?", bills, IdGeneratorConstants.BILL);
+        return new LoadTestData(activeAccounts, terminateAccounts);
+    }
+
+    /**
+     * Indexes the names of the seeded accounts, which are written with JDBC and so are not indexed by the
+     * application, so the name searches of the run are narrowed by the index as in production.
+     */
+    static void indexNames(AccountNameIndexJdbcRepository accountNameIndexJdbcRepository) {
+        long afterId = 0;
+        List<Long> ids;
+        while (!(ids = accountNameIndexJdbcRepository.indexAccountsAfter(afterId, BATCH_SIZE)).isEmpty()) {
+            afterId = ids.get(ids.size() - 1);
+        }
+        accountNameIndexJdbcRepository.setIndexComplete(true);
+    }
+
+    /**
+     * Copies the seeded primary to the embedded replicas, which H2 does not keep in sync: the replicas serve
+     * the data of the seed, and the writes of the run only reach the primary.
+     */
+    static void copyToReplicas(String primaryUrl, List<String> replicaUrls) throws SQLException, IOException {
+        Path script = Files.createTempFile("loadtest-replica", ".sql");
+        try {
+            try (Connection connection = DriverManager.getConnection(primaryUrl, "sa", "");
+                 Statement statement = connection.createStatement()) {
+                statement.execute("SCRIPT TO '" + script + "'");
+            }
+            for (String replicaUrl : replicaUrls) {
+                try (Connection connection = DriverManager.getConnection(replicaUrl, "sa", "");
+                     Statement statement = connection.createStatement()) {
+                    statement.execute("RUNSCRIPT FROM '" + script + "'");
+                }
+            }
+        } finally {
+            Files.deleteIfExists(script);
+        }
+    }
+
+    /**
+     * @return the number of accounts with ids 1..n charged, credited, billed and read during the run
+     */
+    long activeAccounts() {
+        return activeAccounts;
+    }
+
+    /**
+     * @return the number of accounts after the active ones that are terminated during the run
+     */
+    long terminateAccounts() {
+        return terminateAccounts;
+    }
+}
@@ -0,0 +1,131 @@
+package com.cbm.billing.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Settings of the load test: the defaults of loadtest.properties overridden by the system properties.
+ */
+final class LoadTestSettings {
+    private static final String PREFIX = "loadtest.";
+    private static final String BUDGET_PREFIX = PREFIX + "budget.";
+
+    private final Properties properties;
+
+    private LoadTestSettings(Properties properties) {
+        this.properties = properties;
+    }
+
+    static LoadTestSettings load() {
+        Properties properties = new Properties();
+        try (InputStream defaults = LoadTestSettings.class.getResourceAsStream("/loadtest.properties")) {
+            if (defaults != null) {
+                properties.load(defaults);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        System.getProperties().stringPropertyNames().stream()
+                .filter(name -> name.startsWith(PREFIX))
+                .forEach(name -> properties.setProperty(name, System.getProperty(name)));
+        return new LoadTestSettings(properties);
+    }
+
+    int accounts() {
+        return intValue("accounts");
+    }
+
+    int billsPerAccount() {
+        return intValue("bills-per-account");
+    }
+
+    double rate() {
+        return Double.parseDouble(value("rate"));
+    }
+
+    int warmupSeconds() {
+        return intValue("warmup-seconds");
+    }
+
+    int durationSeconds() {
+        return intValue("duration-seconds");
+    }
+
+    int maxInFlight() {
+        return intValue("max-in-flight");
+    }
+
+    /**
+     * @return the thread modes of the application to run the workload against, one after the other
+     */
+    List<ThreadMode> threads() {
+        return Arrays.stream(value("threads").split(","))
+                .map(mode -> ThreadMode.fromKey(mode.trim()))
+                .toList();
+    }
+
+    /**
+     * @return the numbers of embedded read replicas to run the workload with, one after the other
+     */
+    List<Integer> replicas() {
+        return Arrays.stream(value("replicas").split(","))
+                .map(count -> Integer.parseInt(count.trim()))
+                .toList();
+    }
+
+    /**
+     * @return the file the JSON report is written to, or null to skip it
+     */
+    String resultFile() {
+        return properties.getProperty(PREFIX + "result");
+    }
+
+    /**
+     * @return the weight of every endpoint of the workload, endpoints left out of the mix are not driven
+     */
+    Map<Endpoint, Integer> mix() {
+        Map<Endpoint, Integer> mix = new EnumMap<>(Endpoint.class);
+        for (String entry : value("mix").split(",")) {
+            String[] weight = entry.trim().split(":");
+            mix.put(Endpoint.fromKey(weight[0].trim()), Integer.parseInt(weight[1].trim()));
+        }
+        return mix;
+    }
+
+    double maxErrorRate() {
+        return Double.parseDouble(value("budget.error-rate"));
+    }
+
+    /**
+     * @return the latency budgets of an endpoint in milliseconds by percentile, e.g. 99.0 for loadtest.budget.find.p99
+     */
+    Map<Double, Double> latencyBudgets(Endpoint endpoint) {
+        String prefix = BUDGET_PREFIX + endpoint.key() + ".p";
+        Map<Double, Double> budgets = new TreeMap<>();
+        properties.stringPropertyNames().stream()
+                .filter(name -> name.startsWith(prefix))
+                .forEach(name -> budgets.put(Double.parseDouble(name.substring(prefix.length())),
+                        Double.parseDouble(properties.getProperty(name))));
+        return Collections.unmodifiableMap(budgets);
+    }
+
+    private int intValue(String name) {
+        return Integer.parseInt(value(name));
+    }
+
+    private String value(String name) {
+        String value = properties.getProperty(PREFIX + name);
+        if (value == null) {
+            throw new IllegalStateException("Missing load test setting " + PREFIX + name);
+        }
+        return value.trim();
+    }
+}
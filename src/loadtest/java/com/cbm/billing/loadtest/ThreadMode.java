@@ -0,0 +1,38 @@
+package com.cbm.billing.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Threads the application runs its requests on.
+ */
+enum ThreadMode {
+    PLATFORM("platform"),
+    VIRTUAL("virtual");
+
+    private final String key;
+
+    ThreadMode(String key) {
+        this.key = key;
+    }
+
+    /**
+     * @return the name of the mode in the settings and in the report
+     */
+    String key() {
+        return key;
+    }
+
+    /**
+     * @return the application argument that selects the mode
+     */
+    String applicationArgument() {
+        return "--spring.threads.virtual.enabled=" + (this == VIRTUAL);
+    }
+
+    static ThreadMode fromKey(String key) {
+        return Arrays.stream(values())
+                .filter(mode -> mode.key.equals(key))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown thread mode " + key));
+    }
+}
@@ -0,0 +1,81 @@
+package com.cbm.billing.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Builds the requests of the mixed workload. Reads, charges, credits and bills go to random accounts of the
+ * active range; every terminate takes the next account of the terminate range, so the other endpoints never
+ * hit a terminated account and a terminate only fails once the range is used up.
+ */
+final class Workload {
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final String baseUrl;
+    private final Endpoint[] endpoints;
+    private final int[] cumulativeWeights;
+    private final long activeAccounts;
+    private final AtomicLong nextTerminatedAccount;
+
+    Workload(String baseUrl, Map<Endpoint, Integer> mix, LoadTestData data) {
+        this.baseUrl = baseUrl;
+        this.endpoints = mix.keySet().toArray(new Endpoint[0]);
+        this.cumulativeWeights = new int[endpoints.length];
+        int total = 0;
+        for (int i = 0; i < endpoints.length; i++) {
+            total += mix.get(endpoints[i]);
+            cumulativeWeights[i] = total;
+        }
+        this.activeAccounts = data.activeAccounts();
+        this.nextTerminatedAccount = new AtomicLong(data.activeAccounts() + 1);
+    }
+
+    /**
+     * Picks an endpoint with the probability of its weight in the mix.
+     */
+    Endpoint nextEndpoint() {
+        int value = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (value < cumulativeWeights[i]) {
+                return endpoints[i];
+            }
+        }
+        throw new IllegalStateException("Empty workload mix");
+    }
+
+    HttpRequest request(Endpoint endpoint) {
+        long accountId = 1 + ThreadLocalRandom.current().nextLong(activeAccounts);
+        return switch (endpoint) {
+            case SEARCH -> get("/api/v1/accounts/search?status=ACTIVE&size=20&name="
+                    + ThreadLocalRandom.current().nextInt(1000));
+            case FIND -> get("/api/v1/accounts/" + accountId);
+            case CHARGE -> put("/api/v1/accounts/transactions/" + accountId + "?operation=charge", "{\"amount\":0.01}");
+            case CREDIT -> put("/api/v1/accounts/transactions/" + accountId + "?operation=credit", "{\"amount\":0.01}");
+            case CREATE_BILL -> post("/api/v1/bills/create", "{\"accountId\":" + accountId + ",\"amount\":0.01}");
+            case TERMINATE -> put("/api/v1/accounts/inactivate/" + nextTerminatedAccount.getAndIncrement(),
+                    "{\"status\":\"TERMINATED\"}");
+        };
+    }
+
+    private HttpRequest get(String path) {
+        return builder(path).GET().build();
+    }
+
+    private HttpRequest put(String path, String body) {
+        return builder(path).header("Content-Type", "application/json")
+                .PUT(HttpRequest.BodyPublishers.ofString(body)).build();
+    }
+
+    private HttpRequest post(String path, String body) {
+        return builder(path).header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body)).build();
+    }
+
+    private HttpRequest.Builder builder(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(REQUEST_TIMEOUT);
+    }
+}
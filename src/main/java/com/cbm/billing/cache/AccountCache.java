@@ -0,0 +1,130 @@
+package com.cbm.billing.cache;
+
+import com.cbm.billing.model.Account;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Bounded read-through cache of mapped {@link Account} models by id.
+ * Every write path evicts the accounts it touches. Inside a transaction the entries are evicted
+ * again once the transaction completes, so a read racing with a write cannot leave a stale entry behind.
+ * <p>
+ * A miss maps the account to a pending load and runs the query on the calling thread, outside the lock
+ * of the map entry; the concurrent readers of the same account wait for that load. An eviction removes
+ * a pending load without waiting for it, so its result is returned to its readers but never cached.
+ * Loading under the entry lock would make a write that evicts while holding a pooled connection wait
+ * for a load that waits for a connection, which starves the pool under load. The loads run and the reads
+ * that waited for one are reported as the {@code account} flight of the coalescing meters, see {@link SingleFlight}.
+ * <p>
+ * Every completed write moves the {@link #writeGeneration()} on, for the reads coalesced outside the cache.
+ */
+@Component
+public class AccountCache {
+    private final AsyncCache<Long, Account> accounts;
+    private final AtomicLong writeGeneration = new AtomicLong();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder joinedLoads = new LongAdder();
+
+    public AccountCache(MeterRegistry meterRegistry,
+                        @Value("${billing.account-cache.ttl:60s}") Duration ttl,
+                        @Value("${billing.account-cache.max-size:100000}") long maxSize) {
+        this.accounts = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maxSize)
+                .recordStats()
+                .buildAsync();
+        SingleFlight.registerMeters(meterRegistry, "account", loads, joinedLoads);
+    }
+
+    /**
+     * Returns the cached account, loading it on a miss.
+     * @param accountId the id of the account
+     * @param loader loads the account, returns null when it must not be cached
+     * @return the account, or null when the loader returned null
+     */
+    public Account get(Long accountId, Function<Long, Account> loader) {
+        CompletableFuture<Account> load = new CompletableFuture<>();
+        CompletableFuture<Account> account = accounts.get(accountId, (id, executor) -> load);
+        if (account == load) {
+            loads.increment();
+            try {
+                // A null result removes the entry
+                load.complete(loader.apply(accountId));
+            } catch (RuntimeException | Error e) {
+                // A failed load removes the entry too, and its readers get the failure instead of waiting forever
+                load.completeExceptionally(e);
+                throw e;
+            }
+        } else if (!account.isDone()) {
+            joinedLoads.increment();
+        }
+
+        try {
+            return account.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    /**
+     * Evicts an account now and, inside a transaction, again when the transaction completes.
+     * @param accountId the id of the account
+     */
+    public void evict(Long accountId) {
+        evictAll(List.of(accountId));
+    }
+
+    /**
+     * Evicts accounts now and, inside a transaction, again when the transaction completes.
+     * @param accountIds the ids of the accounts
+     */
+    public void evictAll(Collection<Long> accountIds) {
+        accounts.synchronous().invalidateAll(accountIds);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    accounts.synchronous().invalidateAll(accountIds);
+                    writeGeneration.incrementAndGet();
+                }
+            });
+        } else {
+            writeGeneration.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return a number moved on by every completed write of accounts; a read started under an older
+     *     generation may not see the latest writes
+     */
+    public long writeGeneration() {
+        return writeGeneration.get();
+    }
+
+    public CacheStats stats() {
+        return accounts.synchronous().stats();
+    }
+
+    public long size() {
+        return accounts.synchronous().estimatedSize();
+    }
+}
@@ -0,0 +1,68 @@
+package com.cbm.billing.cache;
+
+import com.cbm.billing.common.AccountNameMatch;
+import com.cbm.billing.common.AccountStatus;
+import com.cbm.billing.model.Account;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.function.Supplier;
+
+/**
+ * Short lived cache of account search totals, one entry per combination of search filters.
+ * Totals may lag behind the table by up to the configured time to live.
+ */
+@Component
+public class AccountSearchTotalCache {
+    private final Cache<TotalKey, Long> totals;
+
+    public AccountSearchTotalCache(@Value("${billing.search.total-cache.ttl:30s}") Duration ttl,
+                                   @Value("${billing.search.total-cache.max-size:10000}") long maxSize) {
+        this.totals = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maxSize)
+                .build();
+    }
+
+    /**
+     * Returns the cached total of the given filters, computing and caching it when absent or expired.
+     * @param filters the search filters
+     * @param nameMatch how the name filter is matched
+     * @param counter the count query to run on a miss
+     * @return the total number of accounts matching the filters
+     */
+    public long get(Account filters, AccountNameMatch nameMatch, Supplier<Long> counter) {
+        return totals.get(TotalKey.of(filters, nameMatch), key -> counter.get());
+    }
+
+    /**
+     * Returns the cached total of the given filters without computing it.
+     * @param filters the search filters
+     * @param nameMatch how the name filter is matched
+     * @return the cached total, or null when absent or expired
+     */
+    public Long getIfPresent(Account filters, AccountNameMatch nameMatch) {
+        return totals.getIfPresent(TotalKey.of(filters, nameMatch));
+    }
+
+    /**
+     * Caches the total of the given filters.
+     * @param filters the search filters
+     * @param nameMatch how the name filter is matched
+     * @param total the total number of accounts matching the filters
+     */
+    public void put(Account filters, AccountNameMatch nameMatch, long total) {
+        totals.put(TotalKey.of(filters, nameMatch), total);
+    }
+
+    private record TotalKey(String name, AccountNameMatch nameMatch, AccountStatus status, Integer billCycleDay, LocalDate lastBillDate) {
+        private static TotalKey of(Account filters, AccountNameMatch nameMatch) {
+            String name = filters.getName() == null || filters.getName().isEmpty() ? null : filters.getName();
+            return new TotalKey(name, name == null ? null : nameMatch, filters.getStatus(), filters.getBillCycleDay(), filters.getLastBillDate());
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package com.cbm.billing.cache;
+
+import com.cbm.billing.model.IdempotencyKey;
+import com.cbm.billing.repository.IdempotencyKeyJdbcRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Responses of the requests sent with an idempotency key, kept for a TTL so the retries of a request get
+ * its response back instead of running it again.
+ * <p>
+ * The completed responses are held in a hot tier in memory, bounded by size, in front of the
+ * idempotency_key table. A retry served by the hot tier does not touch the database. The table holds the
+ * responses past a restart or an eviction from the hot tier, and the keys of the requests still running,
+ * so a duplicate sent to another instance does not run either.
+ * <p>
+ * Only one execution per key runs at a time. A duplicate arriving while the first one runs on this instance
+ * waits for it in memory; a duplicate of a request running elsewhere polls the table. Both give up with a
+ * conflict after the wait timeout.
+ * <p>
+ * A request that failed after its effects may have been committed leaves its key in doubt: its retries are
+ * refused right away until the key expires, since running them again could apply the effects twice.
+ */
+@Component
+@Slf4j
+public class IdempotencyStore {
+    private static final long POLL_INTERVAL_MS = 50;
+    // Key, hash and object overhead of an entry, on top of the body
+    private static final int ENTRY_OVERHEAD = 128;
+
+    private final IdempotencyKeyJdbcRepository idempotencyKeyJdbcRepository;
+    private final Cache<String, IdempotencyKey> completed;
+    private final ConcurrentMap<String, CompletableFuture<Void>> running = new ConcurrentHashMap<>();
+    private final Duration ttl;
+    private final Duration waitTimeout;
+    private final int cleanupChunkSize;
+    private final Counter executed;
+    private final Counter replayedFromMemory;
+    private final Counter replayedFromTable;
+    private final Counter conflicts;
+    private final Counter mismatches;
+    private final Counter inDoubt;
+
+    public IdempotencyStore(IdempotencyKeyJdbcRepository idempotencyKeyJdbcRepository, MeterRegistry meterRegistry,
+                            @Value("${billing.idempotency.ttl:24h}") Duration ttl,
+                            @Value("${billing.idempotency.wait-timeout:10s}") Duration waitTimeout,
+                            @Value("${billing.idempotency.hot-tier.max-size:64MB}") DataSize hotTierMaxSize,
+                            @Value("${billing.idempotency.cleanup.chunk-size:1000}") int cleanupChunkSize) {
+        this.idempotencyKeyJdbcRepository = idempotencyKeyJdbcRepository;
+        this.ttl = ttl;
+        this.waitTimeout = waitTimeout;
+        this.cleanupChunkSize = cleanupChunkSize;
+        this.completed = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumWeight(hotTierMaxSize.toBytes())
+                .weigher((String key, IdempotencyKey response) -> ENTRY_OVERHEAD + key.length()
+                        + (response.getResponseBody() == null ? 0 : response.getResponseBody().length))
+                .build();
+        this.executed = outcomeCounter(meterRegistry, "executed");
+        this.replayedFromMemory = outcomeCounter(meterRegistry, "replayed_memory");
+        this.replayedFromTable = outcomeCounter(meterRegistry, "replayed_table");
+        this.conflicts = outcomeCounter(meterRegistry, "conflict");
+        this.mismatches = outcomeCounter(meterRegistry, "mismatch");
+        this.inDoubt = outcomeCounter(meterRegistry, "in_doubt");
+    }
+
+    /**
+     * Looks up the response of a key, or claims the key for the request about to run. Waits while another
+     * execution of the key runs.
+     * @param key the idempotency key
+     * @param requestHash the hash of the request, a key cannot be reused for another request
+     * @return the stored response to replay, the claim of the key, or why the request cannot run
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public Outcome begin(String key, byte[] requestHash) throws InterruptedException {
+        long deadline = System.nanoTime() + waitTimeout.toNanos();
+
+        while (true) {
+            IdempotencyKey response = completed.getIfPresent(key);
+            if (response != null) {
+                return replay(response, requestHash, replayedFromMemory);
+            }
+
+            CompletableFuture<Void> execution = new CompletableFuture<>();
+            CompletableFuture<Void> runningExecution = running.putIfAbsent(key, execution);
+            if (runningExecution != null) {
+                // The first execution stores its response or releases the key, then the loop looks again
+                if (!await(runningExecution, deadline)) {
+                    conflicts.increment();
+                    return new Conflict();
+                }
+                continue;
+            }
+
+            try {
+                Outcome outcome = claim(key, requestHash, execution, deadline);
+                if (!(outcome instanceof Claim)) {
+                    finish(key, execution);
+                }
+                return outcome;
+            } catch (RuntimeException | InterruptedException e) {
+                finish(key, execution);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Stores the response of a claimed key. If the response cannot be written the key stays claimed in the
+     * table, so a retry gets a conflict rather than running the request again.
+     * @param claim the claim returned by {@link #begin}
+     * @param status the HTTP status of the response
+     * @param contentType the content type of the response, null if none
+     * @param body the body of the response
+     */
+    public void complete(Claim claim, int status, String contentType, byte[] body) {
+        IdempotencyKey response = IdempotencyKey.builder()
+                .key(claim.key())
+                .requestHash(claim.requestHash())
+                .responseStatus(status)
+                .contentType(contentType)
+                .responseBody(body)
+                .build();
+        try {
+            idempotencyKeyJdbcRepository.complete(response);
+            completed.put(claim.key(), response);
+            executed.increment();
+        } catch (RuntimeException e) {
+            log.error("Response of idempotency key {} not stored, the key stays claimed until it expires", claim.key(), e);
+        } finally {
+            finish(claim.key(), claim.execution());
+        }
+    }
+
+    /**
+     * Leaves a claimed key in doubt, for a request that failed after its effects may have been committed. Its
+     * retries get {@link InDoubt} until the key expires. If the mark cannot be written the key stays claimed,
+     * so the retries still do not run.
+     * @param claim the claim returned by {@link #begin}
+     */
+    public void abandon(Claim claim) {
+        try {
+            idempotencyKeyJdbcRepository.markInDoubt(claim.key());
+        } catch (RuntimeException e) {
+            log.error("Idempotency key {} not marked in doubt, it stays claimed until it expires", claim.key(), e);
+        } finally {
+            finish(claim.key(), claim.execution());
+        }
+    }
+
+    /**
+     * Releases a claimed key whose request failed without side effects, so a retry runs it again.
+     * @param claim the claim returned by {@link #begin}
+     */
+    public void release(Claim claim) {
+        try {
+            idempotencyKeyJdbcRepository.release(claim.key());
+        } catch (RuntimeException e) {
+            log.error("Idempotency key {} not released, it stays claimed until it expires", claim.key(), e);
+        } finally {
+            finish(claim.key(), claim.execution());
+        }
+    }
+
+    /**
+     * Deletes the expired keys from the table, in chunks. The hot tier expires its entries on its own.
+     */
+    @Scheduled(fixedDelayString = "${billing.idempotency.cleanup.interval-ms:60000}")
+    public void deleteExpired() {
+        Instant now = Instant.now();
+        long deleted = 0;
+        int chunk;
+        do {
+            chunk = idempotencyKeyJdbcRepository.deleteExpired(now, cleanupChunkSize);
+            deleted += chunk;
+        } while (chunk == cleanupChunkSize);
+
+        if (deleted > 0) {
+            log.info("Deleted {} expired idempotency keys", deleted);
+        }
+    }
+
+    /**
+     * Auxiliary method that claims a key in the table, or reads the response stored for it by an earlier
+     * execution, possibly on another instance.
+     */
+    private Outcome claim(String key, byte[] requestHash, CompletableFuture<Void> execution, long deadline) throws InterruptedException {
+        while (true) {
+            Instant now = Instant.now();
+            if (idempotencyKeyJdbcRepository.claim(key, requestHash, now.plus(ttl))) {
+                return new Claim(key, requestHash, execution);
+            }
+
+            Optional<IdempotencyKey> stored = idempotencyKeyJdbcRepository.findByKey(key);
+            if (stored.isEmpty()) {
+                // Released in between, claim it again
+                continue;
+            }
+
+            IdempotencyKey idempotencyKey = stored.get();
+            if (idempotencyKey.getExpiresAt().isBefore(now)) {
+                idempotencyKeyJdbcRepository.deleteIfExpired(key, now);
+                continue;
+            }
+            if (idempotencyKey.isCompleted()) {
+                completed.put(key, idempotencyKey);
+                return replay(idempotencyKey, requestHash, replayedFromTable);
+            }
+            if (!Arrays.equals(idempotencyKey.getRequestHash(), requestHash)) {
+                mismatches.increment();
+                return new Mismatch();
+            }
+            if (idempotencyKey.isInDoubt()) {
+                inDoubt.increment();
+                return new InDoubt();
+            }
+
+            // Running on another instance, or left claimed by an instance that died while running it
+            if (System.nanoTime() >= deadline) {
+                conflicts.increment();
+                return new Conflict();
+            }
+            Thread.sleep(POLL_INTERVAL_MS);
+        }
+    }
+
+    private Outcome replay(IdempotencyKey response, byte[] requestHash, Counter counter) {
+        if (!Arrays.equals(response.getRequestHash(), requestHash)) {
+            mismatches.increment();
+            return new Mismatch();
+        }
+        counter.increment();
+        return new Replay(response);
+    }
+
+    private static boolean await(CompletableFuture<Void> execution, long deadline) throws InterruptedException {
+        try {
+            execution.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (ExecutionException e) {
+            return true;
+        }
+    }
+
+    private void finish(String key, CompletableFuture<Void> execution) {
+        running.remove(key, execution);
+        execution.complete(null);
+    }
+
+    private static Counter outcomeCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("billing.idempotency.requests")
+                .description("Requests sent with an idempotency key, by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    /**
+     * What to do with a request sent with an idempotency key.
+     */
+    public sealed interface Outcome permits Replay, Claim, Mismatch, Conflict, InDoubt {
+    }
+
+    /**
+     * The request already completed, its response is replayed.
+     * @param response the stored response
+     */
+    public record Replay(IdempotencyKey response) implements Outcome {
+    }
+
+    /**
+     * The key is claimed, the request runs and its response is then completed or released.
+     */
+    public record Claim(String key, byte[] requestHash, CompletableFuture<Void> execution) implements Outcome {
+    }
+
+    /**
+     * The key was used for another request.
+     */
+    public record Mismatch() implements Outcome {
+    }
+
+    /**
+     * The request is still running after the wait timeout.
+     */
+    public record Conflict() implements Outcome {
+    }
+
+    /**
+     * An earlier execution failed after its effects may have been committed.
+     */
+    public record InDoubt() implements Outcome {
+    }
+}
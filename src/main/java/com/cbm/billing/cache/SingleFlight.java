@@ -0,0 +1,106 @@
+package com.cbm.billing.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent identical calls: the first caller of a key runs the call on its own thread, and the
+ * callers of the same key arriving while it runs wait for it and share its result, or its exception.
+ * <p>
+ * Nothing is cached. The key is forgotten as soon as the call returns, so a caller arriving after that
+ * runs the call again, and a result is only ever shared with the callers that asked for it while it was
+ * being computed.
+ * <p>
+ * The executed and joined calls are counted in {@code billing.coalescing.requests} and the share of the
+ * joined ones in {@code billing.coalescing.ratio}, tagged with the name of the flight.
+ * @param <K> the type of the keys, compared with equals
+ * @param <V> the type of the results
+ */
+public class SingleFlight<K, V> {
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder joined = new LongAdder();
+
+    public SingleFlight(String name, MeterRegistry meterRegistry) {
+        registerMeters(meterRegistry, name, executed, joined);
+    }
+
+    /**
+     * Runs the call of a key, or waits for the run of the same key in flight.
+     * @param key the key identifying the call
+     * @param call the call to run
+     * @return the result of the call
+     */
+    public V call(K key, Supplier<V> call) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, flight);
+        if (running != null) {
+            joined.increment();
+            return join(running);
+        }
+
+        executed.increment();
+        try {
+            V result = call.get();
+            // Forgotten before its waiters are released, so no caller can join a finished call
+            inFlight.remove(key, flight);
+            flight.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            inFlight.remove(key, flight);
+            flight.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * @return the number of calls in flight
+     */
+    public int inFlight() {
+        return inFlight.size();
+    }
+
+    /**
+     * Auxiliary method that registers the coalescing meters of a flight.
+     * @param meterRegistry the registry
+     * @param name the name of the flight
+     * @param executed the counter of the calls run
+     * @param joined the counter of the calls that waited for a call in flight
+     */
+    static void registerMeters(MeterRegistry meterRegistry, String name, LongAdder executed, LongAdder joined) {
+        FunctionCounter.builder("billing.coalescing.requests", executed, LongAdder::sum)
+                .description("Reads that could be coalesced, executed or joined to an identical read in flight")
+                .tags("flight", name, "outcome", "executed")
+                .register(meterRegistry);
+        FunctionCounter.builder("billing.coalescing.requests", joined, LongAdder::sum)
+                .description("Reads that could be coalesced, executed or joined to an identical read in flight")
+                .tags("flight", name, "outcome", "joined")
+                .register(meterRegistry);
+        Gauge.builder("billing.coalescing.ratio", () -> {
+                    double total = executed.sum() + joined.sum();
+                    return total == 0 ? 0 : joined.sum() / total;
+                })
+                .description("Share of the reads served by an identical read in flight")
+                .tag("flight", name)
+                .register(meterRegistry);
+    }
+
+    private static <V> V join(CompletableFuture<V> flight) {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+}
@@ -3,4 +3,8 @@ package com.cbm.billing.common;
 public class AccountConstants {
     public static final String PAGE_SIZE = "10";
     public static final String DEFAULT_PAGE = "0";
+    public static final int MAX_BATCH_TRANSACTIONS = 10000;
+    public static final int MAX_HISTORY_PAGE_SIZE = 1000;
+    public static final int MAX_IMPORT_REJECTIONS_PAGE_SIZE = 1000;
+    public static final int MAX_BILL_CYCLE_DAY = 31;
 }
@@ -0,0 +1,35 @@
+package com.cbm.billing.common;
+
+import lombok.Getter;
+import org.springframework.http.MediaType;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * File formats of the account export and import.
+ */
+@Getter
+public enum AccountFileFormat {
+    NDJSON("application/x-ndjson", "ndjson"),
+    CSV("text/csv", "csv");
+
+    private final String contentType;
+    private final String extension;
+
+    AccountFileFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    /**
+     * function to find the format of the given content type, ignoring its parameters (e.g. charset).
+     * @param mediaType the content type of a request
+     * @return the format, or empty if the content type is not one of the formats
+     */
+    public static Optional<AccountFileFormat> ofMediaType(MediaType mediaType) {
+        return Arrays.stream(values())
+                .filter(format -> MediaType.parseMediaType(format.contentType).equalsTypeAndSubtype(mediaType))
+                .findFirst();
+    }
+}
@@ -0,0 +1,5 @@
+package com.cbm.billing.common;
+
+public enum AccountImportStatus {
+    RUNNING, COMPLETED, COMPLETED_WITH_REJECTIONS, FAILED, INTERRUPTED
+}
@@ -0,0 +1,9 @@
+package com.cbm.billing.common;
+
+/**
+ * How the name filter of the account search is matched: names starting with the text, names containing
+ * the text anywhere, or names containing every word of the text as a whole word.
+ */
+public enum AccountNameMatch {
+    PREFIX, SUBSTRING, TOKEN
+}
@@ -0,0 +1,83 @@
+package com.cbm.billing.common;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Terms of the account name index. Names are matched regardless of case and accents, like the
+ * utf8mb4_unicode_ci collation of the name column does, so the terms are taken from the name lower
+ * cased, in compatibility form and stripped of its diacritics. The letters the collation compares equal
+ * to other letters without a decomposition to strip (ß and ss, ø and o, ...) are replaced by them. The
+ * same terms are taken from the searched text.
+ */
+public final class AccountNameTerms {
+    public static final int TRIGRAM_LENGTH = 3;
+    public static final int MAX_TOKEN_LENGTH = 100;
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Map<Character, String> EQUIVALENT_LETTERS = Map.of(
+            'ß', "ss", 'æ', "ae", 'œ', "oe", 'ø', "o", 'đ', "d", 'ł', "l", 'ħ', "h", 'ŧ', "t");
+
+    private AccountNameTerms() {
+    }
+
+    /**
+     * function to take the distinct sequences of three consecutive characters of a name, spaces included.
+     * @param name the name
+     * @return the trigrams in order of first appearance, empty if the name is shorter than three characters
+     */
+    public static Set<String> trigrams(String name) {
+        int[] codePoints = normalize(name).codePoints().toArray();
+        Set<String> trigrams = new LinkedHashSet<>();
+        for (int index = 0; index + TRIGRAM_LENGTH <= codePoints.length; index++) {
+            trigrams.add(new String(codePoints, index, TRIGRAM_LENGTH));
+        }
+        return trigrams;
+    }
+
+    /**
+     * function to take the distinct words of a searched text as typed, for the searches that cannot read the index.
+     * @param text the searched text
+     * @return the words in order of first appearance
+     */
+    public static Set<String> words(String text) {
+        Set<String> words = new LinkedHashSet<>();
+        Arrays.stream(TOKEN_SEPARATOR.split(text)).filter(word -> !word.isEmpty()).forEach(words::add);
+        return words;
+    }
+
+    /**
+     * function to take the distinct words of a name, split on every character that is not a letter or a digit.
+     * @param name the name
+     * @return the words in order of first appearance
+     */
+    public static Set<String> tokens(String name) {
+        Set<String> tokens = new LinkedHashSet<>();
+        Arrays.stream(TOKEN_SEPARATOR.split(normalize(name)))
+                .filter(token -> !token.isEmpty())
+                .map(token -> token.length() > MAX_TOKEN_LENGTH ? token.substring(0, MAX_TOKEN_LENGTH) : token)
+                .forEach(tokens::add);
+        return tokens;
+    }
+
+    private static String normalize(String name) {
+        String folded = DIACRITICS.matcher(Normalizer.normalize(name, Normalizer.Form.NFKD)).replaceAll("").toLowerCase(Locale.ROOT);
+        StringBuilder normalized = new StringBuilder(folded.length());
+        for (int index = 0; index < folded.length(); index++) {
+            char c = folded.charAt(index);
+            String equivalent = EQUIVALENT_LETTERS.get(c);
+            if (equivalent == null) {
+                normalized.append(c);
+            } else {
+                normalized.append(equivalent);
+            }
+        }
+        return normalized.toString();
+    }
+}
@@ -0,0 +1,36 @@
+package com.cbm.billing.common;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+
+@Getter
+public enum AccountSortKey {
+    NAME("name", "name"),
+    BILL_CYCLE_DAY("bill_cycle_day", "billCycleDay"),
+    LAST_BILL_DATE("last_bill_date", "lastBillDate");
+
+    private final String parameter;
+    private final String attribute;
+
+    AccountSortKey(String parameter, String attribute) {
+        this.parameter = parameter;
+        this.attribute = attribute;
+    }
+
+    /**
+     * Resolves the sort key of a search request.
+     * @param parameter the value of the sort request parameter, "name" when empty
+     * @return the matching sort key
+     * @throws IllegalArgumentException if the parameter is not a supported sort key
+     */
+    public static AccountSortKey fromParameter(String parameter) {
+        if (parameter == null || parameter.isBlank()) {
+            return NAME;
+        }
+        return Arrays.stream(values())
+                .filter(sortKey -> sortKey.parameter.equalsIgnoreCase(parameter))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unsupported sort " + parameter));
+    }
+}
@@ -0,0 +1,5 @@
+package com.cbm.billing.common;
+
+public enum BillRunStatus {
+    RUNNING, COMPLETED, COMPLETED_WITH_FAILURES, FAILED
+}
@@ -0,0 +1,15 @@
+package com.cbm.billing.common;
+
+/**
+ * Block allocated ids shared by Hibernate and the JDBC writers. A row of the generator table holds the
+ * last id allocated for a table, and a block of n ids is taken by moving it forward by n.
+ */
+public class IdGeneratorConstants {
+    public static final String CATALOG = "billing";
+    public static final String TABLE = "id_generator";
+    public static final String NAME_COLUMN = "name";
+    public static final String NEXT_VALUE_COLUMN = "next_val";
+    public static final String ACCOUNT = "billing_account";
+    public static final String BILL = "bill";
+    public static final int ALLOCATION_SIZE = 500;
+}
@@ -0,0 +1,35 @@
+package com.cbm.billing.common;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Money is carried as a primitive {@code long} number of cents through the service layer, so
+ * balance arithmetic is exact and allocation free. Amounts are converted from and to decimals only
+ * at the edges: the DECIMAL(12,2) columns and the JSON payloads.
+ */
+public final class Money {
+    public static final int SCALE = 2;
+
+    private Money() {
+    }
+
+    /**
+     * function to convert a decimal amount to cents.
+     * @param amount the decimal amount
+     * @return the amount in cents
+     * @throws ArithmeticException if the amount has more than two decimals or does not fit in a long
+     */
+    public static long toCents(BigDecimal amount) {
+        return amount.setScale(SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+    }
+
+    /**
+     * function to convert cents to a decimal amount with two decimals.
+     * @param cents the amount in cents
+     * @return the decimal amount
+     */
+    public static BigDecimal toDecimal(long cents) {
+        return BigDecimal.valueOf(cents, SCALE);
+    }
+}
@@ -0,0 +1,5 @@
+package com.cbm.billing.common;
+
+public enum SummarySource {
+    ACCOUNT, BILL
+}
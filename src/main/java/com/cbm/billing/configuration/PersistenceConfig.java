@@ -0,0 +1,23 @@
+package com.cbm.billing.configuration;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class PersistenceConfig {
+
+    /**
+     * Pins the layout of the id generator table that the {@link com.cbm.billing.service.impl.PooledIdAllocator}
+     * of the JDBC writers relies on: the table stores the last allocated id, and the pooled-lo optimizer hands
+     * out the block that follows it.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer idGeneratorLayoutCustomizer() {
+        return properties -> {
+            properties.put(AvailableSettings.TABLE_GENERATOR_STORE_LAST_USED, "true");
+            properties.put(AvailableSettings.PREFERRED_POOLED_OPTIMIZER, "pooled-lo");
+        };
+    }
+}
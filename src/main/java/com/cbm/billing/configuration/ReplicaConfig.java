@@ -0,0 +1,113 @@
+package com.cbm.billing.configuration;
+
+import com.cbm.billing.datasource.ReplicaRoutingDataSource;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read replicas. With {@code billing.datasource.replicas.urls} set, the data source of the application is
+ * a {@link ReplicaRoutingDataSource} over the pool of {@code spring.datasource.url}, the primary, and one
+ * pool per replica URL. The replicas use the driver and, unless overridden, the credentials of the primary.
+ */
+@Slf4j
+@Configuration
+public class ReplicaConfig {
+    static final int ROUTING_ORDER = Ordered.LOWEST_PRECEDENCE;
+
+    @Bean
+    public static BeanPostProcessor replicaRoutingPostProcessor(Environment environment) {
+        return new ReplicaRoutingPostProcessor(environment);
+    }
+
+    @Bean
+    @ConditionalOnProperty("billing.datasource.replicas.urls")
+    public MeterBinder replicaMetrics(DataSource dataSource) throws SQLException {
+        ReplicaRoutingDataSource routingDataSource = dataSource.unwrap(ReplicaRoutingDataSource.class);
+        return meterRegistry -> {
+            for (ReplicaRoutingDataSource.Replica replica : routingDataSource.replicas()) {
+                Gauge.builder("billing.datasource.replica.healthy", replica, r -> r.healthy() ? 1 : 0)
+                        .description("Whether the replica is sent reads")
+                        .tag("replica", replica.name())
+                        .register(meterRegistry);
+                FunctionCounter.builder("billing.datasource.replica.connections", replica, ReplicaRoutingDataSource.Replica::connections)
+                        .description("Connections handed out for reads served by the replica")
+                        .tag("replica", replica.name())
+                        .register(meterRegistry);
+            }
+            FunctionCounter.builder("billing.datasource.replica.fallbacks", routingDataSource, ReplicaRoutingDataSource::fallbacks)
+                    .description("Replica reads served by the primary because no replica was available")
+                    .register(meterRegistry);
+        };
+    }
+
+    /**
+     * Puts the data source of the application behind the routing, after the connection limit of
+     * {@link VirtualThreadConfig} has wrapped the pool of the primary.
+     */
+    private record ReplicaRoutingPostProcessor(Environment environment) implements BeanPostProcessor, Ordered {
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            String urls = environment.getProperty("billing.datasource.replicas.urls");
+            if (!"dataSource".equals(beanName) || !(bean instanceof DataSource primary) || !StringUtils.hasText(urls)) {
+                return bean;
+            }
+
+            List<ReplicaRoutingDataSource.Replica> replicas = new ArrayList<>();
+            for (String url : StringUtils.commaDelimitedListToStringArray(urls)) {
+                String name = "replica-" + (replicas.size() + 1);
+                replicas.add(new ReplicaRoutingDataSource.Replica(name, replicaPool(name, url.trim())));
+            }
+            log.info("Reads marked for replicas are sent to {} replicas", replicas.size());
+            return ReplicaRoutingDataSource.lazy(new ReplicaRoutingDataSource(primary, replicas));
+        }
+
+        @Override
+        public int getOrder() {
+            return ROUTING_ORDER;
+        }
+
+        /**
+         * Auxiliary method that creates the pool of a replica. The pool starts even if the replica is down,
+         * and a caller waits at most the connection timeout for a connection before its read goes elsewhere.
+         */
+        private HikariDataSource replicaPool(String name, String url) {
+            HikariConfig config = new HikariConfig();
+            config.setPoolName(name);
+            config.setJdbcUrl(url);
+            config.setDriverClassName(environment.getProperty("spring.datasource.driver-class-name"));
+            config.setUsername(environment.getProperty("billing.datasource.replicas.username",
+                    environment.getProperty("spring.datasource.username", "")));
+            config.setPassword(environment.getProperty("billing.datasource.replicas.password",
+                    environment.getProperty("spring.datasource.password", "")));
+            config.setMaximumPoolSize(environment.getProperty("billing.datasource.replicas.pool-size", Integer.class, 10));
+            config.setConnectionTimeout(environment.getProperty("billing.datasource.replicas.connection-timeout",
+                    Duration.class, Duration.ofSeconds(2)).toMillis());
+            config.setInitializationFailTimeout(-1);
+            config.setReadOnly(true);
+            // The driver properties of the primary, such as the cursor fetch of the exports
+            Binder.get(environment).bind("spring.datasource.hikari.data-source-properties", Bindable.mapOf(String.class, String.class))
+                    .ifBound(properties -> properties.forEach(config::addDataSourceProperty));
+            return new HikariDataSource(config);
+        }
+    }
+}
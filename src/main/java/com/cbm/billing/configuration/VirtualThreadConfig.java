@@ -0,0 +1,87 @@
+package com.cbm.billing.configuration;
+
+import com.cbm.billing.datasource.ConnectionLimitingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Duration;
+
+/**
+ * Opt-in virtual thread mode. With {@code spring.threads.virtual.enabled=true} on Java 21 or later, Spring
+ * Boot runs the requests, and so the JPA service calls, the {@code @Async} tasks and the scheduled jobs on
+ * virtual threads. The number of concurrent requests is then no longer bounded by the request thread pool,
+ * so the connection pool is put behind a {@link ConnectionLimitingDataSource}.
+ */
+@Slf4j
+@Configuration
+public class VirtualThreadConfig {
+    // Applied by HikariCP when the pool starts, if no maximum pool size is configured
+    private static final int DEFAULT_POOL_SIZE = 10;
+
+    public VirtualThreadConfig(@Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        if (virtualThreads && Runtime.version().feature() < 21) {
+            log.warn("Virtual threads need Java 21 or later, requests run on the platform thread pool on Java {}",
+                    Runtime.version().feature());
+        }
+    }
+
+    /**
+     * Puts the connection pool behind a limit of its size minus the reserve of nested connections.
+     * On by default in the virtual thread mode, and can be turned on for the platform thread pool too.
+     */
+    @Bean
+    public static BeanPostProcessor connectionLimitPostProcessor(Environment environment) {
+        boolean enabled = environment.getProperty("billing.datasource.connection-limit.enabled", Boolean.class, false);
+        int reserve = environment.getProperty("billing.datasource.connection-limit.reserve", Integer.class, 2);
+        Duration timeout = environment.getProperty("billing.datasource.connection-limit.timeout", Duration.class, Duration.ofSeconds(30));
+        return new ConnectionLimitPostProcessor(enabled, reserve, timeout);
+    }
+
+    @Bean
+    @ConditionalOnProperty("billing.datasource.connection-limit.enabled")
+    public MeterBinder connectionLimitMetrics(DataSource dataSource) throws SQLException {
+        ConnectionLimitingDataSource limitedDataSource = dataSource.unwrap(ConnectionLimitingDataSource.class);
+        return meterRegistry -> {
+            Gauge.builder("billing.datasource.permits.available", limitedDataSource, ConnectionLimitingDataSource::availablePermits)
+                    .description("Connections that can still be taken without waiting")
+                    .register(meterRegistry);
+            Gauge.builder("billing.datasource.permits.waiting", limitedDataSource, ConnectionLimitingDataSource::waitingCallers)
+                    .description("Callers waiting for a connection")
+                    .register(meterRegistry);
+        };
+    }
+
+    /**
+     * Wraps the pool of the primary before the replica routing of {@link ReplicaConfig} wraps the data source,
+     * so the limit applies to the primary only.
+     */
+    private record ConnectionLimitPostProcessor(boolean enabled, int reserve, Duration timeout) implements BeanPostProcessor, Ordered {
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (!enabled || !(bean instanceof HikariDataSource hikariDataSource)) {
+                return bean;
+            }
+            int poolSize = hikariDataSource.getMaximumPoolSize() > 0 ? hikariDataSource.getMaximumPoolSize() : DEFAULT_POOL_SIZE;
+            int limit = Math.max(1, poolSize - reserve);
+            log.info("Connection pool of {} behind a limit of {} concurrent connections", poolSize, limit);
+            return new ConnectionLimitingDataSource(hikariDataSource, limit, timeout);
+        }
+
+        @Override
+        public int getOrder() {
+            return ReplicaConfig.ROUTING_ORDER - 1;
+        }
+    }
+}
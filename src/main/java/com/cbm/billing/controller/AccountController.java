@@ -1,11 +1,16 @@
 package com.cbm.billing.controller;
 
 import com.cbm.billing.common.AccountConstants;
+import com.cbm.billing.common.AccountFileFormat;
+import com.cbm.billing.common.AccountNameMatch;
 import com.cbm.billing.common.AccountStatus;
+import com.cbm.billing.common.SearchTotalMode;
 import com.cbm.billing.common.TransactionType;
 import com.cbm.billing.dto.create.CreateAccountDTO;
 import com.cbm.billing.dto.create.CreateAccountResponse;
+import com.cbm.billing.dto.query.CacheStatsResponse;
 import com.cbm.billing.dto.query.QueryAccountResponse;
+import com.cbm.billing.dto.query.QueryTransactionHistoryResponse;
 import com.cbm.billing.dto.query.SearchAccountDTO;
 import com.cbm.billing.dto.query.SearchAccountResponse;
 import com.cbm.billing.dto.update.*;
@@ -17,8 +22,12 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import jakarta.validation.Valid;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDate;
 
@@ -79,13 +88,14 @@ public class AccountController {
      * @return a {@link ResponseEntity} containing the result of the transaction, or an error response if the
      *     transaction could not be performed
      * @throws AccountNotFoundException if the account with the given ID does not exist
-     * @throws ForbiddenTransactionExeption if the operation is "charge" and the account does not have enough balance
+     * @throws ForbiddenTransactionExeption if the account is terminated, or the operation is "charge" and the account
+     *     does not have enough balance
      */
     @Operation(summary = "Perform a transaction on an account")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Transaction performed successfully"),
         @ApiResponse(responseCode = "404", description = "Account not found"),
-        @ApiResponse(responseCode = "400", description = "Transaction not allowed"),
+        @ApiResponse(responseCode = "400", description = "Account terminated or insufficient balance"),
         @ApiResponse(responseCode = "500", description = "Transaction failed")
     })
     @PutMapping("transactions/{accountId}")
@@ -103,6 +113,25 @@ public class AccountController {
         return ResponseEntity.ok(creditAccountResponse);
     }
 
+    /**
+     * Performs many charges and credits in a single request.
+     * Operations are applied in order, each one with the same rules as the single transaction endpoint,
+     * and the outcome of every operation is reported in the response.
+     * @param batchTransactionDTO the operations to perform
+     * @return a {@link ResponseEntity} containing one result per operation
+     */
+    @Operation(summary = "Perform a batch of transactions on accounts")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Batch processed"),
+            @ApiResponse(responseCode = "400", description = "Invalid batch"),
+            @ApiResponse(responseCode = "500", description = "Batch transaction failed")
+    })
+    @PostMapping("/transactions/batch")
+    public ResponseEntity<BatchTransactionResponse> batchTransactions(@RequestBody @Valid BatchTransactionDTO batchTransactionDTO) {
+        BatchTransactionResponse batchTransactionResponse = accountService.batchTransactions(batchTransactionDTO);
+        return ResponseEntity.ok(batchTransactionResponse);
+    }
+
     /**
      * Retrieves an account by ID.
      * @param accountId the ID of the account to retrieve
@@ -122,6 +151,43 @@ public class AccountController {
         return ResponseEntity.ok(queryAccountResponse);
     }
 
+    /**
+     * Retrieves the charges and credits applied on an account, newest first.
+     * @param accountId the ID of the account
+     * @param size the number of entries per page
+     * @param cursor the nextCursor returned by the previous page
+     * @return a {@link ResponseEntity} containing the page of the history and the cursor of the next one
+     * @throws AccountNotFoundException if the account with the given ID does not exist
+     */
+    @Operation(summary = "Retrieves the transaction history of an account")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Transaction history found"),
+            @ApiResponse(responseCode = "404", description = "Account not found"),
+            @ApiResponse(responseCode = "500", description = "Error retrieving transaction history")
+    })
+    @GetMapping("{accountId}/transactions")
+    public ResponseEntity<QueryTransactionHistoryResponse> transactionHistory(@PathVariable Long accountId,
+                                                                              @RequestParam(defaultValue = AccountConstants.PAGE_SIZE, required = false) int size,
+                                                                              @RequestParam(required = false) Long cursor)
+            throws AccountNotFoundException {
+        QueryTransactionHistoryResponse queryTransactionHistoryResponse = accountService.findTransactionHistory(accountId, cursor, size);
+        return ResponseEntity.ok(queryTransactionHistoryResponse);
+    }
+
+    /**
+     * Retrieves the statistics of the account cache, used to size it.
+     * @return a {@link ResponseEntity} containing the size and the hit, miss, load and eviction counters of the cache
+     */
+    @Operation(summary = "Retrieves the statistics of the account cache")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Account cache statistics")
+    })
+    @GetMapping("/cache/stats")
+    public ResponseEntity<CacheStatsResponse> accountCacheStats() {
+        CacheStatsResponse cacheStatsResponse = accountService.accountCacheStats();
+        return ResponseEntity.ok(cacheStatsResponse);
+    }
+
     /**
      * Retrieves a list of accounts that match the given criteria.
      * @param page the page number of the list to retrieve, starting from 0
@@ -132,12 +198,20 @@ public class AccountController {
      * @param last_bill the last bill date to filter by
      * @param status the status of the accounts to filter by
      * @param name the name of the accounts to filter by
+     * @param name_match how the name is matched: SUBSTRING (default, names containing the text), PREFIX (names
+     *     starting with the text) or TOKEN (names containing every word of the text as a whole word)
+     * @param cursor the nextCursor returned by the previous page. When given, the page is read after
+     *     the cursor instead of by page number, and the sort must be the same as in the previous page
+     * @param total how to compute the total: EXACT (default, counted, or served from a short lived cache and then
+     *     flagged with totalExact false), ESTIMATE (exact up to a cap, flagged with totalExact false above it)
+     *     or NONE (no total)
      * @return a {@link ResponseEntity} containing the retrieved accounts, or an error
      *     response if no accounts match the criteria
      */
     @Operation(summary = "Retrieves a list of accounts that match the given criteria")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Accounts found"),
+            @ApiResponse(responseCode = "400", description = "Invalid sort or cursor"),
             @ApiResponse(responseCode = "500", description = "Error searching accounts")
     })
     @GetMapping("/search")
@@ -147,7 +221,10 @@ public class AccountController {
                                                                @RequestParam(required = false) Integer bill_cicle,
                                                                @RequestParam(required = false) LocalDate last_bill,
                                                                @RequestParam(required = false) AccountStatus status,
-                                                               @RequestParam(required = false) String name) {
+                                                               @RequestParam(required = false) String name,
+                                                               @RequestParam(required = false) AccountNameMatch name_match,
+                                                               @RequestParam(required = false) String cursor,
+                                                               @RequestParam(required = false) SearchTotalMode total) {
 
         SearchAccountDTO searchAccountDTO = SearchAccountDTO.builder()
                 .page(page)
@@ -157,6 +234,9 @@ public class AccountController {
                 .lastBillDate(last_bill)
                 .status(status)
                 .name(name)
+                .nameMatch(name_match)
+                .cursor(cursor)
+                .totalMode(total)
                 .build();
 
         SearchAccountResponse searchAccountResponse = accountService.searchAccount(page, size, sort,searchAccountDTO);
@@ -164,6 +244,47 @@ public class AccountController {
 
     }
 
+    /**
+     * Exports every account that matches the given criteria, in id order, streamed as it is read.
+     * @param format the format of the export: NDJSON (default, one account per line) or CSV
+     * @param bill_cicle the bill cycle day to filter by
+     * @param last_bill the last bill date to filter by
+     * @param status the status of the accounts to filter by
+     * @param name the name of the accounts to filter by
+     * @param name_match how the name is matched, as in the search: SUBSTRING (default), PREFIX or TOKEN
+     * @return a {@link ResponseEntity} streaming the matching accounts as an attachment
+     */
+    @Operation(summary = "Exports the accounts that match the given criteria as NDJSON or CSV")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Accounts exported"),
+            @ApiResponse(responseCode = "500", description = "Error exporting accounts")
+    })
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportAccounts(@RequestParam(defaultValue = "NDJSON", required = false) AccountFileFormat format,
+                                                                @RequestParam(required = false) Integer bill_cicle,
+                                                                @RequestParam(required = false) LocalDate last_bill,
+                                                                @RequestParam(required = false) AccountStatus status,
+                                                                @RequestParam(required = false) String name,
+                                                                @RequestParam(required = false) AccountNameMatch name_match) {
+
+        SearchAccountDTO searchAccountDTO = SearchAccountDTO.builder()
+                .billCycleDay(bill_cicle)
+                .lastBillDate(last_bill)
+                .status(status)
+                .name(name)
+                .nameMatch(name_match)
+                .build();
+
+        StreamingResponseBody export = outputStream -> accountService.exportAccounts(searchAccountDTO, format, outputStream);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(format.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("accounts." + format.getExtension())
+                        .build()
+                        .toString())
+                .body(export);
+    }
+
     /**
      * Terminates the account with the given ID.
      * @param accountId the ID of the account to terminate
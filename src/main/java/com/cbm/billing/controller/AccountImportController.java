@@ -0,0 +1,90 @@
+package com.cbm.billing.controller;
+
+import com.cbm.billing.common.AccountConstants;
+import com.cbm.billing.common.AccountFileFormat;
+import com.cbm.billing.dto.create.CreateAccountImportResponse;
+import com.cbm.billing.dto.query.QueryAccountImportRejectionsResponse;
+import com.cbm.billing.dto.query.QueryAccountImportResponse;
+import com.cbm.billing.exception.AccountImportNotFoundException;
+import com.cbm.billing.service.IAccountImportService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.InputStream;
+
+@RestController
+@RequestMapping("/api/v1/account-imports")
+@CrossOrigin("*")
+public class AccountImportController {
+    private final IAccountImportService accountImportService;
+
+    public AccountImportController(IAccountImportService accountImportService) {
+        this.accountImportService = accountImportService;
+    }
+
+    /**
+     * Starts the import of the accounts of the file sent as the request body. The format is given by the
+     * content type: text/csv (with a header line) or application/x-ndjson (one account per line).
+     * @param contentType the content type of the request
+     * @param body the content of the file, streamed as it is uploaded
+     * @return a {@link ResponseEntity} containing the started import
+     */
+    @Operation(summary = "Start the import of the accounts of a CSV or NDJSON file")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Account import started successfully"),
+            @ApiResponse(responseCode = "400", description = "Invalid CSV header"),
+            @ApiResponse(responseCode = "415", description = "Unsupported file format"),
+            @ApiResponse(responseCode = "500", description = "Error starting account import")
+    })
+    @PostMapping(consumes = {"text/csv", "application/x-ndjson"})
+    public ResponseEntity<CreateAccountImportResponse> startImport(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                                                   InputStream body) {
+        AccountFileFormat format = AccountFileFormat.ofMediaType(MediaType.parseMediaType(contentType)).orElseThrow();
+        CreateAccountImportResponse createAccountImportResponse = accountImportService.startImport(format, body);
+        return ResponseEntity.ok(createAccountImportResponse);
+    }
+
+    /**
+     * Retrieves the status of an account import, with its counters and throughput.
+     * @param importId the ID of the import
+     * @return a {@link ResponseEntity} containing the import
+     * @throws AccountImportNotFoundException if the import with the given ID does not exist
+     */
+    @Operation(summary = "Retrieves the status of an account import")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Account import found"),
+            @ApiResponse(responseCode = "404", description = "Account import not found")
+    })
+    @GetMapping("{importId}")
+    public ResponseEntity<QueryAccountImportResponse> findImport(@PathVariable Long importId) throws AccountImportNotFoundException {
+        QueryAccountImportResponse queryAccountImportResponse = accountImportService.findImportById(importId);
+        return ResponseEntity.ok(queryAccountImportResponse);
+    }
+
+    /**
+     * Retrieves the rows of an account import that were rejected, in line order, with the reason of each one.
+     * @param importId the ID of the import
+     * @param size the number of rejections per page
+     * @param cursor the nextCursor returned by the previous page, omitted for the first page
+     * @return a {@link ResponseEntity} containing the page of rejections and the cursor of the next one
+     * @throws AccountImportNotFoundException if the import with the given ID does not exist
+     */
+    @Operation(summary = "Retrieves the rejected rows of an account import")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Account import rejections found"),
+            @ApiResponse(responseCode = "404", description = "Account import not found")
+    })
+    @GetMapping("{importId}/rejections")
+    public ResponseEntity<QueryAccountImportRejectionsResponse> findRejections(@PathVariable Long importId,
+                                                                               @RequestParam(defaultValue = AccountConstants.PAGE_SIZE, required = false) int size,
+                                                                               @RequestParam(required = false) Long cursor)
+            throws AccountImportNotFoundException {
+        QueryAccountImportRejectionsResponse queryAccountImportRejectionsResponse = accountImportService.findRejections(importId, cursor, size);
+        return ResponseEntity.ok(queryAccountImportRejectionsResponse);
+    }
+}
@@ -0,0 +1,51 @@
+package com.cbm.billing.controller;
+
+import com.cbm.billing.dto.query.AccountNameIndexStatusResponse;
+import com.cbm.billing.exception.ForbiddenOperationException;
+import com.cbm.billing.service.IAccountNameIndexService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/v1/accounts/name-index")
+@CrossOrigin("*")
+public class AccountNameIndexController {
+    private final IAccountNameIndexService accountNameIndexService;
+
+    public AccountNameIndexController(IAccountNameIndexService accountNameIndexService) {
+        this.accountNameIndexService = accountNameIndexService;
+    }
+
+    /**
+     * Starts a rebuild of the account name index used by the substring and word searches.
+     * @return a {@link ResponseEntity} containing the status of the index
+     * @throws ForbiddenOperationException if a rebuild is already in progress
+     */
+    @Operation(summary = "Start a rebuild of the account name index")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Account name index rebuild started successfully"),
+            @ApiResponse(responseCode = "400", description = "Account name index rebuild already in progress")
+    })
+    @PostMapping("/rebuild")
+    public ResponseEntity<AccountNameIndexStatusResponse> startRebuild() throws ForbiddenOperationException {
+        AccountNameIndexStatusResponse accountNameIndexStatusResponse = accountNameIndexService.startRebuild();
+        return ResponseEntity.ok(accountNameIndexStatusResponse);
+    }
+
+    /**
+     * Retrieves the progress of the account name index rebuild.
+     * @return a {@link ResponseEntity} containing the status of the index
+     */
+    @Operation(summary = "Retrieves the status of the account name index")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Account name index status")
+    })
+    @GetMapping("/status")
+    public ResponseEntity<AccountNameIndexStatusResponse> indexStatus() {
+        AccountNameIndexStatusResponse accountNameIndexStatusResponse = accountNameIndexService.indexStatus();
+        return ResponseEntity.ok(accountNameIndexStatusResponse);
+    }
+}
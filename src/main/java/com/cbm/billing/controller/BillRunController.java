@@ -0,0 +1,63 @@
+package com.cbm.billing.controller;
+
+import com.cbm.billing.dto.create.CreateBillRunDTO;
+import com.cbm.billing.dto.create.CreateBillRunResponse;
+import com.cbm.billing.dto.query.QueryBillRunResponse;
+import com.cbm.billing.exception.BillRunNotFoundException;
+import com.cbm.billing.exception.ForbiddenOperationException;
+import com.cbm.billing.service.IBillRunService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.validation.Valid;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/v1/bill-runs")
+@CrossOrigin("*")
+public class BillRunController {
+    private final IBillRunService billRunService;
+
+    public BillRunController(IBillRunService billRunService) {
+        this.billRunService = billRunService;
+    }
+
+    /**
+     * Starts the bill run that bills every ACTIVE account whose bill cycle day is due on the run date.
+     * @param createBillRunDTO the run date and the amount to bill every account, both optional
+     * @return a {@link ResponseEntity} containing the started bill run
+     * @throws ForbiddenOperationException if a bill run for the same date is already in progress
+     */
+    @Operation(summary = "Start the bill run of a date")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Bill run started successfully"),
+            @ApiResponse(responseCode = "400", description = "Bill run already in progress"),
+            @ApiResponse(responseCode = "500", description = "Error starting bill run")
+    })
+    @PostMapping("/start")
+    public ResponseEntity<CreateBillRunResponse> startBillRun(@RequestBody(required = false) @Valid CreateBillRunDTO createBillRunDTO)
+            throws ForbiddenOperationException {
+
+        CreateBillRunResponse createBillRunResponse = billRunService.startBillRun(
+                createBillRunDTO == null ? new CreateBillRunDTO() : createBillRunDTO);
+        return ResponseEntity.ok(createBillRunResponse);
+    }
+
+    /**
+     * Retrieves the status of a bill run, with its progress, throughput, chunk latency and failures.
+     * @param billRunId the ID of the bill run
+     * @return a {@link ResponseEntity} containing the bill run
+     * @throws BillRunNotFoundException if the bill run with the given ID does not exist
+     */
+    @Operation(summary = "Retrieves the status of a bill run")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Bill run found"),
+            @ApiResponse(responseCode = "404", description = "Bill run not found")
+    })
+    @GetMapping("{billRunId}")
+    public ResponseEntity<QueryBillRunResponse> findBillRun(@PathVariable Long billRunId) throws BillRunNotFoundException {
+        QueryBillRunResponse queryBillRunResponse = billRunService.findBillRunById(billRunId);
+        return ResponseEntity.ok(queryBillRunResponse);
+    }
+}
@@ -0,0 +1,234 @@
+package com.cbm.billing.controller;
+
+import com.cbm.billing.cache.IdempotencyStore;
+import com.cbm.billing.model.IdempotencyKey;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.PathContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+/**
+ * Idempotency keys on the endpoints that move money: a charge or credit, a batch of them and a bill
+ * creation sent with an {@code Idempotency-Key} header run once, and the retries of the same request get
+ * the response of the first execution back, flagged with {@code Idempotent-Replayed: true}, see
+ * {@link IdempotencyStore}.
+ * <p>
+ * Only successful responses are stored. A request rejected with a 4xx status moved no money, its key is
+ * released and a retry runs it again. A request that fails with a 5xx status or an exception may have
+ * committed before failing, so its key is left in doubt and its retries are rejected with 409 until the key
+ * expires, rather than risk applying it twice. A key reused for a different request is rejected with 422,
+ * and a retry of a request still running after the wait timeout with 409.
+ */
+@Component
+public class IdempotencyFilter extends OncePerRequestFilter {
+    static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final List<Route> ROUTES = List.of(
+            new Route(HttpMethod.PUT, "/api/v1/accounts/transactions/{accountId}"),
+            new Route(HttpMethod.POST, "/api/v1/accounts/transactions/batch"),
+            new Route(HttpMethod.POST, "/api/v1/bills/create"));
+
+    private final IdempotencyStore idempotencyStore;
+
+    public IdempotencyFilter(IdempotencyStore idempotencyStore) {
+        this.idempotencyStore = idempotencyStore;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (request.getHeader(IDEMPOTENCY_KEY_HEADER) == null) {
+            return true;
+        }
+        PathContainer path = PathContainer.parsePath(request.getRequestURI().substring(request.getContextPath().length()));
+        return ROUTES.stream().noneMatch(route -> route.method().matches(request.getMethod()) && route.pattern().matches(path));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String key = request.getHeader(IDEMPOTENCY_KEY_HEADER);
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            response.sendError(HttpStatus.BAD_REQUEST.value(), IDEMPOTENCY_KEY_HEADER + " must have 1 to " + MAX_KEY_LENGTH + " characters");
+            return;
+        }
+
+        byte[] body = request.getInputStream().readAllBytes();
+        IdempotencyStore.Outcome outcome;
+        try {
+            outcome = idempotencyStore.begin(key, requestHash(request, body));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value());
+            return;
+        }
+
+        if (outcome instanceof IdempotencyStore.Replay replay) {
+            replay(replay.response(), response);
+        } else if (outcome instanceof IdempotencyStore.Mismatch) {
+            response.sendError(HttpStatus.UNPROCESSABLE_ENTITY.value(), IDEMPOTENCY_KEY_HEADER + " was already used for another request");
+        } else if (outcome instanceof IdempotencyStore.Conflict) {
+            response.sendError(HttpStatus.CONFLICT.value(), "A request with this " + IDEMPOTENCY_KEY_HEADER + " is still running");
+        } else if (outcome instanceof IdempotencyStore.InDoubt) {
+            response.sendError(HttpStatus.CONFLICT.value(), "A request with this " + IDEMPOTENCY_KEY_HEADER
+                    + " failed and may have been applied, check its effects before sending it again with a new key");
+        } else if (outcome instanceof IdempotencyStore.Claim claim) {
+            execute(claim, new CachedBodyRequest(request, body), response, filterChain);
+        }
+    }
+
+    /**
+     * Auxiliary method that runs a claimed request and stores its response if it succeeded. The key is released
+     * after a client error, and left in doubt after a server error or an exception.
+     */
+    private void execute(IdempotencyStore.Claim claim, HttpServletRequest request, HttpServletResponse response,
+                         FilterChain filterChain) throws ServletException, IOException {
+        ContentCachingResponseWrapper cachingResponse = new ContentCachingResponseWrapper(response);
+        boolean ended = false;
+        try {
+            filterChain.doFilter(request, cachingResponse);
+            HttpStatusCode status = HttpStatusCode.valueOf(cachingResponse.getStatus());
+            if (status.is2xxSuccessful()) {
+                idempotencyStore.complete(claim, cachingResponse.getStatus(), cachingResponse.getContentType(),
+                        cachingResponse.getContentAsByteArray());
+            } else if (status.is4xxClientError()) {
+                idempotencyStore.release(claim);
+            } else {
+                idempotencyStore.abandon(claim);
+            }
+            ended = true;
+        } finally {
+            if (!ended) {
+                idempotencyStore.abandon(claim);
+            }
+            cachingResponse.copyBodyToResponse();
+        }
+    }
+
+    private static void replay(IdempotencyKey stored, HttpServletResponse response) throws IOException {
+        response.setStatus(stored.getResponseStatus());
+        if (stored.getContentType() != null) {
+            response.setContentType(stored.getContentType());
+        }
+        response.setHeader(REPLAYED_HEADER, "true");
+        byte[] body = stored.getResponseBody() == null ? new byte[0] : stored.getResponseBody();
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    /**
+     * Auxiliary method that hashes what identifies a request: the method, the path, the query and the body.
+     */
+    private static byte[] requestHash(HttpServletRequest request, byte[] body) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(request.getMethod().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) ' ');
+            digest.update(request.getRequestURI().getBytes(StandardCharsets.UTF_8));
+            if (request.getQueryString() != null) {
+                digest.update((byte) '?');
+                digest.update(request.getQueryString().getBytes(StandardCharsets.UTF_8));
+            }
+            digest.update((byte) '\n');
+            return digest.digest(body);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private record Route(HttpMethod method, PathPattern pattern) {
+        private Route(HttpMethod method, String pattern) {
+            this(method, PathPatternParser.defaultInstance.parse(pattern));
+        }
+    }
+
+    /**
+     * The request with its body read up front, to hash it before it runs.
+     */
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+        private final byte[] body;
+
+        private CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream input = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return input.read();
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) {
+                    return input.read(buffer, offset, length);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return input.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                // The body is already in memory, so it is all available and read as soon as the listener is set
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    try {
+                        if (!isFinished()) {
+                            readListener.onDataAvailable();
+                        }
+                        readListener.onAllDataRead();
+                    } catch (IOException e) {
+                        readListener.onError(e);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            Charset charset = encoding == null ? StandardCharsets.UTF_8 : Charset.forName(encoding);
+            return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+
+        @Override
+        public int getContentLength() {
+            return body.length;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return body.length;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.cbm.billing.controller;
+
+import com.cbm.billing.dto.query.OutboxStatsResponse;
+import com.cbm.billing.service.IOutboxService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/v1/outbox")
+@CrossOrigin("*")
+public class OutboxController {
+    private final IOutboxService outboxService;
+
+    public OutboxController(IOutboxService outboxService) {
+        this.outboxService = outboxService;
+    }
+
+    /**
+     * Retrieves the lag and throughput of the outbox relay.
+     * @return a {@link ResponseEntity} containing the relay statistics
+     */
+    @Operation(summary = "Retrieves the statistics of the outbox relay")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Outbox relay statistics")
+    })
+    @GetMapping("/stats")
+    public ResponseEntity<OutboxStatsResponse> outboxStats() {
+        OutboxStatsResponse outboxStatsResponse = outboxService.outboxStats();
+        return ResponseEntity.ok(outboxStatsResponse);
+    }
+}
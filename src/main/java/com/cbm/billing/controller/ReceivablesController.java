@@ -0,0 +1,37 @@
+package com.cbm.billing.controller;
+
+import com.cbm.billing.dto.query.ReceivablesAggregatesResponse;
+import com.cbm.billing.exception.ReceivablesNotReadyException;
+import com.cbm.billing.service.IReceivablesService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/v1/receivables")
+@CrossOrigin("*")
+public class ReceivablesController {
+    private final IReceivablesService receivablesService;
+
+    public ReceivablesController(IReceivablesService receivablesService) {
+        this.receivablesService = receivablesService;
+    }
+
+    /**
+     * Retrieves the total balance, the accounts by status and bill cycle day and the NOT_SETTLED bill totals.
+     * @return a {@link ResponseEntity} containing the receivables aggregates
+     * @throws ReceivablesNotReadyException if the aggregates are still being computed after a start
+     */
+    @Operation(summary = "Retrieves the receivables aggregates")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Receivables aggregates"),
+            @ApiResponse(responseCode = "503", description = "Receivables aggregates still being computed")
+    })
+    @GetMapping("/aggregates")
+    public ResponseEntity<ReceivablesAggregatesResponse> receivablesAggregates() throws ReceivablesNotReadyException {
+        ReceivablesAggregatesResponse receivablesAggregatesResponse = receivablesService.receivablesAggregates();
+        return ResponseEntity.ok(receivablesAggregatesResponse);
+    }
+}
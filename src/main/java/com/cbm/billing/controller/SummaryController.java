@@ -0,0 +1,51 @@
+package com.cbm.billing.controller;
+
+import com.cbm.billing.dto.query.SummaryProjectorStatusResponse;
+import com.cbm.billing.exception.ForbiddenOperationException;
+import com.cbm.billing.service.ISummaryProjectorService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/v1/summary")
+@CrossOrigin("*")
+public class SummaryController {
+    private final ISummaryProjectorService summaryProjectorService;
+
+    public SummaryController(ISummaryProjectorService summaryProjectorService) {
+        this.summaryProjectorService = summaryProjectorService;
+    }
+
+    /**
+     * Starts a full rebuild of the billing_summary schema from the account and bill tables.
+     * @return a {@link ResponseEntity} containing the status of the projector
+     * @throws ForbiddenOperationException if a rebuild is already in progress
+     */
+    @Operation(summary = "Start a full rebuild of the summary schema")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Summary rebuild started successfully"),
+            @ApiResponse(responseCode = "400", description = "Summary rebuild already in progress")
+    })
+    @PostMapping("/rebuild")
+    public ResponseEntity<SummaryProjectorStatusResponse> startRebuild() throws ForbiddenOperationException {
+        SummaryProjectorStatusResponse summaryProjectorStatusResponse = summaryProjectorService.startRebuild();
+        return ResponseEntity.ok(summaryProjectorStatusResponse);
+    }
+
+    /**
+     * Retrieves the backlog, throughput and rebuild progress of the summary projector.
+     * @return a {@link ResponseEntity} containing the status of the projector
+     */
+    @Operation(summary = "Retrieves the status of the summary projector")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Summary projector status")
+    })
+    @GetMapping("/status")
+    public ResponseEntity<SummaryProjectorStatusResponse> projectorStatus() {
+        SummaryProjectorStatusResponse summaryProjectorStatusResponse = summaryProjectorService.projectorStatus();
+        return ResponseEntity.ok(summaryProjectorStatusResponse);
+    }
+}
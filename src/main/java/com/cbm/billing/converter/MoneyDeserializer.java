@@ -0,0 +1,43 @@
+package com.cbm.billing.converter;
+
+import com.cbm.billing.common.Money;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**
+ * Reads a decimal amount (number or numeric string) as cents. Amounts with more than two decimals
+ * are rejected instead of being rounded.
+ */
+public class MoneyDeserializer extends StdDeserializer<Long> {
+
+    public MoneyDeserializer() {
+        super(Long.class);
+    }
+
+    @Override
+    public Long deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+        BigDecimal amount;
+        if (parser.hasToken(JsonToken.VALUE_NUMBER_INT) || parser.hasToken(JsonToken.VALUE_NUMBER_FLOAT)) {
+            amount = parser.getDecimalValue();
+        } else if (parser.hasToken(JsonToken.VALUE_STRING)) {
+            try {
+                amount = new BigDecimal(parser.getText().trim());
+            } catch (NumberFormatException e) {
+                return (Long) context.handleWeirdStringValue(Long.class, parser.getText(), "not a valid amount");
+            }
+        } else {
+            return (Long) context.handleUnexpectedToken(Long.class, parser);
+        }
+
+        try {
+            return Money.toCents(amount);
+        } catch (ArithmeticException e) {
+            return (Long) context.handleWeirdNumberValue(Long.class, amount, "amount must have at most 2 decimals");
+        }
+    }
+}
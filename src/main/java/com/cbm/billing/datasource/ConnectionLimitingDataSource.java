@@ -0,0 +1,156 @@
+package com.cbm.billing.datasource;
+
+import org.springframework.jdbc.datasource.ConnectionProxy;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Data source that hands out a bounded number of connections at a time, in front of the connection pool.
+ * Callers past the limit wait for a permit in arrival order, up to a timeout, instead of piling up inside
+ * the pool. With virtual threads there is no request thread pool left to bound the number of callers.
+ * <p>
+ * The limit is kept below the size of the pool. A thread that already holds a connection takes the
+ * further ones without a permit, from the connections left above the limit: the id generators fetch
+ * their blocks on a connection of their own while the caller transaction holds the first one, and with
+ * a limit as large as the pool every caller could hold a connection while waiting for a second one.
+ */
+public class ConnectionLimitingDataSource extends DelegatingDataSource {
+    private final int limit;
+    private final Duration timeout;
+    private final Semaphore permits;
+    private final ThreadLocal<int[]> heldConnections = ThreadLocal.withInitial(() -> new int[1]);
+
+    public ConnectionLimitingDataSource(DataSource targetDataSource, int limit, Duration timeout) {
+        super(targetDataSource);
+        this.limit = limit;
+        this.timeout = timeout;
+        this.permits = new Semaphore(limit, true);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        boolean permit = acquirePermit();
+        try {
+            return track(obtainTargetDataSource().getConnection(), permit);
+        } catch (SQLException | RuntimeException e) {
+            releasePermit(permit);
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        boolean permit = acquirePermit();
+        try {
+            return track(obtainTargetDataSource().getConnection(username, password), permit);
+        } catch (SQLException | RuntimeException e) {
+            releasePermit(permit);
+            throw e;
+        }
+    }
+
+    /**
+     * @return the number of connections that can still be taken without waiting
+     */
+    public int availablePermits() {
+        return permits.availablePermits();
+    }
+
+    /**
+     * @return the estimated number of callers waiting for a connection
+     */
+    public int waitingCallers() {
+        return permits.getQueueLength();
+    }
+
+    /**
+     * Takes a permit unless the current thread already holds a connection.
+     * @return whether a permit was taken, to be released with the connection
+     * @throws SQLTransientConnectionException if no permit was released within the timeout
+     */
+    private boolean acquirePermit() throws SQLException {
+        if (heldConnections.get()[0] > 0) {
+            return false;
+        }
+
+        try {
+            if (!permits.tryAcquire(timeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                throw new SQLTransientConnectionException("Connection limit of " + limit + " reached, no connection released within " + timeout);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a connection", e);
+        }
+        return true;
+    }
+
+    private void releasePermit(boolean permit) {
+        if (permit) {
+            permits.release();
+        }
+    }
+
+    private Connection track(Connection connection, boolean permit) {
+        int[] held = heldConnections.get();
+        held[0]++;
+        return (Connection) Proxy.newProxyInstance(ConnectionProxy.class.getClassLoader(),
+                new Class<?>[]{ConnectionProxy.class}, new TrackedConnection(connection, held, permit));
+    }
+
+    /**
+     * Gives the permit back when the connection is closed, the first time only.
+     */
+    private final class TrackedConnection implements InvocationHandler {
+        private final Connection target;
+        private final int[] held;
+        private final boolean permit;
+        private boolean closed;
+
+        private TrackedConnection(Connection target, int[] held, boolean permit) {
+            this.target = target;
+            this.held = held;
+            this.permit = permit;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "getTargetConnection":
+                    return target;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "close":
+                    if (closed) {
+                        return null;
+                    }
+                    closed = true;
+                    try {
+                        target.close();
+                    } finally {
+                        held[0]--;
+                        releasePermit(permit);
+                    }
+                    return null;
+                default:
+                    try {
+                        return method.invoke(target, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    }
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.cbm.billing.datasource;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Read-your-writes across requests when the reads are served by replicas. Every request that may write
+ * (any method but GET, HEAD and OPTIONS) sets a cookie holding the end of the read-your-writes window,
+ * and the requests of a client that sends the cookie back within the window read the primary, so the
+ * client sees its own writes even if the replicas lag behind.
+ */
+@Component
+@ConditionalOnProperty("billing.datasource.replicas.urls")
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+    static final String COOKIE_NAME = "billing-primary-until";
+
+    private final long windowMillis;
+
+    public ReadYourWritesFilter(@Value("${billing.datasource.replicas.read-your-writes-window:2s}") Duration window) {
+        this.windowMillis = window.toMillis();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        long now = System.currentTimeMillis();
+        if (!isRead(request.getMethod())) {
+            Cookie cookie = new Cookie(COOKIE_NAME, String.valueOf(now + windowMillis));
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            cookie.setMaxAge((int) Math.max(1, Duration.ofMillis(windowMillis).toSeconds()));
+            response.addCookie(cookie);
+        }
+
+        boolean previous = ReplicaReads.pin(isPinned(request, now));
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            ReplicaReads.pin(previous);
+        }
+    }
+
+    /**
+     * Auxiliary method that tells whether the client wrote within the window. A value past the window
+     * is ignored, so a client cannot keep itself on the primary.
+     */
+    private boolean isPinned(HttpServletRequest request, long now) {
+        if (request.getCookies() == null) {
+            return false;
+        }
+        for (Cookie cookie : request.getCookies()) {
+            if (COOKIE_NAME.equals(cookie.getName())) {
+                try {
+                    long until = Long.parseLong(cookie.getValue());
+                    return until > now && until <= now + windowMillis;
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isRead(String method) {
+        return HttpMethod.GET.matches(method) || HttpMethod.HEAD.matches(method) || HttpMethod.OPTIONS.matches(method);
+    }
+}
@@ -0,0 +1,43 @@
+package com.cbm.billing.datasource;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks the read replicas on a fixed delay: a replica marked down after a failed connection is sent
+ * reads again once it validates a connection, and a replica that stopped answering is marked down before
+ * a request has to find out. The checks run on a thread of their own, a replica that does not answer
+ * holds it for the connection timeout and must not hold up the scheduled jobs.
+ */
+@Component
+@ConditionalOnProperty("billing.datasource.replicas.urls")
+public class ReplicaHealthCheck {
+    private final ScheduledExecutorService executor;
+
+    public ReplicaHealthCheck(DataSource dataSource,
+                              @Value("${billing.datasource.replicas.health-check-interval-ms:5000}") long intervalMs,
+                              @Value("${billing.datasource.replicas.health-check-timeout:2s}") Duration timeout) throws SQLException {
+        ReplicaRoutingDataSource routingDataSource = dataSource.unwrap(ReplicaRoutingDataSource.class);
+        int timeoutSeconds = (int) Math.max(1, timeout.toSeconds());
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("replica-health-check-");
+        threadFactory.setDaemon(true);
+        this.executor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        this.executor.scheduleWithFixedDelay(() -> routingDataSource.checkReplicas(timeoutSeconds),
+                intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
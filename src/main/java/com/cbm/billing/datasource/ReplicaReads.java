@@ -0,0 +1,79 @@
+package com.cbm.billing.datasource;
+
+import java.util.function.Supplier;
+
+/**
+ * Marks the reads that may be served by a read replica, see {@link ReplicaRoutingDataSource}.
+ * Reads go to a replica only inside {@link #call} or {@link #run}, in a read-only transaction or outside any
+ * transaction. Everything else reads the primary, including the read-only queries of the jobs that write
+ * what they have just read (bill runs, imports), which must not see a replica that lags behind.
+ * <p>
+ * A thread can be pinned to the primary, for read-your-writes: the reads it runs while pinned read the
+ * primary even inside {@link #call}.
+ */
+public final class ReplicaReads {
+    private static final ThreadLocal<Boolean> allowed = new ThreadLocal<>();
+    private static final ThreadLocal<Boolean> pinned = new ThreadLocal<>();
+
+    private ReplicaReads() {
+    }
+
+    /**
+     * Runs reads that may be served by a replica.
+     * @param reads the reads, run on the calling thread
+     * @return the result of the reads
+     */
+    public static <T> T call(Supplier<T> reads) {
+        Boolean previous = allowed.get();
+        allowed.set(Boolean.TRUE);
+        try {
+            return reads.get();
+        } finally {
+            restore(allowed, previous);
+        }
+    }
+
+    /**
+     * Runs reads that may be served by a replica.
+     * @param reads the reads, run on the calling thread
+     */
+    public static void run(Runnable reads) {
+        call(() -> {
+            reads.run();
+            return null;
+        });
+    }
+
+    /**
+     * Pins the current thread to the primary, or releases it.
+     * @param primary whether the reads of the thread must read the primary
+     * @return whether the thread was pinned before, to be restored when done
+     */
+    public static boolean pin(boolean primary) {
+        boolean previous = Boolean.TRUE.equals(pinned.get());
+        restore(pinned, primary ? Boolean.TRUE : null);
+        return previous;
+    }
+
+    /**
+     * @return whether the current thread is pinned to the primary
+     */
+    public static boolean pinned() {
+        return Boolean.TRUE.equals(pinned.get());
+    }
+
+    /**
+     * @return whether the reads of the current thread may be served by a replica
+     */
+    static boolean replicaAllowed() {
+        return Boolean.TRUE.equals(allowed.get()) && !Boolean.TRUE.equals(pinned.get());
+    }
+
+    private static void restore(ThreadLocal<Boolean> flag, Boolean value) {
+        if (value == null) {
+            flag.remove();
+        } else {
+            flag.set(value);
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.cbm.billing.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Data source that sends the reads marked with {@link ReplicaReads} to the read replicas, in turn, and
+ * everything else to the primary. A replica read runs in a read-only transaction or outside any
+ * transaction; the writes, and the reads of a transaction that writes, take their connection from the
+ * primary.
+ * <p>
+ * A replica that fails to hand out a connection is marked down and the read goes to the next replica,
+ * or to the primary when none is left, so a replica outage slows reads down but does not fail them.
+ * {@link #checkReplicas} brings the replicas that answer again back.
+ * <p>
+ * The data source must be used behind a {@link LazyConnectionDataSourceProxy}, see {@link #lazy}: the
+ * transaction managers open the connection of a transaction before the read-only flag of the transaction
+ * is set, the proxy only takes it from here when the first statement runs.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractDataSource implements AutoCloseable {
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final LongAdder fallbacks = new LongAdder();
+
+    public ReplicaRoutingDataSource(DataSource primary, List<Replica> replicas) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!isReplicaRead()) {
+            return primary.getConnection();
+        }
+
+        int first = Math.floorMod(nextReplica.getAndIncrement(), replicas.size());
+        for (int index = 0; index < replicas.size(); index++) {
+            Replica replica = replicas.get((first + index) % replicas.size());
+            if (!replica.healthy) {
+                continue;
+            }
+            try {
+                Connection connection = replica.dataSource.getConnection();
+                replica.connections.increment();
+                return connection;
+            } catch (SQLException | RuntimeException e) {
+                replica.markDown(e);
+            }
+        }
+
+        fallbacks.increment();
+        return primary.getConnection();
+    }
+
+    /**
+     * Connections with explicit credentials are always taken from the primary.
+     */
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return primary.getConnection(username, password);
+    }
+
+    /**
+     * Checks every replica with a connection of its own and marks it up or down.
+     * @param timeoutSeconds the time a replica has to validate the connection
+     */
+    public void checkReplicas(int timeoutSeconds) {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.dataSource.getConnection()) {
+                if (connection.isValid(timeoutSeconds)) {
+                    replica.markUp();
+                } else {
+                    replica.markDown(new SQLException("Connection not valid within " + timeoutSeconds + "s"));
+                }
+            } catch (SQLException | RuntimeException e) {
+                replica.markDown(e);
+            }
+        }
+    }
+
+    public List<Replica> replicas() {
+        return replicas;
+    }
+
+    /**
+     * @return the number of replica reads served by the primary because no replica was available
+     */
+    public long fallbacks() {
+        return fallbacks.sum();
+    }
+
+    /**
+     * Closes the pools of the replicas and the primary, along with the application context.
+     */
+    @Override
+    public void close() throws Exception {
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof AutoCloseable pool) {
+                pool.close();
+            }
+        }
+        if (primary instanceof AutoCloseable pool) {
+            pool.close();
+        }
+    }
+
+    /**
+     * Unwraps to this data source or to the primary, so that the pool of the primary can still be found
+     * behind the routing (pool metrics, connection limit).
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return (T) this;
+        }
+        return primary.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || primary.isWrapperFor(iface);
+    }
+
+    /**
+     * Puts a routing data source behind the lazy connection proxy it needs, closed with the routing.
+     * @param routingDataSource the routing data source
+     * @return the data source to use
+     */
+    public static DataSource lazy(ReplicaRoutingDataSource routingDataSource) {
+        return new ClosingLazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    private static boolean isReplicaRead() {
+        return ReplicaReads.replicaAllowed()
+                && (!TransactionSynchronizationManager.isActualTransactionActive()
+                || TransactionSynchronizationManager.isCurrentTransactionReadOnly());
+    }
+
+    /**
+     * A read replica and its state.
+     */
+    public static final class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        private final LongAdder connections = new LongAdder();
+        private volatile boolean healthy = true;
+
+        public Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public DataSource dataSource() {
+            return dataSource;
+        }
+
+        public boolean healthy() {
+            return healthy;
+        }
+
+        /**
+         * @return the number of connections handed out for replica reads
+         */
+        public long connections() {
+            return connections.sum();
+        }
+
+        private void markUp() {
+            if (!healthy) {
+                healthy = true;
+                log.info("Replica {} is up, reads are sent to it again", name);
+            }
+        }
+
+        private void markDown(Exception cause) {
+            if (healthy) {
+                healthy = false;
+                log.warn("Replica {} is down, its reads go to the other replicas or the primary: {}", name, cause.toString());
+            }
+        }
+    }
+
+    private static final class ClosingLazyConnectionDataSourceProxy extends LazyConnectionDataSourceProxy implements AutoCloseable {
+        private final ReplicaRoutingDataSource routingDataSource;
+
+        private ClosingLazyConnectionDataSourceProxy(ReplicaRoutingDataSource routingDataSource) {
+            super(routingDataSource);
+            this.routingDataSource = routingDataSource;
+        }
+
+        @Override
+        public void close() throws Exception {
+            routingDataSource.close();
+        }
+    }
+}
@@ -2,7 +2,11 @@ package com.cbm.billing.dto.create;
 
 
 import com.cbm.billing.common.AccountStatus;
+import com.cbm.billing.converter.JsonMoney;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
 import lombok.*;
 
 @Getter
@@ -13,12 +17,16 @@ import lombok.*;
 public class CreateAccountDTO {
 
     @NotNull(message = "Name should not be null")
+    @Size(max = 100, message = "Name should have at most 100 characters")
     private String name;
 
     @NotNull(message = "Current balance should not be null")
-    private Double currentBalance;
+    @JsonMoney
+    private Long currentBalance;
 
     @NotNull(message = "Bill cycle day should not be null")
+    @Min(value = 1, message = "Bill cycle day should be between 1 and 31")
+    @Max(value = 31, message = "Bill cycle day should be between 1 and 31")
     private int billCycleDay;
 
     @NotNull(message = "Status should not be null")
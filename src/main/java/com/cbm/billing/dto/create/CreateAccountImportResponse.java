@@ -0,0 +1,15 @@
+package com.cbm.billing.dto.create;
+
+import com.cbm.billing.model.AccountImport;
+import lombok.*;
+
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CreateAccountImportResponse {
+    private Long code;
+    private String message;
+    private AccountImport details;
+}
@@ -1,5 +1,6 @@
 package com.cbm.billing.dto.create;
 
+import com.cbm.billing.converter.JsonMoney;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
 import lombok.*;
@@ -16,5 +17,6 @@ public class CreateBillDTO {
 
     @Min(value = 0, message = "Amount should be greater than 0")
     @NotNull(message = "Amount should not be null")
-    private Double amount;
+    @JsonMoney
+    private Long amount;
 }
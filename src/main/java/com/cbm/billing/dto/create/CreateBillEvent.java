@@ -1,5 +1,6 @@
 package com.cbm.billing.dto.create;
 
+import com.cbm.billing.converter.JsonMoney;
 import lombok.*;
 
 import java.time.LocalDate;
@@ -11,8 +12,11 @@ import java.time.LocalDate;
 @AllArgsConstructor
 public class CreateBillEvent {
     private Long accountId;
-    private Double currentBalance;
-    private Double billAmount;
-    private Double newBalance;
+    @JsonMoney
+    private long currentBalance;
+    @JsonMoney
+    private long billAmount;
+    @JsonMoney
+    private long newBalance;
     private LocalDate billGenerationDate;
 }
@@ -0,0 +1,21 @@
+package com.cbm.billing.dto.create;
+
+import com.cbm.billing.converter.JsonMoney;
+import jakarta.validation.constraints.Min;
+import lombok.*;
+
+import java.time.LocalDate;
+
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CreateBillRunDTO {
+
+    private LocalDate runDate;
+
+    @Min(value = 0, message = "Amount should be greater than 0")
+    @JsonMoney
+    private Long amount;
+}
@@ -0,0 +1,15 @@
+package com.cbm.billing.dto.create;
+
+import com.cbm.billing.model.BillRun;
+import lombok.*;
+
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CreateBillRunResponse {
+    private Long code;
+    private String message;
+    private BillRun details;
+}
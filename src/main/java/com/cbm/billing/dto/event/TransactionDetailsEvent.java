@@ -1,6 +1,7 @@
 package com.cbm.billing.dto.event;
 
 import com.cbm.billing.common.TransactionType;
+import com.cbm.billing.converter.JsonMoney;
 import lombok.*;
 
 import java.time.LocalDate;
@@ -13,8 +14,11 @@ import java.time.LocalDate;
 public class TransactionDetailsEvent {
     private Long accountId;
     private TransactionType transactionType;
-    private Double previousBalance;
-    private Double transactionAmount;
-    private Double currentBalance;
+    @JsonMoney
+    private long previousBalance;
+    @JsonMoney
+    private long transactionAmount;
+    @JsonMoney
+    private long currentBalance;
     private LocalDate transactionDate;
 }
@@ -0,0 +1,22 @@
+package com.cbm.billing.dto.query;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class AccountNameIndexStatusResponse {
+    private Long code;
+    private String message;
+    private boolean indexComplete;
+    private boolean rebuildRunning;
+    private Long rebuildPosition;
+    private long indexedAccounts;
+    private LocalDateTime lastRebuildFinishedAt;
+}
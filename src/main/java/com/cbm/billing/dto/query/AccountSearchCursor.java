@@ -0,0 +1,69 @@
+package com.cbm.billing.dto.query;
+
+import com.cbm.billing.common.AccountSortKey;
+import com.cbm.billing.exception.InvalidSearchException;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+
+/**
+ * Continuation token of a keyset search: the sort key plus the sort value and id of the last
+ * account of the previous page. Clients handle it as an opaque string.
+ */
+@Getter
+@AllArgsConstructor
+public class AccountSearchCursor {
+    private static final String SEPARATOR = ":";
+    private static final String NULL_VALUE = "-";
+    private static final String VALUE_PREFIX = "=";
+
+    private AccountSortKey sortKey;
+    private String value;
+    private Long id;
+
+    /**
+     * Encodes the cursor as an URL safe token.
+     * @return the opaque continuation token
+     */
+    public String encode() {
+        String raw = sortKey.name() + SEPARATOR + id + SEPARATOR + (value == null ? NULL_VALUE : VALUE_PREFIX + value);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a continuation token returned by a previous search.
+     * @param token the opaque continuation token
+     * @return the decoded cursor
+     * @throws InvalidSearchException if the token is malformed or its value does not fit its sort key
+     */
+    public static AccountSearchCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split(SEPARATOR, 3);
+            String value = parts[2].startsWith(VALUE_PREFIX) ? parts[2].substring(VALUE_PREFIX.length()) : null;
+            AccountSortKey sortKey = AccountSortKey.valueOf(parts[0]);
+            checkValue(sortKey, value);
+            return new AccountSearchCursor(sortKey, value, Long.parseLong(parts[1]));
+        } catch (RuntimeException e) {
+            throw new InvalidSearchException("Invalid cursor " + token);
+        }
+    }
+
+    /**
+     * Auxiliary method that parses the value as the type of its sort key, so a tampered value is
+     * rejected here instead of failing when the search reads it.
+     */
+    private static void checkValue(AccountSortKey sortKey, String value) {
+        if (value == null) {
+            return;
+        }
+        switch (sortKey) {
+            case NAME -> { }
+            case BILL_CYCLE_DAY -> Integer.parseInt(value);
+            case LAST_BILL_DATE -> LocalDate.parse(value);
+        }
+    }
+}
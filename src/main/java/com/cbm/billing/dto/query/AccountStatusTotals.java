@@ -0,0 +1,17 @@
+package com.cbm.billing.dto.query;
+
+import com.cbm.billing.common.AccountStatus;
+import com.cbm.billing.converter.JsonMoney;
+import lombok.*;
+
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountStatusTotals {
+    private AccountStatus status;
+    private long accounts;
+    @JsonMoney
+    private long balance;
+}
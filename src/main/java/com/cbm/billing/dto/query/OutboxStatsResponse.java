@@ -0,0 +1,24 @@
+package com.cbm.billing.dto.query;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class OutboxStatsResponse {
+    private Long code;
+    private String message;
+    private long publishedEvents;
+    private long publishedBatches;
+    private long failedBatches;
+    private long lastRunEvents;
+    private double lastRunEventsPerSecond;
+    private long lagMs;
+    private LocalDateTime lastRunAt;
+}
@@ -0,0 +1,21 @@
+package com.cbm.billing.dto.query;
+
+import com.cbm.billing.model.AccountImportRejection;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class QueryAccountImportRejectionsResponse {
+    private Long code;
+    private String message;
+    private Long importId;
+    private List<AccountImportRejection> rejections;
+    private Long nextCursor;
+}
@@ -0,0 +1,15 @@
+package com.cbm.billing.dto.query;
+
+import com.cbm.billing.model.AccountImport;
+import lombok.*;
+
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class QueryAccountImportResponse {
+    private Long code;
+    private String message;
+    private AccountImport details;
+}
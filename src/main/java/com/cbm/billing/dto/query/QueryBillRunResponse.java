@@ -0,0 +1,15 @@
+package com.cbm.billing.dto.query;
+
+import com.cbm.billing.model.BillRun;
+import lombok.*;
+
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class QueryBillRunResponse {
+    private Long code;
+    private String message;
+    private BillRun details;
+}
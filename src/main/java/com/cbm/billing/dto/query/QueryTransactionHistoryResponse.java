@@ -0,0 +1,21 @@
+package com.cbm.billing.dto.query;
+
+import com.cbm.billing.model.TransactionLedgerEntry;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class QueryTransactionHistoryResponse {
+    private Long code;
+    private String message;
+    private Long accountId;
+    private List<TransactionLedgerEntry> transactions;
+    private Long nextCursor;
+}
@@ -0,0 +1,27 @@
+package com.cbm.billing.dto.query;
+
+import com.cbm.billing.converter.JsonMoney;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReceivablesAggregatesResponse {
+    private Long code;
+    private String message;
+    private long accounts;
+    @JsonMoney
+    private long totalBalance;
+    private List<AccountStatusTotals> byStatus;
+    private Map<Integer, Long> accountsByBillCycleDay;
+    private long notSettledBills;
+    @JsonMoney
+    private long notSettledAmount;
+    private LocalDateTime scannedAt;
+}
@@ -1,6 +1,8 @@
 package com.cbm.billing.dto.query;
 
+import com.cbm.billing.common.AccountNameMatch;
 import com.cbm.billing.common.AccountStatus;
+import com.cbm.billing.common.SearchTotalMode;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.Setter;
@@ -15,7 +17,10 @@ public class SearchAccountDTO {
     private int size;
     private String sort;
     private String name;
+    private AccountNameMatch nameMatch;
     private Integer billCycleDay;
     private LocalDate lastBillDate;
     private AccountStatus status;
+    private String cursor;
+    private SearchTotalMode totalMode;
 }
@@ -1,6 +1,7 @@
 package com.cbm.billing.dto.query;
 
 import com.cbm.billing.model.Account;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.*;
 
 import java.util.List;
@@ -10,9 +11,12 @@ import java.util.List;
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class SearchAccountResponse {
     private int page;
     private int size;
-    private long total;
+    private Long total;
+    private Boolean totalExact;
     private List<Account> accounts;
+    private String nextCursor;
 }
@@ -0,0 +1,27 @@
+package com.cbm.billing.dto.query;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SummaryProjectorStatusResponse {
+    private Long code;
+    private String message;
+    private long pendingChanges;
+    private long projectedChanges;
+    private long projectedAccounts;
+    private long projectedBills;
+    private long failedBatches;
+    private Long lastChangeId;
+    private LocalDateTime lastRunAt;
+    private boolean rebuildRunning;
+    private Long rebuildAccountPosition;
+    private Long rebuildBillPosition;
+}
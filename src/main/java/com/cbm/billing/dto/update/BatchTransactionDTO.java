@@ -0,0 +1,21 @@
+package com.cbm.billing.dto.update;
+
+import com.cbm.billing.common.AccountConstants;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchTransactionDTO {
+
+    @NotEmpty(message = "Transactions should not be empty")
+    @Size(max = AccountConstants.MAX_BATCH_TRANSACTIONS, message = "Too many transactions in a single batch")
+    private List<@Valid BatchTransactionItemDTO> transactions;
+}
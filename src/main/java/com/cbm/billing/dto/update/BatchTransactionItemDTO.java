@@ -0,0 +1,26 @@
+package com.cbm.billing.dto.update;
+
+import com.cbm.billing.common.TransactionType;
+import com.cbm.billing.converter.JsonMoney;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchTransactionItemDTO {
+
+    @NotNull(message = "Account id should not be null")
+    private Long accountId;
+
+    @NotNull(message = "Transaction type should not be null")
+    private TransactionType transactionType;
+
+    @Min(value = 0, message = "Amount should be greater than 0")
+    @NotNull(message = "Amount should not be null")
+    @JsonMoney
+    private Long amount;
+}
@@ -0,0 +1,18 @@
+package com.cbm.billing.dto.update;
+
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchTransactionResponse {
+    private Long code;
+    private String message;
+    private int succeeded;
+    private int failed;
+    private List<BatchTransactionResult> results;
+}
@@ -0,0 +1,19 @@
+package com.cbm.billing.dto.update;
+
+import com.cbm.billing.dto.event.TransactionDetailsEvent;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchTransactionResult {
+    private int index;
+    private Long accountId;
+    private Long code;
+    private String message;
+    private TransactionDetailsEvent details;
+}
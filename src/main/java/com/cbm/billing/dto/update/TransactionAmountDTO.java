@@ -1,5 +1,6 @@
 package com.cbm.billing.dto.update;
 
+import com.cbm.billing.converter.JsonMoney;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
 import lombok.AllArgsConstructor;
@@ -15,5 +16,6 @@ public class TransactionAmountDTO {
 
     @Min(value = 0, message = "Amount should be greater than 0")
     @NotNull(message = "Amount should not be null")
-    private Double amount;
+    @JsonMoney
+    private Long amount;
 }
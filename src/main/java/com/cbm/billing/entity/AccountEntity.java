@@ -1,8 +1,11 @@
 package com.cbm.billing.entity;
 
 import com.cbm.billing.common.AccountStatus;
+import com.cbm.billing.common.IdGeneratorConstants;
+import com.cbm.billing.converter.MoneyConverter;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.time.LocalDate;
 import java.util.List;
@@ -12,19 +15,27 @@ import java.util.List;
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(catalog = "billing", name = "billing_account", indexes = @Index(name = "idx_name", columnList = "name"))
+@Table(catalog = "billing", name = "billing_account", indexes = {
+        @Index(name = "idx_name", columnList = "name, id"),
+        @Index(name = "idx_bill_cycle_day", columnList = "bill_cycle_day, id"),
+        @Index(name = "idx_last_bill_date", columnList = "last_bill_date, id")
+})
 public class AccountEntity {
 
     @Id
     @Column(name = "id")
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "account_id")
+    @TableGenerator(name = "account_id", catalog = IdGeneratorConstants.CATALOG, table = IdGeneratorConstants.TABLE,
+            pkColumnName = IdGeneratorConstants.NAME_COLUMN, valueColumnName = IdGeneratorConstants.NEXT_VALUE_COLUMN,
+            pkColumnValue = IdGeneratorConstants.ACCOUNT, allocationSize = IdGeneratorConstants.ALLOCATION_SIZE)
     private Long id;
 
     @Column(name = "name")
     private String name;
 
     @Column(name = "current_balance")
-    private Double currentBalance;
+    @Convert(converter = MoneyConverter.class)
+    private long currentBalance;
 
     @Column(name = "bill_cycle_day")
     private Integer billCycleDay;
@@ -42,6 +53,12 @@ public class AccountEntity {
     @Column(name = "updated_at")
     private LocalDate updatedAt;
 
+    // Also incremented by the native and JDBC updates of the row, so a stale entity is never written back
+    @Version
+    @ColumnDefault("0")
+    @Column(name = "version")
+    private long version;
+
     @OneToMany(mappedBy = "accountId",fetch = FetchType.LAZY)
     private List<BillEntity> bills;
 
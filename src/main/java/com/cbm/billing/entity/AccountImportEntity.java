@@ -0,0 +1,51 @@
+package com.cbm.billing.entity;
+
+import com.cbm.billing.common.AccountFileFormat;
+import com.cbm.billing.common.AccountImportStatus;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(catalog = "billing", name = "account_import")
+public class AccountImportEntity {
+
+    @Id
+    @Column(name = "id")
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "format", updatable = false)
+    private AccountFileFormat format;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status")
+    private AccountImportStatus status;
+
+    @Column(name = "total_rows")
+    private Long totalRows;
+
+    @Column(name = "imported_accounts")
+    private Long importedAccounts;
+
+    @Column(name = "rejected_rows")
+    private Long rejectedRows;
+
+    @Column(name = "chunks_completed")
+    private Long chunksCompleted;
+
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+}
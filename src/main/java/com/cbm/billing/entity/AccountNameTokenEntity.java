@@ -0,0 +1,40 @@
+package com.cbm.billing.entity;
+
+import com.cbm.billing.common.AccountNameTerms;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+
+/**
+ * Posting of the word index of the account names: one row per distinct word of a name.
+ * Written with JDBC, mapped only to be used in the subqueries of the account search.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@IdClass(AccountNameTokenEntity.Key.class)
+@Table(catalog = "billing", name = "account_name_token",
+        indexes = @Index(name = "idx_name_token_account_id", columnList = "account_id"))
+public class AccountNameTokenEntity {
+
+    @Id
+    @Column(name = "token", length = AccountNameTerms.MAX_TOKEN_LENGTH)
+    private String token;
+
+    @Id
+    @Column(name = "account_id")
+    private Long accountId;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+        private String token;
+        private Long accountId;
+    }
+}
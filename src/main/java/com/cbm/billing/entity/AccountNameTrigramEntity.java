@@ -0,0 +1,39 @@
+package com.cbm.billing.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+
+/**
+ * Posting of the trigram index of the account names: one row per distinct trigram of a name.
+ * Written with JDBC, mapped only to be used in the subqueries of the account search.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@IdClass(AccountNameTrigramEntity.Key.class)
+@Table(catalog = "billing", name = "account_name_trigram",
+        indexes = @Index(name = "idx_name_trigram_account_id", columnList = "account_id"))
+public class AccountNameTrigramEntity {
+
+    @Id
+    @Column(name = "trigram", length = 3)
+    private String trigram;
+
+    @Id
+    @Column(name = "account_id")
+    private Long accountId;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+        private String trigram;
+        private Long accountId;
+    }
+}
@@ -1,12 +1,14 @@
 package com.cbm.billing.entity;
 
 import com.cbm.billing.common.AccountStatus;
+import com.cbm.billing.converter.MoneyConverter;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
+import java.time.LocalDate;
 import java.util.List;
 
 @Entity
@@ -25,13 +27,17 @@ public class AccountSummaryEntity {
     private String name;
 
     @Column(name = "current_balance")
-    private Double currentBalance;
+    @Convert(converter = MoneyConverter.class)
+    private long currentBalance;
+
+    @Column(name = "last_bill_date")
+    private LocalDate lastBillDate;
 
     @Enumerated(EnumType.STRING)
     @Column(name = "status")
     private AccountStatus status;
 
     @OneToMany(cascade = CascadeType.ALL, fetch = FetchType.LAZY)
-    @JoinColumn(name = "id")
+    @JoinColumn(name = "billing_account_id")
     private List <BillSummaryEntity> bills;
 }
@@ -1,6 +1,8 @@
 package com.cbm.billing.entity;
 
 import com.cbm.billing.common.BillStatus;
+import com.cbm.billing.common.IdGeneratorConstants;
+import com.cbm.billing.converter.MoneyConverter;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
@@ -19,7 +21,10 @@ public class BillEntity {
 
     @Id
     @Column(name = "id")
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "bill_id")
+    @TableGenerator(name = "bill_id", catalog = IdGeneratorConstants.CATALOG, table = IdGeneratorConstants.TABLE,
+            pkColumnName = IdGeneratorConstants.NAME_COLUMN, valueColumnName = IdGeneratorConstants.NEXT_VALUE_COLUMN,
+            pkColumnValue = IdGeneratorConstants.BILL, allocationSize = IdGeneratorConstants.ALLOCATION_SIZE)
     private Long id;
 
     @Column(name = "billing_account_id")
@@ -29,7 +34,8 @@ public class BillEntity {
     private LocalDate generationDate;
 
     @Column(name = "amount")
-    private Double amount;
+    @Convert(converter = MoneyConverter.class)
+    private long amount;
 
     @Enumerated(EnumType.STRING)
     @Column(name = "status")
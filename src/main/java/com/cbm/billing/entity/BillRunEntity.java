@@ -0,0 +1,55 @@
+package com.cbm.billing.entity;
+
+import com.cbm.billing.common.BillRunStatus;
+import com.cbm.billing.converter.MoneyConverter;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(catalog = "billing", name = "bill_run", indexes = @Index(name = "idx_run_date", columnList = "run_date"))
+public class BillRunEntity {
+
+    @Id
+    @Column(name = "id")
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "run_date", updatable = false)
+    private LocalDate runDate;
+
+    @Column(name = "amount")
+    @Convert(converter = MoneyConverter.class)
+    private long amount;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status")
+    private BillRunStatus status;
+
+    @Column(name = "total_accounts")
+    private Long totalAccounts;
+
+    @Column(name = "processed_accounts")
+    private Long processedAccounts;
+
+    @Column(name = "failed_accounts")
+    private Long failedAccounts;
+
+    @Column(name = "chunks_completed")
+    private Long chunksCompleted;
+
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+}
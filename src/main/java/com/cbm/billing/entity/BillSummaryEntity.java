@@ -1,12 +1,15 @@
 package com.cbm.billing.entity;
 
 import com.cbm.billing.common.BillStatus;
+import com.cbm.billing.converter.MoneyConverter;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
+import java.time.LocalDate;
+
 @Entity
 @Getter
 @Setter
@@ -19,6 +22,16 @@ public class BillSummaryEntity {
     @Column(name = "id")
     private Long id;
 
+    @Column(name = "billing_account_id", insertable = false, updatable = false)
+    private Long accountId;
+
+    @Column(name = "generation_date")
+    private LocalDate generationDate;
+
+    @Column(name = "amount")
+    @Convert(converter = MoneyConverter.class)
+    private long amount;
+
     @Enumerated(EnumType.STRING)
     @Column(name = "status")
     private BillStatus status;
@@ -4,4 +4,8 @@ public class AccountDomainException extends DomainException {
     public AccountDomainException(String message) {
         super(message);
     }
+
+    public AccountDomainException(String message, Throwable cause) {
+        super(message, cause);
+    }
 }
@@ -0,0 +1,12 @@
+package com.cbm.billing.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class BillRunNotFoundException extends Exception {
+
+    public BillRunNotFoundException(String message) {
+        super(message, null, true, false);
+    }
+}
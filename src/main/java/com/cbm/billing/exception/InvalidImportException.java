@@ -0,0 +1,11 @@
+package com.cbm.billing.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidImportException extends DomainException {
+    public InvalidImportException(String message) {
+        super(message);
+    }
+}
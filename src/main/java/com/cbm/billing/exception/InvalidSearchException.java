@@ -0,0 +1,11 @@
+package com.cbm.billing.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidSearchException extends DomainException {
+    public InvalidSearchException(String message) {
+        super(message);
+    }
+}
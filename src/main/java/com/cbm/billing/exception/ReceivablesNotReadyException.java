@@ -0,0 +1,12 @@
+package com.cbm.billing.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class ReceivablesNotReadyException extends Exception {
+
+    public ReceivablesNotReadyException(String message) {
+        super(message, null, true, false);
+    }
+}
@@ -54,7 +54,7 @@ public class AccountDataMapperImpl implements IAccountDataMapper {
         return new Account(
                 null, // id
                 searchAccountDTO.getName(), // name
-                null, // currentBalance
+                0L, // currentBalance
                 searchAccountDTO.getBillCycleDay(), // billCycleDay
                 searchAccountDTO.getLastBillDate(), // lastBillDate
                 searchAccountDTO.getStatus(), // status
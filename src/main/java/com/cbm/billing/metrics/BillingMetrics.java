@@ -0,0 +1,107 @@
+package com.cbm.billing.metrics;
+
+import com.cbm.billing.common.Money;
+import com.cbm.billing.common.TransactionType;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Distributions of the amounts moved by the billing system, in currency units: the
+ * {@code billing.transaction.amount} of the applied charges and credits, tagged by type, and the
+ * {@code billing.bill.amount} of the created bills.
+ * <p>
+ * Inside a transaction the amounts are recorded once it commits, so a rolled back or retried
+ * transaction records nothing.
+ */
+@Component
+public class BillingMetrics {
+    private final Map<TransactionType, DistributionSummary> transactionAmounts = new EnumMap<>(TransactionType.class);
+    private final DistributionSummary billAmounts;
+
+    public BillingMetrics(MeterRegistry meterRegistry) {
+        for (TransactionType transactionType : TransactionType.values()) {
+            transactionAmounts.put(transactionType, DistributionSummary.builder("billing.transaction.amount")
+                    .description("Amounts of the applied charges and credits")
+                    .tag("type", transactionType.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+        this.billAmounts = DistributionSummary.builder("billing.bill.amount")
+                .description("Amounts of the created bills")
+                .register(meterRegistry);
+    }
+
+    /**
+     * function to record the amount of an applied charge or credit.
+     * @param transactionType the type of the transaction
+     * @param amount the amount in cents
+     */
+    public void transactionApplied(TransactionType transactionType, long amount) {
+        record(transactionAmounts.get(transactionType), amount);
+    }
+
+    /**
+     * function to record the amount of a created bill.
+     * @param amount the billed amount in cents
+     */
+    public void billCreated(long amount) {
+        record(billAmounts, amount);
+    }
+
+    /**
+     * Auxiliary method that records an amount now, or when the current transaction commits.
+     */
+    private void record(DistributionSummary summary, long amount) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            summary.record(toUnits(amount));
+            return;
+        }
+
+        // Looked up among the synchronizations, so a nested REQUIRES_NEW transaction records on its own commit
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof Pending pending && pending.owner == this) {
+                pending.add(summary, amount);
+                return;
+            }
+        }
+        Pending pending = new Pending(this);
+        pending.add(summary, amount);
+        TransactionSynchronizationManager.registerSynchronization(pending);
+    }
+
+    private static double toUnits(long cents) {
+        return Money.toDecimal(cents).doubleValue();
+    }
+
+    /**
+     * Amounts recorded by a transaction, applied once it commits.
+     */
+    private static final class Pending implements TransactionSynchronization {
+        private final BillingMetrics owner;
+        private final List<DistributionSummary> summaries = new ArrayList<>();
+        private final List<Long> amounts = new ArrayList<>();
+
+        private Pending(BillingMetrics owner) {
+            this.owner = owner;
+        }
+
+        private void add(DistributionSummary summary, long amount) {
+            summaries.add(summary);
+            amounts.add(amount);
+        }
+
+        @Override
+        public void afterCommit() {
+            for (int index = 0; index < summaries.size(); index++) {
+                summaries.get(index).record(toUnits(amounts.get(index)));
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.cbm.billing.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Times the calls intercepted by an aspect with one timer per component, method and {@link Outcome}.
+ * The timers are registered on first use and looked up afterwards without going through the registry.
+ */
+final class MethodTimers {
+    private final MeterRegistry meterRegistry;
+    private final String name;
+    private final String description;
+    private final String componentTag;
+    private final Map<TimerKey, Timer> timers = new ConcurrentHashMap<>();
+
+    MethodTimers(MeterRegistry meterRegistry, String name, String description, String componentTag) {
+        this.meterRegistry = meterRegistry;
+        this.name = name;
+        this.description = description;
+        this.componentTag = componentTag;
+    }
+
+    /**
+     * Proceeds with the intercepted call and records its duration, including the exceptional ones.
+     * @param joinPoint the intercepted call
+     * @param component the value of the component tag, computed once per target class
+     * @return the result of the call
+     * @throws Throwable the exception thrown by the call
+     */
+    Object record(ProceedingJoinPoint joinPoint, Function<Class<?>, String> component) throws Throwable {
+        long start = System.nanoTime();
+        Outcome outcome = Outcome.SUCCESS;
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable e) {
+            outcome = Outcome.of(e);
+            throw e;
+        } finally {
+            Class<?> targetClass = joinPoint.getTarget().getClass();
+            Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+            timers.computeIfAbsent(new TimerKey(targetClass, method, outcome),
+                            key -> register(component.apply(key.targetClass()), key.method(), key.outcome()))
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Timer register(String component, Method method, Outcome outcome) {
+        return Timer.builder(name)
+                .description(description)
+                .tag(componentTag, component)
+                .tag("method", method.getName())
+                .tag("outcome", outcome.tag())
+                .register(meterRegistry);
+    }
+
+    private record TimerKey(Class<?> targetClass, Method method, Outcome outcome) {
+    }
+}
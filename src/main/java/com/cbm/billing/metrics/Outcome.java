@@ -0,0 +1,48 @@
+package com.cbm.billing.metrics;
+
+import com.cbm.billing.exception.AccountImportNotFoundException;
+import com.cbm.billing.exception.AccountNotFoundException;
+import com.cbm.billing.exception.BillRunNotFoundException;
+import com.cbm.billing.exception.DomainException;
+import com.cbm.billing.exception.ForbiddenOperationException;
+import com.cbm.billing.exception.ForbiddenTransactionExeption;
+
+/**
+ * Value of the {@code outcome} tag of the service and repository timers.
+ */
+public enum Outcome {
+    SUCCESS("success"),
+    NOT_FOUND("not_found"),
+    FORBIDDEN("forbidden"),
+    DOMAIN_ERROR("domain_error"),
+    ERROR("error");
+
+    private final String tag;
+
+    Outcome(String tag) {
+        this.tag = tag;
+    }
+
+    public String tag() {
+        return tag;
+    }
+
+    /**
+     * function to classify the exception thrown by a call.
+     * @param exception the exception thrown
+     * @return the outcome of the call
+     */
+    public static Outcome of(Throwable exception) {
+        if (exception instanceof AccountNotFoundException || exception instanceof BillRunNotFoundException
+                || exception instanceof AccountImportNotFoundException) {
+            return NOT_FOUND;
+        }
+        if (exception instanceof ForbiddenOperationException || exception instanceof ForbiddenTransactionExeption) {
+            return FORBIDDEN;
+        }
+        if (exception instanceof DomainException) {
+            return DOMAIN_ERROR;
+        }
+        return ERROR;
+    }
+}
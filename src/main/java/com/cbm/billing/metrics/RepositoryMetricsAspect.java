@@ -0,0 +1,44 @@
+package com.cbm.billing.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.data.repository.Repository;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Proxy;
+
+/**
+ * Times every call to the repositories, the Spring Data ones and the JDBC ones alike, in the
+ * {@code billing.repository} timer tagged by repository, method and {@link Outcome}.
+ * Replaces the Spring Data repository metrics of Spring Boot, which do not cover the JDBC repositories.
+ */
+@Aspect
+@Component
+public class RepositoryMetricsAspect {
+    private final MethodTimers timers;
+
+    public RepositoryMetricsAspect(MeterRegistry meterRegistry) {
+        this.timers = new MethodTimers(meterRegistry, "billing.repository", "Calls to the repositories", "repository");
+    }
+
+    @Around("within(com.cbm.billing.repository..*) || target(org.springframework.data.repository.Repository)")
+    public Object timeRepository(ProceedingJoinPoint joinPoint) throws Throwable {
+        return timers.record(joinPoint, RepositoryMetricsAspect::repositoryName);
+    }
+
+    /**
+     * Auxiliary method that names a repository after its class, or after its interface for the proxies of Spring Data.
+     */
+    private static String repositoryName(Class<?> targetClass) {
+        if (Proxy.isProxyClass(targetClass)) {
+            for (Class<?> type : targetClass.getInterfaces()) {
+                if (Repository.class.isAssignableFrom(type) && type != Repository.class) {
+                    return type.getSimpleName();
+                }
+            }
+        }
+        return targetClass.getSimpleName();
+    }
+}
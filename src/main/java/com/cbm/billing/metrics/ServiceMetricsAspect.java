@@ -0,0 +1,35 @@
+package com.cbm.billing.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Times every call to the account and bill services in the {@code billing.service} timer, tagged by
+ * service, method and {@link Outcome}. The count of the timer is the number of calls per outcome.
+ * Runs outside the transaction advice, so the time includes the commit and a failed commit is an error.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ServiceMetricsAspect {
+    private final MethodTimers timers;
+
+    public ServiceMetricsAspect(MeterRegistry meterRegistry) {
+        this.timers = new MethodTimers(meterRegistry, "billing.service", "Calls to the billing services", "service");
+    }
+
+    @Around("execution(* com.cbm.billing.service.IAccountService.*(..))")
+    public Object timeAccountService(ProceedingJoinPoint joinPoint) throws Throwable {
+        return timers.record(joinPoint, targetClass -> "account");
+    }
+
+    @Around("execution(* com.cbm.billing.service.IBillService.*(..))")
+    public Object timeBillService(ProceedingJoinPoint joinPoint) throws Throwable {
+        return timers.record(joinPoint, targetClass -> "bill");
+    }
+}
@@ -1,6 +1,7 @@
 package com.cbm.billing.model;
 
 import com.cbm.billing.common.AccountStatus;
+import com.cbm.billing.converter.JsonMoney;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.*;
 
@@ -14,7 +15,8 @@ import java.time.LocalDate;
 public class Account {
     private Long id;
     private String name;
-    private Double currentBalance;
+    @JsonMoney
+    private long currentBalance;
     private Integer billCycleDay;
     private LocalDate lastBillDate;
     private AccountStatus status;
@@ -0,0 +1,19 @@
+package com.cbm.billing.model;
+
+import com.cbm.billing.common.AccountStatus;
+import lombok.*;
+
+/**
+ * Number of accounts and sum of their balances, in cents, for one status and bill cycle day.
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountAggregate {
+    private AccountStatus status;
+    private int billCycleDay;
+    private long accounts;
+    private long balance;
+}
@@ -0,0 +1,28 @@
+package com.cbm.billing.model;
+
+import com.cbm.billing.common.AccountFileFormat;
+import com.cbm.billing.common.AccountImportStatus;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class AccountImport {
+    private Long id;
+    private AccountFileFormat format;
+    private AccountImportStatus status;
+    private Long rowsRead;
+    private Long totalRows;
+    private Long importedAccounts;
+    private Long rejectedRows;
+    private Long chunksCompleted;
+    private Double accountsPerSecond;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+}
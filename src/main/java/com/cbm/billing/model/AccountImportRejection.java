@@ -0,0 +1,14 @@
+package com.cbm.billing.model;
+
+import lombok.*;
+
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountImportRejection {
+    private Long lineNumber;
+    private String reason;
+    private String row;
+}
@@ -0,0 +1,16 @@
+package com.cbm.billing.model;
+
+import lombok.*;
+
+/**
+ * Number of bills and sum of their amounts, in cents.
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BillAggregate {
+    private long bills;
+    private long amount;
+}
@@ -0,0 +1,33 @@
+package com.cbm.billing.model;
+
+import com.cbm.billing.common.BillRunStatus;
+import com.cbm.billing.converter.JsonMoney;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BillRun {
+    private Long id;
+    private LocalDate runDate;
+    @JsonMoney
+    private long amount;
+    private BillRunStatus status;
+    private Long totalAccounts;
+    private Long processedAccounts;
+    private Long failedAccounts;
+    private Long chunksCompleted;
+    private Long chunksFailed;
+    private Double accountsPerSecond;
+    private Double averageChunkLatencyMs;
+    private Double maxChunkLatencyMs;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+}
@@ -0,0 +1,31 @@
+package com.cbm.billing.model;
+
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * A request sent with an Idempotency-Key header: the hash of the request the key was first used for and,
+ * once the request completed, its response.
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class IdempotencyKey {
+    private String key;
+    private byte[] requestHash;
+    private Integer responseStatus;
+    private String contentType;
+    private byte[] responseBody;
+    private boolean inDoubt;
+    private Instant expiresAt;
+
+    /**
+     * @return whether the response is stored, false while the request is running
+     */
+    public boolean isCompleted() {
+        return responseStatus != null;
+    }
+}
@@ -0,0 +1,18 @@
+package com.cbm.billing.model;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboxEvent {
+    private Long id;
+    private Long accountId;
+    private String eventType;
+    private String payload;
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,19 @@
+package com.cbm.billing.model;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Position of the outbox relay: the next id it expects, and the missing id it waits for since gapSeenAt.
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboxRelayState {
+    private long nextId;
+    private long gapId;
+    private LocalDateTime gapSeenAt;
+}
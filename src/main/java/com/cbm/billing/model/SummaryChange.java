@@ -0,0 +1,16 @@
+package com.cbm.billing.model;
+
+import com.cbm.billing.common.SummarySource;
+import lombok.*;
+
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode(exclude = "id")
+public class SummaryChange {
+    private Long id;
+    private SummarySource source;
+    private Long sourceId;
+}
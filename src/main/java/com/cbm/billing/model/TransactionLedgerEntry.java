@@ -0,0 +1,27 @@
+package com.cbm.billing.model;
+
+import com.cbm.billing.common.TransactionType;
+import com.cbm.billing.converter.JsonMoney;
+import lombok.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransactionLedgerEntry {
+    private Long id;
+    private Long accountId;
+    private TransactionType transactionType;
+    @JsonMoney
+    private long previousBalance;
+    @JsonMoney
+    private long transactionAmount;
+    @JsonMoney
+    private long currentBalance;
+    private LocalDate transactionDate;
+    private LocalDateTime createdAt;
+}
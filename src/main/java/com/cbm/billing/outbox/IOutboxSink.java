@@ -0,0 +1,20 @@
+package com.cbm.billing.outbox;
+
+import com.cbm.billing.model.OutboxEvent;
+
+import java.util.List;
+
+/**
+ * Destination of the events relayed from the outbox. Selected with the billing.outbox.sink property.
+ */
+public interface IOutboxSink {
+
+    /**
+     * Publishes a batch of events. The batch is in outbox order, so the events of an account are in
+     * the order they happened. Returning normally means every event was accepted; when an exception
+     * is thrown the whole batch is retried, so an event may be delivered more than once.
+     * @param events the events to publish
+     * @throws Exception if the batch could not be published
+     */
+    public void publish(List<OutboxEvent> events) throws Exception;
+}
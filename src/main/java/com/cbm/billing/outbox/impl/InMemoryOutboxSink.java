@@ -0,0 +1,31 @@
+package com.cbm.billing.outbox.impl;
+
+import com.cbm.billing.model.OutboxEvent;
+import com.cbm.billing.outbox.IOutboxSink;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the published events in memory. Stand-in for a real broker in tests and local runs.
+ */
+@Component
+@ConditionalOnProperty(name = "billing.outbox.sink", havingValue = "memory")
+public class InMemoryOutboxSink implements IOutboxSink {
+    private final List<OutboxEvent> events = new ArrayList<>();
+
+    @Override
+    public synchronized void publish(List<OutboxEvent> events) {
+        this.events.addAll(events);
+    }
+
+    public synchronized List<OutboxEvent> getEvents() {
+        return List.copyOf(events);
+    }
+
+    public synchronized void clear() {
+        events.clear();
+    }
+}
@@ -0,0 +1,67 @@
+package com.cbm.billing.repository;
+
+import com.cbm.billing.model.AccountImportRejection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * JDBC access used by the account import: the rejected rows report and the progress counters of an import.
+ */
+@Repository
+public class AccountImportJdbcRepository {
+
+    private static final RowMapper<AccountImportRejection> REJECTION_ROW_MAPPER = (rs, rowNum) -> AccountImportRejection.builder()
+            .lineNumber(rs.getLong("line_number"))
+            .reason(rs.getString("reason"))
+            .row(rs.getString("row_content"))
+            .build();
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public AccountImportJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Records the rejected rows of a chunk in a single JDBC batch.
+     * @param importId the id of the import
+     * @param rejections the rejected rows, with the line number in the file and the reason
+     */
+    public void insertRejections(Long importId, List<AccountImportRejection> rejections) {
+        List<Object[]> rows = rejections.stream()
+                .map(rejection -> new Object[]{importId, rejection.getLineNumber(), rejection.getReason(), rejection.getRow()})
+                .toList();
+        jdbcTemplate.batchUpdate("INSERT INTO billing.account_import_rejection" +
+                " (import_id, line_number, reason, row_content) VALUES (?, ?, ?, ?)", rows);
+    }
+
+    /**
+     * Reads a page of the rejected rows of an import in line order, with a keyset condition on the line number.
+     * @param importId the id of the import
+     * @param afterLineNumber the line number of the last rejection of the previous page, null for the first page
+     * @param limit the maximum number of rejections to return
+     * @return the rejections in ascending line order
+     */
+    public List<AccountImportRejection> findRejections(Long importId, Long afterLineNumber, int limit) {
+        return jdbcTemplate.query("SELECT line_number, reason, row_content FROM billing.account_import_rejection" +
+                        " WHERE import_id = ? AND line_number > ? ORDER BY line_number LIMIT ?",
+                REJECTION_ROW_MAPPER, importId, afterLineNumber == null ? 0 : afterLineNumber, limit);
+    }
+
+    /**
+     * Adds the outcome of a chunk to the persisted counters of the import. Called inside the chunk
+     * transaction, so the counters always match the accounts and rejections committed.
+     * @param importId the id of the import
+     * @param imported the number of accounts inserted
+     * @param rejected the number of rows rejected
+     * @param chunks the number of chunks completed
+     */
+    public void addProgress(Long importId, long imported, long rejected, long chunks) {
+        jdbcTemplate.update("UPDATE billing.account_import" +
+                " SET imported_accounts = imported_accounts + ?, rejected_rows = rejected_rows + ?," +
+                " chunks_completed = chunks_completed + ? WHERE id = ?", imported, rejected, chunks, importId);
+    }
+}
@@ -0,0 +1,26 @@
+package com.cbm.billing.repository;
+
+import com.cbm.billing.common.AccountImportStatus;
+import com.cbm.billing.entity.AccountImportEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface AccountImportRepository extends JpaRepository<AccountImportEntity, Long> {
+
+    /**
+     * Moves the imports with the given status to another one and sets their end.
+     * @return the number of imports updated
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE AccountImportEntity i SET i.status = :status, i.finishedAt = :finishedAt WHERE i.status = :previousStatus")
+    int updateStatus(@Param("previousStatus") AccountImportStatus previousStatus, @Param("status") AccountImportStatus status,
+                     @Param("finishedAt") LocalDateTime finishedAt);
+}
@@ -0,0 +1,103 @@
+package com.cbm.billing.repository;
+
+import com.cbm.billing.common.Money;
+import com.cbm.billing.dto.create.CreateAccountDTO;
+import com.cbm.billing.model.Account;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JDBC access to the accounts for the bulk paths, which never build entities.
+ */
+@Repository
+public class AccountJdbcRepository {
+    /**
+     * Columns of the rows passed to the export handlers, in this order.
+     */
+    public static final String EXPORT_COLUMNS =
+            "id, name, current_balance, bill_cycle_day, last_bill_date, status, created_at, updated_at";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate exportJdbcTemplate;
+
+    public AccountJdbcRepository(JdbcTemplate jdbcTemplate,
+                                 DataSource dataSource,
+                                 @Value("${billing.export.fetch-size:1000}") int exportFetchSize,
+                                 @Value("${billing.export.streaming:false}") boolean exportStreaming) {
+        this.jdbcTemplate = jdbcTemplate;
+        // Forward-only, read-only statements that fetch the rows in chunks rather than all at once. Connector/J
+        // streams the rows one by one for a fetch size of Integer.MIN_VALUE only, which leaves the other
+        // statements as they are; the connection runs nothing else until the rows are read
+        this.exportJdbcTemplate = new JdbcTemplate(dataSource);
+        this.exportJdbcTemplate.setFetchSize(exportStreaming ? Integer.MIN_VALUE : exportFetchSize);
+    }
+
+    /**
+     * Streams the accounts that match the given filters, with the same conditions as the account search,
+     * in id order. Every row is handed to the handler as it is read and nothing is kept.
+     * @param filters the search filters, the name is ignored in favour of the name condition
+     * @param nameCondition the SQL condition of the name search, null when no name is searched
+     * @param nameArgs the arguments of the name condition
+     * @param handler the handler of every row, reading the columns of {@link #EXPORT_COLUMNS}
+     */
+    public void streamAccounts(Account filters, String nameCondition, List<Object> nameArgs, RowCallbackHandler handler) {
+        StringBuilder sql = new StringBuilder("SELECT ").append(EXPORT_COLUMNS).append(" FROM billing.billing_account WHERE 1 = 1");
+        List<Object> args = new ArrayList<>();
+
+        if (nameCondition != null) {
+            sql.append(" AND ").append(nameCondition);
+            args.addAll(nameArgs);
+        }
+        if (filters.getStatus() != null) {
+            sql.append(" AND status = ?");
+            args.add(filters.getStatus().name());
+        }
+        if (filters.getBillCycleDay() != null) {
+            sql.append(" AND bill_cycle_day = ?");
+            args.add(filters.getBillCycleDay());
+        }
+        if (filters.getLastBillDate() != null) {
+            sql.append(" AND last_bill_date = ?");
+            args.add(Date.valueOf(filters.getLastBillDate()));
+        }
+        sql.append(" ORDER BY id");
+
+        exportJdbcTemplate.query(sql.toString(), handler, args.toArray());
+    }
+
+    /**
+     * Streams the id, status, bill cycle day and last bill date of every account, in id order, from a
+     * forward-only cursor. Every row is handed to the handler as it is read and nothing is kept.
+     * @param handler the handler of every row
+     */
+    public void streamSearchAttributes(RowCallbackHandler handler) {
+        exportJdbcTemplate.query("SELECT id, status, bill_cycle_day, last_bill_date FROM billing.billing_account ORDER BY id", handler);
+    }
+
+    /**
+     * Inserts the given accounts in a single JDBC batch, created today and never billed. The accounts take
+     * consecutive ids from the given first id, in list order.
+     * @param accounts the validated accounts to insert
+     * @param firstAccountId the first id of a block allocated for the accounts
+     */
+    public void insertAccounts(List<CreateAccountDTO> accounts, long firstAccountId) {
+        Date today = Date.valueOf(LocalDate.now());
+        List<Object[]> rows = new ArrayList<>(accounts.size());
+        long accountId = firstAccountId;
+        for (CreateAccountDTO account : accounts) {
+            rows.add(new Object[]{accountId++, account.getName(), Money.toDecimal(account.getCurrentBalance()),
+                    account.getBillCycleDay(), account.getStatus().name(), today, today});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO billing.billing_account" +
+                " (id, name, current_balance, bill_cycle_day, status, created_at, updated_at)" +
+                " VALUES (?, ?, ?, ?, ?, ?, ?)", rows);
+    }
+}
@@ -0,0 +1,142 @@
+package com.cbm.billing.repository;
+
+import com.cbm.billing.common.AccountNameTerms;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * JDBC access to the account name index: the trigram postings used by the substring search and the word
+ * postings used by the word search. The postings of a name are computed by {@link AccountNameTerms}.
+ */
+@Repository
+public class AccountNameIndexJdbcRepository {
+    // Bounds the number of posting counts run for a long searched text, a few trigrams are enough to find a rare one
+    private static final int MAX_COUNTED_TRIGRAMS = 16;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public AccountNameIndexJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Adds the postings of the given names, with one JDBC batch per posting table. Postings that already
+     * exist are skipped, so indexing a name twice is harmless.
+     * @param names the name by account id
+     */
+    public void insertPostings(Map<Long, String> names) {
+        List<Object[]> trigramRows = new ArrayList<>();
+        List<Object[]> tokenRows = new ArrayList<>();
+        names.forEach((accountId, name) -> {
+            AccountNameTerms.trigrams(name).forEach(trigram -> trigramRows.add(new Object[]{trigram, accountId}));
+            AccountNameTerms.tokens(name).forEach(token -> tokenRows.add(new Object[]{token, accountId}));
+        });
+
+        // IGNORE: a name indexed both by its creation and by a concurrent rebuild keeps one posting per term
+        if (!trigramRows.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT IGNORE INTO billing.account_name_trigram (trigram, account_id) VALUES (?, ?)", trigramRows);
+        }
+        if (!tokenRows.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT IGNORE INTO billing.account_name_token (token, account_id) VALUES (?, ?)", tokenRows);
+        }
+    }
+
+    /**
+     * Indexes the next chunk of accounts of a rebuild, using keyset pagination on the primary key. The
+     * postings of the id range of the chunk are replaced, so the chunk ends up indexed with the current
+     * names and the postings of accounts no longer in the table are dropped. Must run at READ COMMITTED,
+     * see below.
+     * @param afterId the last id of the previous chunk, 0 for the first chunk
+     * @param limit the maximum number of accounts to index
+     * @return the ids of the indexed accounts in ascending order
+     */
+    public List<Long> indexAccountsAfter(long afterId, int limit) {
+        List<Long> ids = jdbcTemplate.queryForList("SELECT id FROM billing.billing_account WHERE id > ? ORDER BY id LIMIT ?",
+                Long.class, afterId, limit);
+        if (ids.isEmpty()) {
+            return ids;
+        }
+
+        // A range on the account id index, an IN list of the ids is not always resolved with it. At READ COMMITTED
+        // the names are read with a snapshot taken after the delete, so an account whose postings the delete
+        // removed is indexed again by this chunk, and one committed later keeps the postings of its creation.
+        // Under REPEATABLE READ the names would come from the snapshot of the first select, which misses the
+        // accounts committed between it and the delete
+        long lastId = ids.get(ids.size() - 1);
+        jdbcTemplate.update("DELETE FROM billing.account_name_trigram WHERE account_id > ? AND account_id <= ?", afterId, lastId);
+        jdbcTemplate.update("DELETE FROM billing.account_name_token WHERE account_id > ? AND account_id <= ?", afterId, lastId);
+
+        Map<Long, String> names = new LinkedHashMap<>();
+        jdbcTemplate.query("SELECT id, name FROM billing.billing_account WHERE id > ? AND id <= ?",
+                (RowCallbackHandler) rs -> names.put(rs.getLong("id"), rs.getString("name")), afterId, lastId);
+        insertPostings(names);
+        return ids;
+    }
+
+    /**
+     * Tells whether the last rebuild of the index finished, since when every account has its postings.
+     * @return true if the index is complete, false before the first rebuild and while one runs
+     */
+    public boolean isIndexComplete() {
+        return jdbcTemplate.queryForList("SELECT complete FROM billing.account_name_index_state WHERE id = 1", Boolean.class)
+                .stream().findFirst().orElse(false);
+    }
+
+    /**
+     * Sets or clears the flag telling that every account has its postings.
+     * @param complete true at the end of a rebuild, false at its start
+     */
+    public void setIndexComplete(boolean complete) {
+        jdbcTemplate.update("UPDATE billing.account_name_index_state SET complete = ?, completed_at = ? WHERE id = 1",
+                complete, complete ? Timestamp.valueOf(LocalDateTime.now()) : null);
+    }
+
+    /**
+     * Finds the trigram of the searched text with the fewest postings, counting at most one more posting
+     * than the limit per trigram so that a count never reads a whole frequent trigram.
+     * @param trigrams the trigrams of the searched text
+     * @param maxPostings the number of postings above which a trigram is too frequent to be worth using
+     * @return the rarest trigram, or empty if every trigram has more postings than the limit
+     */
+    public Optional<String> findRarestTrigram(Collection<String> trigrams, int maxPostings) {
+        List<String> counted = trigrams.stream().limit(MAX_COUNTED_TRIGRAMS).toList();
+        if (counted.isEmpty()) {
+            return Optional.empty();
+        }
+
+        // One round trip for all the bounded counts
+        StringBuilder sql = new StringBuilder();
+        List<Object> args = new ArrayList<>();
+        for (int index = 0; index < counted.size(); index++) {
+            if (index > 0) {
+                sql.append(" UNION ALL ");
+            }
+            sql.append("SELECT ").append(index).append(" AS position, COUNT(*) AS postings FROM (SELECT 1 AS found")
+                    .append(" FROM billing.account_name_trigram WHERE trigram = ? LIMIT ?) t").append(index);
+            args.add(counted.get(index));
+            args.add(maxPostings + 1);
+        }
+
+        int[] rarest = {-1};
+        long[] fewest = {Long.MAX_VALUE};
+        jdbcTemplate.query(sql.toString(), (RowCallbackHandler) rs -> {
+            long postings = rs.getLong("postings");
+            if (postings < fewest[0]) {
+                fewest[0] = postings;
+                rarest[0] = rs.getInt("position");
+            }
+        }, args.toArray());
+
+        return fewest[0] <= maxPostings ? Optional.of(counted.get(rarest[0])) : Optional.empty();
+    }
+}
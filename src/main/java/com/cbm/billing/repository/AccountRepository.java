@@ -1,9 +1,78 @@
 package com.cbm.billing.repository;
 
+import com.cbm.billing.common.AccountStatus;
 import com.cbm.billing.entity.AccountEntity;
+import com.cbm.billing.model.Account;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface AccountRepository extends JpaRepository<AccountEntity, Long> {
+
+    /**
+     * Loads and locks the given accounts with a single query. Rows are locked in id order so that
+     * concurrent batches touching the same accounts cannot deadlock.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<AccountEntity> findByIdInOrderById(Collection<Long> ids);
+
+    /**
+     * Loads and locks a single account until the end of the transaction.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM AccountEntity a WHERE a.id = :id")
+    Optional<AccountEntity> findByIdForUpdate(@Param("id") Long id);
+
+    /**
+     * Charges an account in a single statement, only if it has the given status and its balance covers the amount.
+     * Native SQL so the arithmetic runs on the DECIMAL column: JPQL arithmetic on the converted
+     * balance would be typed as the attribute's long and truncate the decimal amount.
+     * @param amount the decimal amount, see {@link com.cbm.billing.common.Money#toDecimal(long)}
+     * @return 1 if the account was charged, 0 if it does not exist, has another status or its balance is too low
+     */
+    @Modifying
+    @Query(value = "UPDATE billing.billing_account SET current_balance = current_balance - :amount, updated_at = :today," +
+            " version = version + 1" +
+            " WHERE id = :id AND status = :status AND current_balance >= :amount", nativeQuery = true)
+    int chargeIfBalanceCovers(@Param("id") Long id, @Param("amount") BigDecimal amount,
+                              @Param("status") String status, @Param("today") LocalDate today);
+
+    /**
+     * Credits an account in a single statement, only if it has the given status.
+     * @param amount the decimal amount, see {@link com.cbm.billing.common.Money#toDecimal(long)}
+     * @return 1 if the account was credited, 0 if it does not exist or has another status
+     */
+    @Modifying
+    @Query(value = "UPDATE billing.billing_account SET current_balance = current_balance + :amount, updated_at = :today," +
+            " version = version + 1" +
+            " WHERE id = :id AND status = :status", nativeQuery = true)
+    int creditIfStatus(@Param("id") Long id, @Param("amount") BigDecimal amount,
+                       @Param("status") String status, @Param("today") LocalDate today);
+
+    /**
+     * Reads an account straight into the account model, in a read-only transaction. The columns are
+     * selected into the constructor of {@link Account}, so no entity is loaded into the persistence context.
+     */
+    @Transactional(readOnly = true)
+    @Query("SELECT new com.cbm.billing.model.Account(a.id, a.name, a.currentBalance, a.billCycleDay, a.lastBillDate," +
+            " a.status, a.createdAt, a.updatedAt) FROM AccountEntity a WHERE a.id = :id")
+    Optional<Account> findAccountById(@Param("id") Long id);
+
+    @Query("SELECT a.currentBalance FROM AccountEntity a WHERE a.id = :id")
+    Optional<Long> findCurrentBalanceById(@Param("id") Long id);
+
+    @Query("SELECT a.status FROM AccountEntity a WHERE a.id = :id")
+    Optional<AccountStatus> findStatusById(@Param("id") Long id);
 }
@@ -0,0 +1,150 @@
+package com.cbm.billing.repository;
+
+import com.cbm.billing.common.AccountStatus;
+import com.cbm.billing.common.BillStatus;
+import com.cbm.billing.common.Money;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Set based JDBC access used by the bill run engine. Every statement works on a whole chunk of
+ * accounts so that a chunk costs a constant number of round trips instead of four per account.
+ */
+@Repository
+public class BillRunJdbcRepository {
+
+    private static final String DUE_ACCOUNTS_PREDICATE =
+            " FROM billing.billing_account" +
+            " WHERE status = :status" +
+            " AND bill_cycle_day BETWEEN :fromDay AND :toDay" +
+            " AND (last_bill_date IS NULL OR last_bill_date < :runDate)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    public BillRunJdbcRepository(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedParameterJdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+    }
+
+    /**
+     * Counts the ACTIVE accounts that are due for billing and were not billed yet on the run date.
+     * @param runDate the date of the bill run
+     * @param fromDay the first bill cycle day that is due
+     * @param toDay the last bill cycle day that is due
+     * @return the number of accounts pending to bill
+     */
+    public long countDueAccounts(LocalDate runDate, int fromDay, int toDay) {
+        Long count = namedParameterJdbcTemplate.queryForObject("SELECT COUNT(*)" + DUE_ACCOUNTS_PREDICATE,
+                dueAccountsParameters(runDate, fromDay, toDay), Long.class);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Reads the next page of due account ids using keyset pagination on the primary key.
+     * @param runDate the date of the bill run
+     * @param fromDay the first bill cycle day that is due
+     * @param toDay the last bill cycle day that is due
+     * @param afterId the last id of the previous page, 0 for the first page
+     * @param limit the maximum number of ids to return
+     * @return the ids in ascending order
+     */
+    public List<Long> findDueAccountIds(LocalDate runDate, int fromDay, int toDay, long afterId, int limit) {
+        MapSqlParameterSource parameters = dueAccountsParameters(runDate, fromDay, toDay)
+                .addValue("afterId", afterId)
+                .addValue("limit", limit);
+        return namedParameterJdbcTemplate.queryForList("SELECT id" + DUE_ACCOUNTS_PREDICATE +
+                " AND id > :afterId ORDER BY id LIMIT :limit", parameters, Long.class);
+    }
+
+    /**
+     * Locks the given accounts and returns the current balance of the ones that are still pending to bill.
+     * Accounts terminated or billed by someone else since the chunk was planned are left out.
+     * @param accountIds the ids of the chunk
+     * @param runDate the date of the bill run
+     * @return the current balance in cents by account id, in id order
+     */
+    public Map<Long, Long> lockPendingBalances(List<Long> accountIds, LocalDate runDate) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("ids", accountIds)
+                .addValue("status", AccountStatus.ACTIVE.name())
+                .addValue("runDate", Date.valueOf(runDate));
+        Map<Long, Long> balances = new LinkedHashMap<>();
+        namedParameterJdbcTemplate.query("SELECT id, current_balance FROM billing.billing_account" +
+                        " WHERE id IN (:ids) AND status = :status" +
+                        " AND (last_bill_date IS NULL OR last_bill_date < :runDate)" +
+                        " ORDER BY id FOR UPDATE",
+                parameters,
+                (RowCallbackHandler) rs -> balances.put(rs.getLong("id"), Money.toCents(rs.getBigDecimal("current_balance"))));
+        return balances;
+    }
+
+    /**
+     * Inserts one NOT_SETTLED bill per account in a single JDBC batch. The bills take consecutive ids
+     * from the given first id, in the iteration order of the amounts.
+     * @param billAmounts the bill amount in cents by account id
+     * @param runDate the generation date of the bills
+     * @param firstBillId the first id of a block allocated for the bills
+     */
+    public void insertBills(Map<Long, Long> billAmounts, LocalDate runDate, long firstBillId) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        Date generationDate = Date.valueOf(runDate);
+        List<Object[]> rows = new ArrayList<>(billAmounts.size());
+        long billId = firstBillId;
+        for (Map.Entry<Long, Long> entry : billAmounts.entrySet()) {
+            rows.add(new Object[]{billId++, entry.getKey(), generationDate, Money.toDecimal(entry.getValue()), BillStatus.NOT_SETTLED.name(), now, now});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO billing.bill" +
+                " (id, billing_account_id, generation_date, amount, status, created_at, updated_at)" +
+                " VALUES (?, ?, ?, ?, ?, ?, ?)", rows);
+    }
+
+    /**
+     * Writes the new balance and last bill date of every billed account in a single JDBC batch.
+     * @param newBalances the new balance in cents by account id
+     * @param runDate the date of the bill run
+     */
+    public void updateBilledAccounts(Map<Long, Long> newBalances, LocalDate runDate) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        Date lastBillDate = Date.valueOf(runDate);
+        List<Object[]> rows = newBalances.entrySet().stream()
+                .map(entry -> new Object[]{Money.toDecimal(entry.getValue()), lastBillDate, now, entry.getKey()})
+                .toList();
+        jdbcTemplate.batchUpdate("UPDATE billing.billing_account" +
+                " SET current_balance = ?, last_bill_date = ?, updated_at = ?, version = version + 1 WHERE id = ?", rows);
+    }
+
+    /**
+     * Adds the outcome of a chunk to the persisted counters of the run. Called inside the chunk
+     * transaction, so the counters are the checkpoint of the run.
+     * @param runId the id of the bill run
+     * @param processed the number of accounts billed
+     * @param failed the number of accounts that could not be billed
+     * @param chunks the number of chunks completed
+     */
+    public void addProgress(Long runId, long processed, long failed, long chunks) {
+        jdbcTemplate.update("UPDATE billing.bill_run" +
+                " SET processed_accounts = processed_accounts + ?, failed_accounts = failed_accounts + ?," +
+                " chunks_completed = chunks_completed + ? WHERE id = ?", processed, failed, chunks, runId);
+    }
+
+    private MapSqlParameterSource dueAccountsParameters(LocalDate runDate, int fromDay, int toDay) {
+        return new MapSqlParameterSource()
+                .addValue("status", AccountStatus.ACTIVE.name())
+                .addValue("fromDay", fromDay)
+                .addValue("toDay", toDay)
+                .addValue("runDate", Date.valueOf(runDate));
+    }
+}
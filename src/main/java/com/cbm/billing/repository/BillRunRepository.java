@@ -0,0 +1,14 @@
+package com.cbm.billing.repository;
+
+import com.cbm.billing.entity.BillRunEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+@Repository
+public interface BillRunRepository extends JpaRepository<BillRunEntity, Long> {
+
+    Optional<BillRunEntity> findFirstByRunDateOrderByIdDesc(LocalDate runDate);
+}
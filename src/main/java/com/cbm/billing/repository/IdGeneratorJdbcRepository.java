@@ -0,0 +1,43 @@
+package com.cbm.billing.repository;
+
+import com.cbm.billing.common.IdGeneratorConstants;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * JDBC access to the id generator table shared with the Hibernate table generators of the entities.
+ */
+@Repository
+public class IdGeneratorJdbcRepository {
+
+    private static final String GENERATOR_TABLE = IdGeneratorConstants.CATALOG + "." + IdGeneratorConstants.TABLE;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public IdGeneratorJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Takes the next block of ids of a generator. The generator row stays locked until the calling
+     * transaction ends, so the transaction should do nothing else.
+     * @param name the name of the generator
+     * @param size the number of ids to take
+     * @return the first id of the block, which covers [first, first + size)
+     * @throws IllegalStateException if the generator row does not exist
+     */
+    public long allocateBlock(String name, int size) {
+        List<Long> lastValue = jdbcTemplate.queryForList("SELECT " + IdGeneratorConstants.NEXT_VALUE_COLUMN +
+                " FROM " + GENERATOR_TABLE + " WHERE " + IdGeneratorConstants.NAME_COLUMN + " = ? FOR UPDATE", Long.class, name);
+        if (lastValue.isEmpty()) {
+            throw new IllegalStateException("Id generator " + name + " is not initialized");
+        }
+
+        long last = lastValue.get(0);
+        jdbcTemplate.update("UPDATE " + GENERATOR_TABLE + " SET " + IdGeneratorConstants.NEXT_VALUE_COLUMN + " = ?" +
+                " WHERE " + IdGeneratorConstants.NAME_COLUMN + " = ?", last + size, name);
+        return last + 1;
+    }
+}
@@ -0,0 +1,102 @@
+package com.cbm.billing.repository;
+
+import com.cbm.billing.model.IdempotencyKey;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * JDBC access to the idempotency keys. Every statement commits on its own: a key is claimed before the
+ * request runs and completed or released after it, outside the transactions of the request.
+ */
+@Repository
+public class IdempotencyKeyJdbcRepository {
+
+    private static final RowMapper<IdempotencyKey> ROW_MAPPER = (rs, rowNum) -> {
+        // Checked right after the read, wasNull reports on the last column read
+        int responseStatus = rs.getInt("response_status");
+        boolean running = rs.wasNull();
+        return IdempotencyKey.builder()
+                .key(rs.getString("idempotency_key"))
+                .requestHash(rs.getBytes("request_hash"))
+                .responseStatus(running ? null : responseStatus)
+                .contentType(rs.getString("content_type"))
+                .responseBody(rs.getBytes("response_body"))
+                .inDoubt(rs.getBoolean("in_doubt"))
+                .expiresAt(rs.getTimestamp("expires_at").toInstant())
+                .build();
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public IdempotencyKeyJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Claims a key for a request about to run.
+     * @param key the idempotency key
+     * @param requestHash the hash of the request
+     * @param expiresAt the time the key can be used again for another request
+     * @return true if the key was claimed, false if a row already holds it
+     */
+    public boolean claim(String key, byte[] requestHash, Instant expiresAt) {
+        return jdbcTemplate.update("INSERT IGNORE INTO billing.idempotency_key (idempotency_key, request_hash, expires_at)" +
+                " VALUES (?, ?, ?)", key, requestHash, Timestamp.from(expiresAt)) == 1;
+    }
+
+    public Optional<IdempotencyKey> findByKey(String key) {
+        return jdbcTemplate.query("SELECT idempotency_key, request_hash, response_status, content_type, response_body, in_doubt, expires_at" +
+                " FROM billing.idempotency_key WHERE idempotency_key = ?", ROW_MAPPER, key).stream().findFirst();
+    }
+
+    /**
+     * Stores the response of a claimed key.
+     * @param idempotencyKey the key with its response
+     */
+    public void complete(IdempotencyKey idempotencyKey) {
+        jdbcTemplate.update("UPDATE billing.idempotency_key SET response_status = ?, content_type = ?, response_body = ?" +
+                        " WHERE idempotency_key = ?", idempotencyKey.getResponseStatus(), idempotencyKey.getContentType(),
+                idempotencyKey.getResponseBody(), idempotencyKey.getKey());
+    }
+
+    /**
+     * Marks a claimed key whose request failed after it may have committed, so a retry neither runs it again
+     * nor waits for it.
+     * @param key the idempotency key
+     */
+    public void markInDoubt(String key) {
+        jdbcTemplate.update("UPDATE billing.idempotency_key SET in_doubt = TRUE WHERE idempotency_key = ? AND response_status IS NULL", key);
+    }
+
+    /**
+     * Deletes a claimed key whose request did not complete, so a retry runs it again.
+     * @param key the idempotency key
+     */
+    public void release(String key) {
+        jdbcTemplate.update("DELETE FROM billing.idempotency_key WHERE idempotency_key = ? AND response_status IS NULL", key);
+    }
+
+    /**
+     * Deletes a key if it expired.
+     * @param key the idempotency key
+     * @param now the current time
+     */
+    public void deleteIfExpired(String key, Instant now) {
+        jdbcTemplate.update("DELETE FROM billing.idempotency_key WHERE idempotency_key = ? AND expires_at < ?", key, Timestamp.from(now));
+    }
+
+    /**
+     * Deletes a chunk of expired keys.
+     * @param now the current time
+     * @param limit the maximum number of keys to delete
+     * @return the number of keys deleted
+     */
+    public int deleteExpired(Instant now, int limit) {
+        return jdbcTemplate.update("DELETE FROM billing.idempotency_key WHERE expires_at < ? LIMIT ?", Timestamp.from(now), limit);
+    }
+}
@@ -0,0 +1,95 @@
+package com.cbm.billing.repository;
+
+import com.cbm.billing.model.OutboxEvent;
+import com.cbm.billing.model.OutboxRelayState;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * JDBC access to the event outbox. Events are inserted by the transactions that change the state
+ * and deleted by the relay once the sink accepted them.
+ */
+@Repository
+public class OutboxJdbcRepository {
+
+    private static final RowMapper<OutboxEvent> EVENT_ROW_MAPPER = (rs, rowNum) -> OutboxEvent.builder()
+            .id(rs.getLong("id"))
+            .accountId(rs.getLong("account_id"))
+            .eventType(rs.getString("event_type"))
+            .payload(rs.getString("payload"))
+            .createdAt(rs.getTimestamp("created_at").toLocalDateTime())
+            .build();
+
+    private static final RowMapper<OutboxRelayState> RELAY_STATE_ROW_MAPPER = (rs, rowNum) -> {
+        Timestamp gapSeenAt = rs.getTimestamp("gap_seen_at");
+        return OutboxRelayState.builder()
+                .nextId(rs.getLong("next_id"))
+                .gapId(rs.getLong("gap_id"))
+                .gapSeenAt(gapSeenAt == null ? null : gapSeenAt.toLocalDateTime())
+                .build();
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    public OutboxJdbcRepository(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedParameterJdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+    }
+
+    /**
+     * Inserts the given events in a single JDBC batch.
+     * @param events the events to insert, in the order they happened
+     */
+    public void insertEvents(List<OutboxEvent> events) {
+        List<Object[]> rows = events.stream()
+                .map(event -> new Object[]{event.getAccountId(), event.getEventType(), event.getPayload(), Timestamp.valueOf(event.getCreatedAt())})
+                .toList();
+        jdbcTemplate.batchUpdate("INSERT INTO billing.event_outbox (account_id, event_type, payload, created_at)" +
+                " VALUES (?, ?, ?, ?)", rows);
+    }
+
+    /**
+     * Reads the oldest events still in the outbox.
+     * @param limit the maximum number of events to return
+     * @return the events in id order
+     */
+    public List<OutboxEvent> findOldest(int limit) {
+        return jdbcTemplate.query("SELECT id, account_id, event_type, payload, created_at FROM billing.event_outbox" +
+                " ORDER BY id LIMIT ?", EVENT_ROW_MAPPER, limit);
+    }
+
+    /**
+     * Deletes the given events once they were published.
+     * @param ids the ids of the published events
+     */
+    public void deleteByIds(List<Long> ids) {
+        namedParameterJdbcTemplate.update("DELETE FROM billing.event_outbox WHERE id IN (:ids)",
+                new MapSqlParameterSource("ids", ids));
+    }
+
+    /**
+     * Locks the position of the relay until the end of the current transaction, unless another relay holds it.
+     * @return the position of the relay, or empty when another relay holds the lock
+     */
+    public Optional<OutboxRelayState> lockRelayState() {
+        return jdbcTemplate.query("SELECT next_id, gap_id, gap_seen_at FROM billing.outbox_relay WHERE id = 1" +
+                " FOR UPDATE SKIP LOCKED", RELAY_STATE_ROW_MAPPER).stream().findFirst();
+    }
+
+    /**
+     * Saves the position of the relay, locked by the current transaction.
+     * @param state the position of the relay
+     */
+    public void saveRelayState(OutboxRelayState state) {
+        jdbcTemplate.update("UPDATE billing.outbox_relay SET next_id = ?, gap_id = ?, gap_seen_at = ? WHERE id = 1",
+                state.getNextId(), state.getGapId(), state.getGapSeenAt() == null ? null : Timestamp.valueOf(state.getGapSeenAt()));
+    }
+}
@@ -0,0 +1,55 @@
+package com.cbm.billing.repository;
+
+import com.cbm.billing.common.AccountStatus;
+import com.cbm.billing.common.BillStatus;
+import com.cbm.billing.common.Money;
+import com.cbm.billing.model.AccountAggregate;
+import com.cbm.billing.model.BillAggregate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * JDBC access to the totals of the accounts and bills, computed by the database in one pass over each table.
+ */
+@Repository
+public class ReceivablesJdbcRepository {
+    private static final RowMapper<AccountAggregate> ACCOUNT_AGGREGATE_ROW_MAPPER = (rs, rowNum) -> AccountAggregate.builder()
+            .status(AccountStatus.valueOf(rs.getString("status")))
+            .billCycleDay(rs.getInt("bill_cycle_day"))
+            .accounts(rs.getLong("accounts"))
+            .balance(Money.toCents(rs.getBigDecimal("balance")))
+            .build();
+
+    private static final RowMapper<BillAggregate> BILL_AGGREGATE_ROW_MAPPER = (rs, rowNum) -> BillAggregate.builder()
+            .bills(rs.getLong("bills"))
+            .amount(Money.toCents(rs.getBigDecimal("amount")))
+            .build();
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ReceivablesJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Counts the accounts and sums their balances by status and bill cycle day.
+     * @return one aggregate per status and bill cycle day with at least one account
+     */
+    public List<AccountAggregate> aggregateAccounts() {
+        return jdbcTemplate.query("SELECT status, bill_cycle_day, COUNT(*) AS accounts, SUM(current_balance) AS balance" +
+                " FROM billing.billing_account GROUP BY status, bill_cycle_day", ACCOUNT_AGGREGATE_ROW_MAPPER);
+    }
+
+    /**
+     * Counts the bills of a status and sums their amounts.
+     * @param status the status of the bills
+     * @return the aggregate of the bills, zero when there is none
+     */
+    public BillAggregate aggregateBills(BillStatus status) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) AS bills, COALESCE(SUM(amount), 0) AS amount" +
+                " FROM billing.bill WHERE status = ?", BILL_AGGREGATE_ROW_MAPPER, status.name());
+    }
+}
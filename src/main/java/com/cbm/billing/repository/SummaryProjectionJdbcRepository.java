@@ -0,0 +1,192 @@
+package com.cbm.billing.repository;
+
+import com.cbm.billing.common.SummarySource;
+import com.cbm.billing.model.SummaryChange;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * JDBC access used by the summary projector: the change queue written by the transactions that change
+ * accounts and bills, the batched upserts into the billing_summary schema and the projector checkpoints.
+ * The projections copy the current state of the source rows, so projecting a row twice is harmless.
+ */
+@Repository
+public class SummaryProjectionJdbcRepository {
+    private static final String LEASE_CHECKPOINT = "lease";
+
+    private static final RowMapper<SummaryChange> CHANGE_ROW_MAPPER = (rs, rowNum) -> SummaryChange.builder()
+            .id(rs.getLong("id"))
+            .source(SummarySource.valueOf(rs.getString("source")))
+            .sourceId(rs.getLong("source_id"))
+            .build();
+
+    private static final String ACCOUNT_SELECT =
+            "SELECT id, name, current_balance, last_bill_date, status FROM billing.billing_account";
+
+    private static final RowMapper<Object[]> ACCOUNT_ROW_MAPPER = (rs, rowNum) -> new Object[]{
+            rs.getLong("id"), rs.getString("name"), rs.getBigDecimal("current_balance"),
+            rs.getDate("last_bill_date"), rs.getString("status")};
+
+    private static final String BILL_SELECT =
+            "SELECT id, billing_account_id, generation_date, amount, status FROM billing.bill";
+
+    private static final RowMapper<Object[]> BILL_ROW_MAPPER = (rs, rowNum) -> new Object[]{
+            rs.getLong("id"), rs.getLong("billing_account_id"), rs.getDate("generation_date"),
+            rs.getBigDecimal("amount"), rs.getString("status")};
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    public SummaryProjectionJdbcRepository(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedParameterJdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+    }
+
+    /**
+     * Queues the given changes in a single JDBC batch.
+     * @param changes the changed accounts and bills
+     */
+    public void insertChanges(List<SummaryChange> changes) {
+        List<Object[]> rows = changes.stream()
+                .map(change -> new Object[]{change.getSource().name(), change.getSourceId()})
+                .toList();
+        jdbcTemplate.batchUpdate("INSERT INTO billing.summary_change (source, source_id) VALUES (?, ?)", rows);
+    }
+
+    /**
+     * Reads the oldest queued changes.
+     * @param limit the maximum number of changes to return
+     * @return the changes in id order
+     */
+    public List<SummaryChange> findOldestChanges(int limit) {
+        return jdbcTemplate.query("SELECT id, source, source_id FROM billing.summary_change ORDER BY id LIMIT ?",
+                CHANGE_ROW_MAPPER, limit);
+    }
+
+    /**
+     * Counts the changes waiting to be projected.
+     * @return the number of queued changes
+     */
+    public long countChanges() {
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM billing.summary_change", Long.class);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Deletes the given changes once they were projected. Deleted by id rather than by range, so a change
+     * with a lower id whose transaction commits later is never lost.
+     * @param ids the ids of the projected changes
+     */
+    public void deleteChanges(List<Long> ids) {
+        namedParameterJdbcTemplate.update("DELETE FROM billing.summary_change WHERE id IN (:ids)",
+                new MapSqlParameterSource("ids", ids));
+    }
+
+    /**
+     * Copies the current state of the given accounts into the account summary table.
+     * @param accountIds the ids of the accounts to project
+     * @return the number of accounts found and projected
+     */
+    public int projectAccounts(Collection<Long> accountIds) {
+        return upsertAccountSummaries(namedParameterJdbcTemplate.query(ACCOUNT_SELECT + " WHERE id IN (:ids) ORDER BY id",
+                new MapSqlParameterSource("ids", accountIds), ACCOUNT_ROW_MAPPER)).size();
+    }
+
+    /**
+     * Copies the next chunk of accounts of a rebuild, using keyset pagination on the primary key.
+     * @param afterId the last id of the previous chunk, 0 for the first chunk
+     * @param limit the maximum number of accounts to project
+     * @return the ids of the projected accounts in ascending order
+     */
+    public List<Long> projectAccountsAfter(long afterId, int limit) {
+        return upsertAccountSummaries(jdbcTemplate.query(ACCOUNT_SELECT + " WHERE id > ? ORDER BY id LIMIT ?",
+                ACCOUNT_ROW_MAPPER, afterId, limit));
+    }
+
+    /**
+     * Copies the current state of the given bills into the bill summary table.
+     * @param billIds the ids of the bills to project
+     * @return the number of bills found and projected
+     */
+    public int projectBills(Collection<Long> billIds) {
+        return upsertBillSummaries(namedParameterJdbcTemplate.query(BILL_SELECT + " WHERE id IN (:ids) ORDER BY id",
+                new MapSqlParameterSource("ids", billIds), BILL_ROW_MAPPER)).size();
+    }
+
+    /**
+     * Copies the next chunk of bills of a rebuild, using keyset pagination on the primary key.
+     * @param afterId the last id of the previous chunk, 0 for the first chunk
+     * @param limit the maximum number of bills to project
+     * @return the ids of the projected bills in ascending order
+     */
+    public List<Long> projectBillsAfter(long afterId, int limit) {
+        return upsertBillSummaries(jdbcTemplate.query(BILL_SELECT + " WHERE id > ? ORDER BY id LIMIT ?",
+                BILL_ROW_MAPPER, afterId, limit));
+    }
+
+    /**
+     * Locks the lease row of the projector until the end of the current transaction, so the batches and
+     * rebuild chunks of all the instances run one at a time.
+     * @param wait whether to wait for the projector holding the lease, rather than giving up at once
+     * @return true if the lease is held, false if another projector holds it or the lease row is missing
+     */
+    public boolean lockLease(boolean wait) {
+        return !jdbcTemplate.queryForList("SELECT position FROM billing_summary.projector_checkpoint WHERE name = ?" +
+                " FOR UPDATE" + (wait ? "" : " SKIP LOCKED"), Long.class, LEASE_CHECKPOINT).isEmpty();
+    }
+
+    /**
+     * Reads the position stored in a checkpoint.
+     * @param name the name of the checkpoint
+     * @return the position, or empty if the checkpoint does not exist
+     */
+    public Optional<Long> findCheckpoint(String name) {
+        return jdbcTemplate.queryForList("SELECT position FROM billing_summary.projector_checkpoint WHERE name = ?",
+                Long.class, name).stream().findFirst();
+    }
+
+    /**
+     * Creates or moves a checkpoint.
+     * @param name the name of the checkpoint
+     * @param position the new position
+     */
+    public void saveCheckpoint(String name, long position) {
+        jdbcTemplate.update("INSERT INTO billing_summary.projector_checkpoint (name, position, updated_at) VALUES (?, ?, ?)" +
+                " ON DUPLICATE KEY UPDATE position = VALUES(position), updated_at = VALUES(updated_at)",
+                name, position, Timestamp.valueOf(LocalDateTime.now()));
+    }
+
+    /**
+     * Removes a checkpoint.
+     * @param name the name of the checkpoint
+     */
+    public void deleteCheckpoint(String name) {
+        jdbcTemplate.update("DELETE FROM billing_summary.projector_checkpoint WHERE name = ?", name);
+    }
+
+    // The source rows are read with a plain consistent read and written with a separate batch, because an
+    // INSERT ... SELECT would take shared locks on them and block the charges and credits of the accounts
+    private List<Long> upsertAccountSummaries(List<Object[]> rows) {
+        jdbcTemplate.batchUpdate("INSERT INTO billing_summary.billing_account_summary" +
+                " (id, name, current_balance, last_bill_date, status) VALUES (?, ?, ?, ?, ?)" +
+                " ON DUPLICATE KEY UPDATE name = VALUES(name), current_balance = VALUES(current_balance)," +
+                " last_bill_date = VALUES(last_bill_date), status = VALUES(status)", rows);
+        return rows.stream().map(row -> (Long) row[0]).toList();
+    }
+
+    private List<Long> upsertBillSummaries(List<Object[]> rows) {
+        jdbcTemplate.batchUpdate("INSERT INTO billing_summary.bill_summary" +
+                " (id, billing_account_id, generation_date, amount, status) VALUES (?, ?, ?, ?, ?)" +
+                " ON DUPLICATE KEY UPDATE amount = VALUES(amount), status = VALUES(status)", rows);
+        return rows.stream().map(row -> (Long) row[0]).toList();
+    }
+}
@@ -0,0 +1,71 @@
+package com.cbm.billing.repository;
+
+import com.cbm.billing.common.Money;
+import com.cbm.billing.common.TransactionType;
+import com.cbm.billing.dto.event.TransactionDetailsEvent;
+import com.cbm.billing.model.TransactionLedgerEntry;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * JDBC access to the append-only transaction ledger. Entries are only ever inserted.
+ */
+@Repository
+public class TransactionLedgerJdbcRepository {
+
+    private static final RowMapper<TransactionLedgerEntry> ENTRY_ROW_MAPPER = (rs, rowNum) -> TransactionLedgerEntry.builder()
+            .id(rs.getLong("id"))
+            .accountId(rs.getLong("account_id"))
+            .transactionType(TransactionType.valueOf(rs.getString("transaction_type")))
+            .previousBalance(Money.toCents(rs.getBigDecimal("previous_balance")))
+            .transactionAmount(Money.toCents(rs.getBigDecimal("amount")))
+            .currentBalance(Money.toCents(rs.getBigDecimal("current_balance")))
+            .transactionDate(rs.getDate("transaction_date").toLocalDate())
+            .createdAt(rs.getTimestamp("created_at").toLocalDateTime())
+            .build();
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public TransactionLedgerJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Appends the given transactions in a single JDBC batch.
+     * @param transactions the transactions to append, in the order they were applied
+     */
+    public void insertEntries(List<TransactionDetailsEvent> transactions) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = transactions.stream()
+                .map(transaction -> new Object[]{transaction.getAccountId(), transaction.getTransactionType().name(),
+                        Money.toDecimal(transaction.getTransactionAmount()), Money.toDecimal(transaction.getPreviousBalance()),
+                        Money.toDecimal(transaction.getCurrentBalance()), Date.valueOf(transaction.getTransactionDate()), now})
+                .toList();
+        jdbcTemplate.batchUpdate("INSERT INTO billing.transaction_ledger" +
+                " (account_id, transaction_type, amount, previous_balance, current_balance, transaction_date, created_at)" +
+                " VALUES (?, ?, ?, ?, ?, ?, ?)", rows);
+    }
+
+    /**
+     * Reads a page of the history of an account, newest first, with a keyset condition on the
+     * (account_id, id) index.
+     * @param accountId the id of the account
+     * @param beforeId the id of the last entry of the previous page, null for the first page
+     * @param limit the maximum number of entries to return
+     * @return the entries in descending id order
+     */
+    public List<TransactionLedgerEntry> findByAccountId(Long accountId, Long beforeId, int limit) {
+        if (beforeId == null) {
+            return jdbcTemplate.query("SELECT * FROM billing.transaction_ledger" +
+                    " WHERE account_id = ? ORDER BY id DESC LIMIT ?", ENTRY_ROW_MAPPER, accountId, limit);
+        }
+        return jdbcTemplate.query("SELECT * FROM billing.transaction_ledger" +
+                " WHERE account_id = ? AND id < ? ORDER BY id DESC LIMIT ?", ENTRY_ROW_MAPPER, accountId, beforeId, limit);
+    }
+}
@@ -0,0 +1,18 @@
+package com.cbm.billing.service;
+
+import com.cbm.billing.common.AccountFileFormat;
+import com.cbm.billing.dto.create.CreateAccountImportResponse;
+import com.cbm.billing.dto.query.QueryAccountImportRejectionsResponse;
+import com.cbm.billing.dto.query.QueryAccountImportResponse;
+import com.cbm.billing.exception.AccountImportNotFoundException;
+
+import java.io.InputStream;
+
+public interface IAccountImportService {
+
+    public CreateAccountImportResponse startImport(AccountFileFormat format, InputStream inputStream);
+
+    public QueryAccountImportResponse findImportById(Long importId) throws AccountImportNotFoundException;
+
+    public QueryAccountImportRejectionsResponse findRejections(Long importId, Long cursor, int size) throws AccountImportNotFoundException;
+}
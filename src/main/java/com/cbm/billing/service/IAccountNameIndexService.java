@@ -0,0 +1,11 @@
+package com.cbm.billing.service;
+
+import com.cbm.billing.dto.query.AccountNameIndexStatusResponse;
+import com.cbm.billing.exception.ForbiddenOperationException;
+
+public interface IAccountNameIndexService {
+
+    public AccountNameIndexStatusResponse startRebuild() throws ForbiddenOperationException;
+
+    public AccountNameIndexStatusResponse indexStatus();
+}
@@ -1,8 +1,11 @@
 package com.cbm.billing.service;
 
+import com.cbm.billing.common.AccountFileFormat;
 import com.cbm.billing.dto.create.CreateAccountDTO;
 import com.cbm.billing.dto.create.CreateAccountResponse;
+import com.cbm.billing.dto.query.CacheStatsResponse;
 import com.cbm.billing.dto.query.QueryAccountResponse;
+import com.cbm.billing.dto.query.QueryTransactionHistoryResponse;
 import com.cbm.billing.dto.query.SearchAccountDTO;
 import com.cbm.billing.dto.query.SearchAccountResponse;
 import com.cbm.billing.dto.update.*;
@@ -10,6 +13,9 @@ import com.cbm.billing.exception.AccountNotFoundException;
 import com.cbm.billing.exception.ForbiddenOperationException;
 import com.cbm.billing.exception.ForbiddenTransactionExeption;
 
+import java.io.IOException;
+import java.io.OutputStream;
+
 public interface IAccountService {
 
     public CreateAccountResponse createAccount(CreateAccountDTO createAccountDTO);
@@ -18,11 +24,19 @@ public interface IAccountService {
 
     public TransactionResponse chargeOnAccount(Long accountId, TransactionAmountDTO amount) throws AccountNotFoundException, ForbiddenTransactionExeption;
 
-    public TransactionResponse creditOnAccount(Long accountId, TransactionAmountDTO amount) throws AccountNotFoundException;
+    public TransactionResponse creditOnAccount(Long accountId, TransactionAmountDTO amount) throws AccountNotFoundException, ForbiddenTransactionExeption;
+
+    public BatchTransactionResponse batchTransactions(BatchTransactionDTO batchTransactionDTO);
 
     public QueryAccountResponse findAccountById(Long accountId) throws AccountNotFoundException;
 
+    public QueryTransactionHistoryResponse findTransactionHistory(Long accountId, Long cursor, int size) throws AccountNotFoundException;
+
+    public CacheStatsResponse accountCacheStats();
+
     public SearchAccountResponse searchAccount(int page, int size, String sort, SearchAccountDTO filters);
 
+    public long exportAccounts(SearchAccountDTO filters, AccountFileFormat format, OutputStream outputStream) throws IOException;
+
     public UpdateAccountStatusResponse terminateAccount(Long accountId, UpdateAccountStatusDTO updateAccountStatusDTO) throws AccountNotFoundException, ForbiddenOperationException;
 }
@@ -0,0 +1,14 @@
+package com.cbm.billing.service;
+
+import com.cbm.billing.dto.create.CreateBillRunDTO;
+import com.cbm.billing.dto.create.CreateBillRunResponse;
+import com.cbm.billing.dto.query.QueryBillRunResponse;
+import com.cbm.billing.exception.BillRunNotFoundException;
+import com.cbm.billing.exception.ForbiddenOperationException;
+
+public interface IBillRunService {
+
+    public CreateBillRunResponse startBillRun(CreateBillRunDTO createBillRunDTO) throws ForbiddenOperationException;
+
+    public QueryBillRunResponse findBillRunById(Long billRunId) throws BillRunNotFoundException;
+}
@@ -0,0 +1,10 @@
+package com.cbm.billing.service;
+
+import com.cbm.billing.dto.query.OutboxStatsResponse;
+
+public interface IOutboxService {
+
+    public void relay();
+
+    public OutboxStatsResponse outboxStats();
+}
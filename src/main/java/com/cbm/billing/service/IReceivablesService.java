@@ -0,0 +1,9 @@
+package com.cbm.billing.service;
+
+import com.cbm.billing.dto.query.ReceivablesAggregatesResponse;
+import com.cbm.billing.exception.ReceivablesNotReadyException;
+
+public interface IReceivablesService {
+
+    public ReceivablesAggregatesResponse receivablesAggregates() throws ReceivablesNotReadyException;
+}
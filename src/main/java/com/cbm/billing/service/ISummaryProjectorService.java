@@ -0,0 +1,13 @@
+package com.cbm.billing.service;
+
+import com.cbm.billing.dto.query.SummaryProjectorStatusResponse;
+import com.cbm.billing.exception.ForbiddenOperationException;
+
+public interface ISummaryProjectorService {
+
+    public void project();
+
+    public SummaryProjectorStatusResponse startRebuild() throws ForbiddenOperationException;
+
+    public SummaryProjectorStatusResponse projectorStatus();
+}
@@ -0,0 +1,517 @@
+package com.cbm.billing.service.impl;
+
+import com.cbm.billing.common.AccountConstants;
+import com.cbm.billing.common.AccountSortKey;
+import com.cbm.billing.common.AccountStatus;
+import com.cbm.billing.dto.query.AccountSearchCursor;
+import com.cbm.billing.repository.AccountJdbcRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.longlong.LongIterator;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Compressed bitmaps of account ids by status, bill cycle day and last bill date, the low cardinality
+ * filters of the account search.
+ * <p>
+ * A combination of filters is resolved by intersecting the bitmaps of its values, which gives the ids of
+ * the matching accounts in id order and their exact number without reading the table. The bitmaps of the
+ * bill cycle days, and of the last bill dates with the never billed accounts first, also give the ids in
+ * the order of the search sorted by that attribute, so a page of such a search is a walk over the bitmaps
+ * followed by a primary key read of its accounts.
+ * <p>
+ * The bitmaps are built from a scan of the accounts once the application is ready, and kept up to date by
+ * the write paths: the changes of a transaction are applied once it commits. A change sets the value of an
+ * attribute, whatever it was before, so the changes committed during the scan are applied again on top of
+ * its result without counting anything twice. Until the scan completed the search runs on the database.
+ * <p>
+ * A scan runs again on a fixed delay and replaces the bitmaps, to correct any drift: from a write path that
+ * bypasses the index, or from the writes of other instances of the application, which this one never hears
+ * of. Between two scans a page may miss an account another instance created or changed; the accounts it
+ * changed away from the filters are left out when the page is read.
+ */
+@Slf4j
+@Component
+public class AccountBitmapIndex {
+    private final AccountJdbcRepository accountJdbcRepository;
+    private final boolean enabled;
+    private final ScheduledExecutorService executor;
+    private final long rescanIntervalMs;
+    private final Counter corrections;
+    // The bitmaps are read under the read lock, changed and replaced under the write lock
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Bitmaps bitmaps;
+    private List<Change> changesDuringBuild;
+
+    public AccountBitmapIndex(AccountJdbcRepository accountJdbcRepository,
+                              MeterRegistry meterRegistry,
+                              @Value("${billing.search.bitmap-index.enabled:true}") boolean enabled,
+                              @Value("${billing.search.bitmap-index.rescan-interval-ms:300000}") long rescanIntervalMs) {
+        this.accountJdbcRepository = accountJdbcRepository;
+        this.enabled = enabled;
+        this.rescanIntervalMs = rescanIntervalMs;
+        this.corrections = Counter.builder("billing.search.bitmap-index.corrections")
+                .description("Scans of the accounts that found the bitmaps of the account search had drifted")
+                .register(meterRegistry);
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("account-bitmap-index-");
+        threadFactory.setDaemon(true);
+        this.executor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        Gauge.builder("billing.search.bitmap-index.bytes", this, index -> index.read(() -> index.bitmaps == null ? 0 : index.bitmaps.sizeInBytes()))
+                .description("Memory used by the bitmaps of the account search")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Builds the bitmaps once the application is ready, then rebuilds them to correct the drift.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (enabled) {
+            executor.scheduleWithFixedDelay(this::build, 0, rescanIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Records an account created by the current transaction.
+     * @param accountId the id of the account
+     * @param status the status of the account
+     * @param billCycleDay the bill cycle day of the account
+     * @param lastBillDate the last bill date of the account, null if never billed
+     * @throws IllegalStateException if there is no active transaction
+     */
+    public void accountCreated(long accountId, AccountStatus status, int billCycleDay, LocalDate lastBillDate) {
+        record(bitmaps -> bitmaps.set(Roaring64Bitmap.bitmapOf(accountId), status, billCycleDay, lastBillDate));
+    }
+
+    /**
+     * Records a change of the status of an account by the current transaction.
+     * @param accountId the id of the account
+     * @param status the new status
+     * @throws IllegalStateException if there is no active transaction
+     */
+    public void statusChanged(long accountId, AccountStatus status) {
+        record(bitmaps -> bitmaps.setStatus(Roaring64Bitmap.bitmapOf(accountId), status));
+    }
+
+    /**
+     * Records a change of the bill cycle day of an account by the current transaction.
+     * @param accountId the id of the account
+     * @param billCycleDay the new bill cycle day
+     * @throws IllegalStateException if there is no active transaction
+     */
+    public void billCycleDayChanged(long accountId, int billCycleDay) {
+        record(bitmaps -> bitmaps.setBillCycleDay(Roaring64Bitmap.bitmapOf(accountId), billCycleDay));
+    }
+
+    /**
+     * Records accounts billed by the current transaction.
+     * @param accountIds the ids of the accounts
+     * @param lastBillDate the new last bill date of the accounts
+     * @throws IllegalStateException if there is no active transaction
+     */
+    public void billed(Collection<Long> accountIds, LocalDate lastBillDate) {
+        Roaring64Bitmap ids = new Roaring64Bitmap();
+        accountIds.forEach(ids::addLong);
+        record(bitmaps -> bitmaps.setLastBillDate(ids, lastBillDate));
+    }
+
+    /**
+     * Counts the accounts matching the given filters.
+     * @param status the status to match, null for any
+     * @param billCycleDay the bill cycle day to match, null for any
+     * @param lastBillDate the last bill date to match, null for any
+     * @return the exact number of matching accounts, or null until the bitmaps are built
+     */
+    public Long count(AccountStatus status, Integer billCycleDay, LocalDate lastBillDate) {
+        return read(() -> bitmaps == null ? null : bitmaps.matching(status, billCycleDay, lastBillDate).getLongCardinality());
+    }
+
+    /**
+     * Returns the ids of a page of the accounts matching the given filters, sorted by the given key and then id.
+     * @param status the status to match, null for any
+     * @param billCycleDay the bill cycle day to match, null for any
+     * @param lastBillDate the last bill date to match, null for any
+     * @param sortKey the sort key, BILL_CYCLE_DAY or LAST_BILL_DATE
+     * @param cursor the cursor of the last account of the previous page, null to start at the offset
+     * @param offset the number of accounts to skip when there is no cursor
+     * @param size the number of ids of the page
+     * @return the ids of the page, or null until the bitmaps are built or when the sort key is not indexed
+     */
+    public Page page(AccountStatus status, Integer billCycleDay, LocalDate lastBillDate, AccountSortKey sortKey,
+                           AccountSearchCursor cursor, long offset, int size) {
+        if (sortKey == AccountSortKey.NAME) {
+            return null;
+        }
+        return read(() -> bitmaps == null ? null
+                : bitmaps.page(bitmaps.matching(status, billCycleDay, lastBillDate), sortKey, cursor, offset, size));
+    }
+
+    /**
+     * Scans the accounts into new bitmaps, applies the changes committed meanwhile and puts them in place.
+     * When the scan fails the current bitmaps are kept until the next one.
+     */
+    void build() {
+        long start = System.nanoTime();
+        write(() -> changesDuringBuild = new ArrayList<>());
+        Bitmaps built = new Bitmaps();
+        try {
+            accountJdbcRepository.streamSearchAttributes(rs -> {
+                Date lastBillDate = rs.getDate("last_bill_date");
+                built.add(rs.getLong("id"), AccountStatus.valueOf(rs.getString("status")), rs.getInt("bill_cycle_day"),
+                        lastBillDate == null ? null : lastBillDate.toLocalDate());
+            });
+        } catch (RuntimeException e) {
+            log.error("Account bitmap index scan failed, the bitmaps are kept until the next scan", e);
+            write(() -> changesDuringBuild = null);
+            return;
+        }
+        built.runOptimize();
+
+        write(() -> {
+            changesDuringBuild.forEach(change -> change.applyTo(built));
+            changesDuringBuild = null;
+            if (bitmaps != null && !bitmaps.sameIds(built)) {
+                corrections.increment();
+                log.warn("Account bitmap index drifted from the accounts and was corrected by the scan");
+            }
+            bitmaps = built;
+        });
+        log.info("Account bitmap index built with {} accounts in {} ms", built.accounts.getLongCardinality(),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void apply(List<Change> changes) {
+        write(() -> {
+            if (bitmaps != null) {
+                changes.forEach(change -> change.applyTo(bitmaps));
+            }
+            if (changesDuringBuild != null) {
+                changesDuringBuild.addAll(changes);
+            }
+        });
+    }
+
+    /**
+     * Auxiliary method that records a change in the changes of the current transaction, registered to be
+     * applied when it commits. Looked up among the synchronizations, so a nested REQUIRES_NEW transaction
+     * gets its own.
+     */
+    private void record(Change change) {
+        if (!enabled) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Account index changes can only be recorded inside a transaction");
+        }
+
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof Changes changes && changes.owner == this) {
+                changes.changes.add(change);
+                return;
+            }
+        }
+        Changes changes = new Changes(this);
+        changes.changes.add(change);
+        TransactionSynchronizationManager.registerSynchronization(changes);
+    }
+
+    private <T> T read(Supplier<T> action) {
+        lock.readLock().lock();
+        try {
+            return action.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void write(Runnable action) {
+        lock.writeLock().lock();
+        try {
+            action.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * A page of ids resolved by the bitmaps.
+     * @param ids the ids of the page, in sort order
+     * @param last the cursor of the last id of the page, with its value as indexed, null if the page is empty
+     */
+    public record Page(List<Long> ids, AccountSearchCursor last) {
+    }
+
+    private interface Change {
+        void applyTo(Bitmaps bitmaps);
+    }
+
+    /**
+     * Changes recorded by one transaction, applied in order when it commits.
+     */
+    private static final class Changes implements TransactionSynchronization {
+        private final AccountBitmapIndex owner;
+        private final List<Change> changes = new ArrayList<>();
+
+        private Changes(AccountBitmapIndex owner) {
+            this.owner = owner;
+        }
+
+        @Override
+        public void afterCommit() {
+            owner.apply(changes);
+        }
+    }
+
+    private static final class Bitmaps {
+        private final Roaring64Bitmap accounts = new Roaring64Bitmap();
+        private final Map<AccountStatus, Roaring64Bitmap> byStatus = new EnumMap<>(AccountStatus.class);
+        private final Roaring64Bitmap[] byBillCycleDay = new Roaring64Bitmap[AccountConstants.MAX_BILL_CYCLE_DAY];
+        private final Roaring64Bitmap neverBilled = new Roaring64Bitmap();
+        private final NavigableMap<LocalDate, Roaring64Bitmap> byLastBillDate = new TreeMap<>();
+
+        private Bitmaps() {
+            for (AccountStatus status : AccountStatus.values()) {
+                byStatus.put(status, new Roaring64Bitmap());
+            }
+            for (int index = 0; index < byBillCycleDay.length; index++) {
+                byBillCycleDay[index] = new Roaring64Bitmap();
+            }
+        }
+
+        /**
+         * Adds an account seen for the first time, during the build.
+         */
+        private void add(long accountId, AccountStatus status, int billCycleDay, LocalDate lastBillDate) {
+            accounts.addLong(accountId);
+            byStatus.get(status).addLong(accountId);
+            byBillCycleDay[billCycleDay - 1].addLong(accountId);
+            lastBillDateBitmap(lastBillDate).addLong(accountId);
+        }
+
+        private void set(Roaring64Bitmap ids, AccountStatus status, int billCycleDay, LocalDate lastBillDate) {
+            if (Roaring64Bitmap.intersects(accounts, ids)) {
+                // Already scanned, replayed after the build
+                setStatus(ids, status);
+                setBillCycleDay(ids, billCycleDay);
+                setLastBillDate(ids, lastBillDate);
+            } else {
+                byStatus.get(status).or(ids);
+                byBillCycleDay[billCycleDay - 1].or(ids);
+                lastBillDateBitmap(lastBillDate).or(ids);
+            }
+            accounts.or(ids);
+        }
+
+        private void setStatus(Roaring64Bitmap ids, AccountStatus status) {
+            byStatus.forEach((candidate, bitmap) -> {
+                if (candidate != status) {
+                    bitmap.andNot(ids);
+                }
+            });
+            byStatus.get(status).or(ids);
+        }
+
+        private void setBillCycleDay(Roaring64Bitmap ids, int billCycleDay) {
+            for (Roaring64Bitmap bitmap : byBillCycleDay) {
+                if (Roaring64Bitmap.intersects(bitmap, ids)) {
+                    bitmap.andNot(ids);
+                }
+            }
+            byBillCycleDay[billCycleDay - 1].or(ids);
+        }
+
+        private void setLastBillDate(Roaring64Bitmap ids, LocalDate lastBillDate) {
+            neverBilled.andNot(ids);
+            byLastBillDate.values().removeIf(bitmap -> {
+                if (Roaring64Bitmap.intersects(bitmap, ids)) {
+                    bitmap.andNot(ids);
+                }
+                return bitmap.isEmpty();
+            });
+            lastBillDateBitmap(lastBillDate).or(ids);
+        }
+
+        private Roaring64Bitmap lastBillDateBitmap(LocalDate lastBillDate) {
+            return lastBillDate == null ? neverBilled : byLastBillDate.computeIfAbsent(lastBillDate, date -> new Roaring64Bitmap());
+        }
+
+        /**
+         * Intersects the bitmaps of the given filters, starting from the smallest.
+         * @return a new bitmap of the matching ids
+         */
+        private Roaring64Bitmap matching(AccountStatus status, Integer billCycleDay, LocalDate lastBillDate) {
+            List<Roaring64Bitmap> filters = new ArrayList<>(3);
+            if (status != null) {
+                filters.add(byStatus.get(status));
+            }
+            if (billCycleDay != null) {
+                filters.add(billCycleDay >= 1 && billCycleDay <= byBillCycleDay.length ? byBillCycleDay[billCycleDay - 1] : new Roaring64Bitmap());
+            }
+            if (lastBillDate != null) {
+                filters.add(byLastBillDate.getOrDefault(lastBillDate, new Roaring64Bitmap()));
+            }
+            if (filters.isEmpty()) {
+                return accounts.clone();
+            }
+
+            filters.sort((first, second) -> Long.compare(first.getLongCardinality(), second.getLongCardinality()));
+            Roaring64Bitmap matching = filters.get(0).clone();
+            for (int index = 1; index < filters.size(); index++) {
+                matching.and(filters.get(index));
+            }
+            return matching;
+        }
+
+        /**
+         * Walks the bitmaps of the values of the sort key in order, each intersected with the matching ids,
+         * from the cursor or the offset until the page is full.
+         */
+        private Page page(Roaring64Bitmap matching, AccountSortKey sortKey, AccountSearchCursor cursor, long offset, int size) {
+            List<Long> ids = new ArrayList<>(size);
+            Comparable<?> lastValue = null;
+            long skip = offset;
+
+            for (Map.Entry<Comparable<?>, Roaring64Bitmap> segment : segments(sortKey, cursor)) {
+                Roaring64Bitmap segmentIds = Roaring64Bitmap.and(matching, segment.getValue());
+                LongIterator iterator;
+                if (cursor != null && sameValue(segment.getKey(), cursor.getValue())) {
+                    iterator = segmentIds.getLongIteratorFrom(cursor.getId() + 1);
+                } else {
+                    long cardinality = segmentIds.getLongCardinality();
+                    if (skip >= cardinality) {
+                        skip -= cardinality;
+                        continue;
+                    }
+                    iterator = skip == 0 ? segmentIds.getLongIterator() : segmentIds.getLongIteratorFrom(segmentIds.select(skip));
+                    skip = 0;
+                }
+
+                while (iterator.hasNext() && ids.size() < size) {
+                    ids.add(iterator.next());
+                    lastValue = segment.getKey();
+                }
+                if (ids.size() == size) {
+                    break;
+                }
+            }
+            return new Page(ids, ids.isEmpty() ? null
+                    : new AccountSearchCursor(sortKey, lastValue == null ? null : lastValue.toString(), ids.get(ids.size() - 1)));
+        }
+
+        /**
+         * Auxiliary method that lists the bitmaps of the values of the sort key in sort order, starting with
+         * the value of the cursor. The never billed accounts sort first, as NULL does in the database.
+         */
+        private List<Map.Entry<Comparable<?>, Roaring64Bitmap>> segments(AccountSortKey sortKey, AccountSearchCursor cursor) {
+            List<Map.Entry<Comparable<?>, Roaring64Bitmap>> segments = new ArrayList<>();
+            if (sortKey == AccountSortKey.BILL_CYCLE_DAY) {
+                int first = cursor == null || cursor.getValue() == null ? 1 : Integer.parseInt(cursor.getValue());
+                for (int billCycleDay = Math.max(1, first); billCycleDay <= byBillCycleDay.length; billCycleDay++) {
+                    segments.add(Map.entry(billCycleDay, byBillCycleDay[billCycleDay - 1]));
+                }
+                return segments;
+            }
+
+            if (cursor == null || cursor.getValue() == null) {
+                segments.add(new AbstractMap.SimpleEntry<>(null, neverBilled));
+                byLastBillDate.forEach((date, bitmap) -> segments.add(Map.entry(date, bitmap)));
+            } else {
+                byLastBillDate.tailMap(LocalDate.parse(cursor.getValue()), true)
+                        .forEach((date, bitmap) -> segments.add(Map.entry(date, bitmap)));
+            }
+            return segments;
+        }
+
+        private static boolean sameValue(Comparable<?> segmentValue, String cursorValue) {
+            return segmentValue == null ? cursorValue == null : segmentValue.toString().equals(cursorValue);
+        }
+
+        /**
+         * Compares the ids of every bitmap with those of another index, whatever their containers.
+         */
+        private boolean sameIds(Bitmaps other) {
+            if (!sameIds(accounts, other.accounts) || !sameIds(neverBilled, other.neverBilled)
+                    || !byLastBillDate.keySet().equals(other.byLastBillDate.keySet())) {
+                return false;
+            }
+            for (AccountStatus status : AccountStatus.values()) {
+                if (!sameIds(byStatus.get(status), other.byStatus.get(status))) {
+                    return false;
+                }
+            }
+            for (int index = 0; index < byBillCycleDay.length; index++) {
+                if (!sameIds(byBillCycleDay[index], other.byBillCycleDay[index])) {
+                    return false;
+                }
+            }
+            for (Map.Entry<LocalDate, Roaring64Bitmap> entry : byLastBillDate.entrySet()) {
+                if (!sameIds(entry.getValue(), other.byLastBillDate.get(entry.getKey()))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean sameIds(Roaring64Bitmap first, Roaring64Bitmap second) {
+            long cardinality = first.getLongCardinality();
+            return cardinality == second.getLongCardinality() && Roaring64Bitmap.and(first, second).getLongCardinality() == cardinality;
+        }
+
+        private void runOptimize() {
+            accounts.runOptimize();
+            byStatus.values().forEach(Roaring64Bitmap::runOptimize);
+            for (Roaring64Bitmap bitmap : byBillCycleDay) {
+                bitmap.runOptimize();
+            }
+            neverBilled.runOptimize();
+            byLastBillDate.values().forEach(Roaring64Bitmap::runOptimize);
+        }
+
+        private long sizeInBytes() {
+            long bytes = accounts.getLongSizeInBytes() + neverBilled.getLongSizeInBytes();
+            for (Roaring64Bitmap bitmap : byStatus.values()) {
+                bytes += bitmap.getLongSizeInBytes();
+            }
+            for (Roaring64Bitmap bitmap : byBillCycleDay) {
+                bytes += bitmap.getLongSizeInBytes();
+            }
+            for (Roaring64Bitmap bitmap : byLastBillDate.values()) {
+                bytes += bitmap.getLongSizeInBytes();
+            }
+            return bytes;
+        }
+    }
+}
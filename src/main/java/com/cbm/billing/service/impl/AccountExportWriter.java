@@ -0,0 +1,181 @@
+package com.cbm.billing.service.impl;
+
+import com.cbm.billing.common.AccountFileFormat;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Writes the account rows of an export straight from the result set to the response, one row at a time,
+ * so the memory used by an export does not depend on the number of accounts. The columns are read in the
+ * order of {@link com.cbm.billing.repository.AccountJdbcRepository#EXPORT_COLUMNS}.
+ */
+abstract class AccountExportWriter implements RowCallbackHandler {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private long rows;
+
+    /**
+     * Creates the writer of the given format.
+     * @param format the format of the export
+     * @param outputStream the stream of the response
+     * @return the writer, to be finished once the rows are written
+     */
+    static AccountExportWriter of(AccountFileFormat format, OutputStream outputStream) throws IOException {
+        return switch (format) {
+            case NDJSON -> new Ndjson(outputStream);
+            case CSV -> new Csv(outputStream);
+        };
+    }
+
+    @Override
+    public final void processRow(ResultSet rs) throws SQLException {
+        try {
+            writeRow(rs);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        rows++;
+    }
+
+    /**
+     * @return the number of accounts written
+     */
+    long rows() {
+        return rows;
+    }
+
+    /**
+     * Writes the end of the export and flushes it.
+     */
+    abstract void finish() throws IOException;
+
+    protected abstract void writeRow(ResultSet rs) throws SQLException, IOException;
+
+    private static String dateString(Date date) {
+        return date == null ? null : date.toLocalDate().toString();
+    }
+
+    /**
+     * One JSON object per line, with the fields and the null handling of the account model.
+     */
+    private static final class Ndjson extends AccountExportWriter {
+        private final JsonGenerator generator;
+
+        private Ndjson(OutputStream outputStream) throws IOException {
+            this.generator = JSON_FACTORY.createGenerator(outputStream);
+            this.generator.setRootValueSeparator(new SerializedString("\n"));
+        }
+
+        @Override
+        protected void writeRow(ResultSet rs) throws SQLException, IOException {
+            generator.writeStartObject();
+            generator.writeNumberField("id", rs.getLong(1));
+            writeStringField("name", rs.getString(2));
+            BigDecimal currentBalance = rs.getBigDecimal(3);
+            if (currentBalance != null) {
+                generator.writeNumberField("currentBalance", currentBalance);
+            }
+            int billCycleDay = rs.getInt(4);
+            if (!rs.wasNull()) {
+                generator.writeNumberField("billCycleDay", billCycleDay);
+            }
+            writeStringField("lastBillDate", dateString(rs.getDate(5)));
+            writeStringField("status", rs.getString(6));
+            writeStringField("createdAt", dateString(rs.getDate(7)));
+            writeStringField("updatedAt", dateString(rs.getDate(8)));
+            generator.writeEndObject();
+        }
+
+        @Override
+        void finish() throws IOException {
+            if (rows() > 0) {
+                generator.writeRaw('\n');
+            }
+            generator.flush();
+        }
+
+        private void writeStringField(String name, String value) throws IOException {
+            if (value != null) {
+                generator.writeStringField(name, value);
+            }
+        }
+    }
+
+    /**
+     * RFC 4180 CSV with a header line, null values are left empty.
+     */
+    private static final class Csv extends AccountExportWriter {
+        private final Writer writer;
+
+        private Csv(OutputStream outputStream) throws IOException {
+            this.writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), BUFFER_SIZE);
+            this.writer.write("id,name,current_balance,bill_cycle_day,last_bill_date,status,created_at,updated_at\r\n");
+        }
+
+        @Override
+        protected void writeRow(ResultSet rs) throws SQLException, IOException {
+            writer.write(Long.toString(rs.getLong(1)));
+            writer.write(',');
+            writeQuoted(rs.getString(2));
+            writer.write(',');
+            BigDecimal currentBalance = rs.getBigDecimal(3);
+            if (currentBalance != null) {
+                writer.write(currentBalance.toPlainString());
+            }
+            writer.write(',');
+            int billCycleDay = rs.getInt(4);
+            if (!rs.wasNull()) {
+                writer.write(Integer.toString(billCycleDay));
+            }
+            writer.write(',');
+            writeValue(dateString(rs.getDate(5)));
+            writer.write(',');
+            writeValue(rs.getString(6));
+            writer.write(',');
+            writeValue(dateString(rs.getDate(7)));
+            writer.write(',');
+            writeValue(dateString(rs.getDate(8)));
+            writer.write("\r\n");
+        }
+
+        @Override
+        void finish() throws IOException {
+            writer.flush();
+        }
+
+        private void writeValue(String value) throws IOException {
+            if (value != null) {
+                writer.write(value);
+            }
+        }
+
+        // Quoted only when needed, with the quotes inside doubled
+        private void writeQuoted(String value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+    }
+}
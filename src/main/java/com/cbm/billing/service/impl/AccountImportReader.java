@@ -0,0 +1,295 @@
+package com.cbm.billing.service.impl;
+
+import com.cbm.billing.common.AccountFileFormat;
+import com.cbm.billing.common.AccountStatus;
+import com.cbm.billing.common.Money;
+import com.cbm.billing.dto.create.CreateAccountDTO;
+import com.cbm.billing.exception.InvalidImportException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Reads the rows of an account import file one at a time, so the memory used by an import does not
+ * depend on the size of the file. A row that cannot be read as an account is returned with the reason
+ * instead of failing the import; the accounts read are validated by the caller.
+ */
+abstract class AccountImportReader implements Closeable {
+    private static final char BYTE_ORDER_MARK = '\uFEFF';
+
+    private final BufferedReader reader;
+    private long lineNumber;
+
+    protected AccountImportReader(BufferedReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Creates the reader of the given format. The CSV header is read and checked right away.
+     * @param format the format of the file
+     * @param reader the content of the file
+     * @param jsonReader the reader of {@link CreateAccountDTO} used for the NDJSON rows
+     * @return the reader, positioned on the first row
+     * @throws InvalidImportException if the CSV header misses a column of {@link CreateAccountDTO}
+     */
+    static AccountImportReader of(AccountFileFormat format, BufferedReader reader, ObjectReader jsonReader) throws IOException {
+        return switch (format) {
+            case NDJSON -> new Ndjson(reader, jsonReader);
+            case CSV -> new Csv(reader);
+        };
+    }
+
+    /**
+     * Reads the next row, skipping blank lines.
+     * @return the row, or null at the end of the file
+     */
+    abstract Row next() throws IOException;
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * @return the number of lines read so far
+     */
+    protected long lineNumber() {
+        return lineNumber;
+    }
+
+    protected String readLine() throws IOException {
+        String line = reader.readLine();
+        if (line != null && lineNumber++ == 0 && !line.isEmpty() && line.charAt(0) == BYTE_ORDER_MARK) {
+            line = line.substring(1);
+        }
+        return line;
+    }
+
+    /**
+     * A row of the file: the account read, or the reason why it could not be read.
+     * @param lineNumber the line of the file where the row starts
+     * @param content the row as it appears in the file
+     * @param account the account read, null if the row could not be read
+     * @param error the reason why the row could not be read, null if it was
+     */
+    record Row(long lineNumber, String content, CreateAccountDTO account, String error) {
+
+        static Row read(long lineNumber, String content, CreateAccountDTO account) {
+            return new Row(lineNumber, content, account, null);
+        }
+
+        static Row rejected(long lineNumber, String content, String error) {
+            return new Row(lineNumber, content, null, error);
+        }
+    }
+
+    /**
+     * One JSON object per line, with the fields of {@link CreateAccountDTO}. Other fields are ignored, so
+     * the lines of an NDJSON export are read as they are.
+     */
+    private static final class Ndjson extends AccountImportReader {
+        private final ObjectReader jsonReader;
+
+        private Ndjson(BufferedReader reader, ObjectReader jsonReader) {
+            super(reader);
+            this.jsonReader = jsonReader;
+        }
+
+        @Override
+        Row next() throws IOException {
+            String line;
+            do {
+                line = readLine();
+                if (line == null) {
+                    return null;
+                }
+            } while (line.isBlank());
+
+            try {
+                CreateAccountDTO account = jsonReader.readValue(line);
+                return account == null
+                        ? Row.rejected(lineNumber(), line, "Expected a JSON object")
+                        : Row.read(lineNumber(), line, account);
+            } catch (JsonProcessingException e) {
+                return Row.rejected(lineNumber(), line, e.getOriginalMessage());
+            }
+        }
+    }
+
+    /**
+     * RFC 4180 CSV with a header line naming the columns name, current_balance, bill_cycle_day and status,
+     * in any order. Other columns are ignored, so the rows of a CSV export are read as they are.
+     */
+    private static final class Csv extends AccountImportReader {
+        // Bounds the record that a stray quote would otherwise extend to the end of the file
+        private static final int MAX_RECORD_LENGTH = 64 * 1024;
+        private static final String[] COLUMNS = {"name", "current_balance", "bill_cycle_day", "status"};
+
+        private final int[] columnIndexes = new int[COLUMNS.length];
+        private int columnCount;
+        private long recordLineNumber;
+
+        private Csv(BufferedReader reader) throws IOException {
+            super(reader);
+            String header = nextRecord();
+            if (header == null) {
+                throw new InvalidImportException("The CSV file is empty, a header line is expected");
+            }
+
+            List<String> names = fields(header).stream()
+                    .map(name -> name.trim().toLowerCase(Locale.ROOT))
+                    .toList();
+            List<String> missing = new ArrayList<>();
+            for (int index = 0; index < COLUMNS.length; index++) {
+                columnIndexes[index] = names.indexOf(COLUMNS[index]);
+                columnCount = Math.max(columnCount, columnIndexes[index] + 1);
+                if (columnIndexes[index] < 0) {
+                    missing.add(COLUMNS[index]);
+                }
+            }
+            if (!missing.isEmpty()) {
+                throw new InvalidImportException("The CSV header misses the columns " + missing
+                        + ", expected " + Arrays.toString(COLUMNS));
+            }
+        }
+
+        @Override
+        Row next() throws IOException {
+            String record = nextRecord();
+            if (record == null) {
+                return null;
+            }
+
+            List<String> fields;
+            try {
+                fields = fields(record);
+            } catch (IllegalArgumentException e) {
+                return Row.rejected(recordLineNumber, record, e.getMessage());
+            }
+            if (fields.size() < columnCount) {
+                return Row.rejected(recordLineNumber, record,
+                        "Expected at least " + columnCount + " columns, found " + fields.size());
+            }
+
+            String name = fields.get(columnIndexes[0]);
+            String currentBalance = fields.get(columnIndexes[1]).trim();
+            String billCycleDay = fields.get(columnIndexes[2]).trim();
+            String status = fields.get(columnIndexes[3]).trim();
+            CreateAccountDTO account = new CreateAccountDTO();
+            account.setName(name.isEmpty() ? null : name);
+
+            if (!currentBalance.isEmpty()) {
+                try {
+                    account.setCurrentBalance(Money.toCents(new BigDecimal(currentBalance)));
+                } catch (NumberFormatException e) {
+                    return Row.rejected(recordLineNumber, record, "Current balance should be a decimal amount");
+                } catch (ArithmeticException e) {
+                    return Row.rejected(recordLineNumber, record, "Current balance should have at most 2 decimals");
+                }
+            }
+
+            // The bill cycle day is a primitive in the DTO, so a missing one is reported here
+            if (billCycleDay.isEmpty()) {
+                return Row.rejected(recordLineNumber, record, "Bill cycle day should not be null");
+            }
+            try {
+                account.setBillCycleDay(Integer.parseInt(billCycleDay));
+            } catch (NumberFormatException e) {
+                return Row.rejected(recordLineNumber, record, "Bill cycle day should be a number");
+            }
+
+            if (!status.isEmpty()) {
+                try {
+                    account.setStatus(AccountStatus.valueOf(status.toUpperCase(Locale.ROOT)));
+                } catch (IllegalArgumentException e) {
+                    return Row.rejected(recordLineNumber, record,
+                            "Status should be one of " + Arrays.toString(AccountStatus.values()));
+                }
+            }
+
+            return Row.read(recordLineNumber, record, account);
+        }
+
+        /**
+         * Auxiliary method that reads the next non blank record, joining the lines of a quoted field that
+         * spans several of them.
+         */
+        private String nextRecord() throws IOException {
+            String line;
+            do {
+                line = readLine();
+                if (line == null) {
+                    return null;
+                }
+            } while (line.isBlank());
+
+            recordLineNumber = lineNumber();
+            StringBuilder record = new StringBuilder(line);
+            int quotes = countQuotes(line);
+            while (quotes % 2 != 0 && record.length() < MAX_RECORD_LENGTH) {
+                String continuation = readLine();
+                if (continuation == null) {
+                    break;
+                }
+                record.append('\n').append(continuation);
+                quotes += countQuotes(continuation);
+            }
+            return record.toString();
+        }
+
+        private static int countQuotes(String line) {
+            int quotes = 0;
+            for (int index = 0; index < line.length(); index++) {
+                if (line.charAt(index) == '"') {
+                    quotes++;
+                }
+            }
+            return quotes;
+        }
+
+        /**
+         * Auxiliary method that splits a record into its fields, unquoting the quoted ones.
+         * @throws IllegalArgumentException if a quoted field is not closed
+         */
+        private static List<String> fields(String record) {
+            List<String> fields = new ArrayList<>(8);
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+
+            for (int index = 0; index < record.length(); index++) {
+                char c = record.charAt(index);
+                if (quoted) {
+                    if (c != '"') {
+                        field.append(c);
+                    } else if (index + 1 < record.length() && record.charAt(index + 1) == '"') {
+                        field.append('"');
+                        index++;
+                    } else {
+                        quoted = false;
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else {
+                    field.append(c);
+                }
+            }
+
+            if (quoted) {
+                throw new IllegalArgumentException("Quoted field is not closed");
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+}
@@ -0,0 +1,485 @@
+package com.cbm.billing.service.impl;
+
+import com.cbm.billing.common.AccountConstants;
+import com.cbm.billing.common.AccountFileFormat;
+import com.cbm.billing.common.AccountImportStatus;
+import com.cbm.billing.common.IdGeneratorConstants;
+import com.cbm.billing.dto.create.CreateAccountDTO;
+import com.cbm.billing.dto.create.CreateAccountImportResponse;
+import com.cbm.billing.dto.query.QueryAccountImportRejectionsResponse;
+import com.cbm.billing.dto.query.QueryAccountImportResponse;
+import com.cbm.billing.entity.AccountImportEntity;
+import com.cbm.billing.exception.AccountDomainException;
+import com.cbm.billing.exception.AccountImportNotFoundException;
+import com.cbm.billing.exception.InvalidImportException;
+import com.cbm.billing.model.AccountImport;
+import com.cbm.billing.model.AccountImportRejection;
+import com.cbm.billing.repository.AccountImportJdbcRepository;
+import com.cbm.billing.repository.AccountImportRepository;
+import com.cbm.billing.repository.AccountJdbcRepository;
+import com.cbm.billing.repository.AccountNameIndexJdbcRepository;
+import com.cbm.billing.service.IAccountImportService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Service
+public class AccountImportServiceImpl implements IAccountImportService {
+    // Lengths of the columns of the rejected rows report
+    private static final int MAX_REASON_LENGTH = 500;
+    private static final int MAX_ROW_LENGTH = 1000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+    private final AccountImportRepository accountImportRepository;
+    private final AccountImportJdbcRepository accountImportJdbcRepository;
+    private final AccountJdbcRepository accountJdbcRepository;
+    private final SummaryChangeWriter summaryChangeWriter;
+    private final ReceivablesAggregates receivablesAggregates;
+    private final AccountBitmapIndex bitmapIndex;
+    private final AccountNameIndexJdbcRepository accountNameIndexJdbcRepository;
+    private final PooledIdAllocator idAllocator;
+    private final Validator validator;
+    private final ObjectReader accountReader;
+    private final TransactionTemplate transactionTemplate;
+    private final Path directory;
+    private final int chunkSize;
+    private final ExecutorService coordinatorExecutor;
+    private final ThreadPoolExecutor chunkExecutor;
+    private final Map<Long, ImportProgress> importProgress = new ConcurrentHashMap<>();
+
+    public AccountImportServiceImpl(AccountImportRepository accountImportRepository,
+                                    AccountImportJdbcRepository accountImportJdbcRepository,
+                                    AccountJdbcRepository accountJdbcRepository,
+                                    SummaryChangeWriter summaryChangeWriter,
+                                    ReceivablesAggregates receivablesAggregates,
+                                    AccountBitmapIndex bitmapIndex,
+                                    AccountNameIndexJdbcRepository accountNameIndexJdbcRepository,
+                                    PooledIdAllocator idAllocator,
+                                    Validator validator,
+                                    ObjectMapper objectMapper,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("${billing.account-import.directory:${java.io.tmpdir}}") Path directory,
+                                    @Value("${billing.account-import.chunk-size:5000}") int chunkSize,
+                                    @Value("${billing.account-import.threads:4}") int threads) {
+        this.accountImportRepository = accountImportRepository;
+        this.accountImportJdbcRepository = accountImportJdbcRepository;
+        this.accountJdbcRepository = accountJdbcRepository;
+        this.summaryChangeWriter = summaryChangeWriter;
+        this.receivablesAggregates = receivablesAggregates;
+        this.bitmapIndex = bitmapIndex;
+        this.accountNameIndexJdbcRepository = accountNameIndexJdbcRepository;
+        this.idAllocator = idAllocator;
+        this.validator = validator;
+        this.accountReader = objectMapper.readerFor(CreateAccountDTO.class);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.directory = directory;
+        this.chunkSize = chunkSize;
+        // Imports are read one at a time, an import uploaded during another one waits for it
+        this.coordinatorExecutor = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("account-import-coordinator-"));
+        // The bounded queue plus caller-runs policy throttles the reader to the speed of the workers
+        this.chunkExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * 2),
+                new CustomizableThreadFactory("account-import-chunk-"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Starts the import of the accounts of an uploaded file. The upload is copied to a local file first, so the
+     * request ends as soon as the upload does, and the rows are then read, validated and inserted in the
+     * background in chunks of billing.account-import.chunk-size rows, each chunk committed on its own.
+     * Rows that are not valid are recorded in the rejected rows report of the import instead of failing it.
+     * @param format the format of the file, CSV (with a header line) or NDJSON
+     * @param inputStream the content of the file
+     * @return a {@link CreateAccountImportResponse} containing the started import, whose id is polled for progress
+     * @throws InvalidImportException if the file is a CSV file without the header of the account columns
+     */
+    @Override
+    public CreateAccountImportResponse startImport(AccountFileFormat format, InputStream inputStream) {
+        log.info("Starting account import from {}", format);
+        Path file = null;
+        AccountImportReader reader = null;
+
+        try {
+            file = Files.createTempFile(directory, "account-import-", "." + format.getExtension());
+            long bytes = Files.copy(inputStream, file, StandardCopyOption.REPLACE_EXISTING);
+            // Malformed UTF-8 is replaced rather than failing the whole import
+            reader = AccountImportReader.of(format, new BufferedReader(new InputStreamReader(Files.newInputStream(file),
+                    StandardCharsets.UTF_8), BUFFER_SIZE), accountReader);
+
+            AccountImportEntity accountImportEntity = accountImportRepository.save(newAccountImport(format));
+            Long importId = accountImportEntity.getId();
+            ImportProgress progress = new ImportProgress();
+            importProgress.put(importId, progress);
+            AccountImportReader importReader = reader;
+            Path importFile = file;
+            coordinatorExecutor.execute(() -> executeImport(importId, importReader, importFile, progress));
+            log.info("Account import with id {} started for {} bytes", importId, bytes);
+
+            return CreateAccountImportResponse.builder()
+                    .code(200L)
+                    .message("Account import started successfully")
+                    .details(accountImportEntityToAccountImport(accountImportEntity, progress))
+                    .build();
+
+        } catch (InvalidImportException e) {
+            log.error("Invalid account import file: {}", e.getMessage());
+            discard(reader, file);
+            throw e;
+        } catch (Exception e) {
+            log.error("Error starting account import", e);
+            discard(reader, file);
+            throw new AccountDomainException("Error starting account import");
+        }
+    }
+
+    /**
+     * Retrieves the status, counters and throughput of an account import.
+     * @param importId the id of the import
+     * @return a {@link QueryAccountImportResponse} containing the import
+     * @throws AccountImportNotFoundException if the import does not exist
+     */
+    @Override
+    public QueryAccountImportResponse findImportById(Long importId) throws AccountImportNotFoundException {
+        AccountImportEntity accountImportEntity = findAccountImportEntity(importId);
+
+        return QueryAccountImportResponse.builder()
+                .code(200L)
+                .message("Account import found")
+                .details(accountImportEntityToAccountImport(accountImportEntity, importProgress.get(importId)))
+                .build();
+    }
+
+    /**
+     * Retrieves a page of the rows of an import that were rejected, in line order, with the reason of each one.
+     * Rejections are committed with their chunk, so the report can be read while the import is running.
+     * @param importId the id of the import
+     * @param cursor the nextCursor returned by the previous page, null for the first page
+     * @param size the number of rejections per page, capped to {@link AccountConstants#MAX_IMPORT_REJECTIONS_PAGE_SIZE}
+     * @return a {@link QueryAccountImportRejectionsResponse} containing the page and the cursor of the next one
+     * @throws AccountImportNotFoundException if the import does not exist
+     */
+    @Override
+    public QueryAccountImportRejectionsResponse findRejections(Long importId, Long cursor, int size) throws AccountImportNotFoundException {
+        findAccountImportEntity(importId);
+
+        try {
+            int pageSize = Math.max(1, Math.min(size, AccountConstants.MAX_IMPORT_REJECTIONS_PAGE_SIZE));
+            List<AccountImportRejection> rejections = accountImportJdbcRepository.findRejections(importId, cursor, pageSize);
+
+            return QueryAccountImportRejectionsResponse.builder()
+                    .code(200L)
+                    .message("Account import rejections found")
+                    .importId(importId)
+                    .rejections(rejections)
+                    .nextCursor(rejections.size() == pageSize ? rejections.get(pageSize - 1).getLineNumber() : null)
+                    .build();
+
+        } catch (Exception e) {
+            log.error("Error retrieving the rejections of account import with id {}", importId, e);
+            throw new AccountDomainException("Error retrieving the rejections of account import with id " + importId);
+        }
+    }
+
+    /**
+     * Marks the imports left RUNNING by a previous run of the application as INTERRUPTED. Their uploaded
+     * files are gone, so they cannot be resumed; the accounts of their committed chunks are kept.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void interruptStaleImports() {
+        int interrupted = accountImportRepository.updateStatus(AccountImportStatus.RUNNING, AccountImportStatus.INTERRUPTED, LocalDateTime.now());
+        if (interrupted > 0) {
+            log.warn("{} account imports left running by a previous run marked as interrupted", interrupted);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        // Chunks that are interrupted roll back, the accounts of the committed chunks are kept
+        coordinatorExecutor.shutdownNow();
+        chunkExecutor.shutdownNow();
+        // Lets an interrupted import record its status while the data source is still open
+        coordinatorExecutor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Reads and validates the rows of the file, hands them to the chunk workers in chunks, then waits for
+     * all of them and records the final status of the import.
+     */
+    private void executeImport(Long importId, AccountImportReader reader, Path file, ImportProgress progress) {
+        AccountImportStatus finalStatus = AccountImportStatus.FAILED;
+        boolean interrupted = false;
+        try (reader) {
+            List<Future<?>> chunks = new ArrayList<>();
+            List<AccountImportReader.Row> rows = new ArrayList<>(chunkSize);
+            List<AccountImportRejection> rejections = new ArrayList<>();
+            AccountImportReader.Row row;
+
+            while ((row = reader.next()) != null) {
+                progress.rowsRead.increment();
+                String reason = row.error() != null ? row.error() : violations(row.account());
+                if (reason == null) {
+                    rows.add(row);
+                } else {
+                    rejections.add(rejection(row, reason));
+                }
+
+                if (rows.size() + rejections.size() == chunkSize) {
+                    chunks.add(submitChunk(importId, rows, rejections, progress));
+                    rows = new ArrayList<>(chunkSize);
+                    rejections = new ArrayList<>();
+                }
+            }
+            if (!rows.isEmpty() || !rejections.isEmpty()) {
+                chunks.add(submitChunk(importId, rows, rejections, progress));
+            }
+
+            for (Future<?> chunk : chunks) {
+                chunk.get();
+            }
+
+            finalStatus = progress.rejectedRows.sum() > 0 ? AccountImportStatus.COMPLETED_WITH_REJECTIONS : AccountImportStatus.COMPLETED;
+            log.info("Account import with id {} finished: {} rows read, {} accounts imported, {} rows rejected",
+                    importId, progress.rowsRead.sum(), progress.importedAccounts.sum(), progress.rejectedRows.sum());
+
+        } catch (InterruptedException e) {
+            // The interrupt is restored once the status is recorded, a connection cannot be taken while it is set
+            interrupted = true;
+            finalStatus = AccountImportStatus.INTERRUPTED;
+            log.error("Account import with id {} interrupted", importId);
+        } catch (Exception e) {
+            log.error("Account import with id {} failed", importId, e);
+        } finally {
+            progress.finishedNanos = System.nanoTime();
+            discard(null, file);
+        }
+
+        try {
+            AccountImportEntity accountImportEntity = accountImportRepository.findById(importId).orElseThrow();
+            accountImportEntity.setStatus(finalStatus);
+            accountImportEntity.setTotalRows(progress.rowsRead.sum());
+            accountImportEntity.setFinishedAt(LocalDateTime.now());
+            accountImportRepository.save(accountImportEntity);
+        } catch (RuntimeException e) {
+            log.error("Status {} of account import with id {} not recorded, it is marked as interrupted on the next start",
+                    finalStatus, importId, e);
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private Future<?> submitChunk(Long importId, List<AccountImportReader.Row> rows, List<AccountImportRejection> rejections,
+                                  ImportProgress progress) {
+        return chunkExecutor.submit(() -> processChunk(importId, rows, rejections, progress));
+    }
+
+    /**
+     * Inserts the valid rows of a chunk and records its rejected rows in a single transaction. If the chunk
+     * fails as a whole, its accounts are retried one by one and the ones that still fail are rejected, so a
+     * single row refused by the database does not fail the rest of the chunk.
+     */
+    private void processChunk(Long importId, List<AccountImportReader.Row> rows, List<AccountImportRejection> rejections,
+                              ImportProgress progress) {
+        // One id per account, taken outside the chunk transaction and reused by the retries below
+        long firstAccountId = rows.isEmpty() ? 0 : idAllocator.allocate(IdGeneratorConstants.ACCOUNT, rows.size());
+        try {
+            transactionTemplate.executeWithoutResult(status -> importAccounts(importId, rows, firstAccountId, rejections, 1));
+            progress.chunkCompleted(rows.size(), rejections.size());
+            return;
+        } catch (Exception e) {
+            log.error("Account import chunk of {} rows failed on account import with id {}, retrying its accounts one by one",
+                    rows.size() + rejections.size(), importId, e);
+        }
+
+        int imported = 0;
+        List<AccountImportRejection> failed = new ArrayList<>(rejections);
+        for (int index = 0; index < rows.size(); index++) {
+            AccountImportReader.Row row = rows.get(index);
+            long accountId = firstAccountId + index;
+            try {
+                transactionTemplate.executeWithoutResult(status -> importAccounts(importId, List.of(row), accountId, List.of(), 0));
+                imported++;
+            } catch (Exception e) {
+                log.error("Error importing the account of line {} on account import with id {}", row.lineNumber(), importId, e);
+                failed.add(rejection(row, "Account could not be inserted: " + NestedExceptionUtils.getMostSpecificCause(e).getMessage()));
+            }
+        }
+        transactionTemplate.executeWithoutResult(status -> importAccounts(importId, List.of(), 0, failed, 1));
+        progress.chunkCompleted(imported, failed.size());
+    }
+
+    private static Map<Long, String> names(List<AccountImportReader.Row> rows, long firstAccountId) {
+        Map<Long, String> names = new HashMap<>();
+        for (int index = 0; index < rows.size(); index++) {
+            names.put(firstAccountId + index, rows.get(index).account().getName());
+        }
+        return names;
+    }
+
+    /**
+     * Inserts the accounts with one batch, adds their names to the account name index, queues them for the
+     * summary projector and records the rejected rows with another batch, then adds the counts to the progress of the import.
+     */
+    private void importAccounts(Long importId, List<AccountImportReader.Row> rows, long firstAccountId,
+                                List<AccountImportRejection> rejections, int chunks) {
+        if (!rows.isEmpty()) {
+            accountJdbcRepository.insertAccounts(rows.stream().map(AccountImportReader.Row::account).toList(), firstAccountId);
+            // In the chunk transaction, so an imported account is never left out of the name index
+            accountNameIndexJdbcRepository.insertPostings(names(rows, firstAccountId));
+            for (long accountId = firstAccountId; accountId < firstAccountId + rows.size(); accountId++) {
+                summaryChangeWriter.accountChanged(accountId);
+            }
+            long accountId = firstAccountId;
+            for (AccountImportReader.Row row : rows) {
+                receivablesAggregates.accountCreated(row.account().getStatus(), row.account().getBillCycleDay(), row.account().getCurrentBalance());
+                bitmapIndex.accountCreated(accountId++, row.account().getStatus(), row.account().getBillCycleDay(), null);
+            }
+        }
+        if (!rejections.isEmpty()) {
+            accountImportJdbcRepository.insertRejections(importId, rejections);
+        }
+        accountImportJdbcRepository.addProgress(importId, rows.size(), rejections.size(), chunks);
+    }
+
+    /**
+     * Auxiliary method that checks an account with the constraints of {@link CreateAccountDTO}, as the
+     * account creation endpoint does.
+     * @return the messages of the violated constraints, or null if the account is valid
+     */
+    private String violations(CreateAccountDTO account) {
+        Set<ConstraintViolation<CreateAccountDTO>> violations = validator.validate(account);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(ConstraintViolation::getMessage)
+                .sorted()
+                .collect(Collectors.joining("; "));
+    }
+
+    private static AccountImportRejection rejection(AccountImportReader.Row row, String reason) {
+        return AccountImportRejection.builder()
+                .lineNumber(row.lineNumber())
+                .reason(truncate(reason == null ? "Invalid row" : reason, MAX_REASON_LENGTH))
+                .row(truncate(row.content(), MAX_ROW_LENGTH))
+                .build();
+    }
+
+    private static String truncate(String value, int maxLength) {
+        return value.length() <= maxLength ? value : value.substring(0, maxLength);
+    }
+
+    private AccountImportEntity findAccountImportEntity(Long importId) throws AccountImportNotFoundException {
+        Optional<AccountImportEntity> accountImportEntityOptional = accountImportRepository.findById(importId);
+
+        if (accountImportEntityOptional.isEmpty()) {
+            log.error("Account import not found with id {}", importId);
+            throw new AccountImportNotFoundException("Account import not found with id " + importId);
+        }
+        return accountImportEntityOptional.get();
+    }
+
+    private static void discard(AccountImportReader reader, Path file) {
+        try {
+            if (reader != null) {
+                reader.close();
+            }
+            if (file != null) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            log.warn("Could not delete the account import file {}", file, e);
+        }
+    }
+
+    private AccountImportEntity newAccountImport(AccountFileFormat format) {
+        AccountImportEntity accountImportEntity = new AccountImportEntity();
+        accountImportEntity.setFormat(format);
+        accountImportEntity.setStatus(AccountImportStatus.RUNNING);
+        accountImportEntity.setImportedAccounts(0L);
+        accountImportEntity.setRejectedRows(0L);
+        accountImportEntity.setChunksCompleted(0L);
+        accountImportEntity.setStartedAt(LocalDateTime.now());
+        return accountImportEntity;
+    }
+
+    private AccountImport accountImportEntityToAccountImport(AccountImportEntity accountImportEntity, ImportProgress progress) {
+        AccountImport accountImport = AccountImport.builder()
+                .id(accountImportEntity.getId())
+                .format(accountImportEntity.getFormat())
+                .status(accountImportEntity.getStatus())
+                .totalRows(accountImportEntity.getTotalRows())
+                .importedAccounts(accountImportEntity.getImportedAccounts())
+                .rejectedRows(accountImportEntity.getRejectedRows())
+                .chunksCompleted(accountImportEntity.getChunksCompleted())
+                .startedAt(accountImportEntity.getStartedAt())
+                .finishedAt(accountImportEntity.getFinishedAt())
+                .build();
+
+        if (progress != null) {
+            // Live figures of this process, including the rows read but not committed yet
+            double elapsedSeconds = Math.max(progress.elapsedNanos(), 1) / 1_000_000_000.0;
+            accountImport.setRowsRead(progress.rowsRead.sum());
+            accountImport.setAccountsPerSecond(progress.importedAccounts.sum() / elapsedSeconds);
+        } else if (accountImportEntity.getFinishedAt() != null) {
+            double elapsedSeconds = Math.max(Duration.between(accountImportEntity.getStartedAt(), accountImportEntity.getFinishedAt()).toMillis(), 1) / 1000.0;
+            accountImport.setAccountsPerSecond(accountImportEntity.getImportedAccounts() / elapsedSeconds);
+        }
+
+        return accountImport;
+    }
+
+    /**
+     * In-memory progress of an import started by this process.
+     */
+    private static final class ImportProgress {
+        private final long startedNanos = System.nanoTime();
+        private volatile long finishedNanos;
+        private final LongAdder rowsRead = new LongAdder();
+        private final LongAdder importedAccounts = new LongAdder();
+        private final LongAdder rejectedRows = new LongAdder();
+
+        private void chunkCompleted(long imported, long rejected) {
+            importedAccounts.add(imported);
+            rejectedRows.add(rejected);
+        }
+
+        private long elapsedNanos() {
+            return (finishedNanos == 0 ? System.nanoTime() : finishedNanos) - startedNanos;
+        }
+    }
+}
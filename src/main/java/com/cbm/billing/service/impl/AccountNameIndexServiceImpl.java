@@ -0,0 +1,134 @@
+package com.cbm.billing.service.impl;
+
+import com.cbm.billing.dto.query.AccountNameIndexStatusResponse;
+import com.cbm.billing.exception.ForbiddenOperationException;
+import com.cbm.billing.repository.AccountNameIndexJdbcRepository;
+import com.cbm.billing.service.IAccountNameIndexService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Service that rebuilds the account name index from the account table, for accounts loaded without the
+ * application (e.g. the SQL scripts) or written before the index existed. The accounts are indexed in
+ * chunks using keyset pagination, one transaction per chunk, and a chunk replaces the postings of its
+ * accounts, so a rebuild can be run again at any time and accounts created meanwhile stay indexed.
+ * <p>
+ * A rebuild clears the complete flag of the index when it starts and sets it once it went through every
+ * account, and the name searches only read the postings while the flag is set.
+ */
+@Slf4j
+@Service
+public class AccountNameIndexServiceImpl implements IAccountNameIndexService {
+    private final AccountNameIndexJdbcRepository accountNameIndexJdbcRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final ExecutorService rebuildExecutor;
+    private final AtomicBoolean rebuildRunning = new AtomicBoolean();
+
+    private final LongAdder indexedAccounts = new LongAdder();
+    private volatile Long rebuildPosition;
+    private volatile LocalDateTime lastRebuildFinishedAt;
+
+    public AccountNameIndexServiceImpl(AccountNameIndexJdbcRepository accountNameIndexJdbcRepository,
+                                       PlatformTransactionManager transactionManager,
+                                       @Value("${billing.search.name-index.rebuild.chunk-size:1000}") int chunkSize) {
+        this.accountNameIndexJdbcRepository = accountNameIndexJdbcRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // The chunks read the names after deleting their postings, see AccountNameIndexJdbcRepository#indexAccountsAfter
+        this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        this.chunkSize = chunkSize;
+        this.rebuildExecutor = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("name-index-rebuild-"));
+    }
+
+    /**
+     * Starts a rebuild of the account name index in the background, from the first account.
+     * @return a {@link AccountNameIndexStatusResponse} with the status of the index
+     * @throws ForbiddenOperationException if a rebuild is already in progress
+     */
+    @Override
+    public AccountNameIndexStatusResponse startRebuild() throws ForbiddenOperationException {
+        if (!rebuildRunning.compareAndSet(false, true)) {
+            log.error("Account name index rebuild is already in progress");
+            throw new ForbiddenOperationException("Account name index rebuild is already in progress");
+        }
+
+        rebuildPosition = 0L;
+        try {
+            accountNameIndexJdbcRepository.setIndexComplete(false);
+        } catch (RuntimeException e) {
+            rebuildRunning.set(false);
+            throw e;
+        }
+        rebuildExecutor.execute(this::rebuild);
+        log.info("Account name index rebuild started");
+        return indexStatus("Account name index rebuild started successfully");
+    }
+
+    /**
+     * Retrieves the progress of the account name index rebuild.
+     * @return a {@link AccountNameIndexStatusResponse} with the accounts indexed since startup
+     */
+    @Override
+    public AccountNameIndexStatusResponse indexStatus() {
+        return indexStatus("Account name index status");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // An interrupted chunk rolls back, the index stays usable and the rebuild can be started again
+        rebuildExecutor.shutdownNow();
+    }
+
+    private void rebuild() {
+        try {
+            long afterId = 0;
+            while (true) {
+                if (Thread.currentThread().isInterrupted()) {
+                    log.warn("Account name index rebuild interrupted after account {}", rebuildPosition);
+                    return;
+                }
+                long chunkAfterId = afterId;
+                List<Long> ids = transactionTemplate.execute(status -> accountNameIndexJdbcRepository.indexAccountsAfter(chunkAfterId, chunkSize));
+                if (ids.isEmpty()) {
+                    break;
+                }
+                indexedAccounts.add(ids.size());
+                afterId = ids.get(ids.size() - 1);
+                rebuildPosition = afterId;
+            }
+            accountNameIndexJdbcRepository.setIndexComplete(true);
+            lastRebuildFinishedAt = LocalDateTime.now();
+            log.info("Account name index rebuild finished");
+        } catch (RuntimeException e) {
+            log.error("Account name index rebuild failed after account {}", rebuildPosition, e);
+        } finally {
+            rebuildPosition = null;
+            rebuildRunning.set(false);
+        }
+    }
+
+    private AccountNameIndexStatusResponse indexStatus(String message) {
+        return AccountNameIndexStatusResponse.builder()
+                .code(200L)
+                .message(message)
+                .indexComplete(accountNameIndexJdbcRepository.isIndexComplete())
+                .rebuildRunning(rebuildRunning.get())
+                .rebuildPosition(rebuildPosition)
+                .indexedAccounts(indexedAccounts.sum())
+                .lastRebuildFinishedAt(lastRebuildFinishedAt)
+                .build();
+    }
+}
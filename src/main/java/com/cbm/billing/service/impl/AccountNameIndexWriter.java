@@ -0,0 +1,39 @@
+package com.cbm.billing.service.impl;
+
+import com.cbm.billing.repository.AccountNameIndexJdbcRepository;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Adds the names of the accounts created by the current transaction to the account name index, so an
+ * account can be found by the indexed name search as soon as it is committed.
+ */
+@Component
+public class AccountNameIndexWriter extends TransactionalBatchWriter<Map.Entry<Long, String>> {
+    private final AccountNameIndexJdbcRepository accountNameIndexJdbcRepository;
+
+    public AccountNameIndexWriter(AccountNameIndexJdbcRepository accountNameIndexJdbcRepository) {
+        super("Account name postings");
+        this.accountNameIndexJdbcRepository = accountNameIndexJdbcRepository;
+    }
+
+    /**
+     * Indexes the name of the account when the current transaction commits.
+     * @param accountId the id of the created account
+     * @param name the name of the account
+     * @throws IllegalStateException if there is no active transaction
+     */
+    public void accountCreated(Long accountId, String name) {
+        buffer(Map.entry(accountId, name));
+    }
+
+    @Override
+    protected void flush(List<Map.Entry<Long, String>> names) {
+        Map<Long, String> namesById = new LinkedHashMap<>();
+        names.forEach(name -> namesById.put(name.getKey(), name.getValue()));
+        accountNameIndexJdbcRepository.insertPostings(namesById);
+    }
+}
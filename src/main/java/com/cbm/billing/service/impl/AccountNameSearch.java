@@ -0,0 +1,184 @@
+package com.cbm.billing.service.impl;
+
+import com.cbm.billing.common.AccountNameMatch;
+import com.cbm.billing.common.AccountNameTerms;
+import com.cbm.billing.entity.AccountEntity;
+import com.cbm.billing.entity.AccountNameTokenEntity;
+import com.cbm.billing.entity.AccountNameTrigramEntity;
+import com.cbm.billing.repository.AccountNameIndexJdbcRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.AbstractQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Name condition of the account search. A substring search is narrowed to the accounts having the
+ * rarest trigram of the searched text, read from the account name index, before the LIKE check, so it
+ * reads a few postings instead of every name. A word search only reads the postings of its words.
+ * A prefix search is served by the name index of the account table.
+ * <p>
+ * The postings are only read once a rebuild of the account name index went through every account. Until
+ * then a substring search is matched with LIKE alone, and a word search with a LIKE per word, so the
+ * accounts loaded without the application are found too.
+ */
+@Component
+@Slf4j
+public class AccountNameSearch {
+    private static final char LIKE_ESCAPE = '!';
+
+    private final CriteriaBuilder criteriaBuilder;
+    private final AccountNameIndexJdbcRepository accountNameIndexJdbcRepository;
+    private final int maxPostings;
+
+    public AccountNameSearch(EntityManager entityManager, AccountNameIndexJdbcRepository accountNameIndexJdbcRepository,
+                             @Value("${billing.search.name-index.max-postings:10000}") int maxPostings) {
+        this.criteriaBuilder = entityManager.getCriteriaBuilder();
+        this.accountNameIndexJdbcRepository = accountNameIndexJdbcRepository;
+        this.maxPostings = maxPostings;
+    }
+
+    /**
+     * function to resolve the name condition of a search once, so the page and the total queries share
+     * the trigram looked up in the index.
+     * @param name the searched text
+     * @param match how the name is matched, SUBSTRING when null
+     * @return the name condition, or null when no name is searched
+     */
+    public Filter resolve(String name, AccountNameMatch match) {
+        if (name == null || name.isEmpty()) {
+            return null;
+        }
+
+        AccountNameMatch resolvedMatch = match == null ? AccountNameMatch.SUBSTRING : match;
+        Set<String> tokens = AccountNameTerms.tokens(name);
+        // A text without letters or digits has no word to look up, it is matched as a substring
+        if (resolvedMatch == AccountNameMatch.TOKEN && tokens.isEmpty()) {
+            resolvedMatch = AccountNameMatch.SUBSTRING;
+        }
+
+        if (resolvedMatch != AccountNameMatch.PREFIX && !accountNameIndexJdbcRepository.isIndexComplete()) {
+            log.debug("Account name index is not complete, name matched with LIKE");
+            List<String> words = resolvedMatch == AccountNameMatch.TOKEN ? List.copyOf(AccountNameTerms.words(name)) : List.of();
+            return new Filter(resolvedMatch, name, null, words, false);
+        }
+
+        String trigram = null;
+        if (resolvedMatch == AccountNameMatch.SUBSTRING) {
+            // Texts shorter than a trigram, or made only of frequent trigrams, are matched with LIKE alone
+            trigram = accountNameIndexJdbcRepository.findRarestTrigram(AccountNameTerms.trigrams(name), maxPostings).orElse(null);
+            log.debug("Substring search narrowed by trigram {}", trigram);
+        }
+
+        return new Filter(resolvedMatch, name, trigram, List.copyOf(tokens), true);
+    }
+
+    /**
+     * function to generate the JPA predicate of a resolved name condition.
+     * @param filter the name condition
+     * @param query the query the predicate belongs to, used to build the index subqueries
+     * @param accountEntityRoot the root of the JPA query
+     * @return a JPA predicate that selects the accounts matching the name condition
+     */
+    public Predicate predicate(Filter filter, AbstractQuery<?> query, Root<AccountEntity> accountEntityRoot) {
+        String escaped = escapeLike(filter.name());
+        return switch (filter.match()) {
+            case PREFIX -> criteriaBuilder.like(accountEntityRoot.get("name"), escaped + "%", LIKE_ESCAPE);
+            case SUBSTRING -> {
+                Predicate like = criteriaBuilder.like(accountEntityRoot.get("name"), "%" + escaped + "%", LIKE_ESCAPE);
+                if (filter.trigram() == null) {
+                    yield like;
+                }
+                Subquery<Long> postings = query.subquery(Long.class);
+                Root<AccountNameTrigramEntity> trigramRoot = postings.from(AccountNameTrigramEntity.class);
+                postings.select(trigramRoot.get("accountId"))
+                        .where(criteriaBuilder.equal(trigramRoot.get("trigram"), filter.trigram()));
+                yield criteriaBuilder.and(accountEntityRoot.get("id").in(postings), like);
+            }
+            case TOKEN -> {
+                if (!filter.indexed()) {
+                    yield criteriaBuilder.and(filter.tokens().stream()
+                            .map(word -> criteriaBuilder.like(accountEntityRoot.get("name"), "%" + escapeLike(word) + "%", LIKE_ESCAPE))
+                            .toArray(Predicate[]::new));
+                }
+                // One subquery for all the words, the accounts having a posting for each of them
+                Subquery<Long> postings = query.subquery(Long.class);
+                Root<AccountNameTokenEntity> tokenRoot = postings.from(AccountNameTokenEntity.class);
+                postings.select(tokenRoot.get("accountId"))
+                        .where(tokenRoot.get("token").in(filter.tokens()))
+                        .groupBy(tokenRoot.get("accountId"))
+                        .having(criteriaBuilder.equal(criteriaBuilder.count(tokenRoot), (long) filter.tokens().size()));
+                yield accountEntityRoot.get("id").in(postings);
+            }
+        };
+    }
+
+    /**
+     * function to generate the SQL condition of a resolved name condition, with the same meaning as
+     * {@link #predicate}, for the JDBC queries of the account table.
+     * @param filter the name condition
+     * @param args the list the arguments of the condition are appended to, in order
+     * @return an SQL condition on the name and id columns of billing.billing_account
+     */
+    public String sqlCondition(Filter filter, List<Object> args) {
+        String escaped = escapeLike(filter.name());
+        return switch (filter.match()) {
+            case PREFIX -> {
+                args.add(escaped + "%");
+                yield "name LIKE ? ESCAPE '" + LIKE_ESCAPE + "'";
+            }
+            case SUBSTRING -> {
+                args.add("%" + escaped + "%");
+                if (filter.trigram() == null) {
+                    yield "name LIKE ? ESCAPE '" + LIKE_ESCAPE + "'";
+                }
+                args.add(filter.trigram());
+                yield "name LIKE ? ESCAPE '" + LIKE_ESCAPE + "'"
+                        + " AND id IN (SELECT account_id FROM billing.account_name_trigram WHERE trigram = ?)";
+            }
+            case TOKEN -> {
+                if (!filter.indexed()) {
+                    filter.tokens().forEach(word -> args.add("%" + escapeLike(word) + "%"));
+                    yield String.join(" AND ", Collections.nCopies(filter.tokens().size(), "name LIKE ? ESCAPE '" + LIKE_ESCAPE + "'"));
+                }
+                args.addAll(filter.tokens());
+                args.add(filter.tokens().size());
+                yield "id IN (SELECT account_id FROM billing.account_name_token WHERE token IN ("
+                        + String.join(", ", Collections.nCopies(filter.tokens().size(), "?"))
+                        + ") GROUP BY account_id HAVING COUNT(*) = ?)";
+            }
+        };
+    }
+
+    private static String escapeLike(String text) {
+        StringBuilder escaped = new StringBuilder(text.length() + 8);
+        for (int index = 0; index < text.length(); index++) {
+            char c = text.charAt(index);
+            if (c == LIKE_ESCAPE || c == '%' || c == '_') {
+                escaped.append(LIKE_ESCAPE);
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * Name condition of a search, resolved against the account name index.
+     * @param match how the name is matched
+     * @param name the searched text
+     * @param trigram the trigram narrowing a substring search, null to match with LIKE alone
+     * @param tokens the words of a word search, all of them must be words of the name: the terms of the index,
+     *               or the words as typed when the index is not used
+     * @param indexed whether the condition reads the account name index
+     */
+    public record Filter(AccountNameMatch match, String name, String trigram, List<String> tokens, boolean indexed) {
+    }
+}
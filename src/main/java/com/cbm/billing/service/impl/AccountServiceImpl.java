@@ -1,12 +1,24 @@
 package com.cbm.billing.service.impl;
 
+import com.cbm.billing.cache.AccountCache;
+import com.cbm.billing.cache.AccountSearchTotalCache;
+import com.cbm.billing.cache.SingleFlight;
+import com.cbm.billing.common.AccountConstants;
+import com.cbm.billing.common.AccountFileFormat;
+import com.cbm.billing.common.AccountNameMatch;
+import com.cbm.billing.common.AccountSortKey;
 import com.cbm.billing.common.AccountStatus;
+import com.cbm.billing.common.SearchTotalMode;
 import com.cbm.billing.common.TransactionType;
+import com.cbm.billing.datasource.ReplicaReads;
 import com.cbm.billing.dto.create.CreateAccountDTO;
 import com.cbm.billing.dto.create.CreateAccountResponse;
 import com.cbm.billing.dto.event.TransactionDetailsEvent;
 import com.cbm.billing.dto.event.UpdateAccountStatusEvent;
+import com.cbm.billing.dto.query.AccountSearchCursor;
+import com.cbm.billing.dto.query.CacheStatsResponse;
 import com.cbm.billing.dto.query.QueryAccountResponse;
+import com.cbm.billing.dto.query.QueryTransactionHistoryResponse;
 import com.cbm.billing.dto.query.SearchAccountDTO;
 import com.cbm.billing.dto.query.SearchAccountResponse;
 import com.cbm.billing.dto.update.*;
@@ -15,28 +27,46 @@ import com.cbm.billing.exception.AccountDomainException;
 import com.cbm.billing.exception.AccountNotFoundException;
 import com.cbm.billing.exception.ForbiddenOperationException;
 import com.cbm.billing.exception.ForbiddenTransactionExeption;
+import com.cbm.billing.exception.InvalidSearchException;
 import com.cbm.billing.mapper.IAccountDataMapper;
 import com.cbm.billing.model.Account;
+import com.cbm.billing.model.TransactionLedgerEntry;
+import com.cbm.billing.repository.AccountJdbcRepository;
 import com.cbm.billing.repository.AccountRepository;
+import com.cbm.billing.repository.TransactionLedgerJdbcRepository;
 import com.cbm.billing.service.IAccountService;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import io.micrometer.common.util.StringUtils;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.AbstractQuery;
+import jakarta.persistence.criteria.CompoundSelection;
 import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
 import jakarta.persistence.criteria.Predicate;
 import jakarta.persistence.criteria.Root;
 import jakarta.transaction.Transactional;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
@@ -45,12 +75,50 @@ public class AccountServiceImpl implements IAccountService {
     private final IAccountDataMapper accountDataMapper;
     private final EntityManager entityManager;
     private final CriteriaBuilder criteriaBuilder;
-
-    public AccountServiceImpl(AccountRepository accountRepository, IAccountDataMapper accountDataMapper, EntityManager entityManager) {
+    private final AccountSearchTotalCache searchTotalCache;
+    private final AccountTransactionMailbox transactionMailbox;
+    private final AccountCache accountCache;
+    private final TransactionLedgerWriter ledgerWriter;
+    private final OutboxWriter outboxWriter;
+    private final SummaryChangeWriter summaryChangeWriter;
+    private final TransactionLedgerJdbcRepository transactionLedgerJdbcRepository;
+    private final AccountJdbcRepository accountJdbcRepository;
+    private final AccountNameIndexWriter nameIndexWriter;
+    private final AccountNameSearch nameSearch;
+    private final ReceivablesAggregates receivablesAggregates;
+    private final AccountBitmapIndex bitmapIndex;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+    private final SingleFlight<SearchKey, SearchAccountResponse> searchFlight;
+    private final int searchCountCap;
+
+    public AccountServiceImpl(AccountRepository accountRepository, IAccountDataMapper accountDataMapper, EntityManager entityManager,
+                              AccountSearchTotalCache searchTotalCache, AccountTransactionMailbox transactionMailbox, AccountCache accountCache,
+                              TransactionLedgerWriter ledgerWriter, TransactionLedgerJdbcRepository transactionLedgerJdbcRepository,
+                              OutboxWriter outboxWriter, SummaryChangeWriter summaryChangeWriter,
+                              AccountJdbcRepository accountJdbcRepository, AccountNameIndexWriter nameIndexWriter,
+                              AccountNameSearch nameSearch, ReceivablesAggregates receivablesAggregates,
+                              AccountBitmapIndex bitmapIndex, PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                              @Value("${billing.search.count-cap:10000}") int searchCountCap) {
         this.accountRepository = accountRepository;
         this.accountDataMapper = accountDataMapper;
         this.entityManager = entityManager;
         this.criteriaBuilder = entityManager.getCriteriaBuilder();
+        this.searchTotalCache = searchTotalCache;
+        this.transactionMailbox = transactionMailbox;
+        this.accountCache = accountCache;
+        this.ledgerWriter = ledgerWriter;
+        this.outboxWriter = outboxWriter;
+        this.summaryChangeWriter = summaryChangeWriter;
+        this.transactionLedgerJdbcRepository = transactionLedgerJdbcRepository;
+        this.accountJdbcRepository = accountJdbcRepository;
+        this.nameIndexWriter = nameIndexWriter;
+        this.nameSearch = nameSearch;
+        this.receivablesAggregates = receivablesAggregates;
+        this.bitmapIndex = bitmapIndex;
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.searchFlight = new SingleFlight<>("search", meterRegistry);
+        this.searchCountCap = searchCountCap;
     }
 
 /**
@@ -65,6 +133,12 @@ public class AccountServiceImpl implements IAccountService {
         try {
             AccountEntity accountEntity = accountDataMapper.createAccountDTOInToAccountEntity(createAccountDTO);
             accountRepository.save(accountEntity);
+            summaryChangeWriter.accountChanged(accountEntity.getId());
+            nameIndexWriter.accountCreated(accountEntity.getId(), accountEntity.getName());
+            receivablesAggregates.accountCreated(accountEntity.getStatus(), accountEntity.getBillCycleDay(), accountEntity.getCurrentBalance());
+            bitmapIndex.accountCreated(accountEntity.getId(), accountEntity.getStatus(), accountEntity.getBillCycleDay(), accountEntity.getLastBillDate());
+            // Not cached yet, but moves the write generation on, so no search started before it is joined after it
+            accountCache.evict(accountEntity.getId());
             return CreateAccountResponse.builder()
                     .code(200L)
                     .message("Account created successfully")
@@ -88,7 +162,8 @@ public class AccountServiceImpl implements IAccountService {
     public UpdateBillCycleResponse updateBillCycle(Long accountId, UpdateBillCycleDTO updateBillCycleDTO) throws AccountNotFoundException {
         log.info("Searching for account with id {}", accountId);
 
-        Optional<AccountEntity> accountOptional = accountRepository.findById(accountId);
+        // Locked so that the row written back carries the balance of the charges and credits committed before
+        Optional<AccountEntity> accountOptional = accountRepository.findByIdForUpdate(accountId);
 
         if (accountOptional.isEmpty() || accountOptional.get().getStatus() == AccountStatus.TERMINATED) {
             log.error("Account not found");
@@ -99,8 +174,11 @@ public class AccountServiceImpl implements IAccountService {
 
         try {
             AccountEntity accountEntity = accountOptional.get();
+            receivablesAggregates.billCycleDayChanged(accountEntity.getStatus(), accountEntity.getBillCycleDay(), updateBillCycleDTO.getBillCycleDay());
             accountEntity.setBillCycleDay(updateBillCycleDTO.getBillCycleDay());
             accountRepository.save(accountEntity);
+            bitmapIndex.billCycleDayChanged(accountId, accountEntity.getBillCycleDay());
+            accountCache.evict(accountId);
             log.info("Account with id {} updated successfully", accountEntity.getId());
 
             return UpdateBillCycleResponse.builder()
@@ -117,58 +195,34 @@ public class AccountServiceImpl implements IAccountService {
 
     /**
      * function to charge the given amount from the account with the given id.
+     * The charge is group committed with the other operations arriving on the same account,
+     * see {@link AccountTransactionMailbox}.
      *
      * @param accountId the id of the account to withdraw from
      * @param amount the amount to withdraw
      * @return a {@link TransactionResponse} containing the updated account, or an error
      *     response if the account could not be updated
+     * @throws AccountNotFoundException if the account with the given id does not exist
+     * @throws ForbiddenTransactionExeption if the account is terminated or its balance is less than the amount
      */
     @Override
-    @Transactional
     public TransactionResponse chargeOnAccount(Long accountId, TransactionAmountDTO amount) throws AccountNotFoundException, ForbiddenTransactionExeption {
-        log.info("Searching for account with id {}", accountId);
-
-        Optional<AccountEntity> accountOptional = accountRepository.findById(accountId);
-
-        if (accountOptional.isEmpty() || accountOptional.get().getStatus() == AccountStatus.TERMINATED) {
-            log.error("Account not found with id {}", accountId);
-            throw new AccountNotFoundException("Account not found with id " + accountId);
-        }
-
-        if (accountOptional.get().getCurrentBalance() < amount.getAmount()) {
-            log.error("Current balance is less than amount to charge");
-            throw new ForbiddenTransactionExeption("Current balance is less than amount to charge");
-        }
+        log.info("Charging account with id {}", accountId);
 
-        try {
-            AccountEntity accountEntity = accountOptional.get();
-            accountEntity.setCurrentBalance(accountEntity.getCurrentBalance() - amount.getAmount());
-            accountRepository.save(accountEntity);
-            log.info("Account with id {} updated successfully", accountEntity.getId());
-
-            TransactionDetailsEvent transactionDetailsEvent = TransactionDetailsEvent.builder()
-                    .accountId(accountEntity.getId())
-                    .transactionType(TransactionType.CHARGE)
-                    .previousBalance(accountEntity.getCurrentBalance() + amount.getAmount())
-                    .transactionAmount(amount.getAmount())
-                    .currentBalance(accountEntity.getCurrentBalance())
-                    .transactionDate(LocalDate.now())
-                    .build();
-
-            return TransactionResponse.builder()
-                    .code(200L)
-                    .message("Charge successful")
-                    .details(transactionDetailsEvent)
-                    .build();
+        TransactionDetailsEvent transactionDetailsEvent = transactionMailbox.submit(accountId, TransactionType.CHARGE, amount.getAmount());
+        log.info("Account with id {} charged successfully", accountId);
 
-        } catch (Exception e) {
-            log.error("Charge failed for account with id {}", accountId);
-            throw new AccountDomainException("Charge failed for account with id " + accountId);
-        }
+        return TransactionResponse.builder()
+                .code(200L)
+                .message("Charge successful")
+                .details(transactionDetailsEvent)
+                .build();
     }
 
     /**
      * function to credit the given amount to the account with the given id.
+     * The credit is group committed with the other operations arriving on the same account,
+     * see {@link AccountTransactionMailbox}.
      * @param accountId the id of the account to credit
      * @param amount the amount to credit
      * @return a {@link TransactionResponse} containing the updated account, or an error
@@ -177,46 +231,76 @@ public class AccountServiceImpl implements IAccountService {
      * @throws ForbiddenTransactionExeption if the account is terminated
      */
     @Override
-    @Transactional
-    public TransactionResponse creditOnAccount(Long accountId, TransactionAmountDTO amount) throws AccountNotFoundException {
-        log.info("Searching for account with id {}", accountId);
-
-        Optional<AccountEntity> accountOptional = accountRepository.findById(accountId);
+    public TransactionResponse creditOnAccount(Long accountId, TransactionAmountDTO amount) throws AccountNotFoundException, ForbiddenTransactionExeption {
+        log.info("Crediting account with id {}", accountId);
 
-        if (accountOptional.isEmpty() || accountOptional.get().getStatus() == AccountStatus.TERMINATED) {
-            log.error("Account not found with id {}", accountId);
-            throw new AccountNotFoundException("Account not found with id " + accountId);
-        }
+        TransactionDetailsEvent transactionDetailsEvent = transactionMailbox.submit(accountId, TransactionType.CREDIT, amount.getAmount());
+        log.info("Account with id {} credited successfully", accountId);
 
-        try {
-            AccountEntity accountEntity = accountOptional.get();
-            accountEntity.setCurrentBalance(accountEntity.getCurrentBalance() + amount.getAmount());
-            accountRepository.save(accountEntity);
-            log.info("Account with id {} updated successfully", accountEntity.getId());
+        return TransactionResponse.builder()
+                .code(200L)
+                .message("Credit successful")
+                .details(transactionDetailsEvent)
+                .build();
+    }
 
-            TransactionDetailsEvent transactionDetailsEvent = TransactionDetailsEvent.builder()
-                    .accountId(accountEntity.getId())
-                    .transactionType(TransactionType.CREDIT)
-                    .previousBalance(accountEntity.getCurrentBalance() - amount.getAmount())
-                    .transactionAmount(amount.getAmount())
-                    .currentBalance(accountEntity.getCurrentBalance())
-                    .transactionDate(LocalDate.now())
-                    .build();
+    /**
+     * function to apply many charges and credits in a single transaction.
+     * The touched accounts are loaded and locked with one query, the operations are applied in request
+     * order with the same rules as {@link #chargeOnAccount} and {@link #creditOnAccount}, and the new
+     * balances are written back in one JDBC batch when the transaction commits, as are the ledger
+     * entries of the applied operations.
+     * @param batchTransactionDTO the operations to apply
+     * @return a {@link BatchTransactionResponse} with one result per operation, in request order
+     * @throws AccountDomainException if the batch could not be applied
+     */
+    @Override
+    @Transactional
+    public BatchTransactionResponse batchTransactions(BatchTransactionDTO batchTransactionDTO) {
+        List<BatchTransactionItemDTO> transactions = batchTransactionDTO.getTransactions();
+        log.info("Applying batch of {} transactions", transactions.size());
 
-            return TransactionResponse.builder()
+        try {
+            Set<Long> accountIds = transactions.stream()
+                    .map(BatchTransactionItemDTO::getAccountId)
+                    .collect(Collectors.toSet());
+            Map<Long, AccountEntity> accounts = accountRepository.findByIdInOrderById(accountIds).stream()
+                    .collect(Collectors.toMap(AccountEntity::getId, Function.identity()));
+
+            List<BatchTransactionResult> results = new ArrayList<>(transactions.size());
+            int succeeded = 0;
+
+            for (int index = 0; index < transactions.size(); index++) {
+                BatchTransactionItemDTO transaction = transactions.get(index);
+                BatchTransactionResult result = applyBatchTransaction(index, transaction, accounts.get(transaction.getAccountId()));
+                if (result.getCode() == 200L) {
+                    succeeded++;
+                }
+                results.add(result);
+            }
+            accountCache.evictAll(accountIds);
+            accounts.keySet().forEach(summaryChangeWriter::accountChanged);
+
+            log.info("Batch applied: {} succeeded, {} failed", succeeded, transactions.size() - succeeded);
+
+            return BatchTransactionResponse.builder()
                     .code(200L)
-                    .message("Credit successful")
-                    .details(transactionDetailsEvent)
+                    .message("Batch processed")
+                    .succeeded(succeeded)
+                    .failed(transactions.size() - succeeded)
+                    .results(results)
                     .build();
 
         } catch (Exception e) {
-            log.error("Credit failed for account with id {}", accountId);
-            throw new AccountDomainException("Credit failed for account with id " + accountId);
+            log.error("Batch transaction failed", e);
+            throw new AccountDomainException("Batch transaction failed");
         }
     }
 
     /**
      * Retrieves an account by ID.
+     * Accounts are read through the {@link AccountCache}; every write path evicts the accounts it
+     * modifies, so a cached account is never older than the last committed write.
      * @param accountId the ID of the account to retrieve
      * @return a {@link QueryAccountResponse} containing the retrieved account, or an error
      *     response if the account could not be found
@@ -226,80 +310,277 @@ public class AccountServiceImpl implements IAccountService {
     public QueryAccountResponse findAccountById(Long accountId) throws AccountNotFoundException {
         log.info("Searching account with id {}", accountId);
 
-        Optional<AccountEntity> accountOptional = accountRepository.findById(accountId);
+        Account accountDTO;
+        try {
+            accountDTO = accountCache.get(accountId, this::findActiveAccount);
+        } catch (Exception e) {
+            log.error("Error finding account with id {}", accountId);
+            throw new AccountDomainException("Error finding account with id " + accountId);
+        }
 
-        if (accountOptional.isEmpty() || accountOptional.get().getStatus() == AccountStatus.TERMINATED) {
+        if (accountDTO == null) {
+            log.error("Account not found with id {}", accountId);
+            throw new AccountNotFoundException("Account not found with id " + accountId);
+        }
+
+        log.info("Account found  with id {}", accountId);
+
+        return QueryAccountResponse.builder()
+                .code(200L)
+                .message("Account found")
+                .accounts(List.of(accountDTO))
+                .build();
+    }
+
+    /**
+     * Retrieves the charges and credits applied on an account, newest first.
+     * Pages are read from the transaction ledger with a keyset condition on the entry id, so every
+     * page costs the same however long the history is. The history of terminated accounts is kept.
+     * @param accountId the id of the account
+     * @param cursor the nextCursor returned by the previous page, null for the first page
+     * @param size the number of entries per page, capped to {@link AccountConstants#MAX_HISTORY_PAGE_SIZE}
+     * @return a {@link QueryTransactionHistoryResponse} containing the page and the cursor of the next one
+     * @throws AccountNotFoundException if the account with the given id does not exist
+     */
+    @Override
+    public QueryTransactionHistoryResponse findTransactionHistory(Long accountId, Long cursor, int size) throws AccountNotFoundException {
+        log.info("Retrieving transaction history for account with id {}", accountId);
+
+        if (!accountRepository.existsById(accountId)) {
             log.error("Account not found with id {}", accountId);
             throw new AccountNotFoundException("Account not found with id " + accountId);
         }
 
         try {
-            AccountEntity accountEntity = accountOptional.get();
-            Account accountDTO = accountDataMapper.accountEntityToAccount(accountEntity);
-            log.info("Account found  with id {}", accountId);
+            int pageSize = Math.max(1, Math.min(size, AccountConstants.MAX_HISTORY_PAGE_SIZE));
+            List<TransactionLedgerEntry> transactions = transactionLedgerJdbcRepository.findByAccountId(accountId, cursor, pageSize);
 
-            return QueryAccountResponse.builder()
+            return QueryTransactionHistoryResponse.builder()
                     .code(200L)
-                    .message("Account found")
-                    .accounts(List.of(accountDTO))
+                    .message("Transaction history found")
+                    .accountId(accountId)
+                    .transactions(transactions)
+                    .nextCursor(transactions.size() == pageSize ? transactions.get(pageSize - 1).getId() : null)
                     .build();
 
         } catch (Exception e) {
-            log.error("Error finding account with id {}", accountId);
-            throw new AccountDomainException("Error finding account with id " + accountId);
+            log.error("Error retrieving transaction history for account with id {}", accountId, e);
+            throw new AccountDomainException("Error retrieving transaction history for account with id " + accountId);
         }
     }
 
+    /**
+     * Returns the account cache statistics.
+     * @return a {@link CacheStatsResponse} with the size and the hit, miss, load and eviction counters of the cache
+     */
+    @Override
+    public CacheStatsResponse accountCacheStats() {
+        CacheStats stats = accountCache.stats();
+
+        return CacheStatsResponse.builder()
+                .code(200L)
+                .message("Account cache statistics")
+                .size(accountCache.size())
+                .hitCount(stats.hitCount())
+                .missCount(stats.missCount())
+                .hitRate(stats.hitRate())
+                .loadCount(stats.loadCount())
+                .evictionCount(stats.evictionCount())
+                .averageLoadPenaltyMs(stats.averageLoadPenalty() / 1_000_000d)
+                .build();
+    }
+
+    /**
+     * Auxiliary method that loads and maps an account for the cache. Missing and terminated
+     * accounts return null, so they are not cached. The account is read from the primary: a replica
+     * lagging behind a write would put the state from before it in the cache for the whole TTL.
+     */
+    private Account findActiveAccount(Long accountId) {
+        return accountRepository.findAccountById(accountId)
+                .filter(found -> found.getStatus() != AccountStatus.TERMINATED)
+                .orElse(null);
+    }
+
     /**
      * Retrieves a list of accounts that match the given search filters.
-     * @param page the page of the search results to retrieve
+     * Results are ordered by the requested sort key and then by id. When the filters carry a cursor
+     * returned by a previous search, the page is read with a keyset (seek) condition instead of an
+     * offset, so every page costs the same no matter how deep it is.
+     * The total is computed according to the total mode of the filters: EXACT (default) runs a COUNT
+     * query whose result is cached per filter combination for a short time, ESTIMATE counts at most
+     * billing.search.count-cap rows and NONE skips the total.
+     * The page and the total are read in one read-only transaction, served by a read replica when there is one.
+     * Identical searches arriving while one runs wait for it and share its response, unless an account write
+     * completed since it started, see {@link SingleFlight}.
+     * @param page the page of the search results to retrieve, ignored when a cursor is given
      * @param size the number of results to include in each page
-     * @param sort the field to sort the results by
+     * @param sort the field to sort the results by: "name" (default), "bill_cycle_day" or "last_bill_date"
      * @param filters the search filters to apply
-     * @return a {@link SearchAccountResponse} containing the search results, or an error
-     *     response if the search could not be performed
+     * @return a {@link SearchAccountResponse} containing the search results and the cursor of the next page,
+     *     or an error response if the search could not be performed
+     * @throws InvalidSearchException if the sort key or the cursor are not valid
      * @throws AccountDomainException if the search could not be performed
      */
     @Override
     public SearchAccountResponse searchAccount(int page, int size, String sort, SearchAccountDTO filters) {
         log.info("Searching accounts");
 
-        try {
-            CriteriaQuery<AccountEntity> criteriaQuery = criteriaBuilder.createQuery(AccountEntity.class);
-            Root<AccountEntity> accountEntityRoot = criteriaQuery.from(AccountEntity.class);
-            Predicate predicate = searchAccountPredicate(accountDataMapper.searchAccountDTOToAccount(filters), accountEntityRoot);
-            log.info("Building predicate with filters: {}", predicate);
-
-            criteriaQuery.where(predicate);
-            TypedQuery<AccountEntity> typedQuery = entityManager.createQuery(criteriaQuery);
-            log.info("Executing query...");
-
-            Sort sortCriteria = Sort.by(Sort.Direction.ASC, "name");
-            Pageable pageable = PageRequest.of(page, size, sortCriteria);
-            typedQuery.setFirstResult(pageable.getPageNumber() * pageable.getPageSize());
-            typedQuery.setMaxResults(pageable.getPageSize());
-            long totalCount = entityManager.createQuery(criteriaQuery).getResultList().size();
-
-            List<AccountEntity> accountEntities = typedQuery.getResultList();
-            List<Account> accounts = accountEntities.stream()
-                    .map(accountDataMapper::accountEntityToAccount)
-                    .toList();
-
-            log.info("Accounts found: {}", totalCount);
-
-            return SearchAccountResponse.builder()
-                    .total(totalCount)
-                    .page(page)
-                    .size(size)
-                    .accounts(accounts)
-                    .build();
+        AccountSortKey sortKey = resolveSortKey(sort);
+        AccountSearchCursor cursor = filters.getCursor() == null ? null : AccountSearchCursor.decode(filters.getCursor());
+
+        if (cursor != null && cursor.getSortKey() != sortKey) {
+            log.error("Cursor sorted by {} used with sort {}", cursor.getSortKey(), sortKey);
+            throw new InvalidSearchException("Cursor does not match sort " + sortKey.getParameter());
+        }
 
+        try {
+            return searchFlight.call(SearchKey.of(accountCache.writeGeneration(), ReplicaReads.pinned(), page, size, sortKey, filters),
+                    () -> ReplicaReads.call(() -> readOnlyTransactionTemplate.execute(status -> searchPage(page, size, sortKey, cursor, filters))));
         } catch (Exception e) {
             log.error("Error searching accounts");
             throw new AccountDomainException("Error searching accounts");
         }
     }
 
+    /**
+     * Auxiliary method that reads a page of the search in the current read-only transaction. The columns of
+     * {@link Account} are selected into its constructor, so the accounts of the page are neither loaded into
+     * the persistence context nor snapshotted for dirty checking.
+     */
+    private SearchAccountResponse searchPage(int page, int size, AccountSortKey sortKey, AccountSearchCursor cursor,
+                                             SearchAccountDTO filters) {
+        Account searchFilters = accountDataMapper.searchAccountDTOToAccount(filters);
+        AccountNameSearch.Filter nameFilter = nameSearch.resolve(filters.getName(), filters.getNameMatch());
+
+        if (nameFilter == null) {
+            AccountBitmapIndex.Page indexedPage = bitmapIndex.page(searchFilters.getStatus(), searchFilters.getBillCycleDay(), searchFilters.getLastBillDate(),
+                    sortKey, cursor, (long) page * size, size);
+            if (indexedPage != null) {
+                return indexedSearchPage(page, size, indexedPage, searchFilters, filters.getTotalMode());
+            }
+        }
+
+        CriteriaQuery<Account> criteriaQuery = criteriaBuilder.createQuery(Account.class);
+        Root<AccountEntity> accountEntityRoot = criteriaQuery.from(AccountEntity.class);
+        criteriaQuery.select(accountSelection(accountEntityRoot));
+        Predicate predicate = searchAccountPredicate(searchFilters, nameFilter, criteriaQuery, accountEntityRoot);
+        log.info("Building predicate with filters: {}", predicate);
+
+        criteriaQuery.where(cursor == null ? predicate : criteriaBuilder.and(predicate, seekPredicate(cursor, accountEntityRoot)));
+        criteriaQuery.orderBy(
+                criteriaBuilder.asc(accountEntityRoot.get(sortKey.getAttribute())),
+                criteriaBuilder.asc(accountEntityRoot.get("id")));
+
+        TypedQuery<Account> typedQuery = entityManager.createQuery(criteriaQuery);
+        log.info("Executing query...");
+
+        if (cursor == null) {
+            typedQuery.setFirstResult(page * size);
+        }
+        typedQuery.setMaxResults(size);
+
+        List<Account> accounts = typedQuery.getResultList();
+
+        SearchAccountResponse searchAccountResponse = SearchAccountResponse.builder()
+                .page(page)
+                .size(size)
+                .accounts(accounts)
+                .nextCursor(accounts.size() < size ? null : nextCursor(sortKey, accounts.get(accounts.size() - 1)))
+                .build();
+        searchTotal(searchFilters, nameFilter, filters.getTotalMode(), searchAccountResponse);
+        log.info("Accounts found: {}", searchAccountResponse.getTotal());
+
+        return searchAccountResponse;
+    }
+
+    /**
+     * Auxiliary method that reads a page whose ids were resolved by the bitmap index, by primary key. The
+     * accounts are put back in the order of the ids, and those changed since the index was read are left out.
+     * The next page starts after the last id of the index page, whether or not its account was left out, so a
+     * page emptied by such changes does not end the search.
+     * @param indexedPage the ids of the page, in sort order, and the cursor of the last one
+     * @param searchFilters the search filters
+     * @param totalMode the total mode, EXACT when null
+     */
+    private SearchAccountResponse indexedSearchPage(int page, int size, AccountBitmapIndex.Page indexedPage,
+                                                    Account searchFilters, SearchTotalMode totalMode) {
+        List<Long> pageIds = indexedPage.ids();
+        List<Account> accounts = new ArrayList<>(pageIds.size());
+
+        if (!pageIds.isEmpty()) {
+            CriteriaQuery<Account> criteriaQuery = criteriaBuilder.createQuery(Account.class);
+            Root<AccountEntity> accountEntityRoot = criteriaQuery.from(AccountEntity.class);
+            criteriaQuery.select(accountSelection(accountEntityRoot)).where(accountEntityRoot.get("id").in(pageIds));
+            Map<Long, Account> accountsById = entityManager.createQuery(criteriaQuery).getResultList().stream()
+                    .collect(Collectors.toMap(Account::getId, Function.identity()));
+
+            for (Long accountId : pageIds) {
+                Account account = accountsById.get(accountId);
+                if (account != null && matchesFilters(account, searchFilters)) {
+                    accounts.add(account);
+                }
+            }
+        }
+
+        SearchAccountResponse searchAccountResponse = SearchAccountResponse.builder()
+                .page(page)
+                .size(size)
+                .accounts(accounts)
+                .nextCursor(pageIds.isEmpty() || pageIds.size() < size ? null : indexedPage.last().encode())
+                .build();
+        searchTotal(searchFilters, null, totalMode, searchAccountResponse);
+        log.info("Accounts found: {}", searchAccountResponse.getTotal());
+
+        return searchAccountResponse;
+    }
+
+    /**
+     * Auxiliary method that checks an account read by id against the search filters.
+     */
+    private static boolean matchesFilters(Account account, Account filters) {
+        return (filters.getStatus() == null || filters.getStatus() == account.getStatus())
+                && (filters.getBillCycleDay() == null || filters.getBillCycleDay().equals(account.getBillCycleDay()))
+                && (filters.getLastBillDate() == null || filters.getLastBillDate().equals(account.getLastBillDate()));
+    }
+
+    /**
+     * Writes every account that matches the given search filters to the output stream, in id order.
+     * The rows are read with a forward-only cursor and written as they arrive, without entities or
+     * lists, so the memory used stays the same however many accounts match. The rows are read from a
+     * read replica when there is one.
+     * @param filters the search filters to apply, page, size, sort and cursor are ignored
+     * @param format the format of the export: NDJSON (one account per line) or CSV (with a header line)
+     * @param outputStream the stream to write to, flushed but not closed
+     * @return the number of accounts written
+     * @throws IOException if the stream could not be written, for example because the client went away
+     * @throws AccountDomainException if the accounts could not be read
+     */
+    @Override
+    public long exportAccounts(SearchAccountDTO filters, AccountFileFormat format, OutputStream outputStream) throws IOException {
+        log.info("Exporting accounts as {}", format);
+
+        AccountExportWriter exportWriter = AccountExportWriter.of(format, outputStream);
+        try {
+            Account exportFilters = accountDataMapper.searchAccountDTOToAccount(filters);
+            ReplicaReads.run(() -> {
+                AccountNameSearch.Filter nameFilter = nameSearch.resolve(filters.getName(), filters.getNameMatch());
+                List<Object> nameArgs = new ArrayList<>();
+                String nameCondition = nameFilter == null ? null : nameSearch.sqlCondition(nameFilter, nameArgs);
+                accountJdbcRepository.streamAccounts(exportFilters, nameCondition, nameArgs, exportWriter);
+            });
+        } catch (UncheckedIOException e) {
+            log.error("Account export aborted after {} accounts", exportWriter.rows());
+            throw e.getCause();
+        } catch (DataAccessException e) {
+            log.error("Error exporting accounts after {} accounts", exportWriter.rows(), e);
+            throw new AccountDomainException("Error exporting accounts");
+        }
+        exportWriter.finish();
+
+        log.info("Accounts exported: {}", exportWriter.rows());
+        return exportWriter.rows();
+    }
+
     /**
      * Update the status of an ACTIVE account with the given id to TERMINATE.
      * @param accountId the id of the account to update (must be ACTIVE)
@@ -313,7 +594,8 @@ public class AccountServiceImpl implements IAccountService {
     public UpdateAccountStatusResponse terminateAccount(Long accountId, UpdateAccountStatusDTO updateAccountStatusDTO) throws AccountNotFoundException, ForbiddenOperationException {
         log.info("Updating account status with id {}", accountId);
 
-        Optional<AccountEntity> accountEntityOptional = accountRepository.findById(accountId);
+        // Locked so that the row written back carries the current balance, and the event follows the earlier ones
+        Optional<AccountEntity> accountEntityOptional = accountRepository.findByIdForUpdate(accountId);
 
         if(accountEntityOptional.isEmpty()) {
             log.error("Account not found with id {}", accountId);
@@ -327,8 +609,12 @@ public class AccountServiceImpl implements IAccountService {
 
         try {
             AccountEntity accountEntity = accountEntityOptional.get();
+            receivablesAggregates.statusChanged(accountEntity.getStatus(), updateAccountStatusDTO.getStatus(),
+                    accountEntity.getBillCycleDay(), accountEntity.getCurrentBalance());
             accountEntity.setStatus(updateAccountStatusDTO.getStatus());
             accountRepository.save(accountEntity);
+            bitmapIndex.statusChanged(accountId, accountEntity.getStatus());
+            accountCache.evict(accountId);
             log.info("Account with id {} updated successfully", accountEntity.getId());
 
             UpdateAccountStatusEvent updateAccountStatusEvent = UpdateAccountStatusEvent.builder()
@@ -336,6 +622,8 @@ public class AccountServiceImpl implements IAccountService {
                     .updatedStatus(accountEntity.getStatus())
                     .updatedAt(LocalDate.now())
                     .build();
+            outboxWriter.append(accountId, updateAccountStatusEvent);
+            summaryChangeWriter.accountChanged(accountId);
 
             return UpdateAccountStatusResponse.builder()
                     .code(200L)
@@ -350,16 +638,233 @@ public class AccountServiceImpl implements IAccountService {
     }
 
     /**
-     * Auxiliary method that generates a JPA predicate from the given search filters.
+     * Auxiliary method that applies one operation of a batch on the loaded account.
+     * @param index the position of the operation in the batch
+     * @param transaction the operation to apply
+     * @param accountEntity the account of the operation, null if it does not exist
+     * @return the result of the operation
+     */
+    private BatchTransactionResult applyBatchTransaction(int index, BatchTransactionItemDTO transaction, AccountEntity accountEntity) {
+        Long accountId = transaction.getAccountId();
+        long amount = transaction.getAmount();
+
+        if (accountEntity == null) {
+            return BatchTransactionResult.builder()
+                    .index(index)
+                    .accountId(accountId)
+                    .code(404L)
+                    .message("Account not found with id " + accountId)
+                    .build();
+        }
+
+        if (accountEntity.getStatus() == AccountStatus.TERMINATED) {
+            return BatchTransactionResult.builder()
+                    .index(index)
+                    .accountId(accountId)
+                    .code(400L)
+                    .message("Account with id " + accountId + " is terminated. You cannot perform transactions on terminated accounts")
+                    .build();
+        }
+
+        boolean charge = transaction.getTransactionType() == TransactionType.CHARGE;
+
+        if (charge && accountEntity.getCurrentBalance() < amount) {
+            return BatchTransactionResult.builder()
+                    .index(index)
+                    .accountId(accountId)
+                    .code(400L)
+                    .message("Current balance is less than amount to charge")
+                    .build();
+        }
+
+        long previousBalance = accountEntity.getCurrentBalance();
+        accountEntity.setCurrentBalance(charge ? previousBalance - amount : previousBalance + amount);
+        receivablesAggregates.balanceChanged(accountEntity.getStatus(), charge ? -amount : amount);
+
+        TransactionDetailsEvent transactionDetailsEvent = TransactionDetailsEvent.builder()
+                .accountId(accountId)
+                .transactionType(transaction.getTransactionType())
+                .previousBalance(previousBalance)
+                .transactionAmount(amount)
+                .currentBalance(accountEntity.getCurrentBalance())
+                .transactionDate(LocalDate.now())
+                .build();
+        ledgerWriter.append(transactionDetailsEvent);
+        outboxWriter.append(accountId, transactionDetailsEvent);
+
+        return BatchTransactionResult.builder()
+                .index(index)
+                .accountId(accountId)
+                .code(200L)
+                .message(charge ? "Charge successful" : "Credit successful")
+                .details(transactionDetailsEvent)
+                .build();
+    }
+
+    /**
+     * Auxiliary method that sets the total of a search response according to the requested total mode.
+     * Without a name condition the exact total is the cardinality of the bitmap index, once it is built.
+     * A total served from the total cache is flagged as not exact.
+     * @param filters the search filters
+     * @param nameFilter the resolved name condition, null when no name is searched
+     * @param totalMode the total mode, EXACT when null
+     * @param searchAccountResponse the response to complete
+     */
+    private void searchTotal(Account filters, AccountNameSearch.Filter nameFilter, SearchTotalMode totalMode,
+                             SearchAccountResponse searchAccountResponse) {
+        if (totalMode == SearchTotalMode.NONE) {
+            return;
+        }
+
+        if (nameFilter == null) {
+            Long indexedTotal = bitmapIndex.count(filters.getStatus(), filters.getBillCycleDay(), filters.getLastBillDate());
+            if (indexedTotal != null) {
+                searchAccountResponse.setTotal(indexedTotal);
+                searchAccountResponse.setTotalExact(true);
+                return;
+            }
+        }
+
+        AccountNameMatch nameMatch = nameFilter == null ? null : nameFilter.match();
+        Long cachedTotal = searchTotalCache.getIfPresent(filters, nameMatch);
+
+        // A cached total may miss the writes of its time to live, so only a total counted by this search is exact
+        if (cachedTotal != null) {
+            searchAccountResponse.setTotal(cachedTotal);
+            searchAccountResponse.setTotalExact(false);
+            return;
+        }
+
+        if (totalMode != SearchTotalMode.ESTIMATE) {
+            AtomicBoolean counted = new AtomicBoolean();
+            searchAccountResponse.setTotal(searchTotalCache.get(filters, nameMatch, () -> {
+                counted.set(true);
+                return countAccounts(filters, nameFilter);
+            }));
+            searchAccountResponse.setTotalExact(counted.get());
+            return;
+        }
+
+        // Reads at most cap + 1 ids to tell a small exact total from a large one
+        CriteriaQuery<Long> idQuery = criteriaBuilder.createQuery(Long.class);
+        Root<AccountEntity> accountEntityRoot = idQuery.from(AccountEntity.class);
+        idQuery.select(accountEntityRoot.get("id")).where(searchAccountPredicate(filters, nameFilter, idQuery, accountEntityRoot));
+        int matches = entityManager.createQuery(idQuery).setMaxResults(searchCountCap + 1).getResultList().size();
+
+        if (matches > searchCountCap) {
+            searchAccountResponse.setTotal((long) searchCountCap);
+            searchAccountResponse.setTotalExact(false);
+        } else {
+            searchTotalCache.put(filters, nameMatch, matches);
+            searchAccountResponse.setTotal((long) matches);
+            searchAccountResponse.setTotalExact(true);
+        }
+    }
+
+    /**
+     * Auxiliary method that counts the accounts matching the search filters with a COUNT query.
      * @param filters the search filters
+     * @param nameFilter the resolved name condition, null when no name is searched
+     * @return the number of matching accounts
+     */
+    private long countAccounts(Account filters, AccountNameSearch.Filter nameFilter) {
+        CriteriaQuery<Long> countQuery = criteriaBuilder.createQuery(Long.class);
+        Root<AccountEntity> accountEntityRoot = countQuery.from(AccountEntity.class);
+        countQuery.select(criteriaBuilder.count(accountEntityRoot))
+                .where(searchAccountPredicate(filters, nameFilter, countQuery, accountEntityRoot));
+        return entityManager.createQuery(countQuery).getSingleResult();
+    }
+
+    /**
+     * Auxiliary method that resolves the sort request parameter.
+     * @param sort the sort request parameter
+     * @return the sort key, NAME when no sort is given
+     * @throws InvalidSearchException if the sort key is not supported
+     */
+    private AccountSortKey resolveSortKey(String sort) {
+        try {
+            return AccountSortKey.fromParameter(sort);
+        } catch (IllegalArgumentException e) {
+            log.error("Unsupported sort {}", sort);
+            throw new InvalidSearchException(e.getMessage());
+        }
+    }
+
+    /**
+     * Auxiliary method that generates the keyset condition that selects the rows after the cursor,
+     * in (sort key, id) order.
+     * @param cursor the cursor of the last row of the previous page
+     * @param accountEntityRoot the root of the JPA query
+     * @return a JPA predicate that selects the rows after the cursor
+     */
+    private Predicate seekPredicate(AccountSearchCursor cursor, Root<AccountEntity> accountEntityRoot) {
+        String value = cursor.getValue();
+        return switch (cursor.getSortKey()) {
+            case NAME -> seekPredicate(accountEntityRoot.get("name"), value, cursor.getId(), accountEntityRoot);
+            case BILL_CYCLE_DAY -> seekPredicate(accountEntityRoot.get("billCycleDay"),
+                    value == null ? null : Integer.valueOf(value), cursor.getId(), accountEntityRoot);
+            case LAST_BILL_DATE -> seekPredicate(accountEntityRoot.get("lastBillDate"),
+                    value == null ? null : LocalDate.parse(value), cursor.getId(), accountEntityRoot);
+        };
+    }
+
+    /**
+     * Auxiliary method that generates (column, id) > (value, lastId). NULL sorts first in ascending order,
+     * so when the last value is NULL every non NULL value comes after it.
+     */
+    private <T extends Comparable<? super T>> Predicate seekPredicate(Path<T> column, T value, Long lastId, Root<AccountEntity> accountEntityRoot) {
+        Predicate afterLastId = criteriaBuilder.greaterThan(accountEntityRoot.get("id"), lastId);
+
+        if (value == null) {
+            return criteriaBuilder.or(criteriaBuilder.and(criteriaBuilder.isNull(column), afterLastId), criteriaBuilder.isNotNull(column));
+        }
+
+        return criteriaBuilder.or(
+                criteriaBuilder.greaterThan(column, value),
+                criteriaBuilder.and(criteriaBuilder.equal(column, value), afterLastId));
+    }
+
+    /**
+     * Auxiliary method that builds the continuation token of the page ending with the given account.
+     */
+    private String nextCursor(AccountSortKey sortKey, Account lastAccount) {
+        Object value = switch (sortKey) {
+            case NAME -> lastAccount.getName();
+            case BILL_CYCLE_DAY -> lastAccount.getBillCycleDay();
+            case LAST_BILL_DATE -> lastAccount.getLastBillDate();
+        };
+        return new AccountSearchCursor(sortKey, value == null ? null : value.toString(), lastAccount.getId()).encode();
+    }
+
+    /**
+     * Auxiliary method that selects the columns exposed by {@link Account}, in the order of its constructor.
+     */
+    private CompoundSelection<Account> accountSelection(Root<AccountEntity> accountEntityRoot) {
+        return criteriaBuilder.construct(Account.class,
+                accountEntityRoot.get("id"),
+                accountEntityRoot.get("name"),
+                accountEntityRoot.get("currentBalance"),
+                accountEntityRoot.get("billCycleDay"),
+                accountEntityRoot.get("lastBillDate"),
+                accountEntityRoot.get("status"),
+                accountEntityRoot.get("createdAt"),
+                accountEntityRoot.get("updatedAt"));
+    }
+
+    /**
+     * Auxiliary method that generates a JPA predicate from the given search filters.
+     * @param filters the search filters, the name is taken from the name condition
+     * @param nameFilter the resolved name condition, null when no name is searched
+     * @param query the JPA query, used to build the subqueries of the name condition
      * @param accountEntityRoot the root of the JPA query
      * @return a JPA predicate that can be used to filter the results of the query
      */
-    private Predicate searchAccountPredicate(Account filters, Root<AccountEntity> accountEntityRoot) {
+    private Predicate searchAccountPredicate(Account filters, AccountNameSearch.Filter nameFilter, AbstractQuery<?> query,
+                                             Root<AccountEntity> accountEntityRoot) {
         List<Predicate> predicates = new ArrayList<>();
 
-        if (filters.getName() != null && StringUtils.isNotEmpty(filters.getName())) {
-            predicates.add(criteriaBuilder.like(accountEntityRoot.get("name"),"%" + filters.getName() + "%"));
+        if (nameFilter != null) {
+            predicates.add(nameSearch.predicate(nameFilter, query, accountEntityRoot));
         }
 
         if (filters.getStatus() != null && StringUtils.isNotEmpty(filters.getStatus().toString())) {
@@ -376,4 +881,23 @@ public class AccountServiceImpl implements IAccountService {
 
         return criteriaBuilder.and(predicates.toArray(new Predicate[0]));
     }
+
+    /**
+     * The search a response answers, with the filters normalized as the search reads them. The write
+     * generation keeps the searches started before a completed write from being joined after it, and the
+     * primary flag keeps a caller pinned to the primary from joining a search served by a replica.
+     */
+    private record SearchKey(long writeGeneration, boolean primary, int page, int size, AccountSortKey sortKey, String cursor,
+                             String name, AccountNameMatch nameMatch, AccountStatus status, Integer billCycleDay,
+                             LocalDate lastBillDate, SearchTotalMode totalMode) {
+        private static SearchKey of(long writeGeneration, boolean primary, int page, int size, AccountSortKey sortKey,
+                                    SearchAccountDTO filters) {
+            String name = filters.getName() == null || filters.getName().isEmpty() ? null : filters.getName();
+            AccountNameMatch nameMatch = name == null ? null
+                    : filters.getNameMatch() == null ? AccountNameMatch.SUBSTRING : filters.getNameMatch();
+            SearchTotalMode totalMode = filters.getTotalMode() == null ? SearchTotalMode.EXACT : filters.getTotalMode();
+            return new SearchKey(writeGeneration, primary, page, size, sortKey, filters.getCursor(), name, nameMatch,
+                    filters.getStatus(), filters.getBillCycleDay(), filters.getLastBillDate(), totalMode);
+        }
+    }
 }
@@ -0,0 +1,332 @@
+package com.cbm.billing.service.impl;
+
+import com.cbm.billing.cache.AccountCache;
+import com.cbm.billing.common.AccountStatus;
+import com.cbm.billing.common.Money;
+import com.cbm.billing.common.TransactionType;
+import com.cbm.billing.dto.event.TransactionDetailsEvent;
+import com.cbm.billing.entity.AccountEntity;
+import com.cbm.billing.exception.AccountDomainException;
+import com.cbm.billing.exception.AccountNotFoundException;
+import com.cbm.billing.exception.ForbiddenTransactionExeption;
+import com.cbm.billing.repository.AccountRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+
+/**
+ * Per account mailbox that group commits charges and credits.
+ * Operations on the same account that arrive while a group is being committed wait in the mailbox
+ * and are committed together by the next group: one locking read, the balance checks in memory in
+ * arrival order, and one UPDATE with the net balance. Under load the groups grow, so the number of
+ * row locks and round trips per operation drops instead of every operation queueing on the row lock.
+ * <p>
+ * An idle mailbox is drained by the calling thread, so an uncontended operation costs no thread hop.
+ * A group of a single operation takes the fast path instead: one conditional UPDATE that checks the
+ * status and the balance in the database, followed by a primary key read of the new balance while
+ * the row lock is still held (MySQL has no UPDATE ... RETURNING). The status of the account is only
+ * read when the UPDATE matches no row, to tell the reason apart.
+ * <p>
+ * Every applied operation is appended to the transaction ledger and to the event outbox, which
+ * write the whole group in one JDBC batch each inside the same transaction, and the account is
+ * queued once for the summary projector. The net change of the balance is recorded in the
+ * {@link ReceivablesAggregates}.
+ */
+@Slf4j
+@Component
+public class AccountTransactionMailbox {
+    private final AccountRepository accountRepository;
+    private final AccountCache accountCache;
+    private final TransactionLedgerWriter ledgerWriter;
+    private final OutboxWriter outboxWriter;
+    private final SummaryChangeWriter summaryChangeWriter;
+    private final ReceivablesAggregates receivablesAggregates;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxGroupSize;
+    private final ExecutorService drainExecutor;
+    private final Map<Long, Mailbox> mailboxes = new ConcurrentHashMap<>();
+
+    public AccountTransactionMailbox(AccountRepository accountRepository,
+                                     AccountCache accountCache,
+                                     TransactionLedgerWriter ledgerWriter,
+                                     OutboxWriter outboxWriter,
+                                     SummaryChangeWriter summaryChangeWriter,
+                                     ReceivablesAggregates receivablesAggregates,
+                                     PlatformTransactionManager transactionManager,
+                                     @Value("${billing.transactions.group-commit.max-group-size:256}") int maxGroupSize,
+                                     @Value("${billing.transactions.group-commit.threads:8}") int threads) {
+        this.accountRepository = accountRepository;
+        this.accountCache = accountCache;
+        this.ledgerWriter = ledgerWriter;
+        this.outboxWriter = outboxWriter;
+        this.summaryChangeWriter = summaryChangeWriter;
+        this.receivablesAggregates = receivablesAggregates;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // A group must be committed before its callers are answered, whatever the caller transaction does
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.maxGroupSize = maxGroupSize;
+        this.drainExecutor = Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("account-mailbox-"));
+    }
+
+    /**
+     * Applies a charge or a credit on an account and waits until the group that contains it is committed.
+     * @param accountId the id of the account
+     * @param transactionType CHARGE or CREDIT
+     * @param amount the amount of the transaction in cents
+     * @return the {@link TransactionDetailsEvent} of this operation
+     * @throws AccountNotFoundException if the account does not exist
+     * @throws ForbiddenTransactionExeption if the account is terminated, or the operation is a charge greater
+     *     than the balance at its turn
+     */
+    public TransactionDetailsEvent submit(Long accountId, TransactionType transactionType, long amount)
+            throws AccountNotFoundException, ForbiddenTransactionExeption {
+
+        PendingTransaction pendingTransaction = new PendingTransaction(transactionType, amount);
+        Mailbox mailbox;
+        do {
+            // A closed mailbox was already removed, the next lookup finds or creates its successor
+            mailbox = mailboxes.computeIfAbsent(accountId, Mailbox::new);
+        } while (!mailbox.offer(pendingTransaction));
+
+        if (mailbox.draining.compareAndSet(false, true)) {
+            drain(mailbox);
+        }
+
+        try {
+            return pendingTransaction.result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AccountDomainException("Interrupted waiting for transaction on account with id " + accountId);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof AccountNotFoundException accountNotFoundException) {
+                throw accountNotFoundException;
+            }
+            if (e.getCause() instanceof ForbiddenTransactionExeption forbiddenTransactionExeption) {
+                throw forbiddenTransactionExeption;
+            }
+            throw new AccountDomainException("Transaction failed for account with id " + accountId, e.getCause());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        drainExecutor.shutdown();
+    }
+
+    /**
+     * Commits one group of the mailbox and, when more operations are waiting, schedules the next group
+     * on the drain executor. Only the thread holding the draining flag runs this method. An empty mailbox
+     * is closed and removed before the flag is released, so a newer mailbox of the same account is only
+     * drained once this one has committed its last group.
+     */
+    private void drain(Mailbox mailbox) {
+        boolean closed = false;
+        try {
+            List<PendingTransaction> group = new ArrayList<>();
+            PendingTransaction pendingTransaction;
+            while (group.size() < maxGroupSize && (pendingTransaction = mailbox.queue.poll()) != null) {
+                group.add(pendingTransaction);
+            }
+            if (group.size() == 1) {
+                commit(mailbox.accountId, group, this::applySingle);
+            } else if (!group.isEmpty()) {
+                commit(mailbox.accountId, group, this::applyGroup);
+            }
+        } finally {
+            closed = mailbox.closeIfEmpty(mailboxes);
+            mailbox.draining.set(false);
+        }
+
+        if (!closed && !mailbox.queue.isEmpty() && mailbox.draining.compareAndSet(false, true)) {
+            drainExecutor.execute(() -> drain(mailbox));
+        }
+    }
+
+    /**
+     * Applies a group of operations inside a single transaction and answers every caller once the
+     * transaction is committed. The callers are answered whatever the transaction throws, an Error is
+     * rethrown once they are.
+     */
+    private void commit(Long accountId, List<PendingTransaction> group, BiConsumer<Long, List<PendingTransaction>> apply) {
+        Error error = null;
+        try {
+            transactionTemplate.executeWithoutResult(status -> apply.accept(accountId, group));
+        } catch (RuntimeException | Error e) {
+            log.error("Transaction group of {} operations failed for account with id {}", group.size(), accountId, e);
+            group.forEach(pending -> pending.outcome = e);
+            if (e instanceof Error fatal) {
+                error = fatal;
+            }
+        }
+        // Evicted before any caller is answered, so a caller never reads its own write stale
+        accountCache.evict(accountId);
+
+        for (PendingTransaction pending : group) {
+            if (pending.outcome != null) {
+                pending.result.completeExceptionally(pending.outcome);
+            } else {
+                pending.result.complete(pending.event);
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private void applySingle(Long accountId, List<PendingTransaction> group) {
+        PendingTransaction pending = group.get(0);
+        boolean charge = pending.transactionType == TransactionType.CHARGE;
+        LocalDate transactionDate = LocalDate.now();
+
+        BigDecimal amount = Money.toDecimal(pending.amount);
+        int updated = charge
+                ? accountRepository.chargeIfBalanceCovers(accountId, amount, AccountStatus.ACTIVE.name(), transactionDate)
+                : accountRepository.creditIfStatus(accountId, amount, AccountStatus.ACTIVE.name(), transactionDate);
+
+        if (updated == 0) {
+            Optional<AccountStatus> status = accountRepository.findStatusById(accountId);
+            pending.outcome = status.isEmpty() || status.get() == AccountStatus.TERMINATED
+                    ? unavailableAccount(accountId, status)
+                    : insufficientBalance();
+            return;
+        }
+
+        long balance = accountRepository.findCurrentBalanceById(accountId).orElseThrow();
+        pending.event = TransactionDetailsEvent.builder()
+                .accountId(accountId)
+                .transactionType(pending.transactionType)
+                .previousBalance(charge ? balance + pending.amount : balance - pending.amount)
+                .transactionAmount(pending.amount)
+                .currentBalance(balance)
+                .transactionDate(transactionDate)
+                .build();
+        ledgerWriter.append(pending.event);
+        outboxWriter.append(accountId, pending.event);
+        summaryChangeWriter.accountChanged(accountId);
+        receivablesAggregates.balanceChanged(AccountStatus.ACTIVE, charge ? -pending.amount : pending.amount);
+        log.info("Account with id {} updated successfully", accountId);
+    }
+
+    private void applyGroup(Long accountId, List<PendingTransaction> group) {
+        Optional<AccountEntity> accountOptional = accountRepository.findByIdForUpdate(accountId);
+
+        if (accountOptional.isEmpty() || accountOptional.get().getStatus() == AccountStatus.TERMINATED) {
+            Exception outcome = unavailableAccount(accountId, accountOptional.map(AccountEntity::getStatus));
+            group.forEach(pending -> pending.outcome = outcome);
+            return;
+        }
+
+        AccountEntity accountEntity = accountOptional.get();
+        long balance = accountEntity.getCurrentBalance();
+        LocalDate transactionDate = LocalDate.now();
+
+        for (PendingTransaction pending : group) {
+            boolean charge = pending.transactionType == TransactionType.CHARGE;
+
+            if (charge && balance < pending.amount) {
+                pending.outcome = insufficientBalance();
+                continue;
+            }
+
+            long previousBalance = balance;
+            balance = charge ? balance - pending.amount : balance + pending.amount;
+            pending.event = TransactionDetailsEvent.builder()
+                    .accountId(accountId)
+                    .transactionType(pending.transactionType)
+                    .previousBalance(previousBalance)
+                    .transactionAmount(pending.amount)
+                    .currentBalance(balance)
+                    .transactionDate(transactionDate)
+                    .build();
+            ledgerWriter.append(pending.event);
+            outboxWriter.append(accountId, pending.event);
+        }
+
+        // Flushed as a single UPDATE with the net balance when the transaction commits
+        receivablesAggregates.balanceChanged(accountEntity.getStatus(), balance - accountEntity.getCurrentBalance());
+        accountEntity.setCurrentBalance(balance);
+        summaryChangeWriter.accountChanged(accountId);
+        log.info("Account with id {} updated successfully by a group of {} operations", accountId, group.size());
+    }
+
+    private Exception unavailableAccount(Long accountId, Optional<AccountStatus> status) {
+        if (status.isEmpty()) {
+            log.error("Account not found with id {}", accountId);
+            return new AccountNotFoundException("Account not found with id " + accountId);
+        }
+        log.error("Account with id {} is terminated", accountId);
+        return new ForbiddenTransactionExeption("Account with id " + accountId + " is terminated. You cannot perform transactions on terminated accounts");
+    }
+
+    private Exception insufficientBalance() {
+        log.error("Current balance is less than amount to charge");
+        return new ForbiddenTransactionExeption("Current balance is less than amount to charge");
+    }
+
+    private static final class Mailbox {
+        private final Long accountId;
+        private final Queue<PendingTransaction> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        // Guarded by the mailbox monitor
+        private boolean closed;
+
+        private Mailbox(Long accountId) {
+            this.accountId = accountId;
+        }
+
+        /**
+         * Queues an operation, unless the mailbox was closed.
+         * @return false if the mailbox is closed and the operation must go to a new one
+         */
+        private synchronized boolean offer(PendingTransaction pendingTransaction) {
+            if (closed) {
+                return false;
+            }
+            queue.add(pendingTransaction);
+            return true;
+        }
+
+        /**
+         * Closes the mailbox and removes it from the map if no operation is waiting. Called by the drainer
+         * while it still holds the draining flag.
+         * @return true if the mailbox was closed
+         */
+        private synchronized boolean closeIfEmpty(Map<Long, Mailbox> mailboxes) {
+            if (!queue.isEmpty()) {
+                return false;
+            }
+            closed = true;
+            mailboxes.remove(accountId, this);
+            return true;
+        }
+    }
+
+    private static final class PendingTransaction {
+        private final TransactionType transactionType;
+        private final long amount;
+        private final CompletableFuture<TransactionDetailsEvent> result = new CompletableFuture<>();
+        private TransactionDetailsEvent event;
+        private Throwable outcome;
+
+        private PendingTransaction(TransactionType transactionType, long amount) {
+            this.transactionType = transactionType;
+            this.amount = amount;
+        }
+    }
+}
@@ -0,0 +1,391 @@
+package com.cbm.billing.service.impl;
+
+import com.cbm.billing.cache.AccountCache;
+import com.cbm.billing.common.AccountStatus;
+import com.cbm.billing.common.BillRunStatus;
+import com.cbm.billing.common.IdGeneratorConstants;
+import com.cbm.billing.dto.create.CreateBillEvent;
+import com.cbm.billing.dto.create.CreateBillRunDTO;
+import com.cbm.billing.dto.create.CreateBillRunResponse;
+import com.cbm.billing.dto.query.QueryBillRunResponse;
+import com.cbm.billing.entity.BillRunEntity;
+import com.cbm.billing.exception.BillDomainException;
+import com.cbm.billing.exception.BillRunNotFoundException;
+import com.cbm.billing.exception.ForbiddenOperationException;
+import com.cbm.billing.metrics.BillingMetrics;
+import com.cbm.billing.model.BillRun;
+import com.cbm.billing.repository.BillRunJdbcRepository;
+import com.cbm.billing.repository.BillRunRepository;
+import com.cbm.billing.service.IBillRunService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+@Slf4j
+@Service
+public class BillRunServiceImpl implements IBillRunService {
+    private final BillRunRepository billRunRepository;
+    private final BillRunJdbcRepository billRunJdbcRepository;
+    private final AccountCache accountCache;
+    private final OutboxWriter outboxWriter;
+    private final SummaryChangeWriter summaryChangeWriter;
+    private final PooledIdAllocator idAllocator;
+    private final BillingMetrics billingMetrics;
+    private final ReceivablesAggregates receivablesAggregates;
+    private final AccountBitmapIndex bitmapIndex;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final ExecutorService coordinatorExecutor;
+    private final ThreadPoolExecutor chunkExecutor;
+    private final Map<Long, BillRunProgress> runProgress = new ConcurrentHashMap<>();
+
+    public BillRunServiceImpl(BillRunRepository billRunRepository,
+                              BillRunJdbcRepository billRunJdbcRepository,
+                              AccountCache accountCache,
+                              OutboxWriter outboxWriter,
+                              SummaryChangeWriter summaryChangeWriter,
+                              PooledIdAllocator idAllocator,
+                              BillingMetrics billingMetrics,
+                              ReceivablesAggregates receivablesAggregates,
+                              AccountBitmapIndex bitmapIndex,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${billing.bill-run.chunk-size:500}") int chunkSize,
+                              @Value("${billing.bill-run.threads:4}") int threads) {
+        this.billRunRepository = billRunRepository;
+        this.billRunJdbcRepository = billRunJdbcRepository;
+        this.accountCache = accountCache;
+        this.outboxWriter = outboxWriter;
+        this.summaryChangeWriter = summaryChangeWriter;
+        this.idAllocator = idAllocator;
+        this.billingMetrics = billingMetrics;
+        this.receivablesAggregates = receivablesAggregates;
+        this.bitmapIndex = bitmapIndex;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        this.coordinatorExecutor = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("bill-run-coordinator-"));
+        // The bounded queue plus caller-runs policy throttles the planner to the speed of the workers
+        this.chunkExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * 2),
+                new CustomizableThreadFactory("bill-run-chunk-"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Starts a bill run for the given date in the background.
+     * If the last run of that date did not finish (for example because the application crashed),
+     * that run is resumed instead of starting a new one. Accounts billed on the run date are
+     * always skipped, so resuming never bills an account twice.
+     * @param createBillRunDTO the run date (defaults to today) and the amount to bill every account (defaults to 0)
+     * @return a {@link CreateBillRunResponse} containing the started run
+     * @throws ForbiddenOperationException if a run for the same date is already in progress
+     */
+    @Override
+    public synchronized CreateBillRunResponse startBillRun(CreateBillRunDTO createBillRunDTO) throws ForbiddenOperationException {
+        LocalDate runDate = createBillRunDTO.getRunDate() == null ? LocalDate.now() : createBillRunDTO.getRunDate();
+        log.info("Starting bill run for {}", runDate);
+
+        Optional<BillRunEntity> lastRun = billRunRepository.findFirstByRunDateOrderByIdDesc(runDate);
+
+        if (lastRun.isPresent() && isInProgress(lastRun.get().getId())) {
+            log.error("Bill run for {} is already in progress", runDate);
+            throw new ForbiddenOperationException("Bill run for " + runDate + " is already in progress with id " + lastRun.get().getId());
+        }
+
+        try {
+            BillRunEntity billRunEntity = lastRun
+                    .filter(run -> run.getStatus() == BillRunStatus.RUNNING)
+                    .orElseGet(() -> newBillRun(runDate, createBillRunDTO.getAmount()));
+
+            if (billRunEntity.getId() != null) {
+                log.info("Resuming interrupted bill run with id {}", billRunEntity.getId());
+            }
+
+            int[] dueDays = dueBillCycleDays(runDate);
+            long pendingAccounts = billRunJdbcRepository.countDueAccounts(runDate, dueDays[0], dueDays[1]);
+            billRunEntity.setTotalAccounts(billRunEntity.getProcessedAccounts() + pendingAccounts);
+            billRunEntity.setFailedAccounts(0L);
+            billRunRepository.save(billRunEntity);
+
+            BillRunProgress progress = new BillRunProgress();
+            runProgress.put(billRunEntity.getId(), progress);
+            Long runId = billRunEntity.getId();
+            long amount = billRunEntity.getAmount();
+            coordinatorExecutor.execute(() -> executeBillRun(runId, runDate, amount, progress));
+            log.info("Bill run with id {} started for {} pending accounts", runId, pendingAccounts);
+
+            return CreateBillRunResponse.builder()
+                    .code(200L)
+                    .message("Bill run started successfully")
+                    .details(billRunEntityToBillRun(billRunEntity, progress))
+                    .build();
+
+        } catch (Exception e) {
+            log.error("Error starting bill run for {}", runDate, e);
+            throw new BillDomainException("Error starting bill run for " + runDate);
+        }
+    }
+
+    /**
+     * Retrieves the status and throughput figures of a bill run.
+     * @param billRunId the id of the bill run
+     * @return a {@link QueryBillRunResponse} containing the bill run
+     * @throws BillRunNotFoundException if the bill run does not exist
+     */
+    @Override
+    public QueryBillRunResponse findBillRunById(Long billRunId) throws BillRunNotFoundException {
+        Optional<BillRunEntity> billRunEntityOptional = billRunRepository.findById(billRunId);
+
+        if (billRunEntityOptional.isEmpty()) {
+            log.error("Bill run not found with id {}", billRunId);
+            throw new BillRunNotFoundException("Bill run not found with id " + billRunId);
+        }
+
+        return QueryBillRunResponse.builder()
+                .code(200L)
+                .message("Bill run found")
+                .details(billRunEntityToBillRun(billRunEntityOptional.get(), runProgress.get(billRunId)))
+                .build();
+    }
+
+    /**
+     * Triggers the bill run of the day. The schedule is set with the billing.bill-run.cron property.
+     */
+    @Scheduled(cron = "${billing.bill-run.cron:-}")
+    public void scheduledBillRun() {
+        try {
+            startBillRun(new CreateBillRunDTO());
+        } catch (ForbiddenOperationException e) {
+            log.warn(e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Chunks that are interrupted roll back, the run is resumed on the next start
+        coordinatorExecutor.shutdownNow();
+        chunkExecutor.shutdownNow();
+    }
+
+    /**
+     * Plans the chunks of the run with keyset pagination over the due account ids and hands them to
+     * the chunk workers, then waits for all of them and records the final status of the run.
+     */
+    private void executeBillRun(Long runId, LocalDate runDate, long amount, BillRunProgress progress) {
+        BillRunStatus finalStatus = BillRunStatus.FAILED;
+        try {
+            int[] dueDays = dueBillCycleDays(runDate);
+            List<Future<?>> chunks = new ArrayList<>();
+            long afterId = 0;
+
+            while (true) {
+                List<Long> accountIds = billRunJdbcRepository.findDueAccountIds(runDate, dueDays[0], dueDays[1], afterId, chunkSize);
+                if (accountIds.isEmpty()) {
+                    break;
+                }
+                afterId = accountIds.get(accountIds.size() - 1);
+                chunks.add(chunkExecutor.submit(() -> processChunk(runId, runDate, amount, accountIds, progress)));
+            }
+
+            for (Future<?> chunk : chunks) {
+                chunk.get();
+            }
+
+            finalStatus = progress.failedAccounts.sum() > 0 ? BillRunStatus.COMPLETED_WITH_FAILURES : BillRunStatus.COMPLETED;
+            log.info("Bill run with id {} finished: {} accounts billed, {} failed",
+                    runId, progress.processedAccounts.sum(), progress.failedAccounts.sum());
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("Bill run with id {} interrupted", runId);
+            return;
+        } catch (Exception e) {
+            log.error("Bill run with id {} failed", runId, e);
+        } finally {
+            progress.finishedNanos = System.nanoTime();
+        }
+
+        BillRunEntity billRunEntity = billRunRepository.findById(runId).orElseThrow();
+        billRunEntity.setStatus(finalStatus);
+        billRunEntity.setFinishedAt(LocalDateTime.now());
+        billRunRepository.save(billRunEntity);
+    }
+
+    /**
+     * Bills a chunk of accounts in a single transaction. If the chunk fails as a whole, its accounts
+     * are retried one by one so that a single bad account does not fail the rest of the chunk.
+     */
+    private void processChunk(Long runId, LocalDate runDate, long amount, List<Long> accountIds, BillRunProgress progress) {
+        long start = System.nanoTime();
+        // One id per account, taken outside the chunk transaction and reused by the retries below
+        long firstBillId = idAllocator.allocate(IdGeneratorConstants.BILL, accountIds.size());
+        try {
+            Integer billed = transactionTemplate.execute(status -> billAccounts(runId, runDate, amount, accountIds, firstBillId, 1));
+            progress.chunkCompleted(billed == null ? 0 : billed, System.nanoTime() - start);
+            return;
+        } catch (Exception e) {
+            log.error("Bill run chunk starting at account id {} failed, retrying its accounts one by one", accountIds.get(0), e);
+        }
+
+        long billed = 0;
+        long failed = 0;
+        for (int index = 0; index < accountIds.size(); index++) {
+            Long accountId = accountIds.get(index);
+            long billId = firstBillId + index;
+            try {
+                Integer result = transactionTemplate.execute(status -> billAccounts(runId, runDate, amount, List.of(accountId), billId, 0));
+                billed += result == null ? 0 : result;
+            } catch (Exception e) {
+                log.error("Error billing account with id {} on bill run with id {}", accountId, runId, e);
+                failed++;
+            }
+        }
+        billRunJdbcRepository.addProgress(runId, 0, failed, 1);
+        progress.chunkFailed(billed, failed, System.nanoTime() - start);
+    }
+
+    /**
+     * Bills the given accounts with a constant number of statements: one locking read, one bill
+     * insert batch, one account update batch and one progress update.
+     * @return the number of accounts billed
+     */
+    private int billAccounts(Long runId, LocalDate runDate, long amount, List<Long> accountIds, long firstBillId, int chunks) {
+        Map<Long, Long> balances = billRunJdbcRepository.lockPendingBalances(accountIds, runDate);
+
+        if (!balances.isEmpty()) {
+            // As in createBill, the bill carries the whole amount due, which is also the new balance
+            Map<Long, Long> newBalances = new LinkedHashMap<>();
+            balances.forEach((accountId, balance) -> {
+                newBalances.put(accountId, balance + amount);
+                outboxWriter.append(accountId, CreateBillEvent.builder()
+                        .accountId(accountId)
+                        .currentBalance(balance)
+                        .billAmount(amount)
+                        .newBalance(balance + amount)
+                        .billGenerationDate(runDate)
+                        .build());
+                summaryChangeWriter.accountChanged(accountId);
+                billingMetrics.billCreated(amount);
+                receivablesAggregates.billCreated(balance + amount);
+                receivablesAggregates.balanceChanged(AccountStatus.ACTIVE, amount);
+            });
+            billRunJdbcRepository.insertBills(newBalances, runDate, firstBillId);
+            for (long billId = firstBillId; billId < firstBillId + newBalances.size(); billId++) {
+                summaryChangeWriter.billChanged(billId);
+            }
+            billRunJdbcRepository.updateBilledAccounts(newBalances, runDate);
+            bitmapIndex.billed(newBalances.keySet(), runDate);
+            accountCache.evictAll(newBalances.keySet());
+        }
+
+        billRunJdbcRepository.addProgress(runId, balances.size(), 0, chunks);
+        return balances.size();
+    }
+
+    /**
+     * Auxiliary method that returns the range of bill cycle days due on the given date. On the last
+     * day of a month the accounts with a bill cycle day past the end of the month are also due.
+     */
+    private int[] dueBillCycleDays(LocalDate runDate) {
+        int dayOfMonth = runDate.getDayOfMonth();
+        return new int[]{dayOfMonth, dayOfMonth == runDate.lengthOfMonth() ? 31 : dayOfMonth};
+    }
+
+    private boolean isInProgress(Long billRunId) {
+        BillRunProgress progress = runProgress.get(billRunId);
+        return progress != null && progress.finishedNanos == 0;
+    }
+
+    private BillRunEntity newBillRun(LocalDate runDate, Long amount) {
+        BillRunEntity billRunEntity = new BillRunEntity();
+        billRunEntity.setRunDate(runDate);
+        billRunEntity.setAmount(amount == null ? 0L : amount);
+        billRunEntity.setStatus(BillRunStatus.RUNNING);
+        billRunEntity.setProcessedAccounts(0L);
+        billRunEntity.setChunksCompleted(0L);
+        billRunEntity.setStartedAt(LocalDateTime.now());
+        return billRunEntity;
+    }
+
+    private BillRun billRunEntityToBillRun(BillRunEntity billRunEntity, BillRunProgress progress) {
+        BillRun billRun = BillRun.builder()
+                .id(billRunEntity.getId())
+                .runDate(billRunEntity.getRunDate())
+                .amount(billRunEntity.getAmount())
+                .status(billRunEntity.getStatus())
+                .totalAccounts(billRunEntity.getTotalAccounts())
+                .processedAccounts(billRunEntity.getProcessedAccounts())
+                .failedAccounts(billRunEntity.getFailedAccounts())
+                .chunksCompleted(billRunEntity.getChunksCompleted())
+                .startedAt(billRunEntity.getStartedAt())
+                .finishedAt(billRunEntity.getFinishedAt())
+                .build();
+
+        if (progress != null) {
+            // Live figures of this process, including the chunk latencies that are not persisted
+            long chunks = progress.chunksCompleted.sum() + progress.chunksFailed.sum();
+            double elapsedSeconds = Math.max(progress.elapsedNanos(), 1) / 1_000_000_000.0;
+            billRun.setChunksFailed(progress.chunksFailed.sum());
+            billRun.setAccountsPerSecond(progress.processedAccounts.sum() / elapsedSeconds);
+            billRun.setAverageChunkLatencyMs(chunks == 0 ? 0.0 : progress.chunkNanos.sum() / (chunks * 1_000_000.0));
+            billRun.setMaxChunkLatencyMs(progress.maxChunkNanos.get() / 1_000_000.0);
+        } else if (billRunEntity.getFinishedAt() != null) {
+            double elapsedSeconds = Math.max(Duration.between(billRunEntity.getStartedAt(), billRunEntity.getFinishedAt()).toMillis(), 1) / 1000.0;
+            billRun.setAccountsPerSecond(billRunEntity.getProcessedAccounts() / elapsedSeconds);
+        }
+
+        return billRun;
+    }
+
+    /**
+     * In-memory progress of a bill run started by this process.
+     */
+    private static final class BillRunProgress {
+        private final long startedNanos = System.nanoTime();
+        private volatile long finishedNanos;
+        private final LongAdder processedAccounts = new LongAdder();
+        private final LongAdder failedAccounts = new LongAdder();
+        private final LongAdder chunksCompleted = new LongAdder();
+        private final LongAdder chunksFailed = new LongAdder();
+        private final LongAdder chunkNanos = new LongAdder();
+        private final AtomicLong maxChunkNanos = new AtomicLong();
+
+        private void chunkCompleted(long billed, long latencyNanos) {
+            processedAccounts.add(billed);
+            chunksCompleted.increment();
+            recordLatency(latencyNanos);
+        }
+
+        private void chunkFailed(long billed, long failed, long latencyNanos) {
+            processedAccounts.add(billed);
+            failedAccounts.add(failed);
+            chunksFailed.increment();
+            recordLatency(latencyNanos);
+        }
+
+        private void recordLatency(long latencyNanos) {
+            chunkNanos.add(latencyNanos);
+            maxChunkNanos.accumulateAndGet(latencyNanos, Math::max);
+        }
+
+        private long elapsedNanos() {
+            return (finishedNanos == 0 ? System.nanoTime() : finishedNanos) - startedNanos;
+        }
+    }
+}
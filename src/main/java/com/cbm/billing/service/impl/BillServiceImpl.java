@@ -1,24 +1,26 @@
 package com.cbm.billing.service.impl;
 
+import com.cbm.billing.cache.AccountCache;
 import com.cbm.billing.common.AccountStatus;
+import com.cbm.billing.common.Money;
 import com.cbm.billing.dto.create.CreateBillDTO;
 import com.cbm.billing.dto.create.CreateBillEvent;
 import com.cbm.billing.dto.create.CreateBillResponse;
 import com.cbm.billing.entity.AccountEntity;
 import com.cbm.billing.entity.BillEntity;
-import com.cbm.billing.entity.BillSummaryEntity;
 import com.cbm.billing.exception.AccountNotFoundException;
 import com.cbm.billing.exception.BillDomainException;
 import com.cbm.billing.mapper.IBillDataMapper;
+import com.cbm.billing.metrics.BillingMetrics;
 import com.cbm.billing.repository.AccountRepository;
 import com.cbm.billing.repository.BillRepository;
-import com.cbm.billing.repository.BillSummaryRepository;
 import com.cbm.billing.service.IBillService;
 import jakarta.transaction.Transactional;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
+import java.util.List;
 import java.util.Optional;
 
 @Slf4j
@@ -26,14 +28,24 @@ import java.util.Optional;
 public class BillServiceImpl implements IBillService {
     private final BillRepository billRepository;
     private final AccountRepository accountRepository;
-    private final BillSummaryRepository billSummaryRepository;
     private final IBillDataMapper billDataMapper;
+    private final AccountCache accountCache;
+    private final OutboxWriter outboxWriter;
+    private final SummaryChangeWriter summaryChangeWriter;
+    private final BillingMetrics billingMetrics;
+    private final ReceivablesAggregates receivablesAggregates;
+    private final AccountBitmapIndex bitmapIndex;
 
-    public BillServiceImpl(BillRepository billRepository, AccountRepository accountRepository, BillSummaryRepository billSummaryRepository, IBillDataMapper billDataMapper) {
+    public BillServiceImpl(BillRepository billRepository, AccountRepository accountRepository, IBillDataMapper billDataMapper, AccountCache accountCache, OutboxWriter outboxWriter, SummaryChangeWriter summaryChangeWriter, BillingMetrics billingMetrics, ReceivablesAggregates receivablesAggregates, AccountBitmapIndex bitmapIndex) {
         this.billRepository = billRepository;
         this.accountRepository = accountRepository;
-        this.billSummaryRepository = billSummaryRepository;
         this.billDataMapper = billDataMapper;
+        this.accountCache = accountCache;
+        this.outboxWriter = outboxWriter;
+        this.summaryChangeWriter = summaryChangeWriter;
+        this.billingMetrics = billingMetrics;
+        this.receivablesAggregates = receivablesAggregates;
+        this.bitmapIndex = bitmapIndex;
     }
 
 /**
@@ -50,7 +62,8 @@ public class BillServiceImpl implements IBillService {
     public CreateBillResponse createBill(CreateBillDTO createBillDTO) throws AccountNotFoundException {
         log.info("Retrieving current balance for account with id {}", createBillDTO.getAccountId());
 
-        Optional<AccountEntity> accountEntityOptional = accountRepository.findById(createBillDTO.getAccountId());
+        // Locked so that the bill and the new balance are computed from the balance no charge or credit can change meanwhile
+        Optional<AccountEntity> accountEntityOptional = accountRepository.findByIdForUpdate(createBillDTO.getAccountId());
 
         if (accountEntityOptional.isEmpty() || accountEntityOptional.get().getStatus() == AccountStatus.TERMINATED) {
             log.error("Account not found with id {}", createBillDTO.getAccountId());
@@ -60,27 +73,25 @@ public class BillServiceImpl implements IBillService {
         try {
             // Get the current balance for the account
             AccountEntity accountEntity = accountEntityOptional.get();
-            var accountCurrentBalance = accountEntity.getCurrentBalance();
-            log.info("Current balance for account with id {} is $ {}", createBillDTO.getAccountId(), accountCurrentBalance);
+            long accountCurrentBalance = accountEntity.getCurrentBalance();
+            log.info("Current balance for account with id {} is $ {}", createBillDTO.getAccountId(), Money.toDecimal(accountCurrentBalance));
 
             // Create the bill
-            var billAmount = createBillDTO.getAmount();
+            long billAmount = createBillDTO.getAmount();
             createBillDTO.setAmount(accountCurrentBalance + billAmount);
             BillEntity billEntity = billDataMapper.CreateBillDTOInToBillEntity(createBillDTO);
             billRepository.save(billEntity);
-            log.info("Bill created successfully for account with id {} and amount $ {}", createBillDTO.getAccountId(),billAmount);
-
-            // Propagate the new bill to the bill summary table
-            BillSummaryEntity billSummary = new BillSummaryEntity();
-            billSummary.setId(billEntity.getId());
-            billSummary.setStatus(billEntity.getStatus());
-            billSummaryRepository.save(billSummary);
-            log.info("Bill propagated to bill summary successfully for account with id {} and amount $ {}", createBillDTO.getAccountId(),billAmount);
+            log.info("Bill created successfully for account with id {} and amount $ {}", createBillDTO.getAccountId(), Money.toDecimal(billAmount));
+            billingMetrics.billCreated(billAmount);
 
             // Update the account current balance
             accountEntity.setCurrentBalance(accountCurrentBalance + billAmount);
             accountEntity.setLastBillDate(LocalDate.now());
             accountRepository.save(accountEntity);
+            accountCache.evict(createBillDTO.getAccountId());
+            receivablesAggregates.billCreated(billEntity.getAmount());
+            receivablesAggregates.balanceChanged(accountEntity.getStatus(), billAmount);
+            bitmapIndex.billed(List.of(accountEntity.getId()), accountEntity.getLastBillDate());
             log.info("Account with id {} updated successfully", createBillDTO.getAccountId());
 
             CreateBillEvent createBillEvent = CreateBillEvent.builder()
@@ -90,6 +101,11 @@ public class BillServiceImpl implements IBillService {
                     .newBalance(accountCurrentBalance + billAmount)
                     .billGenerationDate(LocalDate.now())
                     .build();
+            outboxWriter.append(createBillDTO.getAccountId(), createBillEvent);
+
+            // The bill summary is propagated by the summary projector, off the request path
+            summaryChangeWriter.billChanged(billEntity.getId());
+            summaryChangeWriter.accountChanged(createBillDTO.getAccountId());
 
             return CreateBillResponse.builder()
                     .code(200L)
@@ -0,0 +1,218 @@
+package com.cbm.billing.service.impl;
+
+import com.cbm.billing.dto.query.OutboxStatsResponse;
+import com.cbm.billing.model.OutboxEvent;
+import com.cbm.billing.model.OutboxRelayState;
+import com.cbm.billing.outbox.IOutboxSink;
+import com.cbm.billing.repository.OutboxJdbcRepository;
+import com.cbm.billing.service.IOutboxService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Relay of the transactional outbox.
+ * Every run drains the outbox in id order, in batches: a batch is published to the {@link IOutboxSink}
+ * and deleted only once the sink accepted it, so delivery is at least once. A failed batch stops the
+ * run and is retried by the next one.
+ * <p>
+ * The events of an account are appended by transactions that locked the account row before, so their
+ * ids follow their commit order and publishing in id order keeps them in order per account. Ids are taken
+ * at insert time but become visible at commit, so a committed event may be read while a lower id is still
+ * being committed: the relay stops before such a gap and waits for it up to the gap timeout, after which
+ * the missing id is taken for a rolled back insert and skipped.
+ * <p>
+ * Every batch runs in a transaction that locks the position of the relay in the database: the next id it
+ * expects and the gap it waits for. The relays of the other instances skip their run while it is held, and
+ * a restarted relay carries on from the saved position.
+ */
+@Slf4j
+@Service
+public class OutboxServiceImpl implements IOutboxService {
+    private final OutboxJdbcRepository outboxJdbcRepository;
+    private final IOutboxSink outboxSink;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int batchSize;
+    private final Duration gapTimeout;
+
+    private final LongAdder publishedEvents = new LongAdder();
+    private final LongAdder publishedBatches = new LongAdder();
+    private final LongAdder failedBatches = new LongAdder();
+    private volatile long lastRunEvents;
+    private volatile double lastRunEventsPerSecond;
+    private volatile long lagMs;
+    private volatile LocalDateTime lastRunAt;
+
+    public OutboxServiceImpl(OutboxJdbcRepository outboxJdbcRepository,
+                             IOutboxSink outboxSink,
+                             PlatformTransactionManager transactionManager,
+                             MeterRegistry meterRegistry,
+                             @Value("${billing.outbox.relay.enabled:true}") boolean enabled,
+                             @Value("${billing.outbox.relay.batch-size:1000}") int batchSize,
+                             @Value("${billing.outbox.relay.gap-timeout:5s}") Duration gapTimeout) {
+        this.outboxJdbcRepository = outboxJdbcRepository;
+        this.outboxSink = outboxSink;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.gapTimeout = gapTimeout;
+        TimeGauge.builder("billing.outbox.lag", this, TimeUnit.MILLISECONDS, relay -> relay.lagMs)
+                .description("Age of the oldest unpublished event at the last run of the relay of this instance")
+                .register(meterRegistry);
+        Gauge.builder("billing.outbox.throughput", this, relay -> relay.lastRunEventsPerSecond)
+                .description("Events published per second by the last run of the relay of this instance that published any")
+                .register(meterRegistry);
+    }
+
+    /**
+     * function to publish the pending events of the outbox, oldest first, until it is empty or a batch fails.
+     * The run is skipped while the relay of another instance holds the position of the relay.
+     */
+    @Override
+    @Scheduled(fixedDelayString = "${billing.outbox.relay.interval-ms:500}")
+    public void relay() {
+        if (!enabled) {
+            return;
+        }
+
+        long startedNanos = System.nanoTime();
+        long runEvents = 0;
+        Long runLagMs = null;
+
+        try {
+            RelayedBatch batch;
+            do {
+                batch = transactionTemplate.execute(status -> relayBatch());
+                if (batch == null) {
+                    log.debug("Outbox relay skipped, another instance is relaying");
+                    return;
+                }
+                if (runLagMs == null) {
+                    runLagMs = batch.lagMs();
+                }
+                if (batch.events() > 0) {
+                    runEvents += batch.events();
+                    publishedEvents.add(batch.events());
+                    publishedBatches.increment();
+                }
+            } while (batch.events() == batchSize);
+
+        } catch (Exception e) {
+            failedBatches.increment();
+            log.error("Outbox relay failed after publishing {} events, the failed batch will be retried", runEvents, e);
+        }
+
+        if (runEvents > 0) {
+            double elapsedSeconds = Math.max(System.nanoTime() - startedNanos, 1) / 1_000_000_000.0;
+            lastRunEventsPerSecond = runEvents / elapsedSeconds;
+            log.info("Outbox relay published {} events", runEvents);
+        }
+        lastRunEvents = runEvents;
+        lagMs = runLagMs == null ? 0 : runLagMs;
+        lastRunAt = LocalDateTime.now();
+    }
+
+    /**
+     * Publishes the oldest batch of events inside the current transaction, which holds the position of the
+     * relay until it commits.
+     * @return the number of events published and the age of the oldest one, or null when another relay
+     *     holds the position
+     */
+    private RelayedBatch relayBatch() {
+        Optional<OutboxRelayState> lockedState = outboxJdbcRepository.lockRelayState();
+        if (lockedState.isEmpty()) {
+            return null;
+        }
+
+        OutboxRelayState state = lockedState.get();
+        List<OutboxEvent> batch = outboxJdbcRepository.findOldest(batchSize);
+        if (batch.isEmpty()) {
+            return new RelayedBatch(0, 0);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        long batchLagMs = Math.max(Duration.between(batch.get(0).getCreatedAt(), now).toMillis(), 0);
+        int publishable = publishableEvents(batch, state, now, gapTimeout);
+        if (publishable > 0) {
+            List<OutboxEvent> published = batch.subList(0, publishable);
+            try {
+                outboxSink.publish(published);
+            } catch (Exception e) {
+                // Rolls the batch transaction back, the batch stays in the outbox
+                throw new IllegalStateException("The outbox sink did not accept the batch", e);
+            }
+            outboxJdbcRepository.deleteByIds(published.stream().map(OutboxEvent::getId).toList());
+            state.setNextId(Math.max(state.getNextId(), published.get(publishable - 1).getId() + 1));
+        }
+        // Saved whether or not anything was published, the gap seen by this batch included
+        outboxJdbcRepository.saveRelayState(state);
+        return new RelayedBatch(publishable, batchLagMs);
+    }
+
+    /**
+     * Auxiliary method that counts the events of a batch that can be published before the first gap in the
+     * ids. A gap is waited for from the batch that first saw it until the gap timeout, then skipped. The
+     * gap seen is recorded in the state; the next id is left to the caller.
+     * @param batch the oldest events, in id order
+     * @param state the position of the relay
+     * @param now the current time
+     * @param gapTimeout the time a gap is waited for
+     * @return the number of events at the start of the batch to publish
+     */
+    static int publishableEvents(List<OutboxEvent> batch, OutboxRelayState state, LocalDateTime now, Duration gapTimeout) {
+        long expectedId = state.getNextId();
+        for (int index = 0; index < batch.size(); index++) {
+            long id = batch.get(index).getId();
+            if (expectedId > 0 && id > expectedId) {
+                if (state.getGapId() != expectedId || state.getGapSeenAt() == null) {
+                    state.setGapId(expectedId);
+                    state.setGapSeenAt(now);
+                    return index;
+                }
+                if (Duration.between(state.getGapSeenAt(), now).compareTo(gapTimeout) < 0) {
+                    return index;
+                }
+                log.warn("Outbox ids {} to {} never committed, publishing past them", expectedId, id - 1);
+            }
+            // A late id below the expected one is published right away
+            expectedId = Math.max(expectedId, id + 1);
+        }
+        return batch.size();
+    }
+
+    /**
+     * Retrieves the lag and throughput figures of the relay.
+     * @return an {@link OutboxStatsResponse} with the totals since startup and the figures of the last run
+     */
+    @Override
+    public OutboxStatsResponse outboxStats() {
+        return OutboxStatsResponse.builder()
+                .code(200L)
+                .message("Outbox relay statistics")
+                .publishedEvents(publishedEvents.sum())
+                .publishedBatches(publishedBatches.sum())
+                .failedBatches(failedBatches.sum())
+                .lastRunEvents(lastRunEvents)
+                .lastRunEventsPerSecond(lastRunEventsPerSecond)
+                .lagMs(lagMs)
+                .lastRunAt(lastRunAt)
+                .build();
+    }
+
+    private record RelayedBatch(int events, long lagMs) {
+    }
+}
@@ -0,0 +1,56 @@
+package com.cbm.billing.service.impl;
+
+import com.cbm.billing.exception.DomainException;
+import com.cbm.billing.model.OutboxEvent;
+import com.cbm.billing.repository.OutboxJdbcRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Writes domain events to the transactional outbox.
+ * As with the {@link TransactionLedgerWriter}, the events of a transaction are buffered and inserted
+ * in one JDBC batch just before it commits, so an event exists if and only if its state change was
+ * committed. The {@link OutboxServiceImpl relay} publishes them afterwards.
+ */
+@Component
+public class OutboxWriter extends TransactionalBatchWriter<OutboxEvent> {
+    private final OutboxJdbcRepository outboxJdbcRepository;
+    private final ObjectMapper objectMapper;
+
+    public OutboxWriter(OutboxJdbcRepository outboxJdbcRepository, ObjectMapper objectMapper) {
+        super("Outbox events");
+        this.outboxJdbcRepository = outboxJdbcRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Buffers an event to be written to the outbox when the current transaction commits.
+     * @param accountId the account the event belongs to, which defines the publication order
+     * @param event the event, serialized to JSON with the same format as the API responses
+     * @throws IllegalStateException if there is no active transaction
+     */
+    public void append(Long accountId, Object event) {
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new DomainException("Error serializing " + event.getClass().getSimpleName() + " of account with id " + accountId, e);
+        }
+
+        buffer(OutboxEvent.builder()
+                .accountId(accountId)
+                .eventType(event.getClass().getSimpleName())
+                .payload(payload)
+                .createdAt(LocalDateTime.now())
+                .build());
+    }
+
+    @Override
+    protected void flush(List<OutboxEvent> events) {
+        outboxJdbcRepository.insertEvents(events);
+    }
+}
@@ -0,0 +1,35 @@
+package com.cbm.billing.service.impl;
+
+import com.cbm.billing.repository.IdGeneratorJdbcRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Allocates blocks of ids for the JDBC batch writers from the same generator rows as the Hibernate
+ * table generators, so rows inserted by either path never collide. A block costs one short transaction
+ * however many rows it covers.
+ */
+@Component
+public class PooledIdAllocator {
+    private final IdGeneratorJdbcRepository idGeneratorJdbcRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public PooledIdAllocator(IdGeneratorJdbcRepository idGeneratorJdbcRepository, PlatformTransactionManager transactionManager) {
+        this.idGeneratorJdbcRepository = idGeneratorJdbcRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // Committed on its own, so the generator row is not locked for the rest of the caller transaction
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Takes a block of consecutive ids. Ids of a block that end up unused are simply skipped.
+     * @param name the name of the generator, one of the names of {@link com.cbm.billing.common.IdGeneratorConstants}
+     * @param size the number of ids to take
+     * @return the first id of the block, which covers [first, first + size)
+     */
+    public long allocate(String name, int size) {
+        return transactionTemplate.execute(status -> idGeneratorJdbcRepository.allocateBlock(name, size));
+    }
+}
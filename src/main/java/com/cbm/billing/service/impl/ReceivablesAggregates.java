@@ -0,0 +1,340 @@
+package com.cbm.billing.service.impl;
+
+import com.cbm.billing.common.AccountConstants;
+import com.cbm.billing.common.AccountStatus;
+import com.cbm.billing.common.BillStatus;
+import com.cbm.billing.model.AccountAggregate;
+import com.cbm.billing.model.BillAggregate;
+import com.cbm.billing.repository.ReceivablesJdbcRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Receivables totals held in memory: the accounts and their balances by status and bill cycle day, and the
+ * NOT_SETTLED bills and their amounts.
+ * <p>
+ * The totals are built by a scan of the tables when the application starts, then kept up to date by the
+ * write paths, which record what they change as deltas. The deltas of a transaction are added up while it
+ * runs and applied once it commits, so a rolled back change never reaches the totals.
+ * <p>
+ * A scan runs again on a fixed delay, on a thread of its own, and replaces the totals to correct any drift,
+ * from a write path that bypasses the deltas for example. The deltas committed while a scan runs are
+ * applied on top of its result. A transaction committing in the instant the scan takes its snapshot may be
+ * counted twice, which the next scan corrects.
+ */
+@Slf4j
+@Component
+public class ReceivablesAggregates {
+    private static final AccountStatus[] STATUSES = AccountStatus.values();
+    private static final int BILL_CYCLE_DAYS = AccountConstants.MAX_BILL_CYCLE_DAY;
+
+    private final ReceivablesJdbcRepository receivablesJdbcRepository;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+    private final ScheduledExecutorService executor;
+    private final long rescanIntervalMs;
+    private final Counter corrections;
+    // Deltas are applied under the read lock, the totals are replaced under the write lock
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile Totals totals;
+    private Totals scanDeltas;
+    private volatile LocalDateTime scannedAt;
+
+    public ReceivablesAggregates(ReceivablesJdbcRepository receivablesJdbcRepository,
+                                 PlatformTransactionManager transactionManager,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${billing.receivables.rescan-interval-ms:300000}") long rescanIntervalMs) {
+        this.receivablesJdbcRepository = receivablesJdbcRepository;
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.corrections = Counter.builder("billing.receivables.corrections")
+                .description("Scans of the receivables that found the totals kept in memory had drifted")
+                .register(meterRegistry);
+        this.rescanIntervalMs = rescanIntervalMs;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("receivables-scan-");
+        threadFactory.setDaemon(true);
+        this.executor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+    }
+
+    /**
+     * Starts the first scan once the application is ready, then the scans that correct the drift.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        executor.scheduleWithFixedDelay(this::scan, 0, rescanIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Records an account created by the current transaction.
+     * @param status the status of the account
+     * @param billCycleDay the bill cycle day of the account
+     * @param balance the balance of the account in cents
+     * @throws IllegalStateException if there is no active transaction
+     */
+    public void accountCreated(AccountStatus status, int billCycleDay, long balance) {
+        Delta delta = delta();
+        delta.accounts[index(status, billCycleDay)]++;
+        delta.balances[status.ordinal()] += balance;
+    }
+
+    /**
+     * Records a change of the balance of an account by the current transaction.
+     * @param status the status of the account
+     * @param amount the change of the balance in cents, negative for a charge
+     * @throws IllegalStateException if there is no active transaction
+     */
+    public void balanceChanged(AccountStatus status, long amount) {
+        delta().balances[status.ordinal()] += amount;
+    }
+
+    /**
+     * Records a change of the bill cycle day of an account by the current transaction.
+     * @param status the status of the account
+     * @param previousBillCycleDay the bill cycle day before the change
+     * @param billCycleDay the bill cycle day after the change
+     * @throws IllegalStateException if there is no active transaction
+     */
+    public void billCycleDayChanged(AccountStatus status, int previousBillCycleDay, int billCycleDay) {
+        Delta delta = delta();
+        delta.accounts[index(status, previousBillCycleDay)]--;
+        delta.accounts[index(status, billCycleDay)]++;
+    }
+
+    /**
+     * Records a change of the status of an account by the current transaction.
+     * @param previousStatus the status before the change
+     * @param status the status after the change
+     * @param billCycleDay the bill cycle day of the account
+     * @param balance the balance of the account in cents
+     * @throws IllegalStateException if there is no active transaction
+     */
+    public void statusChanged(AccountStatus previousStatus, AccountStatus status, int billCycleDay, long balance) {
+        Delta delta = delta();
+        delta.accounts[index(previousStatus, billCycleDay)]--;
+        delta.accounts[index(status, billCycleDay)]++;
+        delta.balances[previousStatus.ordinal()] -= balance;
+        delta.balances[status.ordinal()] += balance;
+    }
+
+    /**
+     * Records a NOT_SETTLED bill created by the current transaction.
+     * @param amount the amount of the bill in cents
+     * @throws IllegalStateException if there is no active transaction
+     */
+    public void billCreated(long amount) {
+        Delta delta = delta();
+        delta.notSettledBills++;
+        delta.notSettledAmount += amount;
+    }
+
+    /**
+     * @return the current totals, or null until the first scan completed
+     */
+    public Snapshot snapshot() {
+        Totals current = totals;
+        return current == null ? null : current.snapshot(scannedAt);
+    }
+
+    /**
+     * Scans the tables and replaces the totals with the result, plus the deltas committed during the scan.
+     */
+    void scan() {
+        long start = System.nanoTime();
+        Totals scanned = new Totals();
+        try {
+            readOnlyTransactionTemplate.executeWithoutResult(status -> {
+                withWriteLock(() -> scanDeltas = new Totals());
+                for (AccountAggregate aggregate : receivablesJdbcRepository.aggregateAccounts()) {
+                    scanned.accounts[index(aggregate.getStatus(), aggregate.getBillCycleDay())].add(aggregate.getAccounts());
+                    scanned.balances[aggregate.getStatus().ordinal()].add(aggregate.getBalance());
+                }
+                BillAggregate notSettled = receivablesJdbcRepository.aggregateBills(BillStatus.NOT_SETTLED);
+                scanned.notSettledBills.add(notSettled.getBills());
+                scanned.notSettledAmount.add(notSettled.getAmount());
+            });
+        } catch (RuntimeException e) {
+            log.error("Receivables scan failed, the totals are kept until the next scan", e);
+            withWriteLock(() -> scanDeltas = null);
+            return;
+        }
+
+        withWriteLock(() -> {
+            scanned.add(scanDeltas);
+            if (totals != null && !totals.snapshot(null).equals(scanned.snapshot(null))) {
+                corrections.increment();
+                log.warn("Receivables totals drifted from the tables and were corrected by the scan");
+            }
+            totals = scanned;
+            scanDeltas = null;
+            scannedAt = LocalDateTime.now();
+        });
+        log.info("Receivables scanned in {} ms", (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void apply(Delta delta) {
+        lock.readLock().lock();
+        try {
+            // Before the first scan the changes are left to it
+            if (totals != null) {
+                totals.add(delta);
+            }
+            if (scanDeltas != null) {
+                scanDeltas.add(delta);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void withWriteLock(Runnable action) {
+        lock.writeLock().lock();
+        try {
+            action.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Auxiliary method that returns the deltas of the current transaction, registered to be applied when
+     * it commits. Looked up among the synchronizations, so a nested REQUIRES_NEW transaction gets its own.
+     */
+    private Delta delta() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Receivables changes can only be recorded inside a transaction");
+        }
+
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof Delta delta && delta.owner == this) {
+                return delta;
+            }
+        }
+        Delta delta = new Delta(this);
+        TransactionSynchronizationManager.registerSynchronization(delta);
+        return delta;
+    }
+
+    private static int index(AccountStatus status, int billCycleDay) {
+        return status.ordinal() * BILL_CYCLE_DAYS + billCycleDay - 1;
+    }
+
+    /**
+     * Totals at one point in time.
+     * @param accounts the number of accounts by status (first index) and bill cycle day - 1 (second index)
+     * @param balances the sum of the balances in cents by status
+     * @param notSettledBills the number of NOT_SETTLED bills
+     * @param notSettledAmount the sum of the amounts of the NOT_SETTLED bills in cents
+     * @param scannedAt when the last scan completed
+     */
+    public record Snapshot(List<List<Long>> accounts, List<Long> balances, long notSettledBills,
+                           long notSettledAmount, LocalDateTime scannedAt) {
+
+        public long accounts(AccountStatus status, int billCycleDay) {
+            return accounts.get(status.ordinal()).get(billCycleDay - 1);
+        }
+
+        public long balance(AccountStatus status) {
+            return balances.get(status.ordinal());
+        }
+    }
+
+    private static final class Totals {
+        private final LongAdder[] accounts = adders(STATUSES.length * BILL_CYCLE_DAYS);
+        private final LongAdder[] balances = adders(STATUSES.length);
+        private final LongAdder notSettledBills = new LongAdder();
+        private final LongAdder notSettledAmount = new LongAdder();
+
+        private void add(Delta delta) {
+            for (int index = 0; index < accounts.length; index++) {
+                if (delta.accounts[index] != 0) {
+                    accounts[index].add(delta.accounts[index]);
+                }
+            }
+            for (int index = 0; index < balances.length; index++) {
+                if (delta.balances[index] != 0) {
+                    balances[index].add(delta.balances[index]);
+                }
+            }
+            notSettledBills.add(delta.notSettledBills);
+            notSettledAmount.add(delta.notSettledAmount);
+        }
+
+        private void add(Totals other) {
+            for (int index = 0; index < accounts.length; index++) {
+                accounts[index].add(other.accounts[index].sum());
+            }
+            for (int index = 0; index < balances.length; index++) {
+                balances[index].add(other.balances[index].sum());
+            }
+            notSettledBills.add(other.notSettledBills.sum());
+            notSettledAmount.add(other.notSettledAmount.sum());
+        }
+
+        private Snapshot snapshot(LocalDateTime scannedAt) {
+            List<List<Long>> accountsByStatus = new ArrayList<>(STATUSES.length);
+            for (AccountStatus status : STATUSES) {
+                Long[] byDay = new Long[BILL_CYCLE_DAYS];
+                for (int day = 1; day <= BILL_CYCLE_DAYS; day++) {
+                    byDay[day - 1] = accounts[index(status, day)].sum();
+                }
+                accountsByStatus.add(List.of(byDay));
+            }
+            List<Long> balancesByStatus = Arrays.stream(balances).map(LongAdder::sum).toList();
+            return new Snapshot(accountsByStatus, balancesByStatus, notSettledBills.sum(), notSettledAmount.sum(), scannedAt);
+        }
+
+        private static LongAdder[] adders(int length) {
+            LongAdder[] adders = new LongAdder[length];
+            for (int index = 0; index < length; index++) {
+                adders[index] = new LongAdder();
+            }
+            return adders;
+        }
+    }
+
+    /**
+     * Changes of the totals made by one transaction, applied when it commits.
+     */
+    private static final class Delta implements TransactionSynchronization {
+        private final ReceivablesAggregates owner;
+        private final long[] accounts = new long[STATUSES.length * BILL_CYCLE_DAYS];
+        private final long[] balances = new long[STATUSES.length];
+        private long notSettledBills;
+        private long notSettledAmount;
+
+        private Delta(ReceivablesAggregates owner) {
+            this.owner = owner;
+        }
+
+        @Override
+        public void afterCommit() {
+            owner.apply(this);
+        }
+    }
+}
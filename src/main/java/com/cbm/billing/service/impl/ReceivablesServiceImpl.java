@@ -0,0 +1,77 @@
+package com.cbm.billing.service.impl;
+
+import com.cbm.billing.common.AccountConstants;
+import com.cbm.billing.common.AccountStatus;
+import com.cbm.billing.dto.query.AccountStatusTotals;
+import com.cbm.billing.dto.query.ReceivablesAggregatesResponse;
+import com.cbm.billing.exception.ReceivablesNotReadyException;
+import com.cbm.billing.service.IReceivablesService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+@Slf4j
+@Service
+public class ReceivablesServiceImpl implements IReceivablesService {
+    private final ReceivablesAggregates receivablesAggregates;
+
+    public ReceivablesServiceImpl(ReceivablesAggregates receivablesAggregates) {
+        this.receivablesAggregates = receivablesAggregates;
+    }
+
+    /**
+     * Retrieves the receivables totals from the counters kept in memory by {@link ReceivablesAggregates},
+     * without reading the database.
+     * @return a {@link ReceivablesAggregatesResponse} with the accounts and balances by status, the accounts by
+     *     bill cycle day and the NOT_SETTLED bills
+     * @throws ReceivablesNotReadyException if the first scan of the tables has not completed yet
+     */
+    @Override
+    public ReceivablesAggregatesResponse receivablesAggregates() throws ReceivablesNotReadyException {
+        ReceivablesAggregates.Snapshot snapshot = receivablesAggregates.snapshot();
+
+        if (snapshot == null) {
+            log.error("Receivables requested before the first scan completed");
+            throw new ReceivablesNotReadyException("Receivables are being computed, retry later");
+        }
+
+        List<AccountStatusTotals> byStatus = new ArrayList<>();
+        Map<Integer, Long> accountsByBillCycleDay = new TreeMap<>();
+        long accounts = 0;
+        long totalBalance = 0;
+
+        for (AccountStatus status : AccountStatus.values()) {
+            long statusAccounts = 0;
+            for (int billCycleDay = 1; billCycleDay <= AccountConstants.MAX_BILL_CYCLE_DAY; billCycleDay++) {
+                long dayAccounts = snapshot.accounts(status, billCycleDay);
+                if (dayAccounts != 0) {
+                    accountsByBillCycleDay.merge(billCycleDay, dayAccounts, Long::sum);
+                    statusAccounts += dayAccounts;
+                }
+            }
+            byStatus.add(AccountStatusTotals.builder()
+                    .status(status)
+                    .accounts(statusAccounts)
+                    .balance(snapshot.balance(status))
+                    .build());
+            accounts += statusAccounts;
+            totalBalance += snapshot.balance(status);
+        }
+
+        return ReceivablesAggregatesResponse.builder()
+                .code(200L)
+                .message("Receivables aggregates")
+                .accounts(accounts)
+                .totalBalance(totalBalance)
+                .byStatus(byStatus)
+                .accountsByBillCycleDay(accountsByBillCycleDay)
+                .notSettledBills(snapshot.notSettledBills())
+                .notSettledAmount(snapshot.notSettledAmount())
+                .scannedAt(snapshot.scannedAt())
+                .build();
+    }
+}
@@ -0,0 +1,48 @@
+package com.cbm.billing.service.impl;
+
+import com.cbm.billing.common.SummarySource;
+import com.cbm.billing.model.SummaryChange;
+import com.cbm.billing.repository.SummaryProjectionJdbcRepository;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Records the accounts and bills changed by the current transaction in the summary change queue,
+ * which the {@link SummaryProjectorServiceImpl projector} tails to refresh the billing_summary schema.
+ * A row changed several times by a transaction is queued once.
+ */
+@Component
+public class SummaryChangeWriter extends TransactionalBatchWriter<SummaryChange> {
+    private final SummaryProjectionJdbcRepository summaryProjectionJdbcRepository;
+
+    public SummaryChangeWriter(SummaryProjectionJdbcRepository summaryProjectionJdbcRepository) {
+        super("Summary changes");
+        this.summaryProjectionJdbcRepository = summaryProjectionJdbcRepository;
+    }
+
+    /**
+     * Queues the account for projection when the current transaction commits.
+     * @param accountId the id of the changed account
+     * @throws IllegalStateException if there is no active transaction
+     */
+    public void accountChanged(Long accountId) {
+        buffer(SummaryChange.builder().source(SummarySource.ACCOUNT).sourceId(accountId).build());
+    }
+
+    /**
+     * Queues the bill for projection when the current transaction commits.
+     * @param billId the id of the changed bill
+     * @throws IllegalStateException if there is no active transaction
+     */
+    public void billChanged(Long billId) {
+        buffer(SummaryChange.builder().source(SummarySource.BILL).sourceId(billId).build());
+    }
+
+    @Override
+    protected void flush(List<SummaryChange> changes) {
+        summaryProjectionJdbcRepository.insertChanges(new ArrayList<>(new LinkedHashSet<>(changes)));
+    }
+}
@@ -0,0 +1,230 @@
+package com.cbm.billing.service.impl;
+
+import com.cbm.billing.common.SummarySource;
+import com.cbm.billing.dto.query.SummaryProjectorStatusResponse;
+import com.cbm.billing.exception.ForbiddenOperationException;
+import com.cbm.billing.model.SummaryChange;
+import com.cbm.billing.repository.SummaryProjectionJdbcRepository;
+import com.cbm.billing.service.ISummaryProjectorService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+
+/**
+ * Projector of the billing_summary schema.
+ * The transactions that change accounts and bills queue their ids in the summary change queue through the
+ * {@link SummaryChangeWriter}. Every run of the projector drains the queue in batches, off the request path:
+ * a batch reads the current state of the changed rows, upserts it into the summary tables, deletes the
+ * projected changes and moves the checkpoint, all in one transaction. A failed batch stays in the queue and
+ * is retried by the next run.
+ * <p>
+ * The rebuild mode copies the whole account and bill tables in chunks using keyset pagination, moving a
+ * checkpoint per table with every chunk, so an interrupted rebuild resumes where it stopped when started again.
+ * Batches and rebuild chunks never run at the same time, on this instance or another, so a chunk never
+ * overwrites a newer projection with the state it read before: every transaction first locks the lease row of
+ * the projector. A run of the projector skips while another instance holds the lease, a rebuild chunk waits for it.
+ */
+@Slf4j
+@Service
+public class SummaryProjectorServiceImpl implements ISummaryProjectorService {
+    private static final String CHANGES_CHECKPOINT = "changes";
+    private static final String REBUILD_ACCOUNTS_CHECKPOINT = "rebuild.accounts";
+    private static final String REBUILD_BILLS_CHECKPOINT = "rebuild.bills";
+
+    private final SummaryProjectionJdbcRepository summaryProjectionJdbcRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int batchSize;
+    private final int rebuildChunkSize;
+    private final ExecutorService rebuildExecutor;
+    private final AtomicBoolean rebuildRunning = new AtomicBoolean();
+
+    private final LongAdder projectedChanges = new LongAdder();
+    private final LongAdder projectedAccounts = new LongAdder();
+    private final LongAdder projectedBills = new LongAdder();
+    private final LongAdder failedBatches = new LongAdder();
+    private volatile LocalDateTime lastRunAt;
+
+    public SummaryProjectorServiceImpl(SummaryProjectionJdbcRepository summaryProjectionJdbcRepository,
+                                       PlatformTransactionManager transactionManager,
+                                       @Value("${billing.summary.projector.enabled:true}") boolean enabled,
+                                       @Value("${billing.summary.projector.batch-size:1000}") int batchSize,
+                                       @Value("${billing.summary.rebuild.chunk-size:1000}") int rebuildChunkSize) {
+        this.summaryProjectionJdbcRepository = summaryProjectionJdbcRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.rebuildChunkSize = rebuildChunkSize;
+        this.rebuildExecutor = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("summary-rebuild-"));
+    }
+
+    /**
+     * function to project the queued changes, oldest first, until the queue is empty or a batch fails.
+     */
+    @Override
+    @Scheduled(fixedDelayString = "${billing.summary.projector.interval-ms:1000}")
+    public void project() {
+        if (!enabled) {
+            return;
+        }
+
+        long runChanges = 0;
+        try {
+            Integer batchChanges;
+            do {
+                batchChanges = transactionTemplate.execute(status ->
+                        summaryProjectionJdbcRepository.lockLease(false) ? projectBatch() : null);
+                if (batchChanges == null) {
+                    log.debug("Summary projector lease is held by another instance, skipping the run");
+                    break;
+                }
+                runChanges += batchChanges;
+            } while (batchChanges == batchSize);
+
+        } catch (RuntimeException e) {
+            failedBatches.increment();
+            log.error("Summary projection failed after {} changes, the failed batch will be retried", runChanges, e);
+        }
+
+        if (runChanges > 0) {
+            log.info("Summary projector applied {} changes", runChanges);
+        }
+        lastRunAt = LocalDateTime.now();
+    }
+
+    /**
+     * Starts a full rebuild of the summary schema in the background, or resumes the last one if it
+     * did not finish. Queued changes keep being projected while the rebuild runs.
+     * @return a {@link SummaryProjectorStatusResponse} with the status of the projector
+     * @throws ForbiddenOperationException if a rebuild is already in progress
+     */
+    @Override
+    public SummaryProjectorStatusResponse startRebuild() throws ForbiddenOperationException {
+        if (!rebuildRunning.compareAndSet(false, true)) {
+            log.error("Summary rebuild is already in progress");
+            throw new ForbiddenOperationException("Summary rebuild is already in progress");
+        }
+
+        rebuildExecutor.execute(this::rebuild);
+        log.info("Summary rebuild started");
+        return projectorStatus("Summary rebuild started successfully");
+    }
+
+    /**
+     * Retrieves the backlog, throughput and rebuild progress of the projector.
+     * @return a {@link SummaryProjectorStatusResponse} with the totals since startup and the checkpoints
+     */
+    @Override
+    public SummaryProjectorStatusResponse projectorStatus() {
+        return projectorStatus("Summary projector status");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // An interrupted chunk rolls back, the rebuild is resumed from its checkpoint on the next start
+        rebuildExecutor.shutdownNow();
+    }
+
+    /**
+     * Projects the oldest batch of queued changes inside the current transaction.
+     * @return the number of changes projected
+     */
+    private int projectBatch() {
+        List<SummaryChange> changes = summaryProjectionJdbcRepository.findOldestChanges(batchSize);
+        if (changes.isEmpty()) {
+            return 0;
+        }
+
+        // Sorted, so the projectors of several instances always lock the summary rows in the same order
+        Set<Long> accountIds = new TreeSet<>();
+        Set<Long> billIds = new TreeSet<>();
+        for (SummaryChange change : changes) {
+            (change.getSource() == SummarySource.ACCOUNT ? accountIds : billIds).add(change.getSourceId());
+        }
+
+        if (!accountIds.isEmpty()) {
+            projectedAccounts.add(summaryProjectionJdbcRepository.projectAccounts(accountIds));
+        }
+        if (!billIds.isEmpty()) {
+            projectedBills.add(summaryProjectionJdbcRepository.projectBills(billIds));
+        }
+
+        summaryProjectionJdbcRepository.deleteChanges(changes.stream().map(SummaryChange::getId).toList());
+        summaryProjectionJdbcRepository.saveCheckpoint(CHANGES_CHECKPOINT, changes.get(changes.size() - 1).getId());
+        projectedChanges.add(changes.size());
+        return changes.size();
+    }
+
+    private void rebuild() {
+        try {
+            rebuildTable(REBUILD_ACCOUNTS_CHECKPOINT, summaryProjectionJdbcRepository::projectAccountsAfter, projectedAccounts);
+            rebuildTable(REBUILD_BILLS_CHECKPOINT, summaryProjectionJdbcRepository::projectBillsAfter, projectedBills);
+            log.info("Summary rebuild finished");
+        } catch (RuntimeException e) {
+            log.error("Summary rebuild failed, it resumes from its checkpoint on the next start", e);
+        } finally {
+            rebuildRunning.set(false);
+        }
+    }
+
+    /**
+     * Copies a source table chunk by chunk from its checkpoint, moving the checkpoint in the transaction
+     * of every chunk, and removes the checkpoint once the table is complete.
+     */
+    private void rebuildTable(String checkpoint, BiFunction<Long, Integer, List<Long>> projectChunk, LongAdder projected) {
+        long afterId = summaryProjectionJdbcRepository.findCheckpoint(checkpoint).orElse(0L);
+
+        while (!Thread.currentThread().isInterrupted()) {
+            long chunkAfterId = afterId;
+            List<Long> ids = transactionTemplate.execute(status -> {
+                if (!summaryProjectionJdbcRepository.lockLease(true)) {
+                    throw new IllegalStateException("The lease row of the summary projector is missing");
+                }
+                List<Long> chunk = projectChunk.apply(chunkAfterId, rebuildChunkSize);
+                if (!chunk.isEmpty()) {
+                    summaryProjectionJdbcRepository.saveCheckpoint(checkpoint, chunk.get(chunk.size() - 1));
+                }
+                return chunk;
+            });
+
+            if (ids.isEmpty()) {
+                summaryProjectionJdbcRepository.deleteCheckpoint(checkpoint);
+                return;
+            }
+            projected.add(ids.size());
+            afterId = ids.get(ids.size() - 1);
+        }
+    }
+
+    private SummaryProjectorStatusResponse projectorStatus(String message) {
+        return SummaryProjectorStatusResponse.builder()
+                .code(200L)
+                .message(message)
+                .pendingChanges(summaryProjectionJdbcRepository.countChanges())
+                .projectedChanges(projectedChanges.sum())
+                .projectedAccounts(projectedAccounts.sum())
+                .projectedBills(projectedBills.sum())
+                .failedBatches(failedBatches.sum())
+                .lastChangeId(summaryProjectionJdbcRepository.findCheckpoint(CHANGES_CHECKPOINT).orElse(null))
+                .lastRunAt(lastRunAt)
+                .rebuildRunning(rebuildRunning.get())
+                .rebuildAccountPosition(summaryProjectionJdbcRepository.findCheckpoint(REBUILD_ACCOUNTS_CHECKPOINT).orElse(null))
+                .rebuildBillPosition(summaryProjectionJdbcRepository.findCheckpoint(REBUILD_BILLS_CHECKPOINT).orElse(null))
+                .build();
+    }
+}
@@ -0,0 +1,44 @@
+package com.cbm.billing.service.impl;
+
+import com.cbm.billing.dto.event.TransactionDetailsEvent;
+import com.cbm.billing.metrics.BillingMetrics;
+import com.cbm.billing.repository.TransactionLedgerJdbcRepository;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Append-only writer of the transaction ledger.
+ * Entries appended during a transaction are buffered and written in one JDBC batch just before
+ * the transaction commits, so they commit or roll back together with the balance change and a
+ * transaction costs at most one extra round trip whatever the number of entries.
+ */
+@Component
+public class TransactionLedgerWriter extends TransactionalBatchWriter<TransactionDetailsEvent> {
+    private final TransactionLedgerJdbcRepository transactionLedgerJdbcRepository;
+    private final BillingMetrics billingMetrics;
+
+    public TransactionLedgerWriter(TransactionLedgerJdbcRepository transactionLedgerJdbcRepository, BillingMetrics billingMetrics) {
+        super("Ledger entries");
+        this.transactionLedgerJdbcRepository = transactionLedgerJdbcRepository;
+        this.billingMetrics = billingMetrics;
+    }
+
+    /**
+     * Buffers a transaction to be written to the ledger when the current transaction commits.
+     * @param transaction the applied charge or credit
+     * @throws IllegalStateException if there is no active transaction
+     */
+    public void append(TransactionDetailsEvent transaction) {
+        buffer(transaction);
+    }
+
+    @Override
+    protected void flush(List<TransactionDetailsEvent> entries) {
+        transactionLedgerJdbcRepository.insertEntries(entries);
+        // Every applied charge and credit goes through the ledger, whether it came alone, grouped or in a batch
+        for (TransactionDetailsEvent entry : entries) {
+            billingMetrics.transactionApplied(entry.getTransactionType(), entry.getTransactionAmount());
+        }
+    }
+}
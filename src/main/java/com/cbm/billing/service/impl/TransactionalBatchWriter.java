@@ -0,0 +1,71 @@
+package com.cbm.billing.service.impl;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Base of the writers that add rows on behalf of the current transaction.
+ * Rows buffered during a transaction are written by {@link #flush(List)} in one JDBC batch just before
+ * the transaction commits, so they commit or roll back together with the change that produced them and
+ * a transaction costs at most one extra round trip per writer whatever the number of rows.
+ * @param <T> the type of the buffered rows
+ */
+public abstract class TransactionalBatchWriter<T> {
+    private final String rowsName;
+
+    protected TransactionalBatchWriter(String rowsName) {
+        this.rowsName = rowsName;
+    }
+
+    /**
+     * Buffers a row to be flushed when the current transaction commits.
+     * @param row the row to write
+     * @throws IllegalStateException if there is no active transaction
+     */
+    protected void buffer(T row) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException(rowsName + " can only be appended inside a transaction");
+        }
+
+        // Looked up among the synchronizations, which are suspended with their transaction, so a nested
+        // REQUIRES_NEW transaction gets its own buffer
+        Buffer<T> buffer = null;
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof Buffer<?> candidate && candidate.owner == this) {
+                @SuppressWarnings("unchecked")
+                Buffer<T> ownBuffer = (Buffer<T>) candidate;
+                buffer = ownBuffer;
+                break;
+            }
+        }
+
+        if (buffer == null) {
+            buffer = new Buffer<>(this);
+            TransactionSynchronizationManager.registerSynchronization(buffer);
+        }
+        buffer.rows.add(row);
+    }
+
+    /**
+     * Writes the rows buffered by a transaction, in the order they were buffered.
+     * @param rows the rows, never empty
+     */
+    protected abstract void flush(List<T> rows);
+
+    private static final class Buffer<T> implements TransactionSynchronization {
+        private final TransactionalBatchWriter<T> owner;
+        private final List<T> rows = new ArrayList<>();
+
+        private Buffer(TransactionalBatchWriter<T> owner) {
+            this.owner = owner;
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            owner.flush(rows);
+        }
+    }
+}
@@ -14,10 +14,16 @@ CREATE TABLE billing_account (
     status ENUM('ACTIVE', 'TERMINATED') NOT NULL DEFAULT 'ACTIVE',
     created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    -- Optimistic lock version of the JPA entity, incremented by every update of the row
+    version BIGINT NOT NULL DEFAULT 0,
     PRIMARY KEY (id),
     CONSTRAINT chk_bill_cycle_day CHECK (bill_cycle_day BETWEEN 1 AND 31),
     INDEX idx_status (status),
-    INDEX idx_bill_cycle_day (bill_cycle_day)
+    INDEX idx_status_bill_cycle_day (status, bill_cycle_day),
+    -- Keyset pagination indexes, one per sort key of the account search
+    INDEX idx_name (name, id),
+    INDEX idx_bill_cycle_day (bill_cycle_day, id),
+    INDEX idx_last_bill_date (last_bill_date, id)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
 
 --- INSERT Billing Account Mocked Data ---
@@ -61,6 +67,160 @@ VALUES
     (5, '2024-01-10', 1290.35, 'SETTLED');        
 
 
+---- BILL RUN TABLE ----
+CREATE TABLE bill_run (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    run_date DATE NOT NULL,
+    amount DECIMAL(12,2) NOT NULL DEFAULT 0.00,
+    status ENUM('RUNNING', 'COMPLETED', 'COMPLETED_WITH_FAILURES', 'FAILED') NOT NULL DEFAULT 'RUNNING',
+    total_accounts BIGINT NOT NULL DEFAULT 0,
+    processed_accounts BIGINT NOT NULL DEFAULT 0,
+    failed_accounts BIGINT NOT NULL DEFAULT 0,
+    chunks_completed BIGINT NOT NULL DEFAULT 0,
+    started_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    finished_at TIMESTAMP NULL,
+    PRIMARY KEY (id),
+    INDEX idx_run_date (run_date)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+
+---- ACCOUNT IMPORT TABLES ----
+CREATE TABLE account_import (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    format ENUM('NDJSON', 'CSV') NOT NULL,
+    status ENUM('RUNNING', 'COMPLETED', 'COMPLETED_WITH_REJECTIONS', 'FAILED', 'INTERRUPTED') NOT NULL DEFAULT 'RUNNING',
+    total_rows BIGINT NULL,
+    imported_accounts BIGINT NOT NULL DEFAULT 0,
+    rejected_rows BIGINT NOT NULL DEFAULT 0,
+    chunks_completed BIGINT NOT NULL DEFAULT 0,
+    started_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    finished_at TIMESTAMP NULL,
+    PRIMARY KEY (id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- Rows of an import file that were not imported, written in the transaction of their chunk
+CREATE TABLE account_import_rejection (
+    import_id BIGINT NOT NULL,
+    line_number BIGINT NOT NULL,
+    reason VARCHAR(500) NOT NULL,
+    row_content VARCHAR(1000) NULL,
+    PRIMARY KEY (import_id, line_number),
+    CONSTRAINT fk_account_import_rejection_account_import
+        FOREIGN KEY (import_id)
+        REFERENCES account_import(id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+---- ACCOUNT NAME INDEX TABLES ----
+-- Postings of the account name search, written in the transaction of the account creation. The terms are
+-- lower cased and stripped of accents by the application, so they are compared byte for byte. Accounts
+-- inserted by this script are indexed by POST /api/v1/accounts/name-index/rebuild
+CREATE TABLE account_name_trigram (
+    trigram CHAR(3) NOT NULL,
+    account_id BIGINT NOT NULL,
+    PRIMARY KEY (trigram, account_id),
+    INDEX idx_name_trigram_account_id (account_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_bin;
+
+CREATE TABLE account_name_token (
+    token VARCHAR(100) NOT NULL,
+    account_id BIGINT NOT NULL,
+    PRIMARY KEY (token, account_id),
+    INDEX idx_name_token_account_id (account_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_bin;
+
+-- Whether every account has its postings. Set by the end of a rebuild and cleared by the start of the next
+-- one, the name searches match with a plain LIKE while it is not set
+CREATE TABLE account_name_index_state (
+    id TINYINT NOT NULL,
+    complete BOOLEAN NOT NULL,
+    completed_at TIMESTAMP NULL,
+    PRIMARY KEY (id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+INSERT INTO account_name_index_state (id, complete) VALUES (1, FALSE);
+
+
+---- TRANSACTION LEDGER TABLE ----
+-- Append-only history of charges and credits, written in the transaction of the balance change
+CREATE TABLE transaction_ledger (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    account_id BIGINT NOT NULL,
+    transaction_type ENUM('CHARGE', 'CREDIT') NOT NULL,
+    amount DECIMAL(12,2) NOT NULL,
+    previous_balance DECIMAL(12,2) NOT NULL,
+    current_balance DECIMAL(12,2) NOT NULL,
+    transaction_date DATE NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_transaction_ledger_billing_account
+        FOREIGN KEY (account_id)
+        REFERENCES billing_account(id),
+    INDEX idx_account_id_id (account_id, id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+---- EVENT OUTBOX TABLE ----
+-- Domain events written in the transaction of the state change and deleted once relayed
+CREATE TABLE event_outbox (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    account_id BIGINT NOT NULL,
+    event_type VARCHAR(64) NOT NULL,
+    payload JSON NOT NULL,
+    created_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    PRIMARY KEY (id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- Position of the outbox relay, one row. Every relay batch locks it, so a single instance relays at a time,
+-- and a restarted relay carries on from the next id it expects and the gap it was waiting for
+CREATE TABLE outbox_relay (
+    id TINYINT NOT NULL,
+    next_id BIGINT NOT NULL,
+    gap_id BIGINT NOT NULL,
+    gap_seen_at TIMESTAMP(3) NULL,
+    PRIMARY KEY (id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+INSERT INTO outbox_relay (id, next_id, gap_id) VALUES (1, 0, 0);
+
+---- IDEMPOTENCY KEY TABLE ----
+-- Responses of the requests sent with an Idempotency-Key header, replayed to the retries of the same request
+-- until expires_at. A row without response_status is a request still running, or one that died while running.
+-- in_doubt marks a request that failed in a way that may have left its effects committed: it is neither run
+-- again nor replayed until the key expires
+CREATE TABLE idempotency_key (
+    idempotency_key VARCHAR(255) NOT NULL,
+    request_hash BINARY(32) NOT NULL,
+    response_status SMALLINT NULL,
+    content_type VARCHAR(255) NULL,
+    response_body MEDIUMBLOB NULL,
+    in_doubt BOOLEAN NOT NULL DEFAULT FALSE,
+    expires_at TIMESTAMP(3) NOT NULL,
+    PRIMARY KEY (idempotency_key),
+    INDEX idx_idempotency_key_expires_at (expires_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_bin;
+
+---- SUMMARY CHANGE TABLE ----
+-- Accounts and bills changed by a transaction, written in that transaction and drained by the summary projector
+CREATE TABLE summary_change (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    source ENUM('ACCOUNT', 'BILL') NOT NULL,
+    source_id BIGINT NOT NULL,
+    PRIMARY KEY (id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+---- ID GENERATOR TABLE ----
+-- Last id allocated for the tables whose ids are allocated in blocks by the application (Hibernate table
+-- generators and the bill run). Seeded after the data above, so the blocks start past the existing rows
+CREATE TABLE id_generator (
+    name VARCHAR(64) NOT NULL,
+    next_val BIGINT NOT NULL,
+    PRIMARY KEY (name)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+INSERT INTO id_generator (name, next_val)
+SELECT 'billing_account', COALESCE(MAX(id), 0) FROM billing_account
+UNION ALL
+SELECT 'bill', COALESCE(MAX(id), 0) FROM bill;
+
 -- Create the second schema (summary data)
 CREATE SCHEMA billing_summary;
 
@@ -68,20 +228,33 @@ USE billing_summary;
 
 -- Billing account Summary Table ---
 CREATE TABLE billing_account_summary (
-    id BIGINT NOT NULL,  
+    id BIGINT NOT NULL,  -- Note: Not AUTO_INCREMENT as it's synchronized with main schema
     name VARCHAR(100) NOT NULL,
     current_balance DECIMAL(12,2) NOT NULL DEFAULT 0.00,
+    last_bill_date DATE,
     status ENUM('ACTIVE', 'TERMINATED') NOT NULL DEFAULT 'ACTIVE',
-    billId BIGINT NOT NULL,
     PRIMARY KEY (id),
-    CONSTRAINT fk_billing_account_summary_bill_summary
-        FOREIGN KEY (billId)
-        REFERENCES bill_summary(id)
+    INDEX idx_status (status)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
 
 -- Billing Summary Table ---
 CREATE TABLE bill_summary (
     id BIGINT NOT NULL,  -- Note: Not AUTO_INCREMENT as it's synchronized with main schema
+    billing_account_id BIGINT NOT NULL,
+    generation_date DATE NOT NULL,
+    amount DECIMAL(12,2) NOT NULL,
     status ENUM('SETTLED', 'NOT_SETTLED') NOT NULL,
-    PRIMARY KEY (id)
+    PRIMARY KEY (id),
+    INDEX idx_billing_account_id (billing_account_id, id)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- Summary projector checkpoints ---
+CREATE TABLE projector_checkpoint (
+    name VARCHAR(64) NOT NULL,
+    position BIGINT NOT NULL,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (name)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- Lease row, locked by every batch and rebuild chunk of the projectors
+INSERT INTO projector_checkpoint (name, position) VALUES ('lease', 0);
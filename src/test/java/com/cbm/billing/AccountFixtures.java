@@ -0,0 +1,77 @@
+package com.cbm.billing;
+
+import com.cbm.billing.common.AccountStatus;
+import com.cbm.billing.common.Money;
+import com.cbm.billing.dto.create.CreateAccountDTO;
+import com.cbm.billing.service.IAccountService;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Accounts created through the service for the tests on the embedded profile. The tests share one database,
+ * so every account gets a name of its own and the tests select their accounts by it.
+ */
+public class AccountFixtures {
+    private final IAccountService accountService;
+    private final JdbcTemplate jdbcTemplate;
+
+    public AccountFixtures(IAccountService accountService, JdbcTemplate jdbcTemplate) {
+        this.accountService = accountService;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * @param label the start of the name, telling the test apart
+     * @return a name prefix no other account has
+     */
+    public static String uniquePrefix(String label) {
+        return label + "-" + UUID.randomUUID() + "-";
+    }
+
+    /**
+     * Creates an ACTIVE account with a unique name and bill cycle day 1.
+     * @param balance the balance in cents
+     * @return the id of the account
+     */
+    public long createAccount(long balance) {
+        return createAccount(uniquePrefix("account"), balance, 1);
+    }
+
+    /**
+     * Creates an ACTIVE account.
+     * @param name the name of the account, unique among the accounts of the tests
+     * @param balance the balance in cents
+     * @param billCycleDay the bill cycle day
+     * @return the id of the account
+     */
+    public long createAccount(String name, long balance, int billCycleDay) {
+        accountService.createAccount(CreateAccountDTO.builder()
+                .name(name)
+                .currentBalance(balance)
+                .billCycleDay(billCycleDay)
+                .status(AccountStatus.ACTIVE)
+                .build());
+        return jdbcTemplate.queryForObject("SELECT id FROM billing.billing_account WHERE name = ?", Long.class, name);
+    }
+
+    /**
+     * @param prefix the prefix of the names
+     * @return the ids of the accounts whose name starts with the prefix, in id order
+     */
+    public List<Long> idsByNamePrefix(String prefix) {
+        return jdbcTemplate.queryForList("SELECT id FROM billing.billing_account WHERE name LIKE ? ORDER BY id",
+                Long.class, prefix + "%");
+    }
+
+    /**
+     * @param accountId the id of the account
+     * @return the balance of the account in cents, as stored
+     */
+    public long balance(long accountId) {
+        return Money.toCents(jdbcTemplate.queryForObject("SELECT current_balance FROM billing.billing_account WHERE id = ?",
+                BigDecimal.class, accountId));
+    }
+}
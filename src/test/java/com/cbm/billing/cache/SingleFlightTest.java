@@ -0,0 +1,152 @@
+package com.cbm.billing.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SingleFlightTest {
+    private static final long TIMEOUT_MS = 10_000;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SingleFlight<String, String> flight = new SingleFlight<>("test", meterRegistry);
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger runs = new AtomicInteger();
+
+    @AfterEach
+    void shutDown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void sharesTheResultOfTheCallInFlight() throws Exception {
+        Future<String> leader = call("key", () -> "result");
+        Future<String> follower = joinedCall("key");
+        Future<String> other = call("other", () -> "other result");
+
+        release.countDown();
+
+        assertEquals("result", leader.get(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        assertEquals("result", follower.get(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        assertEquals("other result", other.get(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        assertEquals(2, runs.get());
+        assertEquals(1 / 3.0, meterRegistry.get("billing.coalescing.ratio").gauge().value(), 1e-9);
+    }
+
+    @Test
+    void forgetsTheKeyBeforeReleasingTheFollowers() throws Exception {
+        Future<String> leader = call("key", () -> "result");
+        awaitInFlight();
+        Future<Integer> inFlightSeenByFollower = executor.submit(() -> {
+            flight.call("key", () -> {
+                throw new AssertionError("The call in flight was not joined");
+            });
+            return flight.inFlight();
+        });
+        awaitJoined(1);
+
+        release.countDown();
+
+        assertEquals(0, inFlightSeenByFollower.get(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        leader.get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        // Nothing is cached, a later caller runs the call again
+        assertEquals("again", flight.call("key", () -> "again"));
+    }
+
+    @Test
+    void passesTheExceptionOfTheLeaderToTheFollowers() throws Exception {
+        IllegalStateException failure = new IllegalStateException("failed");
+        Future<String> leader = call("key", () -> {
+            throw failure;
+        });
+        Future<String> follower = joinedCall("key");
+
+        release.countDown();
+
+        assertSame(failure, causeOf(leader));
+        assertSame(failure, causeOf(follower));
+        assertEquals(0, flight.inFlight());
+    }
+
+    @Test
+    void passesTheErrorOfTheLeaderToTheFollowersUnwrapped() throws Exception {
+        OutOfMemoryError failure = new OutOfMemoryError("failed");
+        Future<String> leader = call("key", () -> {
+            throw failure;
+        });
+        Future<String> follower = joinedCall("key");
+
+        release.countDown();
+
+        assertSame(failure, causeOf(leader));
+        assertSame(failure, causeOf(follower));
+    }
+
+    /**
+     * Auxiliary method that runs a call of the key on another thread, held until the test releases it.
+     */
+    private Future<String> call(String key, Supplier<String> result) {
+        return executor.submit(() -> flight.call(key, () -> {
+            runs.incrementAndGet();
+            try {
+                assertTrue(release.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return result.get();
+        }));
+    }
+
+    /**
+     * Auxiliary method that runs a call of the key on another thread once the call of the key is in flight,
+     * and waits until it joined it.
+     */
+    private Future<String> joinedCall(String key) throws InterruptedException {
+        awaitInFlight();
+        double joined = joined();
+        Future<String> follower = executor.submit(() -> flight.call(key, () -> {
+            throw new AssertionError("The call in flight was not joined");
+        }));
+        awaitJoined(joined + 1);
+        return follower;
+    }
+
+    private void awaitInFlight() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (flight.inFlight() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    private void awaitJoined(double count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (joined() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, joined());
+    }
+
+    private double joined() {
+        return meterRegistry.get("billing.coalescing.requests").tag("outcome", "joined").functionCounter().count();
+    }
+
+    private static Throwable causeOf(Future<String> call) {
+        return assertThrows(ExecutionException.class, () -> call.get(TIMEOUT_MS, TimeUnit.MILLISECONDS)).getCause();
+    }
+}
@@ -0,0 +1,45 @@
+package com.cbm.billing.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AccountNameTermsTest {
+
+    @Test
+    void ignoresCaseAndAccents() {
+        assertEquals(Set.of("jose", "garcia"), AccountNameTerms.tokens("José GARCÍA"));
+        assertEquals(AccountNameTerms.trigrams("Renée"), AccountNameTerms.trigrams("renee"));
+    }
+
+    @Test
+    void replacesTheLettersTheCollationComparesEqualToOthers() {
+        assertEquals(Set.of("strasse"), AccountNameTerms.tokens("Straße"));
+        assertEquals(Set.of("soren"), AccountNameTerms.tokens("Søren"));
+        assertEquals(Set.of("aegir", "coeur"), AccountNameTerms.tokens("Ægir Cœur"));
+        assertEquals(Set.of("lodz"), AccountNameTerms.tokens("Łódź"));
+        assertEquals(AccountNameTerms.trigrams("strasse"), AccountNameTerms.trigrams("STRASSE"));
+        assertEquals(AccountNameTerms.trigrams("Straße"), AccountNameTerms.trigrams("strasse"));
+    }
+
+    @Test
+    void takesTheCompatibilityFormOfTheName() {
+        assertEquals(Set.of("office", "abc"), AccountNameTerms.tokens("Oﬃce ＡＢＣ"));
+    }
+
+    @Test
+    void splitsWordsOnEverythingButLettersAndDigits() {
+        assertEquals(List.of("smith", "john", "42"), List.copyOf(AccountNameTerms.tokens("Smith, John - 42")));
+        assertEquals(List.of("Smith", "John"), List.copyOf(AccountNameTerms.words("Smith, John")));
+    }
+
+    @Test
+    void hasNoTrigramForAShortName() {
+        assertTrue(AccountNameTerms.trigrams("ab").isEmpty());
+        assertEquals(List.of("abc", "bcd"), List.copyOf(AccountNameTerms.trigrams("abcd")));
+    }
+}
@@ -0,0 +1,45 @@
+package com.cbm.billing.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MoneyTest {
+
+    @Test
+    void convertsAmountsWithUpToTwoDecimals() {
+        assertEquals(1200, Money.toCents(new BigDecimal("12")));
+        assertEquals(150, Money.toCents(new BigDecimal("1.5")));
+        assertEquals(1, Money.toCents(new BigDecimal("0.01")));
+        assertEquals(-1999, Money.toCents(new BigDecimal("-19.99")));
+    }
+
+    @Test
+    void acceptsTrailingZerosAndExponents() {
+        assertEquals(150, Money.toCents(new BigDecimal("1.5000")));
+        assertEquals(120_000, Money.toCents(new BigDecimal("1.2E+3")));
+    }
+
+    @Test
+    void rejectsAmountsThatWouldBeRounded() {
+        assertThrows(ArithmeticException.class, () -> Money.toCents(new BigDecimal("1.005")));
+        assertThrows(ArithmeticException.class, () -> Money.toCents(new BigDecimal("0.001")));
+        assertThrows(ArithmeticException.class, () -> Money.toCents(new BigDecimal("-0.999")));
+    }
+
+    @Test
+    void rejectsAmountsBeyondALong() {
+        assertThrows(ArithmeticException.class, () -> Money.toCents(new BigDecimal("92233720368547758.08")));
+        assertEquals(Long.MAX_VALUE, Money.toCents(new BigDecimal("92233720368547758.07")));
+    }
+
+    @Test
+    void convertsCentsToTwoDecimals() {
+        assertEquals(new BigDecimal("1.50"), Money.toDecimal(150));
+        assertEquals(new BigDecimal("0.00"), Money.toDecimal(0));
+        assertEquals(new BigDecimal("-0.01"), Money.toDecimal(-1));
+    }
+}
@@ -0,0 +1,221 @@
+package com.cbm.billing.controller;
+
+import com.cbm.billing.AccountFixtures;
+import com.cbm.billing.dto.update.TransactionAmountDTO;
+import com.cbm.billing.service.IAccountService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+
+@SpringBootTest
+@ActiveProfiles("embedded")
+class IdempotencyFilterTest {
+    private static final int DUPLICATES = 12;
+
+    @Autowired
+    private WebApplicationContext webApplicationContext;
+    @Autowired
+    private IdempotencyFilter idempotencyFilter;
+    @Autowired
+    private IAccountService accountService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private MockMvc mockMvc;
+    private AccountFixtures accounts;
+
+    // Built on the context shared with the other tests, which share its embedded database
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).addFilters(idempotencyFilter).build();
+        accounts = new AccountFixtures(accountService, jdbcTemplate);
+    }
+
+    @Test
+    void replaysTheResponseOfTheFirstExecution() throws Exception {
+        long accountId = accounts.createAccount(1_000);
+        String key = UUID.randomUUID().toString();
+
+        MockHttpServletResponse first = transaction(accountId, "credit", "2.50", key);
+        MockHttpServletResponse retry = transaction(accountId, "credit", "2.50", key);
+
+        assertEquals(200, first.getStatus());
+        assertNull(first.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+        assertEquals(200, retry.getStatus());
+        assertEquals("true", retry.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+        assertEquals(first.getContentAsString(), retry.getContentAsString());
+        assertEquals(1_250, accounts.balance(accountId));
+    }
+
+    @Test
+    void rejectsAKeyReusedForAnotherRequest() throws Exception {
+        long accountId = accounts.createAccount(1_000);
+        String key = UUID.randomUUID().toString();
+
+        assertEquals(200, transaction(accountId, "credit", "2.50", key).getStatus());
+        assertEquals(422, transaction(accountId, "credit", "3", key).getStatus());
+        assertEquals(422, transaction(accountId, "charge", "2.50", key).getStatus());
+        assertEquals(1_250, accounts.balance(accountId));
+    }
+
+    @Test
+    void runsConcurrentDuplicatesOnce() throws Exception {
+        long accountId = accounts.createAccount(1_000);
+        String key = UUID.randomUUID().toString();
+        List<Callable<MockHttpServletResponse>> duplicates = new ArrayList<>();
+        for (int index = 0; index < DUPLICATES; index++) {
+            duplicates.add(() -> transaction(accountId, "credit", "1", key));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(DUPLICATES);
+        List<MockHttpServletResponse> responses = new ArrayList<>();
+        try {
+            for (Future<MockHttpServletResponse> response : executor.invokeAll(duplicates)) {
+                responses.add(response.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        String body = responses.get(0).getContentAsString();
+        int executed = 0;
+        for (MockHttpServletResponse response : responses) {
+            assertEquals(200, response.getStatus());
+            assertEquals(body, response.getContentAsString());
+            if (response.getHeader(IdempotencyFilter.REPLAYED_HEADER) == null) {
+                executed++;
+            }
+        }
+        assertEquals(1, executed);
+        assertEquals(1_100, accounts.balance(accountId));
+    }
+
+    @Test
+    void runsAFailedRequestAgain() throws Exception {
+        long accountId = accounts.createAccount(100);
+        String key = UUID.randomUUID().toString();
+
+        assertEquals(400, transaction(accountId, "charge", "5", key).getStatus());
+        accountService.creditOnAccount(accountId, new TransactionAmountDTO(1_000L));
+        MockHttpServletResponse retry = transaction(accountId, "charge", "5", key);
+
+        assertEquals(200, retry.getStatus());
+        assertNull(retry.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+        assertEquals(600, accounts.balance(accountId));
+    }
+
+    @Test
+    void leavesTheKeyInDoubtAfterAServerError() throws Exception {
+        String key = UUID.randomUUID().toString();
+        AtomicInteger executions = new AtomicInteger();
+
+        MockHttpServletResponse failed = filter(key, (request, response) -> {
+            executions.incrementAndGet();
+            ((HttpServletResponse) response).setStatus(500);
+        });
+        MockHttpServletResponse retry = filter(key, (request, response) -> executions.incrementAndGet());
+
+        assertEquals(500, failed.getStatus());
+        assertEquals(409, retry.getStatus());
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void leavesTheKeyInDoubtAfterAnException() throws Exception {
+        String key = UUID.randomUUID().toString();
+        AtomicInteger executions = new AtomicInteger();
+
+        assertThrows(IllegalStateException.class, () -> filter(key, (request, response) -> {
+            executions.incrementAndGet();
+            throw new IllegalStateException("Failed after the commit");
+        }));
+        MockHttpServletResponse retry = filter(key, (request, response) -> executions.incrementAndGet());
+
+        assertEquals(409, retry.getStatus());
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void readsTheBodyThroughAReadListener() throws Exception {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        AtomicInteger allDataRead = new AtomicInteger();
+
+        filter(UUID.randomUUID().toString(), (request, response) -> {
+            ServletInputStream input = request.getInputStream();
+            input.setReadListener(new ReadListener() {
+                @Override
+                public void onDataAvailable() throws IOException {
+                    while (input.isReady() && !input.isFinished()) {
+                        body.write(input.read());
+                    }
+                }
+
+                @Override
+                public void onAllDataRead() {
+                    allDataRead.incrementAndGet();
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    throw new IllegalStateException(throwable);
+                }
+            });
+        });
+
+        assertEquals("{\"amount\":1}", body.toString(StandardCharsets.UTF_8));
+        assertEquals(1, allDataRead.get());
+    }
+
+    /**
+     * Auxiliary method that runs a credit request through the filter alone, with the given chain behind it.
+     */
+    private MockHttpServletResponse filter(String key, FilterChain filterChain) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("PUT", "/api/v1/accounts/transactions/1");
+        request.setQueryString("operation=credit");
+        request.addHeader(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, key);
+        request.setContentType("application/json");
+        request.setContent("{\"amount\":1}".getBytes(StandardCharsets.UTF_8));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        idempotencyFilter.doFilter(request, response, filterChain);
+        return response;
+    }
+
+    private MockHttpServletResponse transaction(long accountId, String operation, String amount, String key) throws Exception {
+        return mockMvc.perform(put("/api/v1/accounts/transactions/{accountId}?operation={operation}", accountId, operation)
+                        .header(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, key)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"amount\":" + amount + "}"))
+                .andReturn()
+                .getResponse();
+    }
+}
@@ -0,0 +1,41 @@
+package com.cbm.billing.converter;
+
+import com.cbm.billing.dto.update.TransactionAmountDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MoneyDeserializerTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void readsNumbersAndStringsAsCents() throws Exception {
+        assertEquals(500, amount("5"));
+        assertEquals(1999, amount("19.99"));
+        assertEquals(1250, amount("\"12.5\""));
+        assertEquals(1250, amount("\" 12.50 \""));
+    }
+
+    @Test
+    void writesCentsWithTwoDecimals() throws Exception {
+        assertEquals("{\"amount\":12.50}", objectMapper.writeValueAsString(new TransactionAmountDTO(1250L)));
+    }
+
+    @Test
+    void rejectsAmountsWithMoreThanTwoDecimals() {
+        assertThrows(InvalidFormatException.class, () -> amount("19.999"));
+        assertThrows(InvalidFormatException.class, () -> amount("\"0.001\""));
+    }
+
+    @Test
+    void rejectsTextsThatAreNotAmounts() {
+        assertThrows(InvalidFormatException.class, () -> amount("\"ten\""));
+    }
+
+    private long amount(String json) throws Exception {
+        return objectMapper.readValue("{\"amount\":" + json + "}", TransactionAmountDTO.class).getAmount();
+    }
+}
@@ -0,0 +1,156 @@
+package com.cbm.billing.datasource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the connection limit in front of a stub data source whose connections only count their closes.
+ */
+class ConnectionLimitingDataSourceTest {
+    private static final Duration SHORT_TIMEOUT = Duration.ofMillis(100);
+    private static final long TIMEOUT_MS = 10_000;
+
+    private final AtomicInteger opened = new AtomicInteger();
+    private final AtomicInteger closed = new AtomicInteger();
+    private final AtomicBoolean failing = new AtomicBoolean();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void shutDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void timesOutPastTheLimit() throws Exception {
+        ConnectionLimitingDataSource dataSource = new ConnectionLimitingDataSource(stubDataSource(), 2, SHORT_TIMEOUT);
+        try (Connection first = onOtherThread(dataSource); Connection second = onOtherThread(dataSource)) {
+            assertEquals(0, dataSource.availablePermits());
+
+            long start = System.nanoTime();
+            assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+            assertTrue(System.nanoTime() - start >= SHORT_TIMEOUT.toNanos());
+        }
+        assertEquals(2, dataSource.availablePermits());
+        assertEquals(2, closed.get());
+    }
+
+    @Test
+    void handsTheReleasedPermitToTheWaitingCaller() throws Exception {
+        ConnectionLimitingDataSource dataSource = new ConnectionLimitingDataSource(stubDataSource(), 1, Duration.ofMillis(TIMEOUT_MS));
+        Connection held = onOtherThread(dataSource);
+        Future<Connection> waiting = executor.submit(() -> dataSource.getConnection());
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (dataSource.waitingCallers() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, dataSource.waitingCallers());
+        assertFalse(waiting.isDone());
+
+        held.close();
+
+        waiting.get(TIMEOUT_MS, TimeUnit.MILLISECONDS).close();
+        assertEquals(1, dataSource.availablePermits());
+    }
+
+    @Test
+    void releasesThePermitOnceWhenClosedTwice() throws Exception {
+        ConnectionLimitingDataSource dataSource = new ConnectionLimitingDataSource(stubDataSource(), 2, SHORT_TIMEOUT);
+        Connection connection = dataSource.getConnection();
+
+        connection.close();
+        connection.close();
+
+        assertEquals(2, dataSource.availablePermits());
+        assertEquals(1, closed.get());
+    }
+
+    @Test
+    void letsTheThreadHoldingAConnectionTakeAnotherWithoutAPermit() throws Exception {
+        ConnectionLimitingDataSource dataSource = new ConnectionLimitingDataSource(stubDataSource(), 1, SHORT_TIMEOUT);
+        try (Connection outer = dataSource.getConnection()) {
+            assertEquals(0, dataSource.availablePermits());
+            // The id generator block fetched while the transaction holds its connection
+            try (Connection nested = dataSource.getConnection()) {
+                assertEquals(2, opened.get());
+                assertEquals(0, dataSource.availablePermits());
+            }
+            assertEquals(0, dataSource.availablePermits());
+            // Other threads still wait for the permit
+            assertThrows(SQLTransientConnectionException.class, () -> onOtherThread(dataSource));
+        }
+        assertEquals(1, dataSource.availablePermits());
+
+        // Once every connection of the thread is closed, the next one needs a permit again
+        try (Connection connection = dataSource.getConnection()) {
+            assertEquals(0, dataSource.availablePermits());
+        }
+    }
+
+    @Test
+    void releasesThePermitWhenThePoolFails() {
+        ConnectionLimitingDataSource dataSource = new ConnectionLimitingDataSource(stubDataSource(), 1, SHORT_TIMEOUT);
+        failing.set(true);
+
+        assertThrows(SQLException.class, dataSource::getConnection);
+        assertEquals(1, dataSource.availablePermits());
+    }
+
+    /**
+     * Auxiliary method that takes a connection on a new thread, which holds no connection yet, so that it
+     * takes a permit.
+     */
+    private Connection onOtherThread(ConnectionLimitingDataSource dataSource) throws Exception {
+        FutureTask<Connection> task = new FutureTask<>(dataSource::getConnection);
+        new Thread(task).start();
+        try {
+            return task.get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+    }
+
+    private DataSource stubDataSource() {
+        return (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{DataSource.class},
+                (proxy, method, args) -> {
+                    if (!method.getName().equals("getConnection")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    if (failing.get()) {
+                        throw new SQLException("Pool exhausted");
+                    }
+                    opened.incrementAndGet();
+                    return stubConnection();
+                });
+    }
+
+    private Connection stubConnection() {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("close")) {
+                        closed.incrementAndGet();
+                        return null;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
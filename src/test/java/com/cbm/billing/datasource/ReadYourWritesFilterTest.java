@@ -0,0 +1,85 @@
+package com.cbm.billing.datasource;
+
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReadYourWritesFilterTest {
+    private static final Duration WINDOW = Duration.ofSeconds(2);
+
+    private final ReadYourWritesFilter filter = new ReadYourWritesFilter(WINDOW);
+
+    @Test
+    void setsTheWindowCookieOnWrites() throws Exception {
+        long before = System.currentTimeMillis();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("PUT", "/api/v1/accounts/transactions/1"), response, (req, res) -> { });
+
+        Cookie cookie = response.getCookie(ReadYourWritesFilter.COOKIE_NAME);
+        assertNotNull(cookie);
+        long until = Long.parseLong(cookie.getValue());
+        assertTrue(until >= before + WINDOW.toMillis() && until <= System.currentTimeMillis() + WINDOW.toMillis());
+        assertEquals(2, cookie.getMaxAge());
+    }
+
+    @Test
+    void setsNoCookieOnReads() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/v1/accounts"), response, (req, res) -> { });
+
+        assertNull(response.getCookie(ReadYourWritesFilter.COOKIE_NAME));
+    }
+
+    @Test
+    void pinsTheReadsWithinTheWindow() throws Exception {
+        assertTrue(pinnedWith(String.valueOf(System.currentTimeMillis() + WINDOW.toMillis() / 2)));
+    }
+
+    @Test
+    void doesNotPinTheReadsAfterTheWindow() throws Exception {
+        assertFalse(pinnedWith(String.valueOf(System.currentTimeMillis() - 1)));
+    }
+
+    @Test
+    void ignoresAWindowLongerThanConfigured() throws Exception {
+        assertFalse(pinnedWith(String.valueOf(System.currentTimeMillis() + WINDOW.toMillis() + 60_000)));
+        assertFalse(pinnedWith(String.valueOf(Long.MAX_VALUE)));
+    }
+
+    @Test
+    void ignoresAMalformedCookie() throws Exception {
+        assertFalse(pinnedWith("soon"));
+        assertFalse(pinnedWith(null));
+    }
+
+    @Test
+    void releasesThePinAfterTheRequest() throws Exception {
+        pinnedWith(String.valueOf(System.currentTimeMillis() + WINDOW.toMillis() / 2));
+
+        assertFalse(ReplicaReads.pinned());
+    }
+
+    /**
+     * Auxiliary method that runs a read with the given window cookie and tells whether it was pinned to the
+     * primary, null for no cookie.
+     */
+    private boolean pinnedWith(String until) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/accounts");
+        if (until != null) {
+            request.setCookies(new Cookie(ReadYourWritesFilter.COOKIE_NAME, until));
+        }
+        AtomicBoolean pinned = new AtomicBoolean();
+        filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> pinned.set(ReplicaReads.pinned()));
+        return pinned.get();
+    }
+}
@@ -0,0 +1,156 @@
+package com.cbm.billing.datasource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Routes the connections of the reads and writes between stub data sources, which tell the connections
+ * they hand out apart by name.
+ */
+class ReplicaRoutingDataSourceTest {
+    private final StubDataSource primary = new StubDataSource("primary");
+    private final StubDataSource first = new StubDataSource("first");
+    private final StubDataSource second = new StubDataSource("second");
+    private final ReplicaRoutingDataSource routingDataSource = new ReplicaRoutingDataSource(primary.dataSource(),
+            List.of(new ReplicaRoutingDataSource.Replica("first", first.dataSource()),
+                    new ReplicaRoutingDataSource.Replica("second", second.dataSource())));
+
+    @AfterEach
+    void clearTransaction() {
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        ReplicaReads.pin(false);
+    }
+
+    @Test
+    void sendsTheUnmarkedReadsToThePrimary() throws Exception {
+        assertEquals("primary", connectionOf(false));
+    }
+
+    @Test
+    void sendsTheMarkedReadsToTheReplicasInTurn() throws Exception {
+        assertEquals(List.of("first", "second", "first"), List.of(connectionOf(true), connectionOf(true), connectionOf(true)));
+        assertEquals(2, routingDataSource.replicas().get(0).connections());
+    }
+
+    @Test
+    void sendsTheReadsOfAReadOnlyTransactionToAReplica() throws Exception {
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        assertEquals("first", connectionOf(true));
+    }
+
+    @Test
+    void sendsTheReadsOfAWritingTransactionToThePrimary() throws Exception {
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+
+        assertEquals("primary", connectionOf(true));
+    }
+
+    @Test
+    void sendsTheReadsOfAPinnedThreadToThePrimary() throws Exception {
+        ReplicaReads.pin(true);
+
+        assertEquals("primary", connectionOf(true));
+    }
+
+    @Test
+    void marksAFailingReplicaDownAndReadsTheNextOne() throws Exception {
+        first.down.set(true);
+
+        assertEquals("second", connectionOf(true));
+        assertEquals("second", connectionOf(true));
+        assertFalse(routingDataSource.replicas().get(0).healthy());
+        assertEquals(0, routingDataSource.fallbacks());
+    }
+
+    @Test
+    void fallsBackToThePrimaryWithoutReplicaLeft() throws Exception {
+        first.down.set(true);
+        second.down.set(true);
+
+        assertEquals("primary", connectionOf(true));
+        assertEquals(1, routingDataSource.fallbacks());
+    }
+
+    @Test
+    void bringsTheReplicasThatAnswerBack() throws Exception {
+        first.down.set(true);
+        connectionOf(true);
+        routingDataSource.checkReplicas(1);
+        assertFalse(routingDataSource.replicas().get(0).healthy());
+
+        first.down.set(false);
+        routingDataSource.checkReplicas(1);
+
+        assertTrue(routingDataSource.replicas().get(0).healthy());
+        assertTrue(List.of(connectionOf(true), connectionOf(true)).contains("first"));
+    }
+
+    /**
+     * Auxiliary method that takes a connection, as a replica read or not, and tells where it came from.
+     */
+    private String connectionOf(boolean replicaRead) throws SQLException {
+        try (Connection connection = replicaRead
+                ? ReplicaReads.call(this::getConnection)
+                : routingDataSource.getConnection()) {
+            return connection.getCatalog();
+        }
+    }
+
+    private Connection getConnection() {
+        try {
+            return routingDataSource.getConnection();
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Data source whose connections answer their name as catalog, and that refuses connections while down.
+     */
+    private static final class StubDataSource {
+        private final String name;
+        private final AtomicBoolean down = new AtomicBoolean();
+
+        private StubDataSource(String name) {
+            this.name = name;
+        }
+
+        private DataSource dataSource() {
+            return (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{DataSource.class},
+                    (proxy, method, args) -> {
+                        if (!method.getName().equals("getConnection")) {
+                            throw new UnsupportedOperationException(method.getName());
+                        }
+                        if (down.get()) {
+                            throw new SQLException(name + " is down");
+                        }
+                        return connection();
+                    });
+        }
+
+        private Connection connection() {
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> switch (method.getName()) {
+                        case "getCatalog" -> name;
+                        case "isValid" -> true;
+                        case "close" -> null;
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    });
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.cbm.billing.dto.query;
+
+import com.cbm.billing.common.AccountSortKey;
+import com.cbm.billing.exception.InvalidSearchException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AccountSearchCursorTest {
+
+    @Test
+    void decodesWhatItEncodes() {
+        AccountSearchCursor cursor = AccountSearchCursor.decode(
+                new AccountSearchCursor(AccountSortKey.NAME, "Smith: John", 42L).encode());
+
+        assertEquals(AccountSortKey.NAME, cursor.getSortKey());
+        assertEquals("Smith: John", cursor.getValue());
+        assertEquals(42L, cursor.getId());
+    }
+
+    @Test
+    void keepsNullApartFromTheDashValue() {
+        AccountSearchCursor nullValue = AccountSearchCursor.decode(
+                new AccountSearchCursor(AccountSortKey.LAST_BILL_DATE, null, 7L).encode());
+        AccountSearchCursor dashValue = AccountSearchCursor.decode(
+                new AccountSearchCursor(AccountSortKey.NAME, "-", 7L).encode());
+        AccountSearchCursor emptyValue = AccountSearchCursor.decode(
+                new AccountSearchCursor(AccountSortKey.NAME, "", 7L).encode());
+
+        assertNull(nullValue.getValue());
+        assertEquals("-", dashValue.getValue());
+        assertEquals("", emptyValue.getValue());
+    }
+
+    @Test
+    void encodesUrlSafeTokens() {
+        String token = new AccountSearchCursor(AccountSortKey.NAME, "???>>>~~~", 1L).encode();
+
+        assertEquals(token, token.replaceAll("[^A-Za-z0-9_-]", ""));
+    }
+
+    @Test
+    void rejectsMalformedTokens() {
+        assertThrows(InvalidSearchException.class, () -> AccountSearchCursor.decode("not a token"));
+        assertThrows(InvalidSearchException.class, () -> AccountSearchCursor.decode(raw("NAME:42")));
+        assertThrows(InvalidSearchException.class, () -> AccountSearchCursor.decode(raw("NAME:x:=Smith")));
+        assertThrows(InvalidSearchException.class, () -> AccountSearchCursor.decode(raw("AMOUNT:42:=1")));
+    }
+
+    @Test
+    void rejectsValuesThatDoNotFitTheSortKey() {
+        assertThrows(InvalidSearchException.class, () -> AccountSearchCursor.decode(raw("BILL_CYCLE_DAY:42:=x")));
+        assertThrows(InvalidSearchException.class, () -> AccountSearchCursor.decode(raw("LAST_BILL_DATE:42:=2024-13-01")));
+        assertEquals("2024-02-29", AccountSearchCursor.decode(raw("LAST_BILL_DATE:42:=2024-02-29")).getValue());
+        assertNull(AccountSearchCursor.decode(raw("BILL_CYCLE_DAY:42:-")).getValue());
+    }
+
+    private static String raw(String cursor) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+}
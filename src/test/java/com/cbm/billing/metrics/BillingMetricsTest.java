@@ -0,0 +1,70 @@
+package com.cbm.billing.metrics;
+
+import com.cbm.billing.common.TransactionType;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Records the amounts inside transactions driven by hand through their synchronizations.
+ */
+class BillingMetricsTest {
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final BillingMetrics billingMetrics = new BillingMetrics(meterRegistry);
+
+    @AfterEach
+    void clearTransaction() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void recordsAtOnceOutsideATransaction() {
+        billingMetrics.billCreated(1_050);
+
+        assertEquals(1, bills().count());
+        assertEquals(10.5, bills().totalAmount(), 1e-9);
+    }
+
+    @Test
+    void recordsOnceTheTransactionCommits() {
+        TransactionSynchronizationManager.initSynchronization();
+        billingMetrics.billCreated(1_000);
+        billingMetrics.billCreated(2_000);
+        billingMetrics.transactionApplied(TransactionType.CHARGE, 300);
+        assertEquals(0, bills().count());
+
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+
+        assertEquals(1, synchronizations.size());
+        assertEquals(2, bills().count());
+        assertEquals(30.0, bills().totalAmount(), 1e-9);
+        assertEquals(3.0, meterRegistry.get("billing.transaction.amount").tag("type", "charge").summary().totalAmount(), 1e-9);
+    }
+
+    @Test
+    void recordsNothingWhenTheTransactionRollsBack() {
+        TransactionSynchronizationManager.initSynchronization();
+        billingMetrics.billCreated(1_000);
+
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        assertEquals(0, bills().count());
+    }
+
+    private DistributionSummary bills() {
+        return meterRegistry.get("billing.bill.amount").summary();
+    }
+}
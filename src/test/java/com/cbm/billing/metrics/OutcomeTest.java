@@ -0,0 +1,45 @@
+package com.cbm.billing.metrics;
+
+import com.cbm.billing.exception.AccountDomainException;
+import com.cbm.billing.exception.AccountImportNotFoundException;
+import com.cbm.billing.exception.AccountNotFoundException;
+import com.cbm.billing.exception.BillRunNotFoundException;
+import com.cbm.billing.exception.ForbiddenOperationException;
+import com.cbm.billing.exception.ForbiddenTransactionExeption;
+import com.cbm.billing.exception.InvalidSearchException;
+import com.cbm.billing.exception.ReceivablesNotReadyException;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class OutcomeTest {
+
+    @Test
+    void classifiesTheMissingResourcesAsNotFound() {
+        assertEquals(Outcome.NOT_FOUND, Outcome.of(new AccountNotFoundException("account")));
+        assertEquals(Outcome.NOT_FOUND, Outcome.of(new BillRunNotFoundException("bill run")));
+        assertEquals(Outcome.NOT_FOUND, Outcome.of(new AccountImportNotFoundException("import")));
+    }
+
+    @Test
+    void classifiesTheRefusedOperationsAsForbidden() {
+        assertEquals(Outcome.FORBIDDEN, Outcome.of(new ForbiddenOperationException("operation")));
+        assertEquals(Outcome.FORBIDDEN, Outcome.of(new ForbiddenTransactionExeption("transaction")));
+    }
+
+    @Test
+    void classifiesTheDomainExceptionsAsDomainErrors() {
+        assertEquals(Outcome.DOMAIN_ERROR, Outcome.of(new AccountDomainException("account")));
+        assertEquals(Outcome.DOMAIN_ERROR, Outcome.of(new InvalidSearchException("search")));
+    }
+
+    @Test
+    void classifiesEverythingElseAsError() {
+        assertEquals(Outcome.ERROR, Outcome.of(new IllegalStateException("state")));
+        assertEquals(Outcome.ERROR, Outcome.of(new SQLException("database")));
+        assertEquals(Outcome.ERROR, Outcome.of(new ReceivablesNotReadyException("receivables")));
+        assertEquals(Outcome.ERROR, Outcome.of(new OutOfMemoryError("memory")));
+    }
+}
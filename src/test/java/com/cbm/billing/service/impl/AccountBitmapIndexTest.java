@@ -0,0 +1,170 @@
+package com.cbm.billing.service.impl;
+
+import com.cbm.billing.AccountFixtures;
+import com.cbm.billing.common.AccountSortKey;
+import com.cbm.billing.common.AccountStatus;
+import com.cbm.billing.dto.create.CreateBillDTO;
+import com.cbm.billing.dto.query.SearchAccountDTO;
+import com.cbm.billing.dto.query.SearchAccountResponse;
+import com.cbm.billing.dto.update.UpdateAccountStatusDTO;
+import com.cbm.billing.model.Account;
+import com.cbm.billing.service.IAccountService;
+import com.cbm.billing.service.IBillService;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the searches answered by the bitmaps with the same searches run in SQL on the accounts table.
+ */
+@SpringBootTest
+@ActiveProfiles("embedded")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class AccountBitmapIndexTest {
+    private static final int ACCOUNTS = 40;
+    private static final int PAGE_SIZE = 7;
+    private static final long TIMEOUT_MS = 30_000;
+
+    @Autowired
+    private AccountBitmapIndex bitmapIndex;
+    @Autowired
+    private IAccountService accountService;
+    @Autowired
+    private IBillService billService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    void createAccounts() throws Exception {
+        AccountFixtures accounts = new AccountFixtures(accountService, jdbcTemplate);
+        String prefix = AccountFixtures.uniquePrefix("bitmap");
+        for (int index = 0; index < ACCOUNTS; index++) {
+            accounts.createAccount(prefix + index, 10_000L, index % 4 + 1);
+        }
+        List<Long> ids = accounts.idsByNamePrefix(prefix);
+        for (int index = 0; index < ids.size(); index++) {
+            if (index % 3 == 0) {
+                billService.createBill(CreateBillDTO.builder().accountId(ids.get(index)).amount(100L).build());
+            }
+            if (index % 5 == 0) {
+                accountService.terminateAccount(ids.get(index), UpdateAccountStatusDTO.builder().status(AccountStatus.TERMINATED).build());
+            }
+        }
+
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (bitmapIndex.count(null, null, null) == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertNotNull(bitmapIndex.count(null, null, null), "The bitmap index was not built");
+    }
+
+    @Test
+    void countsLikeTheDatabase() {
+        for (Filters filters : filters()) {
+            assertEquals(rows(filters).size(), bitmapIndex.count(filters.status(), filters.billCycleDay(), filters.lastBillDate()),
+                    filters.toString());
+        }
+    }
+
+    @Test
+    void pagesLikeTheDatabase() {
+        for (Filters filters : filters()) {
+            for (AccountSortKey sortKey : List.of(AccountSortKey.BILL_CYCLE_DAY, AccountSortKey.LAST_BILL_DATE)) {
+                List<Long> expected = ids(rows(filters), sortKey);
+                for (int page = 0; page * PAGE_SIZE <= expected.size(); page++) {
+                    SearchAccountResponse response = search(filters, sortKey, page, null);
+
+                    assertEquals(expected.subList(page * PAGE_SIZE, Math.min(expected.size(), (page + 1) * PAGE_SIZE)),
+                            response.getAccounts().stream().map(Account::getId).toList(), filters + " " + sortKey + " page " + page);
+                    assertEquals(expected.size(), response.getTotal(), filters.toString());
+                    assertTrue(response.getTotalExact());
+                }
+            }
+        }
+    }
+
+    @Test
+    void walksTheCursorsLikeTheDatabase() {
+        for (Filters filters : filters()) {
+            for (AccountSortKey sortKey : List.of(AccountSortKey.BILL_CYCLE_DAY, AccountSortKey.LAST_BILL_DATE)) {
+                List<Long> walked = new ArrayList<>();
+                String cursor = null;
+                do {
+                    SearchAccountResponse response = search(filters, sortKey, 0, cursor);
+                    response.getAccounts().forEach(account -> walked.add(account.getId()));
+                    cursor = response.getNextCursor();
+                } while (cursor != null);
+
+                assertEquals(ids(rows(filters), sortKey), walked, filters + " " + sortKey);
+            }
+        }
+    }
+
+    private SearchAccountResponse search(Filters filters, AccountSortKey sortKey, int page, String cursor) {
+        return accountService.searchAccount(page, PAGE_SIZE, sortKey.getParameter(), SearchAccountDTO.builder()
+                .status(filters.status())
+                .billCycleDay(filters.billCycleDay())
+                .lastBillDate(filters.lastBillDate())
+                .cursor(cursor)
+                .build());
+    }
+
+    private static List<Filters> filters() {
+        LocalDate today = LocalDate.now();
+        return List.of(
+                new Filters(null, null, null),
+                new Filters(AccountStatus.ACTIVE, null, null),
+                new Filters(AccountStatus.TERMINATED, null, null),
+                new Filters(null, 3, null),
+                new Filters(AccountStatus.ACTIVE, 2, null),
+                new Filters(null, null, today),
+                new Filters(AccountStatus.TERMINATED, 1, today),
+                new Filters(null, 31, null),
+                new Filters(null, 40, null));
+    }
+
+    /**
+     * Auxiliary method that reads the accounts matching the filters from the table.
+     */
+    private List<Row> rows(Filters filters) {
+        return jdbcTemplate.query("SELECT id, bill_cycle_day, last_bill_date, status FROM billing.billing_account",
+                        (rs, rowNum) -> {
+                            Date lastBillDate = rs.getDate("last_bill_date");
+                            return new Row(rs.getLong("id"), rs.getInt("bill_cycle_day"),
+                                    lastBillDate == null ? null : lastBillDate.toLocalDate(), AccountStatus.valueOf(rs.getString("status")));
+                        })
+                .stream()
+                .filter(row -> filters.status() == null || filters.status() == row.status())
+                .filter(row -> filters.billCycleDay() == null || filters.billCycleDay() == row.billCycleDay())
+                .filter(row -> filters.lastBillDate() == null || filters.lastBillDate().equals(row.lastBillDate()))
+                .toList();
+    }
+
+    // The order of the database: NULL first, then the id within equal values
+    private static List<Long> ids(List<Row> rows, AccountSortKey sortKey) {
+        Comparator<Row> order = sortKey == AccountSortKey.BILL_CYCLE_DAY
+                ? Comparator.comparingInt(Row::billCycleDay)
+                : Comparator.comparing(Row::lastBillDate, Comparator.nullsFirst(Comparator.naturalOrder()));
+        return rows.stream().sorted(order.thenComparingLong(Row::id)).map(Row::id).toList();
+    }
+
+    private record Filters(AccountStatus status, Integer billCycleDay, LocalDate lastBillDate) {
+    }
+
+    private record Row(long id, int billCycleDay, LocalDate lastBillDate, AccountStatus status) {
+    }
+}
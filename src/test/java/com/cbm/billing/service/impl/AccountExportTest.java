@@ -0,0 +1,106 @@
+package com.cbm.billing.service.impl;
+
+import com.cbm.billing.AccountFixtures;
+import com.cbm.billing.common.AccountFileFormat;
+import com.cbm.billing.common.AccountNameMatch;
+import com.cbm.billing.dto.create.CreateAccountDTO;
+import com.cbm.billing.dto.query.SearchAccountDTO;
+import com.cbm.billing.service.IAccountService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("embedded")
+class AccountExportTest {
+
+    @Autowired
+    private IAccountService accountService;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private String prefix;
+    private List<String> names;
+
+    @BeforeEach
+    void createAccounts() {
+        AccountFixtures accounts = new AccountFixtures(accountService, jdbcTemplate);
+        prefix = AccountFixtures.uniquePrefix("export");
+        names = List.of(prefix + "plain", prefix + "Smith, John", prefix + "the \"best\" one",
+                prefix + "two\nlines", prefix + "100%_off");
+        for (String name : names) {
+            accounts.createAccount(name, 1_050L, 5);
+        }
+    }
+
+    @Test
+    void quotesTheCsvFieldsThatNeedIt() throws Exception {
+        String csv = export(AccountFileFormat.CSV, prefix);
+
+        assertTrue(csv.startsWith("id,name,current_balance,bill_cycle_day,last_bill_date,status,created_at,updated_at\r\n"));
+        assertTrue(csv.contains("," + prefix + "plain,10.50,5,,ACTIVE,"));
+        assertTrue(csv.contains(",\"" + prefix + "Smith, John\","));
+        assertTrue(csv.contains(",\"" + prefix + "the \"\"best\"\" one\","));
+        assertTrue(csv.contains(",\"" + prefix + "two\nlines\","));
+    }
+
+    @Test
+    void readsTheCsvExportBackAsAnImport() throws Exception {
+        String csv = export(AccountFileFormat.CSV, prefix);
+
+        List<CreateAccountDTO> accounts = new ArrayList<>();
+        try (AccountImportReader reader = AccountImportReader.of(AccountFileFormat.CSV,
+                new BufferedReader(new StringReader(csv)), objectMapper.readerFor(CreateAccountDTO.class))) {
+            for (AccountImportReader.Row row = reader.next(); row != null; row = reader.next()) {
+                assertNull(row.error());
+                accounts.add(row.account());
+            }
+        }
+
+        assertEquals(names.stream().sorted().toList(), accounts.stream().map(CreateAccountDTO::getName).sorted().toList());
+        accounts.forEach(account -> assertEquals(1_050L, account.getCurrentBalance()));
+    }
+
+    @Test
+    void writesOneJsonObjectPerLine() throws Exception {
+        String ndjson = export(AccountFileFormat.NDJSON, prefix);
+
+        List<String> exported = new ArrayList<>();
+        for (String line : ndjson.split("\n")) {
+            exported.add(objectMapper.readTree(line).get("name").asText());
+        }
+        assertEquals(names.stream().sorted().toList(), exported.stream().sorted().toList());
+    }
+
+    @Test
+    void matchesTheNameFilterLiterally() throws Exception {
+        String csv = export(AccountFileFormat.CSV, prefix + "100%_");
+
+        assertEquals(2, csv.split("\r\n").length);
+        assertTrue(csv.contains(prefix + "100%_off"));
+    }
+
+    private String export(AccountFileFormat format, String name) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        accountService.exportAccounts(SearchAccountDTO.builder().name(name).nameMatch(AccountNameMatch.PREFIX).build(),
+                format, outputStream);
+        return outputStream.toString(StandardCharsets.UTF_8);
+    }
+}
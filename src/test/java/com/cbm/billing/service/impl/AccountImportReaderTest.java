@@ -0,0 +1,117 @@
+package com.cbm.billing.service.impl;
+
+import com.cbm.billing.common.AccountFileFormat;
+import com.cbm.billing.common.AccountStatus;
+import com.cbm.billing.dto.create.CreateAccountDTO;
+import com.cbm.billing.exception.InvalidImportException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AccountImportReaderTest {
+    private static final String HEADER = "name,current_balance,bill_cycle_day,status\n";
+    // As configured by Spring Boot, which ignores unknown properties
+    private static final ObjectReader JSON_READER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+            .readerFor(CreateAccountDTO.class);
+
+    @Test
+    void readsQuotedFields() throws Exception {
+        List<AccountImportReader.Row> rows = read(AccountFileFormat.CSV, HEADER
+                + "\"Smith, John\",10.5,3,active\n"
+                + "\"the \"\"best\"\" one\",0,28,TERMINATED\n"
+                + "\"two\nlines\",1,1,ACTIVE\n"
+                + "\n"
+                + "last,2,2,ACTIVE\n");
+
+        assertEquals(List.of("Smith, John", "the \"best\" one", "two\nlines", "last"),
+                rows.stream().map(row -> row.account().getName()).toList());
+        assertEquals(1_050L, rows.get(0).account().getCurrentBalance());
+        assertEquals(AccountStatus.ACTIVE, rows.get(0).account().getStatus());
+        assertEquals(AccountStatus.TERMINATED, rows.get(1).account().getStatus());
+        // The line numbers of the file, where each record starts
+        assertEquals(List.of(2L, 3L, 4L, 7L), rows.stream().map(AccountImportReader.Row::lineNumber).toList());
+    }
+
+    @Test
+    void readsTheColumnsInAnyOrderAndIgnoresTheOthers() throws Exception {
+        List<AccountImportReader.Row> rows = read(AccountFileFormat.CSV,
+                "﻿id,Status,bill_cycle_day,name,extra,current_balance\n7,ACTIVE,12,Jane,x,3.25\n");
+
+        CreateAccountDTO account = rows.get(0).account();
+        assertEquals("Jane", account.getName());
+        assertEquals(325L, account.getCurrentBalance());
+        assertEquals(12, account.getBillCycleDay());
+        assertEquals(AccountStatus.ACTIVE, account.getStatus());
+    }
+
+    @Test
+    void rejectsTheRowsThatAreNotAccounts() throws Exception {
+        List<AccountImportReader.Row> rows = read(AccountFileFormat.CSV, HEADER
+                + "a,ten,1,ACTIVE\n"
+                + "b,1.005,1,ACTIVE\n"
+                + "c,1,,ACTIVE\n"
+                + "d,1,first,ACTIVE\n"
+                + "e,1,1,CLOSED\n"
+                + "f,1\n"
+                + "\"g,1,1,ACTIVE\n");
+
+        assertEquals(List.of(
+                "Current balance should be a decimal amount",
+                "Current balance should have at most 2 decimals",
+                "Bill cycle day should not be null",
+                "Bill cycle day should be a number",
+                "Status should be one of [ACTIVE, TERMINATED]",
+                "Expected at least 4 columns, found 2",
+                "Quoted field is not closed"), rows.stream().map(AccountImportReader.Row::error).toList());
+        rows.forEach(row -> assertNull(row.account()));
+        assertEquals("a,ten,1,ACTIVE", rows.get(0).content());
+    }
+
+    @Test
+    void rejectsAHeaderWithoutTheAccountColumns() {
+        InvalidImportException e = assertThrows(InvalidImportException.class,
+                () -> read(AccountFileFormat.CSV, "name,balance,status\nJane,1,ACTIVE\n"));
+
+        assertTrue(e.getMessage().contains("[current_balance, bill_cycle_day]"));
+        assertThrows(InvalidImportException.class, () -> read(AccountFileFormat.CSV, ""));
+    }
+
+    @Test
+    void readsNdjsonLinesAndRejectsTheMalformedOnes() throws Exception {
+        List<AccountImportReader.Row> rows = read(AccountFileFormat.NDJSON,
+                "{\"name\":\"Jane\",\"currentBalance\":\"12.5\",\"billCycleDay\":3,\"status\":\"ACTIVE\",\"id\":9}\n"
+                        + "\n"
+                        + "{\"name\":\"Joe\",\"currentBalance\":1.234}\n"
+                        + "[1, 2]\n"
+                        + "{\"name\":\n");
+
+        assertEquals("Jane", rows.get(0).account().getName());
+        assertEquals(1_250L, rows.get(0).account().getCurrentBalance());
+        assertEquals(List.of(false, true, true, true), rows.stream().map(row -> row.error() != null).toList());
+        assertEquals(List.of(1L, 3L, 4L, 5L), rows.stream().map(AccountImportReader.Row::lineNumber).toList());
+    }
+
+    private static List<AccountImportReader.Row> read(AccountFileFormat format, String content) throws IOException {
+        List<AccountImportReader.Row> rows = new ArrayList<>();
+        try (AccountImportReader reader = AccountImportReader.of(format, new BufferedReader(new StringReader(content)),
+                JSON_READER)) {
+            for (AccountImportReader.Row row = reader.next(); row != null; row = reader.next()) {
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,113 @@
+package com.cbm.billing.service.impl;
+
+import com.cbm.billing.AccountFixtures;
+import com.cbm.billing.common.AccountFileFormat;
+import com.cbm.billing.common.AccountImportStatus;
+import com.cbm.billing.entity.AccountImportEntity;
+import com.cbm.billing.exception.InvalidImportException;
+import com.cbm.billing.model.AccountImport;
+import com.cbm.billing.model.AccountImportRejection;
+import com.cbm.billing.repository.AccountImportRepository;
+import com.cbm.billing.service.IAccountImportService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+@ActiveProfiles("embedded")
+class AccountImportServiceTest {
+    private static final long TIMEOUT_MS = 30_000;
+
+    @Autowired
+    private IAccountImportService accountImportService;
+    @Autowired
+    private AccountImportServiceImpl accountImportServiceImpl;
+    @Autowired
+    private AccountImportRepository accountImportRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void importsTheValidRowsAndReportsTheOthers() throws Exception {
+        String prefix = AccountFixtures.uniquePrefix("import");
+        AccountImport accountImport = importAndWait(AccountFileFormat.CSV, "name,current_balance,bill_cycle_day,status\n"
+                + "\"" + prefix + "Smith, John\",10.50,3,ACTIVE\n"
+                + prefix + "late,1,40,ACTIVE\n"
+                + ",1,3,ACTIVE\n"
+                + prefix + "cents,1.001,3,ACTIVE\n"
+                + "\"" + prefix + "two\nlines\",0,28,TERMINATED\n");
+
+        assertEquals(AccountImportStatus.COMPLETED_WITH_REJECTIONS, accountImport.getStatus());
+        assertEquals(2L, accountImport.getImportedAccounts());
+        assertEquals(3L, accountImport.getRejectedRows());
+        assertEquals(List.of(prefix + "Smith, John", prefix + "two\nlines"), jdbcTemplate.queryForList(
+                "SELECT name FROM billing.billing_account WHERE name LIKE ? ORDER BY name", String.class, prefix + "%"));
+
+        List<AccountImportRejection> rejections = accountImportService.findRejections(accountImport.getId(), null, 10).getRejections();
+        assertEquals(List.of(3L, 4L, 5L), rejections.stream().map(AccountImportRejection::getLineNumber).toList());
+        assertEquals(List.of("Bill cycle day should be between 1 and 31", "Name should not be null",
+                "Current balance should have at most 2 decimals"), rejections.stream().map(AccountImportRejection::getReason).toList());
+        assertEquals(prefix + "late,1,40,ACTIVE", rejections.get(0).getRow());
+    }
+
+    @Test
+    void completesAnImportWithoutRejections() throws Exception {
+        String prefix = AccountFixtures.uniquePrefix("import");
+        AccountImport accountImport = importAndWait(AccountFileFormat.NDJSON,
+                "{\"name\":\"" + prefix + "a\",\"currentBalance\":1,\"billCycleDay\":1,\"status\":\"ACTIVE\"}\n"
+                        + "{\"name\":\"" + prefix + "b\",\"currentBalance\":\"2.5\",\"billCycleDay\":2,\"status\":\"ACTIVE\"}\n");
+
+        assertEquals(AccountImportStatus.COMPLETED, accountImport.getStatus());
+        assertEquals(2L, accountImport.getImportedAccounts());
+        assertEquals(0L, accountImport.getRejectedRows());
+        // The names are indexed in the transaction of the chunk
+        assertEquals(0L, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM billing.billing_account a WHERE a.name LIKE ?" +
+                " AND NOT EXISTS (SELECT 1 FROM billing.account_name_token t WHERE t.account_id = a.id)", Long.class, prefix + "%"));
+        assertEquals(2L, jdbcTemplate.queryForObject("SELECT COUNT(DISTINCT t.account_id) FROM billing.account_name_token t" +
+                " JOIN billing.billing_account a ON a.id = t.account_id WHERE a.name LIKE ?", Long.class, prefix + "%"));
+    }
+
+    @Test
+    void rejectsACsvFileWithoutTheAccountHeader() {
+        assertThrows(InvalidImportException.class, () -> accountImportService.startImport(AccountFileFormat.CSV,
+                new ByteArrayInputStream("Jane,1,3,ACTIVE\n".getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    void interruptsTheImportsLeftRunning() {
+        AccountImportEntity stale = new AccountImportEntity();
+        stale.setFormat(AccountFileFormat.CSV);
+        stale.setStatus(AccountImportStatus.RUNNING);
+        stale.setStartedAt(LocalDateTime.now().minusHours(1));
+        Long staleId = accountImportRepository.save(stale).getId();
+
+        accountImportServiceImpl.interruptStaleImports();
+
+        AccountImportEntity interrupted = accountImportRepository.findById(staleId).orElseThrow();
+        assertEquals(AccountImportStatus.INTERRUPTED, interrupted.getStatus());
+        assertNotNull(interrupted.getFinishedAt());
+    }
+
+    private AccountImport importAndWait(AccountFileFormat format, String content) throws Exception {
+        Long importId = accountImportService.startImport(format,
+                new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8))).getDetails().getId();
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        AccountImport accountImport = accountImportService.findImportById(importId).getDetails();
+        while (accountImport.getStatus() == AccountImportStatus.RUNNING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            accountImport = accountImportService.findImportById(importId).getDetails();
+        }
+        return accountImport;
+    }
+}
@@ -0,0 +1,116 @@
+package com.cbm.billing.service.impl;
+
+import com.cbm.billing.AccountFixtures;
+import com.cbm.billing.common.AccountNameMatch;
+import com.cbm.billing.dto.query.SearchAccountDTO;
+import com.cbm.billing.model.Account;
+import com.cbm.billing.repository.AccountNameIndexJdbcRepository;
+import com.cbm.billing.service.IAccountNameIndexService;
+import com.cbm.billing.service.IAccountService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the name searches only read the account name index once a rebuild went through every account,
+ * with an account whose postings were removed as the accounts loaded without the application have none.
+ * The complete flag is shared by the tests, it is cleared again after every test as in a new database.
+ */
+@SpringBootTest
+@ActiveProfiles("embedded")
+class AccountNameSearchTest {
+    private static final long TIMEOUT_MS = 30_000;
+
+    @Autowired
+    private IAccountService accountService;
+    @Autowired
+    private IAccountNameIndexService accountNameIndexService;
+    @Autowired
+    private AccountNameIndexJdbcRepository accountNameIndexJdbcRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void clearIndexComplete() {
+        accountNameIndexJdbcRepository.setIndexComplete(false);
+    }
+
+    @Test
+    void matchesWithLikeUntilTheIndexIsComplete() {
+        String prefix = AccountFixtures.uniquePrefix("unindexed");
+        long accountId = createUnindexedAccount(prefix + "Harbour Lights");
+        String substring = prefix.substring(4) + "Harbour";
+        String words = prefix.split("-")[1] + " Lights";
+
+        assertEquals(List.of(accountId), search(substring, AccountNameMatch.SUBSTRING));
+        assertEquals(List.of(accountId), search(words, AccountNameMatch.TOKEN));
+
+        accountNameIndexJdbcRepository.setIndexComplete(true);
+
+        assertEquals(List.of(), search(substring, AccountNameMatch.SUBSTRING));
+        assertEquals(List.of(), search(words, AccountNameMatch.TOKEN));
+    }
+
+    @Test
+    void completesTheIndexWithARebuild() throws Exception {
+        String prefix = AccountFixtures.uniquePrefix("rebuilt");
+        long accountId = createUnindexedAccount(prefix + "Harbour Lights");
+        accountNameIndexJdbcRepository.setIndexComplete(true);
+
+        accountNameIndexService.startRebuild();
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (accountNameIndexService.indexStatus().isRebuildRunning() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+
+        assertFalse(accountNameIndexService.indexStatus().isRebuildRunning());
+        assertTrue(accountNameIndexService.indexStatus().isIndexComplete());
+        assertEquals(List.of(accountId), search(prefix.substring(4) + "Harbour", AccountNameMatch.SUBSTRING));
+        assertEquals(List.of(accountId), search(prefix.split("-")[1] + " Lights", AccountNameMatch.TOKEN));
+    }
+
+    @Test
+    void reindexesAChunkWithTheCurrentNames() {
+        String prefix = AccountFixtures.uniquePrefix("renamed");
+        long accountId = new AccountFixtures(accountService, jdbcTemplate).createAccount(prefix + "Harbour Lights", 1_000L, 1);
+        jdbcTemplate.update("UPDATE billing.billing_account SET name = ? WHERE id = ?", prefix + "Søren Straße", accountId);
+
+        // At READ COMMITTED, like the chunks of a rebuild
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        assertEquals(List.of(accountId), transactionTemplate.execute(status -> accountNameIndexJdbcRepository.indexAccountsAfter(accountId - 1, 1)));
+
+        List<String> tokens = jdbcTemplate.queryForList("SELECT token FROM billing.account_name_token WHERE account_id = ?",
+                String.class, accountId);
+        assertTrue(tokens.containsAll(List.of("renamed", "soren", "strasse")));
+        assertFalse(tokens.contains("harbour") || tokens.contains("lights"));
+        assertEquals(0L, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM billing.account_name_trigram WHERE account_id = ? AND trigram = 'har'",
+                Long.class, accountId));
+    }
+
+    private long createUnindexedAccount(String name) {
+        long accountId = new AccountFixtures(accountService, jdbcTemplate).createAccount(name, 1_000L, 1);
+        jdbcTemplate.update("DELETE FROM billing.account_name_trigram WHERE account_id = ?", accountId);
+        jdbcTemplate.update("DELETE FROM billing.account_name_token WHERE account_id = ?", accountId);
+        return accountId;
+    }
+
+    private List<Long> search(String name, AccountNameMatch match) {
+        return accountService.searchAccount(0, 10, "name", SearchAccountDTO.builder().name(name).nameMatch(match).build())
+                .getAccounts().stream().map(Account::getId).toList();
+    }
+}
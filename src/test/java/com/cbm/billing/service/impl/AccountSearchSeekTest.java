@@ -0,0 +1,108 @@
+package com.cbm.billing.service.impl;
+
+import com.cbm.billing.AccountFixtures;
+import com.cbm.billing.common.AccountNameMatch;
+import com.cbm.billing.common.SearchTotalMode;
+import com.cbm.billing.dto.create.CreateBillDTO;
+import com.cbm.billing.dto.query.SearchAccountDTO;
+import com.cbm.billing.dto.query.SearchAccountResponse;
+import com.cbm.billing.model.Account;
+import com.cbm.billing.service.IAccountService;
+import com.cbm.billing.service.IBillService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Walks the pages of a search with the cursors it returns. A name filter keeps the search on the database,
+ * so the pages are read with the seek condition.
+ */
+@SpringBootTest
+@ActiveProfiles("embedded")
+class AccountSearchSeekTest {
+    private static final int ACCOUNTS = 11;
+    private static final int PAGE_SIZE = 3;
+
+    @Autowired
+    private IAccountService accountService;
+    @Autowired
+    private IBillService billService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private String prefix;
+    private List<Account> accounts;
+
+    @BeforeEach
+    void createAccounts() throws Exception {
+        AccountFixtures fixtures = new AccountFixtures(accountService, jdbcTemplate);
+        prefix = AccountFixtures.uniquePrefix("seek");
+        for (int index = 0; index < ACCOUNTS; index++) {
+            // Names out of id order, bill cycle days shared by several accounts
+            fixtures.createAccount(prefix + (char) ('k' - index), 10_000L, index % 3 + 1);
+        }
+        List<Long> ids = fixtures.idsByNamePrefix(prefix);
+        // Every other account is billed, the others keep a NULL last bill date
+        for (int index = 0; index < ids.size(); index += 2) {
+            billService.createBill(CreateBillDTO.builder().accountId(ids.get(index)).amount(100L).build());
+        }
+        accounts = walk("name");
+        assertEquals(ACCOUNTS, accounts.size());
+    }
+
+    @Test
+    void walksTheNameOrder() {
+        assertEquals(ids(sorted(Comparator.comparing(Account::getName))), ids(walk("name")));
+    }
+
+    @Test
+    void walksTheBillCycleDayOrderWithinEqualValues() {
+        assertEquals(ids(sorted(Comparator.comparing(Account::getBillCycleDay).thenComparing(Account::getId))),
+                ids(walk("bill_cycle_day")));
+    }
+
+    @Test
+    void walksFromTheNeverBilledAccountsToTheBilledOnes() {
+        List<Account> expected = sorted(Comparator.comparing(Account::getLastBillDate, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparing(Account::getId));
+        List<Account> walked = walk("last_bill_date");
+
+        assertEquals(ids(expected), ids(walked));
+        assertNull(walked.get(0).getLastBillDate());
+        assertNull(walked.get(PAGE_SIZE).getLastBillDate());
+    }
+
+    private List<Account> walk(String sort) {
+        List<Account> walked = new ArrayList<>();
+        String cursor = null;
+        do {
+            SearchAccountResponse response = accountService.searchAccount(0, PAGE_SIZE, sort, SearchAccountDTO.builder()
+                    .name(prefix)
+                    .nameMatch(AccountNameMatch.PREFIX)
+                    .cursor(cursor)
+                    .totalMode(SearchTotalMode.NONE)
+                    .build());
+            walked.addAll(response.getAccounts());
+            cursor = response.getNextCursor();
+        } while (cursor != null);
+        return walked;
+    }
+
+    private List<Account> sorted(Comparator<Account> order) {
+        return accounts.stream().sorted(order).toList();
+    }
+
+    private static List<Long> ids(List<Account> accounts) {
+        return accounts.stream().map(Account::getId).toList();
+    }
+}
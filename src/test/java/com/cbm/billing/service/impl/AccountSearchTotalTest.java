@@ -0,0 +1,56 @@
+package com.cbm.billing.service.impl;
+
+import com.cbm.billing.AccountFixtures;
+import com.cbm.billing.common.AccountNameMatch;
+import com.cbm.billing.common.SearchTotalMode;
+import com.cbm.billing.dto.query.SearchAccountDTO;
+import com.cbm.billing.dto.query.SearchAccountResponse;
+import com.cbm.billing.service.IAccountService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks how the totals of the searches run on the database are flagged. A name filter keeps the search
+ * on the database and off the bitmap index.
+ */
+@SpringBootTest
+@ActiveProfiles("embedded")
+class AccountSearchTotalTest {
+
+    @Autowired
+    private IAccountService accountService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void flagsTheCachedTotalAsNotExact() {
+        AccountFixtures accounts = new AccountFixtures(accountService, jdbcTemplate);
+        String prefix = AccountFixtures.uniquePrefix("total");
+        accounts.createAccount(prefix + "a", 10_000L, 1);
+        accounts.createAccount(prefix + "b", 10_000L, 1);
+
+        SearchAccountResponse counted = search(prefix);
+        accounts.createAccount(prefix + "c", 10_000L, 1);
+        SearchAccountResponse cached = search(prefix);
+
+        assertEquals(2L, counted.getTotal());
+        assertTrue(counted.getTotalExact());
+        assertEquals(2L, cached.getTotal());
+        assertFalse(cached.getTotalExact());
+    }
+
+    private SearchAccountResponse search(String prefix) {
+        return accountService.searchAccount(0, 10, "name", SearchAccountDTO.builder()
+                .name(prefix)
+                .nameMatch(AccountNameMatch.PREFIX)
+                .totalMode(SearchTotalMode.EXACT)
+                .build());
+    }
+}
@@ -0,0 +1,129 @@
+package com.cbm.billing.service.impl;
+
+import com.cbm.billing.AccountFixtures;
+import com.cbm.billing.common.AccountStatus;
+import com.cbm.billing.common.TransactionType;
+import com.cbm.billing.dto.event.TransactionDetailsEvent;
+import com.cbm.billing.dto.update.UpdateAccountStatusDTO;
+import com.cbm.billing.exception.AccountNotFoundException;
+import com.cbm.billing.exception.ForbiddenTransactionExeption;
+import com.cbm.billing.service.IAccountService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+@ActiveProfiles("embedded")
+class AccountTransactionMailboxTest {
+    private static final int THREADS = 16;
+
+    @Autowired
+    private AccountTransactionMailbox transactionMailbox;
+    @Autowired
+    private IAccountService accountService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private AccountFixtures accounts;
+
+    @BeforeEach
+    void setUp() {
+        accounts = new AccountFixtures(accountService, jdbcTemplate);
+    }
+
+    @Test
+    void appliesConcurrentOperationsOneAfterTheOther() throws Exception {
+        long accountId = accounts.createAccount(1_000);
+        List<Callable<TransactionDetailsEvent>> credits = new ArrayList<>();
+        for (int index = 1; index <= 200; index++) {
+            long amount = index;
+            credits.add(() -> transactionMailbox.submit(accountId, TransactionType.CREDIT, amount));
+        }
+
+        List<TransactionDetailsEvent> events = new ArrayList<>();
+        for (Future<TransactionDetailsEvent> result : runConcurrently(credits)) {
+            events.add(result.get());
+        }
+
+        // Each operation starts from the balance the previous one left, whatever group committed it
+        events.sort(Comparator.comparingLong(TransactionDetailsEvent::getPreviousBalance));
+        long balance = 1_000;
+        for (TransactionDetailsEvent event : events) {
+            assertEquals(balance, event.getPreviousBalance());
+            assertEquals(balance + event.getTransactionAmount(), event.getCurrentBalance());
+            balance = event.getCurrentBalance();
+        }
+        assertEquals(1_000 + 200 * 201 / 2, balance);
+        assertEquals(balance, accounts.balance(accountId));
+    }
+
+    @Test
+    void rejectsTheChargesTheBalanceNoLongerCovers() throws Exception {
+        long accountId = accounts.createAccount(1_000);
+        List<Callable<TransactionDetailsEvent>> charges = new ArrayList<>();
+        for (int index = 0; index < 50; index++) {
+            charges.add(() -> transactionMailbox.submit(accountId, TransactionType.CHARGE, 300));
+        }
+
+        int applied = 0;
+        for (Future<TransactionDetailsEvent> result : runConcurrently(charges)) {
+            try {
+                result.get();
+                applied++;
+            } catch (ExecutionException e) {
+                assertInstanceOf(ForbiddenTransactionExeption.class, e.getCause());
+            }
+        }
+
+        assertEquals(3, applied);
+        assertEquals(100, accounts.balance(accountId));
+    }
+
+    @Test
+    void rejectsAChargeGreaterThanTheBalance() {
+        long accountId = accounts.createAccount(500);
+
+        assertThrows(ForbiddenTransactionExeption.class, () -> transactionMailbox.submit(accountId, TransactionType.CHARGE, 501));
+        assertEquals(500, accounts.balance(accountId));
+    }
+
+    @Test
+    void rejectsOperationsOnTerminatedAccounts() throws Exception {
+        long accountId = accounts.createAccount(500);
+        accountService.terminateAccount(accountId, UpdateAccountStatusDTO.builder().status(AccountStatus.TERMINATED).build());
+
+        assertThrows(ForbiddenTransactionExeption.class, () -> transactionMailbox.submit(accountId, TransactionType.CHARGE, 100));
+        assertThrows(ForbiddenTransactionExeption.class, () -> transactionMailbox.submit(accountId, TransactionType.CREDIT, 100));
+        assertEquals(500, accounts.balance(accountId));
+    }
+
+    @Test
+    void rejectsOperationsOnUnknownAccounts() {
+        assertThrows(AccountNotFoundException.class, () -> transactionMailbox.submit(Long.MAX_VALUE, TransactionType.CREDIT, 100));
+    }
+
+    private static <T> List<Future<T>> runConcurrently(List<Callable<T>> tasks) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            return executor.invokeAll(tasks);
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.cbm.billing.service.impl;
+
+import com.cbm.billing.AccountFixtures;
+import com.cbm.billing.common.BillRunStatus;
+import com.cbm.billing.dto.create.CreateBillRunDTO;
+import com.cbm.billing.entity.BillRunEntity;
+import com.cbm.billing.model.BillRun;
+import com.cbm.billing.repository.BillRunRepository;
+import com.cbm.billing.service.IAccountService;
+import com.cbm.billing.service.IBillRunService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Runs bill runs on dates far ahead, one date per test, so that the accounts of the other tests are due
+ * but were never billed on them. The counts of a run cover every due account of the shared database; the
+ * accounts of the test are checked one by one.
+ */
+@SpringBootTest
+@ActiveProfiles("embedded")
+class BillRunServiceTest {
+    private static final long AMOUNT = 700;
+    private static final long BALANCE = 1_000;
+    private static final long TIMEOUT_MS = 60_000;
+
+    @Autowired
+    private IBillRunService billRunService;
+    @Autowired
+    private BillRunRepository billRunRepository;
+    @Autowired
+    private IAccountService accountService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private AccountFixtures accounts;
+    private String prefix;
+
+    @BeforeEach
+    void setUp() {
+        accounts = new AccountFixtures(accountService, jdbcTemplate);
+        prefix = AccountFixtures.uniquePrefix("bill-run");
+    }
+
+    @Test
+    void billsTheDaysPastTheEndOfTheMonthOnItsLastDay() throws Exception {
+        long day27 = accounts.createAccount(prefix + "27", BALANCE, 27);
+        long day28 = accounts.createAccount(prefix + "28", BALANCE, 28);
+        long day30 = accounts.createAccount(prefix + "30", BALANCE, 30);
+        long day31 = accounts.createAccount(prefix + "31", BALANCE, 31);
+
+        LocalDate runDate = LocalDate.of(2101, 2, 28);
+        run(runDate);
+
+        assertEquals(List.of(false, true, true, true), billed(runDate, day27, day28, day30, day31));
+    }
+
+    @Test
+    void billsOnlyItsOwnDayBeforeTheEndOfTheMonth() throws Exception {
+        long day29 = accounts.createAccount(prefix + "29", BALANCE, 29);
+        long day30 = accounts.createAccount(prefix + "30", BALANCE, 30);
+        long day31 = accounts.createAccount(prefix + "31", BALANCE, 31);
+
+        LocalDate runDate = LocalDate.of(2101, 3, 30);
+        run(runDate);
+
+        assertEquals(List.of(false, true, false), billed(runDate, day29, day30, day31));
+    }
+
+    @Test
+    void billsTheDay31OnThe31st() throws Exception {
+        long day30 = accounts.createAccount(prefix + "30", BALANCE, 30);
+        long day31 = accounts.createAccount(prefix + "31", BALANCE, 31);
+
+        LocalDate runDate = LocalDate.of(2101, 5, 31);
+        run(runDate);
+
+        assertEquals(List.of(false, true), billed(runDate, day30, day31));
+        assertEquals(BALANCE + AMOUNT, accounts.balance(day31));
+        assertEquals(1L, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM billing.bill WHERE billing_account_id = ?"
+                + " AND generation_date = ? AND status = 'NOT_SETTLED'", Long.class, day31, Date.valueOf(runDate)));
+    }
+
+    @Test
+    void countsEveryDueAccount() throws Exception {
+        LocalDate runDate = LocalDate.of(2101, 6, 11);
+        for (int index = 0; index < 3; index++) {
+            accounts.createAccount(prefix + index, BALANCE, 11);
+        }
+        long due = dueAccounts(runDate);
+
+        BillRun billRun = run(runDate);
+
+        assertEquals(BillRunStatus.COMPLETED, billRun.getStatus());
+        assertEquals(due, billRun.getTotalAccounts());
+        assertEquals(due, billRun.getProcessedAccounts());
+        assertEquals(0L, billRun.getFailedAccounts());
+        assertEquals(0L, dueAccounts(runDate));
+        assertEquals(due, (long) jdbcTemplate.queryForObject("SELECT COUNT(*) FROM billing.bill WHERE generation_date = ?",
+                Long.class, Date.valueOf(runDate)));
+    }
+
+    @Test
+    void resumesAnInterruptedRunWithoutBillingTwice() throws Exception {
+        LocalDate runDate = LocalDate.of(2101, 7, 12);
+        long alreadyBilled = accounts.createAccount(prefix + "billed", BALANCE, 12);
+        long pending = accounts.createAccount(prefix + "pending", BALANCE, 12);
+        // What the interrupted run left: one account billed and counted, the run still RUNNING
+        jdbcTemplate.update("UPDATE billing.billing_account SET last_bill_date = ? WHERE id = ?", Date.valueOf(runDate), alreadyBilled);
+        BillRunEntity interrupted = new BillRunEntity();
+        interrupted.setRunDate(runDate);
+        interrupted.setAmount(AMOUNT);
+        interrupted.setStatus(BillRunStatus.RUNNING);
+        interrupted.setTotalAccounts(dueAccounts(runDate) + 1);
+        interrupted.setProcessedAccounts(1L);
+        interrupted.setFailedAccounts(0L);
+        interrupted.setChunksCompleted(1L);
+        interrupted.setStartedAt(LocalDateTime.now());
+        Long interruptedId = billRunRepository.save(interrupted).getId();
+        long due = dueAccounts(runDate);
+
+        BillRun billRun = run(runDate);
+
+        assertEquals(interruptedId, billRun.getId());
+        assertEquals(BillRunStatus.COMPLETED, billRun.getStatus());
+        assertEquals(1 + due, billRun.getTotalAccounts());
+        assertEquals(1 + due, billRun.getProcessedAccounts());
+        assertEquals(List.of(true, true), billed(runDate, alreadyBilled, pending));
+        assertEquals(BALANCE, accounts.balance(alreadyBilled));
+        assertEquals(BALANCE + AMOUNT, accounts.balance(pending));
+    }
+
+    @Test
+    void retriesTheAccountsOfAFailedChunkOneByOne() throws Exception {
+        LocalDate runDate = LocalDate.of(2101, 8, 13);
+        long first = accounts.createAccount(prefix + "first", BALANCE, 13);
+        String poisonName = prefix + "poison";
+        long poison = accounts.createAccount(poisonName, BALANCE, 13);
+        long last = accounts.createAccount(prefix + "last", BALANCE, 13);
+        long due = dueAccounts(runDate);
+        // Fails the update of the poisoned account only, which fails its whole chunk first
+        jdbcTemplate.execute("ALTER TABLE billing.billing_account ADD CONSTRAINT bill_run_poison"
+                + " CHECK (name <> '" + poisonName + "' OR last_bill_date IS NULL)");
+        BillRun billRun;
+        try {
+            billRun = run(runDate);
+        } finally {
+            jdbcTemplate.execute("ALTER TABLE billing.billing_account DROP CONSTRAINT bill_run_poison");
+        }
+
+        assertEquals(BillRunStatus.COMPLETED_WITH_FAILURES, billRun.getStatus());
+        assertEquals(due, billRun.getTotalAccounts());
+        assertEquals(due - 1, billRun.getProcessedAccounts());
+        assertEquals(1L, billRun.getFailedAccounts());
+        assertEquals(1L, billRun.getChunksFailed());
+        assertEquals(List.of(true, false, true), billed(runDate, first, poison, last));
+        assertEquals(BALANCE, accounts.balance(poison));
+        assertEquals(BALANCE + AMOUNT, accounts.balance(last));
+    }
+
+    /**
+     * Auxiliary method that starts a bill run and waits until it finished.
+     */
+    private BillRun run(LocalDate runDate) throws Exception {
+        Long runId = billRunService.startBillRun(CreateBillRunDTO.builder().runDate(runDate).amount(AMOUNT).build())
+                .getDetails().getId();
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        BillRun billRun = billRunService.findBillRunById(runId).getDetails();
+        while (billRun.getStatus() == BillRunStatus.RUNNING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            billRun = billRunService.findBillRunById(runId).getDetails();
+        }
+        return billRun;
+    }
+
+    private long dueAccounts(LocalDate runDate) {
+        int day = runDate.getDayOfMonth();
+        int lastDay = day == runDate.lengthOfMonth() ? 31 : day;
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM billing.billing_account WHERE status = 'ACTIVE'"
+                        + " AND bill_cycle_day BETWEEN ? AND ? AND (last_bill_date IS NULL OR last_bill_date < ?)",
+                Long.class, day, lastDay, Date.valueOf(runDate));
+    }
+
+    /**
+     * Auxiliary method that tells for every account whether its last bill is of the run date.
+     */
+    private List<Boolean> billed(LocalDate runDate, long... accountIds) {
+        return Arrays.stream(accountIds)
+                .mapToObj(accountId -> runDate.equals(jdbcTemplate.queryForObject(
+                        "SELECT last_bill_date FROM billing.billing_account WHERE id = ?", LocalDate.class, accountId)))
+                .toList();
+    }
+}
@@ -0,0 +1,187 @@
+package com.cbm.billing.service.impl;
+
+import com.cbm.billing.model.OutboxEvent;
+import com.cbm.billing.model.OutboxRelayState;
+import com.cbm.billing.outbox.impl.InMemoryOutboxSink;
+import com.cbm.billing.repository.OutboxJdbcRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the gap handling of the relay on batches built by hand, and the lease and saved position of the
+ * relay on the embedded database, where the scheduled relay of the application runs too.
+ */
+@SpringBootTest
+@ActiveProfiles("embedded")
+class OutboxServiceTest {
+    private static final Duration GAP_TIMEOUT = Duration.ofSeconds(5);
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 3, 1, 12, 0);
+    private static final long TIMEOUT_MS = 30_000;
+
+    @Autowired
+    private OutboxServiceImpl outboxService;
+    @Autowired
+    private OutboxJdbcRepository outboxJdbcRepository;
+    @Autowired
+    private InMemoryOutboxSink outboxSink;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void publishesTheWholeBatchWithoutGap() {
+        OutboxRelayState state = state(10);
+
+        assertEquals(3, OutboxServiceImpl.publishableEvents(events(10, 11, 12), state, NOW, GAP_TIMEOUT));
+        assertEquals(0, state.getGapId());
+    }
+
+    @Test
+    void stopsBeforeAGapAndWaitsForIt() {
+        OutboxRelayState state = state(10);
+
+        assertEquals(2, OutboxServiceImpl.publishableEvents(events(10, 11, 13), state, NOW, GAP_TIMEOUT));
+        assertEquals(12, state.getGapId());
+        assertEquals(NOW, state.getGapSeenAt());
+
+        state.setNextId(12);
+        assertEquals(0, OutboxServiceImpl.publishableEvents(events(13), state, NOW.plusSeconds(4), GAP_TIMEOUT));
+        assertEquals(NOW, state.getGapSeenAt());
+    }
+
+    @Test
+    void publishesPastAGapAfterTheTimeout() {
+        OutboxRelayState state = OutboxRelayState.builder().nextId(12).gapId(12).gapSeenAt(NOW).build();
+
+        assertEquals(2, OutboxServiceImpl.publishableEvents(events(13, 14), state, NOW.plus(GAP_TIMEOUT), GAP_TIMEOUT));
+    }
+
+    @Test
+    void waitsAgainForANewGap() {
+        OutboxRelayState state = OutboxRelayState.builder().nextId(12).gapId(12).gapSeenAt(NOW).build();
+
+        assertEquals(1, OutboxServiceImpl.publishableEvents(events(13, 15), state, NOW.plus(GAP_TIMEOUT), GAP_TIMEOUT));
+        assertEquals(14, state.getGapId());
+        assertEquals(NOW.plus(GAP_TIMEOUT), state.getGapSeenAt());
+    }
+
+    @Test
+    void publishesALateIdRightAway() {
+        // 11 was the missing id, committed after 12 and 13 were published past it
+        OutboxRelayState state = state(14);
+
+        assertEquals(2, OutboxServiceImpl.publishableEvents(events(11, 14), state, NOW, GAP_TIMEOUT));
+        assertEquals(0, state.getGapId());
+    }
+
+    @Test
+    void skipsTheRunWhileAnotherRelayHoldsThePosition() throws Exception {
+        long accountId = -ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE);
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService otherRelay = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> lease = otherRelay.submit(() -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                assertTrue(outboxJdbcRepository.lockRelayState().isPresent());
+                locked.countDown();
+                try {
+                    assertTrue(release.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }));
+            assertTrue(locked.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+            insertEvent(accountId);
+
+            outboxService.relay();
+
+            assertEquals(1, pendingEvents(accountId));
+            release.countDown();
+            lease.get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } finally {
+            release.countDown();
+            otherRelay.shutdownNow();
+        }
+
+        awaitPublished(accountId);
+    }
+
+    @Test
+    void carriesOnFromTheSavedPositionAfterARestart() throws Exception {
+        long accountId = -ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE);
+        // The id of a rolled back insert is never committed, which leaves a gap before the next event
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            insertEvent(accountId);
+            status.setRollbackOnly();
+        });
+        insertEvent(accountId);
+
+        // A relay that has just started, with a gap timeout it cannot reach during the test
+        OutboxServiceImpl restarted = new OutboxServiceImpl(outboxJdbcRepository, outboxSink, transactionManager,
+                new SimpleMeterRegistry(), true, 1000, Duration.ofHours(1));
+        restarted.relay();
+
+        assertEquals(1, pendingEvents(accountId));
+        OutboxRelayState state = lockedState();
+        assertTrue(state.getNextId() > 0);
+        assertEquals(state.getNextId(), state.getGapId());
+
+        // The relay of the application publishes past the gap once its own timeout is reached
+        awaitPublished(accountId);
+    }
+
+    private void insertEvent(long accountId) {
+        outboxJdbcRepository.insertEvents(List.of(OutboxEvent.builder()
+                .accountId(accountId)
+                .eventType("TEST")
+                .payload("{}")
+                .createdAt(LocalDateTime.now())
+                .build()));
+    }
+
+    private long pendingEvents(long accountId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM billing.event_outbox WHERE account_id = ?", Long.class, accountId);
+    }
+
+    private OutboxRelayState lockedState() {
+        return new TransactionTemplate(transactionManager).execute(status -> outboxJdbcRepository.lockRelayState().orElseThrow());
+    }
+
+    private void awaitPublished(long accountId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (pendingEvents(accountId) > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(0, pendingEvents(accountId));
+        assertEquals(1, outboxSink.getEvents().stream().filter(event -> event.getAccountId() == accountId).count());
+    }
+
+    private static OutboxRelayState state(long nextId) {
+        return OutboxRelayState.builder().nextId(nextId).build();
+    }
+
+    private static List<OutboxEvent> events(long... ids) {
+        return Arrays.stream(ids).mapToObj(id -> OutboxEvent.builder().id(id).build()).toList();
+    }
+}
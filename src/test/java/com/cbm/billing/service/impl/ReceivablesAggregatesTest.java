@@ -0,0 +1,124 @@
+package com.cbm.billing.service.impl;
+
+import com.cbm.billing.AccountFixtures;
+import com.cbm.billing.common.AccountStatus;
+import com.cbm.billing.common.Money;
+import com.cbm.billing.dto.create.CreateAccountDTO;
+import com.cbm.billing.dto.create.CreateBillDTO;
+import com.cbm.billing.dto.update.TransactionAmountDTO;
+import com.cbm.billing.dto.update.UpdateAccountStatusDTO;
+import com.cbm.billing.dto.update.UpdateBillCycleDTO;
+import com.cbm.billing.service.IAccountService;
+import com.cbm.billing.service.IBillService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Compares the totals kept in memory with the same totals summed in SQL. Every test starts from a scan, so
+ * the writes of the other tests that bypass the deltas do not count.
+ */
+@SpringBootTest
+@ActiveProfiles("embedded")
+class ReceivablesAggregatesTest {
+
+    @Autowired
+    private ReceivablesAggregates receivablesAggregates;
+    @Autowired
+    private IAccountService accountService;
+    @Autowired
+    private IBillService billService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private AccountFixtures accounts;
+
+    @BeforeEach
+    void scan() {
+        accounts = new AccountFixtures(accountService, jdbcTemplate);
+        receivablesAggregates.scan();
+        assertNotNull(receivablesAggregates.snapshot());
+    }
+
+    @Test
+    void addsTheCommittedChangesToTheScan() throws Exception {
+        String prefix = AccountFixtures.uniquePrefix("receivables");
+        long billed = accounts.createAccount(prefix + "billed", 1_000, 3);
+        long charged = accounts.createAccount(prefix + "charged", 2_000, 3);
+        long moved = accounts.createAccount(prefix + "moved", 500, 3);
+        long terminated = accounts.createAccount(prefix + "terminated", 250, 7);
+
+        billService.createBill(CreateBillDTO.builder().accountId(billed).amount(300L).build());
+        accountService.chargeOnAccount(charged, new TransactionAmountDTO(1_200L));
+        accountService.creditOnAccount(charged, new TransactionAmountDTO(50L));
+        accountService.updateBillCycle(moved, new UpdateBillCycleDTO(28));
+        accountService.terminateAccount(terminated, UpdateAccountStatusDTO.builder().status(AccountStatus.TERMINATED).build());
+
+        assertEquals(summedInSql(), totals(receivablesAggregates.snapshot()));
+    }
+
+    @Test
+    void appliesNothingOfARolledBackTransaction() {
+        long accountId = accounts.createAccount(10_000);
+        List<Object> before = totals(receivablesAggregates.snapshot());
+
+        transactionTemplate.executeWithoutResult(status -> {
+            try {
+                billService.createBill(CreateBillDTO.builder().accountId(accountId).amount(700L).build());
+                accountService.updateBillCycle(accountId, new UpdateBillCycleDTO(15));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            accountService.createAccount(CreateAccountDTO.builder()
+                    .name(AccountFixtures.uniquePrefix("rolled-back"))
+                    .currentBalance(5_000L)
+                    .billCycleDay(2)
+                    .status(AccountStatus.ACTIVE)
+                    .build());
+            status.setRollbackOnly();
+        });
+
+        assertEquals(before, totals(receivablesAggregates.snapshot()));
+        assertEquals(summedInSql(), before);
+    }
+
+    /**
+     * Auxiliary method that lists the totals of a snapshot: the accounts by status and bill cycle day, the
+     * balances by status, then the count and amount of the NOT_SETTLED bills.
+     */
+    private static List<Object> totals(ReceivablesAggregates.Snapshot snapshot) {
+        return List.of(snapshot.accounts(), snapshot.balances(), snapshot.notSettledBills(), snapshot.notSettledAmount());
+    }
+
+    private List<Object> summedInSql() {
+        List<List<Long>> accountsByStatus = new ArrayList<>();
+        List<Long> balances = new ArrayList<>();
+        for (AccountStatus status : AccountStatus.values()) {
+            List<Long> byDay = new ArrayList<>();
+            for (int day = 1; day <= 31; day++) {
+                byDay.add(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM billing.billing_account WHERE status = ? AND bill_cycle_day = ?",
+                        Long.class, status.name(), day));
+            }
+            accountsByStatus.add(byDay);
+            balances.add(Money.toCents(jdbcTemplate.queryForObject(
+                    "SELECT COALESCE(SUM(current_balance), 0) FROM billing.billing_account WHERE status = ?", BigDecimal.class, status.name())));
+        }
+        long bills = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM billing.bill WHERE status = 'NOT_SETTLED'", Long.class);
+        long amount = Money.toCents(jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(amount), 0) FROM billing.bill WHERE status = 'NOT_SETTLED'", BigDecimal.class));
+        return List.of(accountsByStatus, balances, bills, amount);
+    }
+}
@@ -0,0 +1,162 @@
+package com.cbm.billing.service.impl;
+
+import com.cbm.billing.AccountFixtures;
+import com.cbm.billing.exception.ForbiddenOperationException;
+import com.cbm.billing.repository.SummaryProjectionJdbcRepository;
+import com.cbm.billing.service.IAccountService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the projection of the queued changes, its checkpoint, the lease and the resume of a rebuild on the
+ * embedded database, where the scheduled projector of the application runs too.
+ */
+@SpringBootTest
+@ActiveProfiles("embedded")
+class SummaryProjectorServiceTest {
+    private static final long TIMEOUT_MS = 30_000;
+
+    @Autowired
+    private SummaryProjectorServiceImpl summaryProjectorService;
+    @Autowired
+    private SummaryProjectionJdbcRepository summaryProjectionJdbcRepository;
+    @Autowired
+    private IAccountService accountService;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private AccountFixtures fixtures;
+
+    @BeforeEach
+    void setUp() {
+        fixtures = new AccountFixtures(accountService, jdbcTemplate);
+    }
+
+    @Test
+    void projectsTheQueuedChangesOnceTheLeaseIsFree() throws Exception {
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService otherProjector = Executors.newSingleThreadExecutor();
+        long accountId;
+        long changeId;
+        try {
+            Future<?> lease = otherProjector.submit(() -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                assertTrue(summaryProjectionJdbcRepository.lockLease(true));
+                locked.countDown();
+                try {
+                    assertTrue(release.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }));
+            assertTrue(locked.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+            accountId = fixtures.createAccount(12_345);
+            changeId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM billing.summary_change" +
+                    " WHERE source = 'ACCOUNT' AND source_id = ?", Long.class, accountId);
+
+            summaryProjectorService.project();
+
+            assertEquals(1, pendingChanges(accountId));
+            assertFalse(isProjected(accountId));
+            release.countDown();
+            lease.get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } finally {
+            release.countDown();
+            otherProjector.shutdownNow();
+        }
+
+        awaitProjected(List.of(accountId));
+        assertEquals(0, new BigDecimal("123.45").compareTo(jdbcTemplate.queryForObject(
+                "SELECT current_balance FROM billing_summary.billing_account_summary WHERE id = ?", BigDecimal.class, accountId)));
+        assertTrue(summaryProjectionJdbcRepository.findCheckpoint("changes").orElseThrow() >= changeId);
+    }
+
+    @Test
+    void resumesAnInterruptedRebuildFromItsCheckpoint() throws Exception {
+        String prefix = AccountFixtures.uniquePrefix("rebuild");
+        for (int i = 0; i < 3; i++) {
+            fixtures.createAccount(prefix + i, 1_000, 1);
+        }
+        List<Long> accountIds = fixtures.idsByNamePrefix(prefix);
+        awaitProjected(accountIds);
+
+        // A rebuild interrupted after the chunk ending at the first account, whose later accounts were never copied
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            assertTrue(summaryProjectionJdbcRepository.lockLease(true));
+            jdbcTemplate.update("DELETE FROM billing_summary.billing_account_summary WHERE id IN (?, ?, ?)",
+                    accountIds.get(0), accountIds.get(1), accountIds.get(2));
+            summaryProjectionJdbcRepository.saveCheckpoint("rebuild.accounts", accountIds.get(0));
+        });
+
+        startRebuild();
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (summaryProjectorService.projectorStatus().isRebuildRunning() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+
+        assertFalse(summaryProjectorService.projectorStatus().isRebuildRunning());
+        assertFalse(isProjected(accountIds.get(0)));
+        assertTrue(isProjected(accountIds.get(1)));
+        assertTrue(isProjected(accountIds.get(2)));
+        assertNull(summaryProjectorService.projectorStatus().getRebuildAccountPosition());
+        assertNull(summaryProjectorService.projectorStatus().getRebuildBillPosition());
+    }
+
+    private void startRebuild() throws InterruptedException {
+        // Another test may still be running a rebuild of its own
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (true) {
+            try {
+                summaryProjectorService.startRebuild();
+                return;
+            } catch (ForbiddenOperationException e) {
+                assertTrue(System.currentTimeMillis() < deadline);
+                Thread.sleep(50);
+            }
+        }
+    }
+
+    private void awaitProjected(List<Long> accountIds) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!accountIds.stream().allMatch(id -> pendingChanges(id) == 0 && isProjected(id))
+                && System.currentTimeMillis() < deadline) {
+            summaryProjectorService.project();
+            Thread.sleep(50);
+        }
+        for (long accountId : accountIds) {
+            assertEquals(0, pendingChanges(accountId));
+            assertTrue(isProjected(accountId));
+        }
+    }
+
+    private long pendingChanges(long accountId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM billing.summary_change WHERE source = 'ACCOUNT' AND source_id = ?",
+                Long.class, accountId);
+    }
+
+    private boolean isProjected(long accountId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM billing_summary.billing_account_summary WHERE id = ?",
+                Long.class, accountId) > 0;
+    }
+}
@@ -0,0 +1,67 @@
+-- Tables of db_schema.sql that are only written with JDBC, in the dialect of H2 in MySQL mode
+CREATE TABLE billing.transaction_ledger (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    account_id BIGINT NOT NULL,
+    transaction_type ENUM('CHARGE', 'CREDIT') NOT NULL,
+    amount DECIMAL(12,2) NOT NULL,
+    previous_balance DECIMAL(12,2) NOT NULL,
+    current_balance DECIMAL(12,2) NOT NULL,
+    transaction_date DATE NOT NULL,
+    created_at TIMESTAMP NOT NULL
+);
+CREATE INDEX idx_ledger_account_id_id ON billing.transaction_ledger (account_id, id);
+
+CREATE TABLE billing.event_outbox (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    account_id BIGINT NOT NULL,
+    event_type VARCHAR(64) NOT NULL,
+    payload JSON NOT NULL,
+    created_at TIMESTAMP(3) NOT NULL
+);
+
+CREATE TABLE billing.outbox_relay (
+    id TINYINT PRIMARY KEY,
+    next_id BIGINT NOT NULL,
+    gap_id BIGINT NOT NULL,
+    gap_seen_at TIMESTAMP(3) NULL
+);
+INSERT INTO billing.outbox_relay (id, next_id, gap_id) VALUES (1, 0, 0);
+
+CREATE TABLE billing.summary_change (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    source ENUM('ACCOUNT', 'BILL') NOT NULL,
+    source_id BIGINT NOT NULL
+);
+
+CREATE TABLE billing.account_name_index_state (
+    id TINYINT PRIMARY KEY,
+    complete BOOLEAN NOT NULL,
+    completed_at TIMESTAMP NULL
+);
+INSERT INTO billing.account_name_index_state (id, complete) VALUES (1, FALSE);
+
+CREATE TABLE billing.account_import_rejection (
+    import_id BIGINT NOT NULL,
+    line_number BIGINT NOT NULL,
+    reason VARCHAR(500) NOT NULL,
+    row_content VARCHAR(1000) NULL,
+    PRIMARY KEY (import_id, line_number)
+);
+
+CREATE TABLE billing.idempotency_key (
+    idempotency_key VARCHAR(255) PRIMARY KEY,
+    request_hash BINARY(32) NOT NULL,
+    response_status SMALLINT NULL,
+    content_type VARCHAR(255) NULL,
+    response_body MEDIUMBLOB NULL,
+    in_doubt BOOLEAN NOT NULL DEFAULT FALSE,
+    expires_at TIMESTAMP(3) NOT NULL
+);
+CREATE INDEX idx_idempotency_key_expires_at ON billing.idempotency_key (expires_at);
+
+CREATE TABLE billing_summary.projector_checkpoint (
+    name VARCHAR(64) PRIMARY KEY,
+    position BIGINT NOT NULL,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+INSERT INTO billing_summary.projector_checkpoint (name, position) VALUES ('lease', 0);